@@ -0,0 +1,278 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.bench;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+
+/** A request made without a container. Only the parts of
+ * HttpServletRequest which the CalDAV and WebDAV servlet code uses are
+ * implemented. Everything else returns a default value.
+ *
+ * <p>The body is held as bytes so the same request can be replayed for
+ * every benchmark invocation.
+ *
+ * @author Mike Douglass
+ */
+public class BenchRequest {
+  private final String method;
+
+  private final String uri;
+
+  private final String account;
+
+  private final Map<String, String> headers =
+          new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+  private final Map<String, String> params = new HashMap<>();
+
+  private byte[] body;
+
+  private String contentType;
+
+  /**
+   * @param method http method
+   * @param uri request uri - relative to the servlet
+   * @param account authenticated user or null
+   */
+  public BenchRequest(final String method,
+                      final String uri,
+                      final String account) {
+    this.method = method;
+    this.uri = uri;
+    this.account = account;
+  }
+
+  /**
+   * @param name of header
+   * @param val value
+   * @return this
+   */
+  public BenchRequest header(final String name,
+                             final String val) {
+    headers.put(name, val);
+    return this;
+  }
+
+  /**
+   * @param name of parameter
+   * @param val value
+   * @return this
+   */
+  public BenchRequest param(final String name,
+                            final String val) {
+    params.put(name, val);
+    return this;
+  }
+
+  /**
+   * @param contentType of the body
+   * @param val the body
+   * @return this
+   */
+  public BenchRequest body(final String contentType,
+                           final String val) {
+    this.contentType = contentType;
+    body = val.getBytes(StandardCharsets.UTF_8);
+    return this;
+  }
+
+  /**
+   * @return a new servlet request for one invocation
+   */
+  public HttpServletRequest toServletRequest() {
+    final Map<String, Object> attrs = new HashMap<>();
+    final byte[] content;
+
+    if (body == null) {
+      content = new byte[0];
+    } else {
+      content = body;
+    }
+
+    final ByteArrayInputStream bais = new ByteArrayInputStream(content);
+
+    final ServletInputStream sis = new ServletInputStream() {
+      @Override
+      public int read() {
+        return bais.read();
+      }
+
+      @Override
+      public int read(final byte[] b, final int off, final int len) {
+        return bais.read(b, off, len);
+      }
+
+      @Override
+      public boolean isFinished() {
+        return bais.available() == 0;
+      }
+
+      @Override
+      public boolean isReady() {
+        return true;
+      }
+
+      @Override
+      public void setReadListener(final ReadListener readListener) {
+      }
+    };
+
+    final Principal principal;
+    if (account == null) {
+      principal = null;
+    } else {
+      principal = () -> account;
+    }
+
+    return (HttpServletRequest)Proxy.newProxyInstance(
+            HttpServletRequest.class.getClassLoader(),
+            new Class<?>[]{HttpServletRequest.class},
+            (proxy, m, args) -> {
+              switch (m.getName()) {
+                case "getMethod":
+                  return method;
+                case "getRequestURI":
+                case "getPathInfo":
+                  return uri;
+                case "getRequestURL":
+                  return new StringBuffer(BenchServer.urlPrefix).append(uri);
+                case "getServletPath":
+                case "getContextPath":
+                  return "";
+                case "getScheme":
+                  return "http";
+                case "getServerName":
+                case "getRemoteHost":
+                  return BenchServer.host;
+                case "getRemoteAddr":
+                case "getLocalAddr":
+                  return "127.0.0.1";
+                case "getServerPort":
+                case "getLocalPort":
+                  return BenchServer.port;
+                case "getProtocol":
+                  return "HTTP/1.1";
+                case "isSecure":
+                  return false;
+                case "getRemoteUser":
+                  return account;
+                case "getUserPrincipal":
+                  return principal;
+                case "getHeader":
+                  return headers.get((String)args[0]);
+                case "getHeaders": {
+                  final String h = headers.get((String)args[0]);
+                  if (h == null) {
+                    return Collections.emptyEnumeration();
+                  }
+                  return Collections.enumeration(
+                          Collections.singletonList(h));
+                }
+                case "getHeaderNames":
+                  return Collections.enumeration(headers.keySet());
+                case "getIntHeader": {
+                  final String h = headers.get((String)args[0]);
+                  if (h == null) {
+                    return -1;
+                  }
+                  return Integer.parseInt(h);
+                }
+                case "getDateHeader":
+                  return -1L;
+                case "getContentType":
+                  return contentType;
+                case "getContentLength":
+                  return content.length;
+                case "getContentLengthLong":
+                  return (long)content.length;
+                case "getCharacterEncoding":
+                  return "UTF-8";
+                case "getInputStream":
+                  return sis;
+                case "getReader":
+                  return new BufferedReader(
+                          new InputStreamReader(sis, StandardCharsets.UTF_8));
+                case "getParameter":
+                  return params.get((String)args[0]);
+                case "getParameterValues": {
+                  final String p = params.get((String)args[0]);
+                  if (p == null) {
+                    return null;
+                  }
+                  return new String[]{p};
+                }
+                case "getParameterNames":
+                  return Collections.enumeration(params.keySet());
+                case "getParameterMap": {
+                  final Map<String, String[]> pm = new HashMap<>();
+                  for (final String k: params.keySet()) {
+                    pm.put(k, new String[]{params.get(k)});
+                  }
+                  return pm;
+                }
+                case "getQueryString":
+                  return null;
+                case "getAttribute":
+                  return attrs.get((String)args[0]);
+                case "setAttribute":
+                  attrs.put((String)args[0], args[1]);
+                  return null;
+                case "removeAttribute":
+                  attrs.remove((String)args[0]);
+                  return null;
+                case "getAttributeNames":
+                  return Collections.enumeration(attrs.keySet());
+                case "getLocale":
+                  return Locale.getDefault();
+                case "getLocales":
+                  return Collections.enumeration(
+                          Collections.singletonList(Locale.getDefault()));
+                case "getSession":
+                  return null;
+                case "hashCode":
+                  return System.identityHashCode(proxy);
+                case "equals":
+                  return proxy == args[0];
+                case "toString":
+                  return BenchRequest.this.toString();
+                default:
+                  return BenchServer.defaultValue(m.getReturnType());
+              }
+            });
+  }
+
+  @Override
+  public String toString() {
+    return "BenchRequest{" + method + " " + uri + "}";
+  }
+}
@@ -0,0 +1,183 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+
+/** Captures what the servlet writes for one request. The content is
+ * kept so that benchmarks can consume it and so a run can be checked
+ * for the expected status.
+ *
+ * @author Mike Douglass
+ */
+public class BenchResponse {
+  private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+  private final Map<String, String> headers =
+          new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+  private int status = HttpServletResponse.SC_OK;
+
+  private String contentType;
+
+  private PrintWriter writer;
+
+  /**
+   * @return status set by the servlet
+   */
+  public int getStatus() {
+    return status;
+  }
+
+  /**
+   * @return content type set by the servlet
+   */
+  public String getContentType() {
+    return contentType;
+  }
+
+  /**
+   * @param name of header
+   * @return value or null
+   */
+  public String getHeader(final String name) {
+    return headers.get(name);
+  }
+
+  /**
+   * @return number of bytes written
+   */
+  public int getContentLength() {
+    flush();
+    return content.size();
+  }
+
+  /**
+   * @return content as a string
+   */
+  public String getContent() {
+    flush();
+    return new String(content.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @return a servlet response which writes into this object
+   */
+  public HttpServletResponse toServletResponse() {
+    final ServletOutputStream sos = new ServletOutputStream() {
+      @Override
+      public void write(final int b) {
+        content.write(b);
+      }
+
+      @Override
+      public void write(final byte[] b, final int off, final int len) {
+        content.write(b, off, len);
+      }
+
+      @Override
+      public boolean isReady() {
+        return true;
+      }
+
+      @Override
+      public void setWriteListener(final WriteListener writeListener) {
+      }
+    };
+
+    return (HttpServletResponse)Proxy.newProxyInstance(
+            HttpServletResponse.class.getClassLoader(),
+            new Class<?>[]{HttpServletResponse.class},
+            (proxy, m, args) -> {
+              switch (m.getName()) {
+                case "setStatus":
+                case "sendError":
+                  status = (Integer)args[0];
+                  return null;
+                case "getStatus":
+                  return status;
+                case "sendRedirect":
+                  status = HttpServletResponse.SC_MOVED_TEMPORARILY;
+                  return null;
+                case "setContentType":
+                  contentType = (String)args[0];
+                  return null;
+                case "getContentType":
+                  return contentType;
+                case "setHeader":
+                case "addHeader":
+                  headers.put((String)args[0], (String)args[1]);
+                  return null;
+                case "setIntHeader":
+                case "addIntHeader":
+                case "setDateHeader":
+                case "addDateHeader":
+                  headers.put((String)args[0], String.valueOf(args[1]));
+                  return null;
+                case "containsHeader":
+                  return headers.containsKey((String)args[0]);
+                case "getHeader":
+                  return headers.get((String)args[0]);
+                case "getCharacterEncoding":
+                  return "UTF-8";
+                case "getOutputStream":
+                  return sos;
+                case "getWriter":
+                  if (writer == null) {
+                    writer = new PrintWriter(
+                            new OutputStreamWriter(sos,
+                                                   StandardCharsets.UTF_8));
+                  }
+                  return writer;
+                case "flushBuffer":
+                  flush();
+                  return null;
+                case "isCommitted":
+                  return false;
+                case "encodeURL":
+                case "encodeRedirectURL":
+                  return args[0];
+                case "hashCode":
+                  return System.identityHashCode(proxy);
+                case "equals":
+                  return proxy == args[0];
+                case "toString":
+                  return "BenchResponse{" + status + "}";
+                default:
+                  return BenchServer.defaultValue(m.getReturnType());
+              }
+            });
+  }
+
+  private void flush() {
+    if (writer != null) {
+      writer.flush();
+    }
+  }
+}
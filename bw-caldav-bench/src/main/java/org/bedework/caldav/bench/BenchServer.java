@@ -0,0 +1,238 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.bench;
+
+import org.bedework.caldav.inmem.InMemSeeder;
+import org.bedework.caldav.inmem.InMemStore;
+import org.bedework.caldav.inmem.InMemSysIntf;
+import org.bedework.caldav.server.CaldavBWIntf;
+import org.bedework.caldav.server.CaldavBWServlet;
+import org.bedework.webdav.servlet.shared.WebdavException;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+
+/** Runs the CalDAV servlet in process against the in-memory system
+ * interface. There is no container - requests and responses are
+ * supplied by BenchRequest and BenchResponse.
+ *
+ * @author Mike Douglass
+ */
+public class BenchServer {
+  /** Account used for all requests */
+  public static final String account = "bench";
+
+  /** Host for generated urls */
+  public static final String host = "localhost";
+
+  /** Port for generated urls */
+  public static final int port = 8080;
+
+  /** Prefix for generated urls */
+  public static final String urlPrefix = "http://" + host + ":" + port;
+
+  private final CaldavBWServlet servlet;
+
+  private String home;
+
+  /** Create and initialise the servlet.
+   *
+   * @throws Exception on init failure
+   */
+  public BenchServer() throws Exception {
+    final Map<String, String> initPars = new HashMap<>();
+
+    initPars.put("sysintfImpl", InMemSysIntf.class.getName());
+
+    servlet = new CaldavBWServlet();
+    servlet.init(makeConfig(initPars));
+  }
+
+  /** Clear the store and populate it for the benchmark account.
+   *
+   * @param calendars number of calendar collections
+   * @param eventsPerCalendar events in each
+   * @param recurEvery every n'th event recurs - 0 for none
+   * @param attendees per event
+   * @return path to the account home
+   */
+  public String seed(final int calendars,
+                     final int eventsPerCalendar,
+                     final int recurEvery,
+                     final int attendees) {
+    final InMemStore store = InMemStore.getStore();
+
+    store.reset();
+
+    home = new InMemSeeder(store)
+            .recurEvery(recurEvery)
+            .attendees(attendees)
+            .seed(account, calendars, eventsPerCalendar);
+
+    return home;
+  }
+
+  /**
+   * @return path to the account home - set by seed
+   */
+  public String getHome() {
+    return home;
+  }
+
+  /**
+   * @param cal index of seeded calendar
+   * @return its path
+   */
+  public String calendarPath(final int cal) {
+    return home + "/cal" + cal;
+  }
+
+  /**
+   * @param cal index of seeded calendar
+   * @param num index of event within calendar
+   * @return path to the event
+   */
+  public String eventPath(final int cal,
+                          final int num) {
+    return calendarPath(cal) + "/" + account + "-" + cal + "-" + num + ".ics";
+  }
+
+  /** Run a request through the servlet.
+   *
+   * @param req the request
+   * @return the captured response
+   * @throws Exception on servlet failure
+   */
+  public BenchResponse execute(final BenchRequest req) throws Exception {
+    final BenchResponse resp = new BenchResponse();
+
+    servlet.service(req.toServletRequest(), resp.toServletResponse());
+
+    return resp;
+  }
+
+  /** Create an interface object for calling the namespace methods
+   * directly - as the servlet does at the start of each request.
+   *
+   * @param req supplies the url and account
+   * @return initialised interface
+   * @throws WebdavException on init failure
+   */
+  public CaldavBWIntf getIntf(final BenchRequest req) throws WebdavException {
+    return (CaldavBWIntf)servlet.getNsIntf(req.toServletRequest());
+  }
+
+  /**
+   * @param cl a method return type
+   * @return the value a method with no implementation returns
+   */
+  static Object defaultValue(final Class<?> cl) {
+    if (!cl.isPrimitive()) {
+      return null;
+    }
+
+    if (cl == boolean.class) {
+      return false;
+    }
+
+    if (cl == long.class) {
+      return 0L;
+    }
+
+    if (cl == int.class) {
+      return 0;
+    }
+
+    if (cl == short.class) {
+      return (short)0;
+    }
+
+    if (cl == byte.class) {
+      return (byte)0;
+    }
+
+    if (cl == char.class) {
+      return (char)0;
+    }
+
+    if (cl == double.class) {
+      return 0.0d;
+    }
+
+    if (cl == float.class) {
+      return 0.0f;
+    }
+
+    return null; // void
+  }
+
+  private static ServletConfig makeConfig(final Map<String, String> initPars) {
+    final ServletContext context = (ServletContext)Proxy.newProxyInstance(
+            ServletContext.class.getClassLoader(),
+            new Class<?>[]{ServletContext.class},
+            (proxy, m, args) -> {
+              switch (m.getName()) {
+                case "getContextPath":
+                  return "";
+                case "getServletContextName":
+                  return "bench";
+                case "getInitParameterNames":
+                case "getAttributeNames":
+                  return Collections.emptyEnumeration();
+                case "hashCode":
+                  return System.identityHashCode(proxy);
+                case "equals":
+                  return proxy == args[0];
+                case "toString":
+                  return "BenchContext";
+                default:
+                  return defaultValue(m.getReturnType());
+              }
+            });
+
+    return (ServletConfig)Proxy.newProxyInstance(
+            ServletConfig.class.getClassLoader(),
+            new Class<?>[]{ServletConfig.class},
+            (proxy, m, args) -> {
+              switch (m.getName()) {
+                case "getInitParameter":
+                  return initPars.get((String)args[0]);
+                case "getInitParameterNames":
+                  return Collections.enumeration(initPars.keySet());
+                case "getServletName":
+                  return "caldav";
+                case "getServletContext":
+                  return context;
+                case "hashCode":
+                  return System.identityHashCode(proxy);
+                case "equals":
+                  return proxy == args[0];
+                case "toString":
+                  return "BenchConfig";
+                default:
+                  return defaultValue(m.getReturnType());
+              }
+            });
+  }
+}
@@ -0,0 +1,135 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.bench;
+
+import org.bedework.caldav.server.CaldavBWIntf;
+import org.bedework.caldav.server.calquery.CalData;
+import org.bedework.util.xml.XmlEmit;
+import org.bedework.util.xml.tagdefs.CaldavTags;
+import org.bedework.webdav.servlet.shared.WebdavNsIntf;
+import org.bedework.webdav.servlet.shared.WebdavNsNode;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+/** calendar-data output for a set of entity nodes - the full object
+ * and a partial retrieval of a few VEVENT properties.
+ *
+ * @author Mike Douglass
+ */
+public class CalDataBenchmark extends ServerBenchmark {
+  private static final int nodeCount = 50;
+
+  private static final String allData =
+          "<C:calendar-data xmlns:C=\"urn:ietf:params:xml:ns:caldav\"/>";
+
+  private static final String partialData =
+          "<C:calendar-data xmlns:C=\"urn:ietf:params:xml:ns:caldav\">\n" +
+          "  <C:comp name=\"VCALENDAR\">\n" +
+          "    <C:prop name=\"VERSION\"/>\n" +
+          "    <C:comp name=\"VEVENT\">\n" +
+          "      <C:prop name=\"UID\"/>\n" +
+          "      <C:prop name=\"SUMMARY\"/>\n" +
+          "      <C:prop name=\"DTSTART\"/>\n" +
+          "      <C:prop name=\"DTEND\"/>\n" +
+          "    </C:comp>\n" +
+          "  </C:comp>\n" +
+          "</C:calendar-data>";
+
+  private CaldavBWIntf intf;
+
+  private final List<WebdavNsNode> nodes = new ArrayList<>();
+
+  private CalData all;
+
+  private CalData partial;
+
+  @Override
+  protected void setup() throws Exception {
+    intf = server.getIntf(new BenchRequest("REPORT",
+                                           server.calendarPath(0),
+                                           BenchServer.account));
+
+    final int step = Math.max(eventsPerCalendar / nodeCount, 1);
+
+    for (int i = 0; i < nodeCount; i++) {
+      nodes.add(intf.getNode(server.eventPath(0,
+                                              (i * step) % eventsPerCalendar),
+                             WebdavNsIntf.existanceMust,
+                             WebdavNsIntf.nodeTypeEntity,
+                             false));
+    }
+
+    all = parseCalData(allData);
+    partial = parseCalData(partialData);
+  }
+
+  /**
+   * @return output length
+   * @throws Exception on failure
+   */
+  @Benchmark
+  public int fullData() throws Exception {
+    return process(all);
+  }
+
+  /**
+   * @return output length
+   * @throws Exception on failure
+   */
+  @Benchmark
+  public int partialVevent() throws Exception {
+    return process(partial);
+  }
+
+  private int process(final CalData cd) throws Exception {
+    final StringWriter sw = new StringWriter();
+    final XmlEmit xml = new XmlEmit();
+
+    xml.startEmit(sw);
+    intf.addNamespace(xml);
+
+    for (final WebdavNsNode node: nodes) {
+      cd.process(node, xml, null);
+    }
+
+    return sw.getBuffer().length();
+  }
+
+  private static CalData parseCalData(final String val) throws Exception {
+    final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+    factory.setNamespaceAware(true);
+
+    final Document doc = factory.newDocumentBuilder()
+                                .parse(new InputSource(new StringReader(val)));
+
+    final CalData cd = new CalData(CaldavTags.calendarData);
+    cd.parse(doc.getDocumentElement());
+
+    return cd;
+  }
+}
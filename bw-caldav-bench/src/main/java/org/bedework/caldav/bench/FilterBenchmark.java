@@ -0,0 +1,110 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.bench;
+
+import org.bedework.caldav.util.filter.parse.EventQuery;
+import org.bedework.caldav.util.filter.parse.Filters;
+
+import ietf.params.xml.ns.caldav.FilterType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/** Parsing and compiling a CalDAV filter into a query.
+ *
+ * @author Mike Douglass
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilterBenchmark {
+  /* A time range with property and parameter tests - typical of a
+     client looking for its own meetings. */
+  private static final String filter =
+          "<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n" +
+          "<C:filter xmlns:C=\"urn:ietf:params:xml:ns:caldav\">\n" +
+          "  <C:comp-filter name=\"VCALENDAR\">\n" +
+          "    <C:comp-filter name=\"VEVENT\">\n" +
+          "      <C:time-range start=\"20200101T000000Z\"\n" +
+          "                    end=\"20200201T000000Z\"/>\n" +
+          "      <C:prop-filter name=\"ATTENDEE\">\n" +
+          "        <C:text-match collation=\"i;ascii-casemap\"\n" +
+          "           >mailto:attendee1@example.org</C:text-match>\n" +
+          "        <C:param-filter name=\"PARTSTAT\">\n" +
+          "          <C:text-match collation=\"i;ascii-casemap\"\n" +
+          "             >NEEDS-ACTION</C:text-match>\n" +
+          "        </C:param-filter>\n" +
+          "      </C:prop-filter>\n" +
+          "      <C:prop-filter name=\"SUMMARY\">\n" +
+          "        <C:text-match collation=\"i;unicode-casemap\"\n" +
+          "                      negate-condition=\"yes\">cancelled</C:text-match>\n" +
+          "      </C:prop-filter>\n" +
+          "    </C:comp-filter>\n" +
+          "  </C:comp-filter>\n" +
+          "</C:filter>";
+
+  private FilterType parsed;
+
+  /**
+   * @throws Exception on failure
+   */
+  @Setup
+  public void setup() throws Exception {
+    parsed = Filters.parse(filter);
+  }
+
+  /**
+   * @return parsed filter
+   * @throws Exception on failure
+   */
+  @Benchmark
+  public FilterType parse() throws Exception {
+    return Filters.parse(filter);
+  }
+
+  /**
+   * @return compiled query
+   * @throws Exception on failure
+   */
+  @Benchmark
+  public EventQuery getQuery() throws Exception {
+    return Filters.getQuery(parsed);
+  }
+
+  /**
+   * @return compiled query
+   * @throws Exception on failure
+   */
+  @Benchmark
+  public EventQuery parseAndGetQuery() throws Exception {
+    return Filters.getQuery(Filters.parse(filter));
+  }
+}
@@ -0,0 +1,105 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.bench;
+
+import org.bedework.caldav.util.notifications.ChangedByType;
+import org.bedework.caldav.util.notifications.CreatedType;
+import org.bedework.caldav.util.notifications.NotificationType;
+import org.bedework.caldav.util.notifications.ResourceChangeType;
+import org.bedework.caldav.util.notifications.parse.Parser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/** Notification XML round trips - stored notifications are parsed on
+ * every fetch and regenerated on every change.
+ *
+ * @author Mike Douglass
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NotificationBenchmark {
+  private NotificationType note;
+
+  private String noteXml;
+
+  /**
+   * @throws Exception on failure
+   */
+  @Setup
+  public void setup() throws Exception {
+    final ChangedByType cb = new ChangedByType();
+    cb.setCommonName("Bench User");
+    cb.setHref("/principals/users/bench/");
+    cb.setDtstamp("20200101T000000Z");
+
+    final CreatedType c = new CreatedType();
+    c.setHref("/user/bench/cal0/bench-0-0.ics");
+    c.setChangedBy(cb);
+
+    final ResourceChangeType rc = new ResourceChangeType();
+    rc.setCreated(c);
+
+    note = new NotificationType();
+    note.setDtstamp("20200101T000000Z");
+    note.setNotification(rc);
+
+    noteXml = note.toXml(true);
+  }
+
+  /**
+   * @return parsed notification
+   * @throws Exception on failure
+   */
+  @Benchmark
+  public NotificationType parse() throws Exception {
+    return Parser.fromXml(noteXml);
+  }
+
+  /**
+   * @return xml
+   */
+  @Benchmark
+  public String toXml() {
+    return note.toXml(true);
+  }
+
+  /**
+   * @return xml
+   * @throws Exception on failure
+   */
+  @Benchmark
+  public String roundTrip() throws Exception {
+    return Parser.fromXml(noteXml).toXml(true);
+  }
+}
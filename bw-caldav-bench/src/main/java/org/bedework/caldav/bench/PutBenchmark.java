@@ -0,0 +1,106 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.bench;
+
+import org.bedework.caldav.inmem.InMemSeeder;
+import org.bedework.caldav.inmem.InMemStore;
+import org.bedework.caldav.server.SysIntfReader;
+import org.bedework.util.calendar.ScheduleMethods;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+import java.io.StringReader;
+
+/** PUT of calendar objects and the reader the content goes through.
+ *
+ * <p>The PUTs update existing events in the second seeded calendar so
+ * the store does not grow during the run.
+ *
+ * @author Mike Douglass
+ */
+public class PutBenchmark extends ServerBenchmark {
+  private static final int putCount = 50;
+
+  private final BenchRequest[] puts = new BenchRequest[putCount];
+
+  private int nextPut;
+
+  /* All the put bodies in one - a large import */
+  private String bulkIcal;
+
+  private final char[] buffer = new char[4096];
+
+  @Override
+  protected void setup() throws Exception {
+    final InMemSeeder seeder = new InMemSeeder(InMemStore.getStore())
+            .recurEvery(10)
+            .attendees(2);
+    final StringBuilder bulk = new StringBuilder();
+
+    for (int i = 0; i < putCount; i++) {
+      final int num = i % eventsPerCalendar;
+      final String ical = seeder.makeEvent(BenchServer.account, 1, num)
+                                .toIcalString(ScheduleMethods.methodTypeNone,
+                                              "text/calendar");
+
+      puts[i] = new BenchRequest("PUT",
+                                 server.eventPath(1, num),
+                                 BenchServer.account)
+              .body("text/calendar", ical);
+
+      bulk.append(ical);
+    }
+
+    bulkIcal = bulk.toString();
+  }
+
+  /**
+   * @return status
+   * @throws Exception on failure
+   */
+  @Benchmark
+  public int putUpdate() throws Exception {
+    final BenchRequest req = puts[nextPut];
+
+    nextPut = (nextPut + 1) % putCount;
+
+    return execute(req).getStatus();
+  }
+
+  /**
+   * @return characters read
+   * @throws Exception on failure
+   */
+  @Benchmark
+  public int sysIntfReader() throws Exception {
+    final SysIntfReader rdr = new SysIntfReader(new StringReader(bulkIcal));
+    int total = 0;
+
+    for (;;) {
+      final int ct = rdr.read(buffer, 0, buffer.length);
+      if (ct < 0) {
+        break;
+      }
+
+      total += ct;
+    }
+
+    return total;
+  }
+}
@@ -0,0 +1,133 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+/** calendar-query and calendar-multiget REPORTs on a seeded calendar.
+ *
+ * @author Mike Douglass
+ */
+public class ReportBenchmark extends ServerBenchmark {
+  private static final int multigetHrefs = 50;
+
+  private static final String queryEtagsOnly =
+          "<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n" +
+          "<C:calendar-query xmlns:D=\"DAV:\"\n" +
+          "                  xmlns:C=\"urn:ietf:params:xml:ns:caldav\">\n" +
+          "  <D:prop>\n" +
+          "    <D:getetag/>\n" +
+          "  </D:prop>\n" +
+          "  <C:filter>\n" +
+          "    <C:comp-filter name=\"VCALENDAR\">\n" +
+          "      <C:comp-filter name=\"VEVENT\">\n" +
+          "        <C:time-range start=\"" + rangeStart + "\"\n" +
+          "                      end=\"" + rangeEnd + "\"/>\n" +
+          "      </C:comp-filter>\n" +
+          "    </C:comp-filter>\n" +
+          "  </C:filter>\n" +
+          "</C:calendar-query>";
+
+  private static final String queryWithData =
+          "<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n" +
+          "<C:calendar-query xmlns:D=\"DAV:\"\n" +
+          "                  xmlns:C=\"urn:ietf:params:xml:ns:caldav\">\n" +
+          "  <D:prop>\n" +
+          "    <D:getetag/>\n" +
+          "    <C:calendar-data/>\n" +
+          "  </D:prop>\n" +
+          "  <C:filter>\n" +
+          "    <C:comp-filter name=\"VCALENDAR\">\n" +
+          "      <C:comp-filter name=\"VEVENT\">\n" +
+          "        <C:time-range start=\"" + rangeStart + "\"\n" +
+          "                      end=\"" + rangeEnd + "\"/>\n" +
+          "      </C:comp-filter>\n" +
+          "    </C:comp-filter>\n" +
+          "  </C:filter>\n" +
+          "</C:calendar-query>";
+
+  private BenchRequest etagsQuery;
+
+  private BenchRequest dataQuery;
+
+  private BenchRequest multiget;
+
+  @Override
+  protected void setup() {
+    final String calPath = server.calendarPath(0);
+
+    etagsQuery = new BenchRequest("REPORT", calPath, BenchServer.account)
+            .header("Depth", "1")
+            .body("application/xml", queryEtagsOnly);
+
+    dataQuery = new BenchRequest("REPORT", calPath, BenchServer.account)
+            .header("Depth", "1")
+            .body("application/xml", queryWithData);
+
+    final StringBuilder sb = new StringBuilder(
+            "<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n" +
+            "<C:calendar-multiget xmlns:D=\"DAV:\"\n" +
+            "                     xmlns:C=\"urn:ietf:params:xml:ns:caldav\">\n" +
+            "  <D:prop>\n" +
+            "    <D:getetag/>\n" +
+            "    <C:calendar-data/>\n" +
+            "  </D:prop>\n");
+
+    final int step = Math.max(eventsPerCalendar / multigetHrefs, 1);
+
+    for (int i = 0; i < multigetHrefs; i++) {
+      sb.append("  <D:href>")
+        .append(server.eventPath(0, (i * step) % eventsPerCalendar))
+        .append("</D:href>\n");
+    }
+
+    sb.append("</C:calendar-multiget>");
+
+    multiget = new BenchRequest("REPORT", calPath, BenchServer.account)
+            .header("Depth", "1")
+            .body("application/xml", sb.toString());
+  }
+
+  /**
+   * @return response length
+   * @throws Exception on failure
+   */
+  @Benchmark
+  public int calendarQueryEtags() throws Exception {
+    return execute(etagsQuery).getContentLength();
+  }
+
+  /**
+   * @return response length
+   * @throws Exception on failure
+   */
+  @Benchmark
+  public int calendarQueryData() throws Exception {
+    return execute(dataQuery).getContentLength();
+  }
+
+  /**
+   * @return response length
+   * @throws Exception on failure
+   */
+  @Benchmark
+  public int calendarMultiget() throws Exception {
+    return execute(multiget).getContentLength();
+  }
+}
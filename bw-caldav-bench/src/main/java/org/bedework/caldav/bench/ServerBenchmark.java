@@ -0,0 +1,96 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.bench;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/** Base for benchmarks which run requests through the servlet. The
+ * in-memory store is seeded once per trial with two calendars for the
+ * benchmark account. Every tenth event recurs weekly and every event
+ * has an organizer and two attendees.
+ *
+ * @author Mike Douglass
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class ServerBenchmark {
+  /** Seeded events start here and the queries cover the first month */
+  static final String rangeStart = "20200101T000000Z";
+
+  static final String rangeEnd = "20200201T000000Z";
+
+  /** Events in each calendar */
+  @Param({"100", "1000"})
+  public int eventsPerCalendar;
+
+  protected BenchServer server;
+
+  /** Create the server and the data.
+   *
+   * @throws Exception on failure
+   */
+  @Setup(Level.Trial)
+  public void setupServer() throws Exception {
+    server = new BenchServer();
+    server.seed(2, eventsPerCalendar, 10, 2);
+
+    setup();
+  }
+
+  /** Called after the server is seeded.
+   *
+   * @throws Exception on failure
+   */
+  protected void setup() throws Exception {
+  }
+
+  /** Run the request and fail if the status is not a success - a
+   * benchmark measuring an error path is worthless.
+   *
+   * @param req the request
+   * @return the response
+   * @throws Exception on failure
+   */
+  protected BenchResponse execute(final BenchRequest req) throws Exception {
+    final BenchResponse resp = server.execute(req);
+
+    if ((resp.getStatus() < 200) || (resp.getStatus() >= 300)) {
+      throw new IllegalStateException("Status " + resp.getStatus() +
+                                              " for " + req);
+    }
+
+    return resp;
+  }
+}
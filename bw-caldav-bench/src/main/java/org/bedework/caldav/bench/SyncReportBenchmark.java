@@ -0,0 +1,74 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+/** sync-collection REPORTs - an initial sync of a seeded calendar and
+ * a recursive initial sync of the account home.
+ *
+ * @author Mike Douglass
+ */
+public class SyncReportBenchmark extends ServerBenchmark {
+  private static String syncBody(final String level) {
+    return "<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n" +
+           "<D:sync-collection xmlns:D=\"DAV:\">\n" +
+           "  <D:sync-token/>\n" +
+           "  <D:sync-level>" + level + "</D:sync-level>\n" +
+           "  <D:prop>\n" +
+           "    <D:getetag/>\n" +
+           "  </D:prop>\n" +
+           "</D:sync-collection>";
+  }
+
+  private BenchRequest calendarSync;
+
+  private BenchRequest homeSync;
+
+  @Override
+  protected void setup() {
+    calendarSync = new BenchRequest("REPORT", server.calendarPath(0),
+                                    BenchServer.account)
+            .header("Depth", "0")
+            .body("application/xml", syncBody("1"));
+
+    homeSync = new BenchRequest("REPORT", server.getHome(),
+                                BenchServer.account)
+            .header("Depth", "0")
+            .body("application/xml", syncBody("infinite"));
+  }
+
+  /**
+   * @return response length
+   * @throws Exception on failure
+   */
+  @Benchmark
+  public int calendarInitialSync() throws Exception {
+    return execute(calendarSync).getContentLength();
+  }
+
+  /**
+   * @return response length
+   * @throws Exception on failure
+   */
+  @Benchmark
+  public int homeInitialSync() throws Exception {
+    return execute(homeSync).getContentLength();
+  }
+}
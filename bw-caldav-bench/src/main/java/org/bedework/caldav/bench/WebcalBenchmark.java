@@ -0,0 +1,47 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+/** GET of a calendar collection as text/calendar - the webcal export.
+ *
+ * @author Mike Douglass
+ */
+public class WebcalBenchmark extends ServerBenchmark {
+  private BenchRequest export;
+
+  @Override
+  protected void setup() {
+    export = new BenchRequest("GET", server.calendarPath(0),
+                              BenchServer.account)
+            .header("Accept", "text/calendar")
+            .param("start", "20200101")
+            .param("end", "20200201");
+  }
+
+  /**
+   * @return response length
+   * @throws Exception on failure
+   */
+  @Benchmark
+  public int export() throws Exception {
+    return execute(export).getContentLength();
+  }
+}
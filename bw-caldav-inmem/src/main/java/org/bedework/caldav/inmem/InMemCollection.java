@@ -0,0 +1,216 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.inmem;
+
+import org.bedework.caldav.server.CalDAVCollectionBase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.namespace.QName;
+
+/** A collection in the in-memory system.
+ *
+ * @author Mike Douglass
+ */
+public class InMemCollection
+        extends CalDAVCollectionBase<InMemCollection> {
+  private boolean deleted;
+
+  private int refreshRate;
+
+  private List<String> supportedComponents = new ArrayList<>();
+
+  private final Map<QName, String> properties = new ConcurrentHashMap<>();
+
+  /* Change number of the last change to this collection or its
+     members. Used for etag and sync token.
+   */
+  private volatile long changeSeq;
+
+  /**
+   * @param calType type of collection
+   * @param freebusyAllowed true if freebusy can be requested
+   */
+  public InMemCollection(final int calType,
+                         final boolean freebusyAllowed) {
+    super(calType, freebusyAllowed);
+  }
+
+  /**
+   * @param val change number of the last change
+   */
+  public void setChangeSeq(final long val) {
+    changeSeq = val;
+  }
+
+  /**
+   * @return change number of the last change
+   */
+  public long getChangeSeq() {
+    return changeSeq;
+  }
+
+  /**
+   * @param val true for deleted
+   */
+  public void setDeleted(final boolean val) {
+    deleted = val;
+  }
+
+  /** Copy the values into a new collection object.
+   *
+   * @param path for the copy
+   * @return the copy
+   */
+  public InMemCollection copy(final String path) {
+    final InMemCollection c = new InMemCollection(getCalType(),
+                                                  freebusyAllowed());
+
+    c.setPath(path);
+    c.setName(path.substring(path.lastIndexOf("/") + 1));
+    c.setParentPath(path.substring(0, path.lastIndexOf("/")));
+    c.setOwner(getOwner());
+    c.setDisplayName(getDisplayName());
+    c.setDescription(getDescription());
+    c.setAffectsFreeBusy(getAffectsFreeBusy());
+    c.setTimezone(getTimezone());
+    c.setColor(getColor());
+    c.setSupportedComponents(new ArrayList<>(getSupportedComponents()));
+    c.properties.putAll(properties);
+
+    return c;
+  }
+
+  /** Copy of this collection at the same path including its change
+   * number. Used for the shared collection cache.
+   *
+   * @return the copy
+   */
+  public InMemCollection snapshot() {
+    final InMemCollection c = copy(getPath());
+
+    c.setParentPath(getParentPath());
+    c.setChangeSeq(getChangeSeq());
+    c.setDeleted(getDeleted());
+    c.setRefreshRate(getRefreshRate());
+    c.setAliasUri(getAliasUri());
+    c.setRemoteId(getRemoteId());
+    c.setRemotePw(getRemotePw());
+    c.setSynchDeleteSuppressed(getSynchDeleteSuppressed());
+
+    return c;
+  }
+
+  /** Set the updatable values from a copy of this collection.
+   *
+   * @param val the updated copy
+   */
+  public void update(final InMemCollection val) {
+    setDisplayName(val.getDisplayName());
+    setDescription(val.getDescription());
+    setAffectsFreeBusy(val.getAffectsFreeBusy());
+    setTimezone(val.getTimezone());
+    setColor(val.getColor());
+    setRefreshRate(val.getRefreshRate());
+    setSupportedComponents(new ArrayList<>(val.getSupportedComponents()));
+
+    properties.keySet().retainAll(val.properties.keySet());
+    properties.putAll(val.properties);
+  }
+
+  /* ====================================================================
+   *                      Abstract method implementations
+   * ==================================================================== */
+
+  @Override
+  public boolean getCanShare() {
+    return false;
+  }
+
+  @Override
+  public boolean getCanPublish() {
+    return false;
+  }
+
+  @Override
+  public boolean getDeleted() {
+    return deleted;
+  }
+
+  @Override
+  public void setRefreshRate(final int val) {
+    refreshRate = val;
+  }
+
+  @Override
+  public int getRefreshRate() {
+    return refreshRate;
+  }
+
+  @Override
+  public void setSupportedComponents(final List<String> val) {
+    supportedComponents = val;
+  }
+
+  @Override
+  public List<String> getSupportedComponents() {
+    return supportedComponents;
+  }
+
+  @Override
+  public List<String> getVpollSupportedComponents() {
+    return Collections.emptyList();
+  }
+
+  @Override
+  public void setProperty(final QName name, final String val) {
+    if (val == null) {
+      properties.remove(name);
+      return;
+    }
+
+    properties.put(name, val);
+  }
+
+  @Override
+  public String getProperty(final QName name) {
+    return properties.get(name);
+  }
+
+  @Override
+  public String getEtag() {
+    return "\"" + changeSeq + "\"";
+  }
+
+  @Override
+  public String getPreviousEtag() {
+    return getEtag();
+  }
+
+  @Override
+  public String toString() {
+    return "InMemCollection{path=" + getPath() +
+            ", calType=" + getCalType() +
+            ", changeSeq=" + changeSeq + "}";
+  }
+}
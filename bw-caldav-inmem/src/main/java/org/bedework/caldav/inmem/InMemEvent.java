@@ -0,0 +1,433 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.inmem;
+
+import org.bedework.caldav.server.CalDAVEvent;
+import org.bedework.caldav.server.Organizer;
+import org.bedework.util.calendar.IcalDefs;
+import org.bedework.util.calendar.ScheduleMethods;
+import org.bedework.util.xml.XmlEmit;
+import org.bedework.webdav.servlet.shared.WebdavException;
+
+import net.fortuna.ical4j.data.CalendarOutputter;
+import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.Component;
+import net.fortuna.ical4j.model.ComponentList;
+import net.fortuna.ical4j.model.Property;
+import net.fortuna.ical4j.model.PropertyList;
+import net.fortuna.ical4j.model.property.Method;
+import net.fortuna.ical4j.model.property.ProdId;
+import net.fortuna.ical4j.model.property.Version;
+
+import java.io.StringWriter;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.namespace.QName;
+
+/** An event, task or journal in the in-memory system. The content is held
+ * as an ical4j Calendar holding the master component and any overrides.
+ *
+ * @author Mike Douglass
+ */
+public class InMemEvent extends CalDAVEvent<InMemEvent> {
+  /** Product id for output */
+  public static final String prodId =
+          "-//Bedework//CalDAV in-memory//EN";
+
+  private Calendar ical;
+
+  private int entityType;
+
+  private boolean isNew;
+
+  private boolean deleted;
+
+  private long changeSeq;
+
+  private long prevChangeSeq;
+
+  private long scheduleSeq;
+
+  private long prevScheduleSeq;
+
+  private String originator;
+
+  private Set<String> recipients = new TreeSet<>();
+
+  private int scheduleMethod = ScheduleMethods.methodTypeNone;
+
+  private final Map<QName, String> properties = new ConcurrentHashMap<>();
+
+  /**
+   * @param ical the calendar holding the component(s)
+   * @param entityType from IcalDefs
+   */
+  public InMemEvent(final Calendar ical,
+                    final int entityType) {
+    this.ical = ical;
+    this.entityType = entityType;
+  }
+
+  /**
+   * @param val the calendar holding the component(s)
+   */
+  public void setIcal(final Calendar val) {
+    ical = val;
+  }
+
+  /**
+   * @return the calendar holding the component(s)
+   */
+  @Override
+  public Calendar getIcal() {
+    return ical;
+  }
+
+  /**
+   * @return the master component - or the first if none is the master
+   */
+  public Component getComponent() {
+    final String name = IcalDefs.entityTypeIcalNames[entityType];
+    final ComponentList comps = ical.getComponents(name);
+
+    Component first = null;
+
+    for (final Object o: comps) {
+      final Component c = (Component)o;
+
+      if (first == null) {
+        first = c;
+      }
+
+      if (c.getProperty(Property.RECURRENCE_ID) == null) {
+        return c;
+      }
+    }
+
+    return first;
+  }
+
+  /**
+   * @param val true if this will be created
+   */
+  public void setNew(final boolean val) {
+    isNew = val;
+  }
+
+  /**
+   * @param val true for a deletion marker
+   */
+  public void setDeleted(final boolean val) {
+    deleted = val;
+  }
+
+  /** Called by the store when the event is added or changed.
+   *
+   * @param val change number
+   * @param scheduleChange true if the change affects scheduling
+   */
+  public void setChangeSeq(final long val,
+                           final boolean scheduleChange) {
+    prevChangeSeq = changeSeq;
+    changeSeq = val;
+
+    if (scheduleChange || (scheduleSeq == 0)) {
+      prevScheduleSeq = scheduleSeq;
+      scheduleSeq = val;
+    }
+  }
+
+  /**
+   * @return change number
+   */
+  public long getChangeSeq() {
+    return changeSeq;
+  }
+
+  /** Copy the state the store manages from the stored version of this
+   * event so that etags and schedule tags continue.
+   *
+   * @param stored the current stored event
+   */
+  public void setStoredState(final InMemEvent stored) {
+    changeSeq = stored.changeSeq;
+    prevChangeSeq = stored.prevChangeSeq;
+    scheduleSeq = stored.scheduleSeq;
+    prevScheduleSeq = stored.prevScheduleSeq;
+  }
+
+  /**
+   * @param name for the copy
+   * @param parentPath for the copy
+   * @return a copy of this event
+   */
+  public InMemEvent copy(final String name,
+                         final String parentPath) {
+    final InMemEvent ev = new InMemEvent(ical, entityType);
+
+    ev.setName(name);
+    ev.setParentPath(parentPath);
+    ev.setOwner(getOwner());
+
+    return ev;
+  }
+
+  /* ====================================================================
+   *                      Abstract method implementations
+   * ==================================================================== */
+
+  @Override
+  public boolean getCanShare() {
+    return false;
+  }
+
+  @Override
+  public boolean getCanPublish() {
+    return false;
+  }
+
+  @Override
+  public boolean isAlias() {
+    return false;
+  }
+
+  @Override
+  public String getAliasUri() {
+    return null;
+  }
+
+  @Override
+  public InMemEvent resolveAlias(final boolean resolveSubAlias) {
+    return this;
+  }
+
+  @Override
+  public void setProperty(final QName name, final String val) {
+    if (val == null) {
+      properties.remove(name);
+      return;
+    }
+
+    properties.put(name, val);
+  }
+
+  @Override
+  public String getProperty(final QName name) {
+    return properties.get(name);
+  }
+
+  @Override
+  public String getEtag() {
+    return "\"" + changeSeq + "\"";
+  }
+
+  @Override
+  public String getPreviousEtag() {
+    return "\"" + prevChangeSeq + "\"";
+  }
+
+  @Override
+  public String getScheduleTag() {
+    return String.valueOf(scheduleSeq);
+  }
+
+  @Override
+  public boolean getOrganizerSchedulingObject() {
+    final Component comp = getComponent();
+
+    return (comp != null) &&
+            (comp.getProperty(Property.ORGANIZER) != null) &&
+            (comp.getProperty(Property.ATTENDEE) != null);
+  }
+
+  @Override
+  public boolean getAttendeeSchedulingObject() {
+    return false;
+  }
+
+  @Override
+  public String getPrevScheduleTag() {
+    return String.valueOf(prevScheduleSeq);
+  }
+
+  @Override
+  public String getSummary() {
+    return propertyValue(Property.SUMMARY);
+  }
+
+  @Override
+  public boolean isNew() {
+    return isNew;
+  }
+
+  @Override
+  public boolean getDeleted() {
+    return deleted;
+  }
+
+  @Override
+  public int getEntityType() {
+    return entityType;
+  }
+
+  @Override
+  public void setOrganizer(final Organizer val) {
+    // Organizer is held in the component
+  }
+
+  @Override
+  public Organizer getOrganizer() {
+    final String org = propertyValue(Property.ORGANIZER);
+
+    if (org == null) {
+      return null;
+    }
+
+    return new Organizer(null, null, null, null, org);
+  }
+
+  @Override
+  public void setOriginator(final String val) {
+    originator = val;
+  }
+
+  @Override
+  public String getOriginator() {
+    return originator;
+  }
+
+  @Override
+  public void setRecipients(final Set<String> val) {
+    recipients = val;
+  }
+
+  @Override
+  public Set<String> getRecipients() {
+    return recipients;
+  }
+
+  @Override
+  public void addRecipient(final String val) {
+    if (recipients == null) {
+      recipients = new TreeSet<>();
+    }
+
+    recipients.add(val);
+  }
+
+  @Override
+  public Set<String> getAttendeeUris() {
+    final Set<String> res = new TreeSet<>();
+    final Component comp = getComponent();
+
+    if (comp == null) {
+      return res;
+    }
+
+    for (final Object o: comp.getProperties(Property.ATTENDEE)) {
+      res.add(((Property)o).getValue());
+    }
+
+    return res;
+  }
+
+  @Override
+  public void setScheduleMethod(final int val) {
+    scheduleMethod = val;
+  }
+
+  @Override
+  public int getScheduleMethod() {
+    return scheduleMethod;
+  }
+
+  @Override
+  public String getUid() {
+    return propertyValue(Property.UID);
+  }
+
+  @Override
+  public boolean generatePropertyValue(final QName tag,
+                                       final XmlEmit xml) {
+    return false;
+  }
+
+  @Override
+  public String toIcalString(final int methodType,
+                             final String contentType) throws WebdavException {
+    try {
+      final StringWriter sw = new StringWriter();
+
+      new CalendarOutputter(false).output(toCalendar(methodType), sw);
+
+      return sw.toString();
+    } catch (final Throwable t) {
+      throw new WebdavException(t);
+    }
+  }
+
+  /** Build a calendar for output with the given method.
+   *
+   * @param methodType from ScheduleMethods
+   * @return Calendar
+   */
+  public Calendar toCalendar(final int methodType) {
+    final PropertyList pl = new PropertyList();
+
+    pl.add(new ProdId(prodId));
+    pl.add(Version.VERSION_2_0);
+
+    final String method = InMemIcalendar.methodName(methodType);
+    if (method != null) {
+      pl.add(new Method(method));
+    }
+
+    return new Calendar(pl, ical.getComponents());
+  }
+
+  @Override
+  public String toString() {
+    return "InMemEvent{path=" + getParentPath() +
+            ", name=" + getName() +
+            ", changeSeq=" + changeSeq + "}";
+  }
+
+  /* ====================================================================
+   *                      Private methods
+   * ==================================================================== */
+
+  private String propertyValue(final String name) {
+    final Component comp = getComponent();
+
+    if (comp == null) {
+      return null;
+    }
+
+    final Property p = comp.getProperty(name);
+
+    if (p == null) {
+      return null;
+    }
+
+    return p.getValue();
+  }
+}
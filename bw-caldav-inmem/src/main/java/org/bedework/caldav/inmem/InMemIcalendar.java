@@ -0,0 +1,308 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.inmem;
+
+import org.bedework.caldav.server.CalDAVEvent;
+import org.bedework.caldav.server.Organizer;
+import org.bedework.caldav.server.SysiIcalendar;
+import org.bedework.util.calendar.IcalDefs;
+import org.bedework.util.calendar.IcalDefs.IcalComponentType;
+import org.bedework.webdav.servlet.shared.WdEntity;
+
+import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.Property;
+import net.fortuna.ical4j.model.TimeZone;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+/** Result of parsing icalendar data in the in-memory system.
+ *
+ * @author Mike Douglass
+ */
+public class InMemIcalendar extends SysiIcalendar {
+  /* Indexed by method type */
+  private static final String[] methodNames = {
+          null,              // methodTypeNone
+          "PUBLISH",
+          "REQUEST",
+          "REPLY",
+          "ADD",
+          "CANCEL",
+          "REFRESH",
+          "COUNTER",
+          "DECLINECOUNTER",
+  };
+
+  private final Calendar ical;
+
+  private final List<WdEntity> entities = new ArrayList<>();
+
+  private final Collection<TimeZone> timeZones = new ArrayList<>();
+
+  private Iterator<WdEntity> it;
+
+  /**
+   * @param ical the parsed calendar
+   */
+  public InMemIcalendar(final Calendar ical) {
+    this.ical = ical;
+  }
+
+  /**
+   * @param val an entity built from the calendar
+   */
+  public void addEntity(final InMemEvent val) {
+    entities.add(val);
+  }
+
+  /**
+   * @param val a timezone from the calendar
+   */
+  public void addTimeZone(final TimeZone val) {
+    timeZones.add(val);
+  }
+
+  /**
+   * @param methodType from ScheduleMethods
+   * @return name or null for none or unknown
+   */
+  public static String methodName(final int methodType) {
+    if ((methodType < 0) || (methodType >= methodNames.length)) {
+      return null;
+    }
+
+    return methodNames[methodType];
+  }
+
+  /* ====================================================================
+   *                      Abstract method implementations
+   * ==================================================================== */
+
+  @Override
+  public String getProdid() {
+    return propertyValue(Property.PRODID);
+  }
+
+  @Override
+  public String getVersion() {
+    return propertyValue(Property.VERSION);
+  }
+
+  @Override
+  public String getCalscale() {
+    return propertyValue(Property.CALSCALE);
+  }
+
+  @Override
+  public String getMethod() {
+    return propertyValue(Property.METHOD);
+  }
+
+  @Override
+  public Collection<TimeZone> getTimeZones() {
+    return timeZones;
+  }
+
+  @Override
+  public Collection<?> getComponents() {
+    return entities;
+  }
+
+  @Override
+  public IcalComponentType getComponentType() {
+    if (entities.isEmpty()) {
+      return IcalComponentType.none;
+    }
+
+    IcalComponentType res = null;
+
+    for (final WdEntity ent: entities) {
+      final IcalComponentType ctype;
+
+      try {
+        ctype = componentType(((CalDAVEvent<?>)ent).getEntityType());
+      } catch (final Throwable t) {
+        return IcalComponentType.mixed;
+      }
+
+      if (res == null) {
+        res = ctype;
+      } else if (res != ctype) {
+        return IcalComponentType.mixed;
+      }
+    }
+
+    return res;
+  }
+
+  @Override
+  public int getMethodType() {
+    return getMethodType(getMethod());
+  }
+
+  @Override
+  public int getMethodType(final String val) {
+    if (val == null) {
+      return methodTypeNone;
+    }
+
+    for (int i = 1; i < methodNames.length; i++) {
+      if (methodNames[i].equalsIgnoreCase(val)) {
+        return i;
+      }
+    }
+
+    return methodTypeUnknown;
+  }
+
+  @Override
+  public String getMethodName(final int mt) {
+    return methodName(mt);
+  }
+
+  @Override
+  public Organizer getOrganizer() {
+    final CalDAVEvent<?> ev = getEvent();
+
+    if (ev == null) {
+      return null;
+    }
+
+    try {
+      return ev.getOrganizer();
+    } catch (final Throwable t) {
+      return null;
+    }
+  }
+
+  @Override
+  public CalDAVEvent<?> getEvent() {
+    if (entities.size() != 1) {
+      return null;
+    }
+
+    return (CalDAVEvent<?>)entities.get(0);
+  }
+
+  @Override
+  public Iterator<WdEntity> iterator() {
+    return entities.iterator();
+  }
+
+  @Override
+  public int size() {
+    return entities.size();
+  }
+
+  @Override
+  public boolean validItipMethodType() {
+    return validItipMethodType(getMethodType());
+  }
+
+  @Override
+  public boolean requestMethodType() {
+    return itipRequestMethodType(getMethodType());
+  }
+
+  @Override
+  public boolean replyMethodType() {
+    return itipReplyMethodType(getMethodType());
+  }
+
+  @Override
+  public boolean itipRequestMethodType(final int mt) {
+    return (mt == methodTypeAdd) ||
+            (mt == methodTypeCancel) ||
+            (mt == methodTypeDeclineCounter) ||
+            (mt == methodTypeRequest);
+  }
+
+  @Override
+  public boolean itipReplyMethodType(final int mt) {
+    return (mt == methodTypeCounter) ||
+            (mt == methodTypeRefresh) ||
+            (mt == methodTypeReply);
+  }
+
+  @Override
+  public boolean validItipMethodType(final int val) {
+    return (val != methodTypeNone) && (val != methodTypeUnknown) &&
+            (val < methodNames.length);
+  }
+
+  /* ====================================================================
+   *                      Iterator methods
+   * ==================================================================== */
+
+  @Override
+  public boolean hasNext() {
+    return getIterator().hasNext();
+  }
+
+  @Override
+  public WdEntity next() {
+    return getIterator().next();
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+
+  /* ====================================================================
+   *                      Private methods
+   * ==================================================================== */
+
+  private Iterator<WdEntity> getIterator() {
+    if (it == null) {
+      it = entities.iterator();
+    }
+
+    return it;
+  }
+
+  private static IcalComponentType componentType(final int entityType) {
+    if (entityType == IcalDefs.entityTypeTodo) {
+      return IcalComponentType.todo;
+    }
+
+    if (entityType == IcalDefs.entityTypeJournal) {
+      return IcalComponentType.journal;
+    }
+
+    if (entityType == IcalDefs.entityTypeFreeAndBusy) {
+      return IcalComponentType.freebusy;
+    }
+
+    return IcalComponentType.event;
+  }
+
+  private String propertyValue(final String name) {
+    final Property p = ical.getProperty(name);
+
+    if (p == null) {
+      return null;
+    }
+
+    return p.getValue();
+  }
+}
@@ -0,0 +1,158 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.inmem;
+
+import org.bedework.access.AccessPrincipal;
+import org.bedework.access.WhoDefs;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/** A simple principal for the in-memory system.
+ *
+ * @author Mike Douglass
+ */
+public class InMemPrincipal implements AccessPrincipal {
+  /** Prefix for user principals */
+  public static final String userPrincipalRoot = "/principals/users/";
+
+  /** Prefix for group principals */
+  public static final String groupPrincipalRoot = "/principals/groups/";
+
+  private final int kind;
+
+  private String account;
+
+  private String principalRef;
+
+  private boolean unauthenticated;
+
+  private Collection<String> groupNames = Collections.emptySet();
+
+  /**
+   * @param kind from WhoDefs
+   * @param account the account
+   */
+  public InMemPrincipal(final int kind,
+                        final String account) {
+    this.kind = kind;
+    this.account = account;
+
+    if (kind == WhoDefs.whoTypeGroup) {
+      principalRef = groupPrincipalRoot + account + "/";
+    } else {
+      principalRef = userPrincipalRoot + account + "/";
+    }
+  }
+
+  /**
+   * @param account the account
+   * @return a user principal
+   */
+  public static InMemPrincipal makeUser(final String account) {
+    return new InMemPrincipal(WhoDefs.whoTypeUser, account);
+  }
+
+  @Override
+  public int getKind() {
+    return kind;
+  }
+
+  @Override
+  public void setUnauthenticated(final boolean val) {
+    unauthenticated = val;
+  }
+
+  @Override
+  public boolean getUnauthenticated() {
+    return unauthenticated;
+  }
+
+  @Override
+  public void setAccount(final String val) {
+    account = val;
+  }
+
+  @Override
+  public String getAccount() {
+    return account;
+  }
+
+  @Override
+  public String getAclAccount() {
+    return account;
+  }
+
+  @Override
+  public void setPrincipalRef(final String val) {
+    principalRef = val;
+  }
+
+  @Override
+  public String getPrincipalRef() {
+    return principalRef;
+  }
+
+  @Override
+  public void setGroupNames(final Collection<String> val) {
+    groupNames = val;
+  }
+
+  @Override
+  public Collection<String> getGroupNames() {
+    return groupNames;
+  }
+
+  @Override
+  public String getDescription() {
+    return account;
+  }
+
+  @Override
+  public int compareTo(final AccessPrincipal that) {
+    if (that == this) {
+      return 0;
+    }
+
+    if (kind != that.getKind()) {
+      return Integer.compare(kind, that.getKind());
+    }
+
+    return principalRef.compareTo(that.getPrincipalRef());
+  }
+
+  @Override
+  public int hashCode() {
+    return principalRef.hashCode();
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (!(o instanceof AccessPrincipal)) {
+      return false;
+    }
+
+    return compareTo((AccessPrincipal)o) == 0;
+  }
+
+  @Override
+  public String toString() {
+    return "InMemPrincipal{" + principalRef + "}";
+  }
+}
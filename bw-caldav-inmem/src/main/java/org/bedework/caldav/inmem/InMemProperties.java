@@ -0,0 +1,319 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.inmem;
+
+import org.bedework.caldav.server.sysinterface.CalDAVAuthProperties;
+import org.bedework.caldav.server.sysinterface.CalDAVSystemProperties;
+
+/** System and authenticated user properties for the in-memory system.
+ * All limits default to none. The fetch periods have defaults as the
+ * free-busy and webcal handlers require a value.
+ *
+ * @author Mike Douglass
+ */
+public class InMemProperties implements CalDAVAuthProperties,
+                                        CalDAVSystemProperties {
+  private Integer maxUserEntitySize;
+
+  private Integer maxInstances;
+
+  private Integer maxAttendeesPerInstance;
+
+  private String minDateTime;
+
+  private String maxDateTime;
+
+  private Integer defaultFBPeriod = 31;
+
+  private Integer maxFBPeriod = 32 * 3;
+
+  private Integer defaultWebCalPeriod = 31;
+
+  private Integer maxWebCalPeriod = 32 * 3;
+
+  private boolean directoryBrowsingDisallowed;
+
+  private String featureFlags;
+
+  private String adminContact;
+
+  private String tzServeruri;
+
+  private boolean timezonesByReference;
+
+  private String ischeduleURI;
+
+  private String fburlServiceURI;
+
+  private String webcalServiceURI;
+
+  private String calSoapWsURI;
+
+  private Integer vpollMaxItems;
+
+  private Integer vpollMaxActive;
+
+  private Integer vpollMaxVoters;
+
+  private Integer syncMaxItems;
+
+  private Integer queryParallelism;
+
+  private Integer freeBusyTimeout;
+
+  @Override
+  public void setMaxUserEntitySize(final Integer val) {
+    maxUserEntitySize = val;
+  }
+
+  @Override
+  public Integer getMaxUserEntitySize() {
+    return maxUserEntitySize;
+  }
+
+  @Override
+  public void setMaxInstances(final Integer val) {
+    maxInstances = val;
+  }
+
+  @Override
+  public Integer getMaxInstances() {
+    return maxInstances;
+  }
+
+  @Override
+  public void setMaxAttendeesPerInstance(final Integer val) {
+    maxAttendeesPerInstance = val;
+  }
+
+  @Override
+  public Integer getMaxAttendeesPerInstance() {
+    return maxAttendeesPerInstance;
+  }
+
+  @Override
+  public void setMinDateTime(final String val) {
+    minDateTime = val;
+  }
+
+  @Override
+  public String getMinDateTime() {
+    return minDateTime;
+  }
+
+  @Override
+  public void setMaxDateTime(final String val) {
+    maxDateTime = val;
+  }
+
+  @Override
+  public String getMaxDateTime() {
+    return maxDateTime;
+  }
+
+  @Override
+  public void setDefaultFBPeriod(final Integer val) {
+    defaultFBPeriod = val;
+  }
+
+  @Override
+  public Integer getDefaultFBPeriod() {
+    return defaultFBPeriod;
+  }
+
+  @Override
+  public void setMaxFBPeriod(final Integer val) {
+    maxFBPeriod = val;
+  }
+
+  @Override
+  public Integer getMaxFBPeriod() {
+    return maxFBPeriod;
+  }
+
+  @Override
+  public void setDefaultWebCalPeriod(final Integer val) {
+    defaultWebCalPeriod = val;
+  }
+
+  @Override
+  public Integer getDefaultWebCalPeriod() {
+    return defaultWebCalPeriod;
+  }
+
+  @Override
+  public void setMaxWebCalPeriod(final Integer val) {
+    maxWebCalPeriod = val;
+  }
+
+  @Override
+  public Integer getMaxWebCalPeriod() {
+    return maxWebCalPeriod;
+  }
+
+  @Override
+  public void setDirectoryBrowsingDisallowed(final boolean val) {
+    directoryBrowsingDisallowed = val;
+  }
+
+  @Override
+  public boolean getDirectoryBrowsingDisallowed() {
+    return directoryBrowsingDisallowed;
+  }
+
+  @Override
+  public void setFeatureFlags(final String val) {
+    featureFlags = val;
+  }
+
+  @Override
+  public String getFeatureFlags() {
+    return featureFlags;
+  }
+
+  @Override
+  public void setAdminContact(final String val) {
+    adminContact = val;
+  }
+
+  @Override
+  public String getAdminContact() {
+    return adminContact;
+  }
+
+  @Override
+  public void setTzServeruri(final String val) {
+    tzServeruri = val;
+  }
+
+  @Override
+  public String getTzServeruri() {
+    return tzServeruri;
+  }
+
+  @Override
+  public void setTimezonesByReference(final boolean val) {
+    timezonesByReference = val;
+  }
+
+  @Override
+  public boolean getTimezonesByReference() {
+    return timezonesByReference;
+  }
+
+  @Override
+  public void setIscheduleURI(final String val) {
+    ischeduleURI = val;
+  }
+
+  @Override
+  public String getIscheduleURI() {
+    return ischeduleURI;
+  }
+
+  @Override
+  public void setFburlServiceURI(final String val) {
+    fburlServiceURI = val;
+  }
+
+  @Override
+  public String getFburlServiceURI() {
+    return fburlServiceURI;
+  }
+
+  @Override
+  public void setWebcalServiceURI(final String val) {
+    webcalServiceURI = val;
+  }
+
+  @Override
+  public String getWebcalServiceURI() {
+    return webcalServiceURI;
+  }
+
+  @Override
+  public void setCalSoapWsURI(final String val) {
+    calSoapWsURI = val;
+  }
+
+  @Override
+  public String getCalSoapWsURI() {
+    return calSoapWsURI;
+  }
+
+  @Override
+  public void setVpollMaxItems(final Integer val) {
+    vpollMaxItems = val;
+  }
+
+  @Override
+  public Integer getVpollMaxItems() {
+    return vpollMaxItems;
+  }
+
+  @Override
+  public void setVpollMaxActive(final Integer val) {
+    vpollMaxActive = val;
+  }
+
+  @Override
+  public Integer getVpollMaxActive() {
+    return vpollMaxActive;
+  }
+
+  @Override
+  public void setVpollMaxVoters(final Integer val) {
+    vpollMaxVoters = val;
+  }
+
+  @Override
+  public Integer getVpollMaxVoters() {
+    return vpollMaxVoters;
+  }
+
+  @Override
+  public void setSyncMaxItems(final Integer val) {
+    syncMaxItems = val;
+  }
+
+  @Override
+  public Integer getSyncMaxItems() {
+    return syncMaxItems;
+  }
+
+  @Override
+  public void setQueryParallelism(final Integer val) {
+    queryParallelism = val;
+  }
+
+  @Override
+  public Integer getQueryParallelism() {
+    return queryParallelism;
+  }
+
+  @Override
+  public void setFreeBusyTimeout(final Integer val) {
+    freeBusyTimeout = val;
+  }
+
+  @Override
+  public Integer getFreeBusyTimeout() {
+    return freeBusyTimeout;
+  }
+}
@@ -0,0 +1,237 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.inmem;
+
+import org.bedework.caldav.server.CalDAVResource;
+import org.bedework.caldav.util.notifications.NotificationType;
+import org.bedework.caldav.util.notifications.NotificationType.NotificationInfo;
+import org.bedework.webdav.servlet.shared.WebdavException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.namespace.QName;
+
+/** A resource (file) in the in-memory system.
+ *
+ * @author Mike Douglass
+ */
+public class InMemResource extends CalDAVResource<InMemResource> {
+  private boolean isNew;
+
+  private boolean deleted;
+
+  private byte[] content;
+
+  private String contentType;
+
+  private long changeSeq;
+
+  private long prevChangeSeq;
+
+  private final Map<QName, String> properties = new ConcurrentHashMap<>();
+
+  /**
+   */
+  public InMemResource() {
+    super();
+  }
+
+  /**
+   * @param val true if this will be created
+   */
+  public void setNew(final boolean val) {
+    isNew = val;
+  }
+
+  /**
+   * @param val true for a deletion marker
+   */
+  public void setDeleted(final boolean val) {
+    deleted = val;
+  }
+
+  /**
+   * @param val change number
+   */
+  public void setChangeSeq(final long val) {
+    prevChangeSeq = changeSeq;
+    changeSeq = val;
+  }
+
+  /**
+   * @return change number
+   */
+  public long getChangeSeq() {
+    return changeSeq;
+  }
+
+  /**
+   * @return content bytes - may be null
+   */
+  public byte[] getContent() {
+    return content;
+  }
+
+  /**
+   * @param val content bytes
+   */
+  public void setContent(final byte[] val) {
+    content = val;
+  }
+
+  /* ====================================================================
+   *                      Abstract method implementations
+   * ==================================================================== */
+
+  @Override
+  public boolean getCanShare() {
+    return false;
+  }
+
+  @Override
+  public boolean getCanPublish() {
+    return false;
+  }
+
+  @Override
+  public boolean isAlias() {
+    return false;
+  }
+
+  @Override
+  public String getAliasUri() {
+    return null;
+  }
+
+  @Override
+  public InMemResource resolveAlias(final boolean resolveSubAlias) {
+    return this;
+  }
+
+  @Override
+  public void setProperty(final QName name, final String val) {
+    if (val == null) {
+      properties.remove(name);
+      return;
+    }
+
+    properties.put(name, val);
+  }
+
+  @Override
+  public String getProperty(final QName name) {
+    return properties.get(name);
+  }
+
+  @Override
+  public String getEtag() {
+    return "\"" + changeSeq + "\"";
+  }
+
+  @Override
+  public String getPreviousEtag() {
+    return "\"" + prevChangeSeq + "\"";
+  }
+
+  @Override
+  public boolean isNew() {
+    return isNew;
+  }
+
+  @Override
+  public boolean getDeleted() {
+    return deleted;
+  }
+
+  @Override
+  public void setBinaryContent(final InputStream val) throws WebdavException {
+    if (val == null) {
+      content = null;
+      return;
+    }
+
+    try {
+      final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      final byte[] buff = new byte[4096];
+
+      for (;;) {
+        final int len = val.read(buff);
+
+        if (len < 0) {
+          break;
+        }
+
+        baos.write(buff, 0, len);
+      }
+
+      content = baos.toByteArray();
+    } catch (final Throwable t) {
+      throw new WebdavException(t);
+    }
+  }
+
+  @Override
+  public InputStream getBinaryContent() {
+    if (content == null) {
+      return null;
+    }
+
+    return new ByteArrayInputStream(content);
+  }
+
+  @Override
+  public long getContentLen() {
+    if (content == null) {
+      return 0;
+    }
+
+    return content.length;
+  }
+
+  @Override
+  public long getQuotaSize() {
+    return getContentLen();
+  }
+
+  @Override
+  public void setContentType(final String val) {
+    contentType = val;
+  }
+
+  @Override
+  public String getContentType() {
+    return contentType;
+  }
+
+  @Override
+  public NotificationInfo getNotificationType() {
+    return NotificationType.fromContentType(contentType);
+  }
+
+  @Override
+  public String toString() {
+    return "InMemResource{path=" + getParentPath() +
+            ", name=" + getName() +
+            ", changeSeq=" + changeSeq + "}";
+  }
+}
@@ -0,0 +1,199 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.inmem;
+
+import org.bedework.caldav.server.CalDAVCollection;
+import org.bedework.util.calendar.IcalDefs;
+
+import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.ComponentList;
+import net.fortuna.ical4j.model.DateTime;
+import net.fortuna.ical4j.model.PropertyList;
+import net.fortuna.ical4j.model.Recur;
+import net.fortuna.ical4j.model.component.VEvent;
+import net.fortuna.ical4j.model.property.Attendee;
+import net.fortuna.ical4j.model.property.Description;
+import net.fortuna.ical4j.model.property.Location;
+import net.fortuna.ical4j.model.property.Organizer;
+import net.fortuna.ical4j.model.property.ProdId;
+import net.fortuna.ical4j.model.property.RRule;
+import net.fortuna.ical4j.model.property.Uid;
+import net.fortuna.ical4j.model.property.Version;
+
+import java.net.URI;
+
+/** Populate the in-memory store with synthetic calendars. The data is
+ * deterministic for a given set of parameters so that runs can be
+ * compared.
+ *
+ * @author Mike Douglass
+ */
+public class InMemSeeder {
+  /** Length of one hour in millisecs */
+  private static final long hourMillis = 60 * 60 * 1000L;
+
+  private final InMemStore store;
+
+  private long start = 1577836800000L; // 2020-01-01T00:00:00Z
+
+  private int spreadDays = 365;
+
+  private int recurEvery;
+
+  private int attendees;
+
+  /**
+   * @param store to populate
+   */
+  public InMemSeeder(final InMemStore store) {
+    this.store = store;
+  }
+
+  /**
+   * @param val start of the seeded period in millisecs UTC
+   * @return this
+   */
+  public InMemSeeder start(final long val) {
+    start = val;
+    return this;
+  }
+
+  /**
+   * @param val number of days over which events are spread
+   * @return this
+   */
+  public InMemSeeder spreadDays(final int val) {
+    spreadDays = val;
+    return this;
+  }
+
+  /**
+   * @param val every val'th event is a weekly recurring event. 0 for none
+   * @return this
+   */
+  public InMemSeeder recurEvery(final int val) {
+    recurEvery = val;
+    return this;
+  }
+
+  /**
+   * @param val number of attendees per event. 0 for none
+   * @return this
+   */
+  public InMemSeeder attendees(final int val) {
+    attendees = val;
+    return this;
+  }
+
+  /** Create the user and a number of calendar collections in their home
+   * each with the given number of events.
+   *
+   * @param account user account
+   * @param calendars number of calendar collections
+   * @param eventsPerCalendar number of events in each
+   * @return path to the user home
+   */
+  public String seed(final String account,
+                     final int calendars,
+                     final int eventsPerCalendar) {
+    final String home = store.ensureUser(account);
+    final InMemPrincipal owner = InMemPrincipal.makeUser(account);
+
+    for (int c = 0; c < calendars; c++) {
+      final String path = home + "/cal" + c;
+
+      store.addCollection(
+              InMemStore.newCollection(path,
+                                       CalDAVCollection.calTypeCalendarCollection,
+                                       owner));
+
+      for (int e = 0; e < eventsPerCalendar; e++) {
+        final InMemEvent ev = makeEvent(account, c, e);
+
+        ev.setParentPath(path);
+        ev.setOwner(owner);
+
+        store.putEvent(ev, true);
+      }
+    }
+
+    return home;
+  }
+
+  /**
+   * @param account owner
+   * @param cal calendar index
+   * @param num event index within calendar
+   * @return a new event - not stored
+   */
+  public InMemEvent makeEvent(final String account,
+                              final int cal,
+                              final int num) {
+    try {
+      final int days = Math.max(spreadDays, 1);
+      final long evStart = start +
+              ((num % days) * 24 * hourMillis) +
+              (((num / days) % 10) + 8) * hourMillis;
+
+      final DateTime dtstart = new DateTime(evStart);
+      dtstart.setUtc(true);
+
+      final DateTime dtend = new DateTime(evStart + hourMillis);
+      dtend.setUtc(true);
+
+      final VEvent vev = new VEvent(dtstart, dtend,
+                                    "Event " + num + " in calendar " + cal);
+
+      final String uid = account + "-" + cal + "-" + num;
+      final PropertyList pl = vev.getProperties();
+
+      pl.add(new Uid(uid));
+      pl.add(new Location("Room " + (num % 20)));
+      pl.add(new Description("Synthetic event " + uid));
+
+      if ((recurEvery > 0) && ((num % recurEvery) == 0)) {
+        pl.add(new RRule(new Recur("FREQ=WEEKLY;COUNT=10")));
+      }
+
+      if (attendees > 0) {
+        pl.add(new Organizer(new URI("mailto:" + account + "@example.org")));
+
+        for (int a = 0; a < attendees; a++) {
+          pl.add(new Attendee(new URI("mailto:attendee" + a + "@example.org")));
+        }
+      }
+
+      final PropertyList calProps = new PropertyList();
+      calProps.add(new ProdId(InMemEvent.prodId));
+      calProps.add(Version.VERSION_2_0);
+
+      final ComponentList comps = new ComponentList();
+      comps.add(vev);
+
+      final InMemEvent ev = new InMemEvent(new Calendar(calProps, comps),
+                                           IcalDefs.entityTypeEvent);
+
+      ev.setName(uid + ".ics");
+
+      return ev;
+    } catch (final Throwable t) {
+      throw new RuntimeException(t);
+    }
+  }
+}
@@ -0,0 +1,608 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.inmem;
+
+import org.bedework.caldav.server.CalDAVCollection;
+import org.bedework.caldav.util.notifications.NotificationType;
+import org.bedework.util.misc.Util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** The data for the in-memory system. A single instance is shared by all
+ * system interface objects. All structures are concurrent so that many
+ * requests may run at once. Changes are numbered from a single counter
+ * which gives us etags and sync tokens.
+ *
+ * <p>Deleted entities are kept as deletion markers so that sync reports
+ * can return them.
+ *
+ * @author Mike Douglass
+ */
+public class InMemStore {
+  /** Root of user homes */
+  public static final String userRoot = "/user";
+
+  private static final InMemStore store = new InMemStore();
+
+  private final AtomicLong changeSeq = new AtomicLong();
+
+  /* path -> collection */
+  private final Map<String, InMemCollection> collections =
+          new ConcurrentHashMap<>();
+
+  /* parent path -> child collection paths */
+  private final Map<String, Set<String>> children =
+          new ConcurrentHashMap<>();
+
+  /* collection path -> (name -> event) */
+  private final Map<String, Map<String, InMemEvent>> events =
+          new ConcurrentHashMap<>();
+
+  /* collection path -> (name -> resource) */
+  private final Map<String, Map<String, InMemResource>> resources =
+          new ConcurrentHashMap<>();
+
+  /* principal href -> notifications */
+  private final Map<String, List<NotificationType>> notifications =
+          new ConcurrentHashMap<>();
+
+  /**
+   * @return the shared store
+   */
+  public static InMemStore getStore() {
+    return store;
+  }
+
+  /** Remove everything.
+   */
+  public void reset() {
+    collections.clear();
+    children.clear();
+    events.clear();
+    resources.clear();
+    notifications.clear();
+  }
+
+  /**
+   * @return a new change number
+   */
+  public long nextSeq() {
+    return changeSeq.incrementAndGet();
+  }
+
+  /**
+   * @return the most recent change number
+   */
+  public long currentSeq() {
+    return changeSeq.get();
+  }
+
+  /* ====================================================================
+   *                   Users
+   * ==================================================================== */
+
+  /**
+   * @param account of user
+   * @return path to the user home
+   */
+  public static String homePath(final String account) {
+    return Util.buildPath(false, userRoot, "/", account);
+  }
+
+  /** Create the home and special collections for the user if not present.
+   *
+   * @param account of user
+   * @return path to the user home
+   */
+  public String ensureUser(final String account) {
+    final String home = homePath(account);
+
+    if (collections.get(home) != null) {
+      return home;
+    }
+
+    if (collections.get("/") == null) {
+      addCollection(newCollection("/",
+                                  CalDAVCollection.calTypeCollection,
+                                  null));
+    }
+
+    if (collections.get(userRoot) == null) {
+      addCollection(newCollection(userRoot,
+                                  CalDAVCollection.calTypeCollection,
+                                  null));
+    }
+
+    final InMemPrincipal owner = InMemPrincipal.makeUser(account);
+
+    addCollection(newCollection(home,
+                                CalDAVCollection.calTypeCollection,
+                                owner));
+    addCollection(newCollection(home + "/calendar",
+                                CalDAVCollection.calTypeCalendarCollection,
+                                owner));
+    addCollection(newCollection(home + "/Inbox",
+                                CalDAVCollection.calTypeInbox,
+                                owner));
+    addCollection(newCollection(home + "/Outbox",
+                                CalDAVCollection.calTypeOutbox,
+                                owner));
+    addCollection(newCollection(home + "/Notifications",
+                                CalDAVCollection.calTypeNotifications,
+                                owner));
+
+    return home;
+  }
+
+  /**
+   * @param path of the collection
+   * @param calType its type
+   * @param owner may be null
+   * @return a new collection object - not yet added
+   */
+  public static InMemCollection newCollection(final String path,
+                                              final int calType,
+                                              final InMemPrincipal owner) {
+    final InMemCollection col =
+            new InMemCollection(calType,
+                                calType == CalDAVCollection.calTypeCalendarCollection);
+
+    final int pos = path.lastIndexOf("/");
+
+    col.setPath(path);
+    col.setName(path.substring(pos + 1));
+    if (path.equals("/")) {
+      // The root has no parent
+      col.setParentPath(null);
+    } else if (pos > 0) {
+      col.setParentPath(path.substring(0, pos));
+    } else {
+      col.setParentPath("/");
+    }
+    col.setOwner(owner);
+
+    if (calType == CalDAVCollection.calTypeCalendarCollection) {
+      final List<String> comps = new ArrayList<>();
+      comps.add("VEVENT");
+      comps.add("VTODO");
+      comps.add("VJOURNAL");
+      col.setSupportedComponents(comps);
+    }
+
+    return col;
+  }
+
+  /* ====================================================================
+   *                   Collections
+   * ==================================================================== */
+
+  /**
+   * @param path of collection
+   * @return collection or null
+   */
+  public InMemCollection getCollection(final String path) {
+    return collections.get(path);
+  }
+
+  /**
+   * @param path of parent
+   * @return child collections - never null
+   */
+  public Collection<InMemCollection> getChildren(final String path) {
+    final Collection<InMemCollection> res = new ArrayList<>();
+    final Set<String> paths = children.get(path);
+
+    if (paths == null) {
+      return res;
+    }
+
+    for (final String p: paths) {
+      final InMemCollection c = collections.get(p);
+
+      if (c != null) {
+        res.add(c);
+      }
+    }
+
+    return res;
+  }
+
+  /**
+   * @param col to add
+   * @return false if it already exists
+   */
+  public boolean addCollection(final InMemCollection col) {
+    col.setChangeSeq(nextSeq());
+
+    if (collections.putIfAbsent(col.getPath(), col) != null) {
+      return false;
+    }
+
+    if (col.getParentPath() != null) {
+      children.computeIfAbsent(col.getParentPath(),
+                               k -> new ConcurrentSkipListSet<>())
+              .add(col.getPath());
+    }
+
+    if (col.entitiesAllowed()) {
+      events.put(col.getPath(), new ConcurrentSkipListMap<>());
+    } else {
+      resources.put(col.getPath(), new ConcurrentSkipListMap<>());
+    }
+
+    touch(col.getParentPath());
+
+    return true;
+  }
+
+  /** Remove the collection and everything below it.
+   *
+   * @param path of the collection
+   */
+  public void deleteCollection(final String path) {
+    final InMemCollection col = collections.remove(path);
+
+    if (col == null) {
+      return;
+    }
+
+    col.setDeleted(true);
+
+    final Set<String> kids = children.remove(path);
+    if (kids != null) {
+      for (final String p: kids) {
+        deleteCollection(p);
+      }
+    }
+
+    events.remove(path);
+    resources.remove(path);
+
+    if (col.getParentPath() == null) {
+      return;
+    }
+
+    final Set<String> siblings = children.get(col.getParentPath());
+    if (siblings != null) {
+      siblings.remove(path);
+    }
+
+    touch(col.getParentPath());
+  }
+
+  /** Flag the collection and its ancestors as changed. Ancestors are
+   * flagged so that a depth infinity sync token changes too.
+   *
+   * @param path of the collection
+   * @return the change number
+   */
+  public long touch(final String path) {
+    final long seq = nextSeq();
+
+    String p = path;
+
+    while (p != null) {
+      final InMemCollection col = collections.get(p);
+
+      if (col == null) {
+        break;
+      }
+
+      col.setChangeSeq(seq);
+      p = col.getParentPath();
+    }
+
+    return seq;
+  }
+
+  /* ====================================================================
+   *                   Events
+   * ==================================================================== */
+
+  /**
+   * @param path of collection
+   * @return live events in the collection - never null
+   */
+  public Collection<InMemEvent> getEvents(final String path) {
+    final Collection<InMemEvent> res = new ArrayList<>();
+    final Map<String, InMemEvent> evs = events.get(path);
+
+    if (evs == null) {
+      return res;
+    }
+
+    for (final InMemEvent ev: evs.values()) {
+      if (!ev.getDeleted()) {
+        res.add(ev);
+      }
+    }
+
+    return res;
+  }
+
+  /**
+   * @param path of collection
+   * @param name of event
+   * @return live event or null
+   */
+  public InMemEvent getEvent(final String path,
+                             final String name) {
+    final Map<String, InMemEvent> evs = events.get(path);
+
+    if (evs == null) {
+      return null;
+    }
+
+    final InMemEvent ev = evs.get(name);
+
+    if ((ev == null) || ev.getDeleted()) {
+      return null;
+    }
+
+    return ev;
+  }
+
+  /**
+   * @param path of collection
+   * @param uid of event
+   * @return live event or null
+   */
+  public InMemEvent findByUid(final String path,
+                              final String uid) {
+    if (uid == null) {
+      return null;
+    }
+
+    for (final InMemEvent ev: getEvents(path)) {
+      if (uid.equals(ev.getUid())) {
+        return ev;
+      }
+    }
+
+    return null;
+  }
+
+  /** Add or replace the event. The parent path and name must be set.
+   *
+   * @param ev the event
+   * @param scheduleChange true if the change affects scheduling
+   * @return false if there is no such collection
+   */
+  public boolean putEvent(final InMemEvent ev,
+                          final boolean scheduleChange) {
+    final Map<String, InMemEvent> evs = events.get(ev.getParentPath());
+
+    if (evs == null) {
+      return false;
+    }
+
+    ev.setNew(false);
+    ev.setDeleted(false);
+    ev.setChangeSeq(touch(ev.getParentPath()), scheduleChange);
+    evs.put(ev.getName(), ev);
+
+    return true;
+  }
+
+  /** Replace the event with a deletion marker.
+   *
+   * @param ev the event
+   */
+  public void deleteEvent(final InMemEvent ev) {
+    final Map<String, InMemEvent> evs = events.get(ev.getParentPath());
+
+    if (evs == null) {
+      return;
+    }
+
+    final InMemEvent marker = ev.copy(ev.getName(), ev.getParentPath());
+    marker.setStoredState(ev);
+    marker.setDeleted(true);
+    marker.setChangeSeq(touch(ev.getParentPath()), false);
+
+    evs.put(ev.getName(), marker);
+  }
+
+  /* ====================================================================
+   *                   Resources
+   * ==================================================================== */
+
+  /**
+   * @param path of collection
+   * @return live resources in the collection - never null
+   */
+  public Collection<InMemResource> getResources(final String path) {
+    final Collection<InMemResource> res = new ArrayList<>();
+    final Map<String, InMemResource> rs = resources.get(path);
+
+    if (rs == null) {
+      return res;
+    }
+
+    for (final InMemResource r: rs.values()) {
+      if (!r.getDeleted()) {
+        res.add(r);
+      }
+    }
+
+    return res;
+  }
+
+  /**
+   * @param path of collection
+   * @param name of resource
+   * @return live resource or null
+   */
+  public InMemResource getResource(final String path,
+                                   final String name) {
+    final Map<String, InMemResource> rs = resources.get(path);
+
+    if (rs == null) {
+      return null;
+    }
+
+    final InMemResource r = rs.get(name);
+
+    if ((r == null) || r.getDeleted()) {
+      return null;
+    }
+
+    return r;
+  }
+
+  /** Add or replace the resource. The parent path and name must be set.
+   *
+   * @param r the resource
+   * @return false if there is no such collection
+   */
+  public boolean putResource(final InMemResource r) {
+    final Map<String, InMemResource> rs = resources.get(r.getParentPath());
+
+    if (rs == null) {
+      return false;
+    }
+
+    r.setNew(false);
+    r.setDeleted(false);
+    r.setChangeSeq(touch(r.getParentPath()));
+    rs.put(r.getName(), r);
+
+    return true;
+  }
+
+  /** Flag the resource as deleted.
+   *
+   * @param r the resource
+   */
+  public void deleteResource(final InMemResource r) {
+    final Map<String, InMemResource> rs = resources.get(r.getParentPath());
+
+    if (rs == null) {
+      return;
+    }
+
+    r.setDeleted(true);
+    r.setChangeSeq(touch(r.getParentPath()));
+  }
+
+  /* ====================================================================
+   *                   Sync
+   * ==================================================================== */
+
+  /** Events - including deletion markers - changed after the given
+   * change number.
+   *
+   * @param path of collection
+   * @param since change number
+   * @return changed events - never null
+   */
+  public Collection<InMemEvent> getEventChanges(final String path,
+                                                final long since) {
+    final Collection<InMemEvent> res = new ArrayList<>();
+    final Map<String, InMemEvent> evs = events.get(path);
+
+    if (evs == null) {
+      return res;
+    }
+
+    for (final InMemEvent ev: evs.values()) {
+      if (ev.getChangeSeq() > since) {
+        res.add(ev);
+      }
+    }
+
+    return res;
+  }
+
+  /** Resources - including deleted - changed after the given change
+   * number.
+   *
+   * @param path of collection
+   * @param since change number
+   * @return changed resources - never null
+   */
+  public Collection<InMemResource> getResourceChanges(final String path,
+                                                      final long since) {
+    final Collection<InMemResource> res = new ArrayList<>();
+    final Map<String, InMemResource> rs = resources.get(path);
+
+    if (rs == null) {
+      return res;
+    }
+
+    for (final InMemResource r: rs.values()) {
+      if (r.getChangeSeq() > since) {
+        res.add(r);
+      }
+    }
+
+    return res;
+  }
+
+  /* ====================================================================
+   *                   Notifications
+   * ==================================================================== */
+
+  /**
+   * @param href principal href
+   * @param val notification to add
+   */
+  public void addNotification(final String href,
+                              final NotificationType val) {
+    notifications.computeIfAbsent(href,
+                                  k -> new CopyOnWriteArrayList<>())
+                 .add(val);
+  }
+
+  /**
+   * @param href principal href
+   * @param val notification to remove
+   */
+  public void removeNotification(final String href,
+                                 final NotificationType val) {
+    final List<NotificationType> ns = notifications.get(href);
+
+    if (ns != null) {
+      ns.remove(val);
+    }
+  }
+
+  /**
+   * @param href principal href
+   * @return notifications - never null
+   */
+  public List<NotificationType> getNotifications(final String href) {
+    final List<NotificationType> ns = notifications.get(href);
+
+    if (ns == null) {
+      return new ArrayList<>();
+    }
+
+    return new ArrayList<>(ns);
+  }
+}
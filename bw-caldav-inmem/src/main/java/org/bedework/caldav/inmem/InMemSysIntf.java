@@ -0,0 +1,1625 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.inmem;
+
+import org.bedework.access.AccessPrincipal;
+import org.bedework.access.Acl;
+import org.bedework.access.CurrentAccess;
+import org.bedework.access.WhoDefs;
+import org.bedework.caldav.server.CalDAVCollection;
+import org.bedework.caldav.server.CalDAVEvent;
+import org.bedework.caldav.server.CalDAVResource;
+import org.bedework.caldav.server.PropertyHandler;
+import org.bedework.caldav.server.PropertyHandler.PropertyType;
+import org.bedework.caldav.server.SysiIcalendar;
+import org.bedework.caldav.server.cache.FreeBusyCache;
+import org.bedework.caldav.server.calquery.CdataWriter;
+import org.bedework.caldav.server.calquery.FreeBusyQuery;
+import org.bedework.caldav.server.sysinterface.CalDAVAuthProperties;
+import org.bedework.caldav.server.sysinterface.CalDAVSystemProperties;
+import org.bedework.caldav.server.sysinterface.CalPrincipalInfo;
+import org.bedework.caldav.server.sysinterface.RetrievalMode;
+import org.bedework.caldav.server.sysinterface.SysIntf;
+import org.bedework.caldav.util.BusyPeriods;
+import org.bedework.caldav.util.TimeRange;
+import org.bedework.caldav.util.TimeRangeEngine;
+import org.bedework.caldav.util.filter.FilterBase;
+import org.bedework.caldav.util.filter.FilterEvaluator;
+import org.bedework.caldav.util.notifications.NotificationType;
+import org.bedework.caldav.util.sharing.InviteReplyType;
+import org.bedework.caldav.util.sharing.InviteType;
+import org.bedework.caldav.util.sharing.ShareResultType;
+import org.bedework.caldav.util.sharing.ShareType;
+import org.bedework.util.calendar.IcalDefs;
+import org.bedework.util.calendar.ScheduleMethods;
+import org.bedework.util.logging.BwLogger;
+import org.bedework.util.logging.Logged;
+import org.bedework.util.xml.XmlEmit;
+import org.bedework.util.xml.tagdefs.CaldavTags;
+import org.bedework.webdav.servlet.shared.PrincipalPropertySearch;
+import org.bedework.webdav.servlet.shared.UrlHandler;
+import org.bedework.webdav.servlet.shared.WdCollection;
+import org.bedework.webdav.servlet.shared.WdEntity;
+import org.bedework.webdav.servlet.shared.WebdavException;
+import org.bedework.webdav.servlet.shared.WebdavForbidden;
+import org.bedework.webdav.servlet.shared.WebdavNsNode.PropertyTagEntry;
+
+import ietf.params.xml.ns.icalendar_2.IcalendarType;
+import net.fortuna.ical4j.data.CalendarBuilder;
+import net.fortuna.ical4j.data.CalendarOutputter;
+import net.fortuna.ical4j.data.FoldingWriter;
+import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.Component;
+import net.fortuna.ical4j.model.ComponentList;
+import net.fortuna.ical4j.model.DateTime;
+import net.fortuna.ical4j.model.Period;
+import net.fortuna.ical4j.model.PeriodList;
+import net.fortuna.ical4j.model.Property;
+import net.fortuna.ical4j.model.PropertyList;
+import net.fortuna.ical4j.model.TimeZone;
+import net.fortuna.ical4j.model.TimeZoneRegistryFactory;
+import net.fortuna.ical4j.model.component.VFreeBusy;
+import net.fortuna.ical4j.model.component.VTimeZone;
+import net.fortuna.ical4j.model.property.FreeBusy;
+import net.fortuna.ical4j.model.property.Method;
+import net.fortuna.ical4j.model.property.ProdId;
+import net.fortuna.ical4j.model.property.Version;
+import org.oasis_open.docs.ws_calendar.ns.soap.ComponentSelectionType;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.xml.namespace.QName;
+
+/** A SysIntf implementation which holds everything in memory. It is
+ * intended as a local stand-in for a real backend so that the protocol
+ * layer can be load tested and benchmarked on its own.
+ *
+ * <p>All instances share the data in InMemStore. Use InMemSeeder to
+ * populate it with synthetic calendars.
+ *
+ * <p>Filters are evaluated for entity type and time range only. Other
+ * filter elements are treated as matching.
+ *
+ * <p>Sharing, the XML and JSON calendar representations and remote
+ * scheduling are not supported.
+ *
+ * @author Mike Douglass
+ */
+public class InMemSysIntf implements Logged, SysIntf {
+  /** Domain for calendar addresses */
+  public static final String domain = "example.org";
+
+  private static final String syncTokenPrefix = "data:,";
+
+  private static final InMemProperties properties = new InMemProperties();
+
+  private static final PropertyHandler propertyHandler =
+          new PropertyHandler() {
+            @Override
+            public Map<QName, PropertyTagEntry> getPropertyNames() {
+              return Collections.emptyMap();
+            }
+          };
+
+  private final InMemStore store = InMemStore.getStore();
+
+  private UrlHandler urlHandler;
+
+  private InMemPrincipal principal;
+
+  /* Shared busy time - null to compute it each time */
+  private FreeBusyCache freeBusyCache;
+
+  @Override
+  public String init(final HttpServletRequest req,
+                     final String account,
+                     final boolean service,
+                     final boolean calWs,
+                     final boolean synchWs,
+                     final boolean notifyWs,
+                     final boolean socketWs,
+                     final String opaqueData) throws WebdavException {
+    try {
+      urlHandler = new UrlHandler(req, !calWs);
+
+      if (account != null) {
+        principal = InMemPrincipal.makeUser(account);
+        store.ensureUser(account);
+      }
+
+      return account;
+    } catch (final Throwable t) {
+      throw new WebdavException(t);
+    }
+  }
+
+  @Override
+  public boolean testMode() {
+    return false;
+  }
+
+  @Override
+  public boolean bedeworkExtensionsEnabled() {
+    return false;
+  }
+
+  @Override
+  public CalDAVAuthProperties getAuthProperties() {
+    return properties;
+  }
+
+  @Override
+  public CalDAVSystemProperties getSystemProperties() {
+    return properties;
+  }
+
+  @Override
+  public AccessPrincipal getPrincipal() {
+    return principal;
+  }
+
+  @Override
+  public PropertyHandler getPropertyHandler(final PropertyType ptype) {
+    return propertyHandler;
+  }
+
+  @Override
+  public UrlHandler getUrlHandler() {
+    return urlHandler;
+  }
+
+  @Override
+  public boolean allowsSyncReport(final WdCollection<?> col) {
+    if (!(col instanceof InMemCollection)) {
+      return false;
+    }
+
+    final int ctype = ((InMemCollection)col).getCalType();
+
+    return (ctype == CalDAVCollection.calTypeCollection) ||
+            (ctype == CalDAVCollection.calTypeCalendarCollection) ||
+            (ctype == CalDAVCollection.calTypeInbox) ||
+            (ctype == CalDAVCollection.calTypeNotifications);
+  }
+
+  @Override
+  public String getDefaultContentType() {
+    return "text/calendar";
+  }
+
+  /**
+   * @return null - no notification service
+   */
+  public String getNotificationURL() {
+    return null;
+  }
+
+  @Override
+  public boolean isPrincipal(final String val) {
+    return (val != null) &&
+            (val.startsWith(InMemPrincipal.userPrincipalRoot) ||
+                     val.startsWith(InMemPrincipal.groupPrincipalRoot));
+  }
+
+  @Override
+  public AccessPrincipal getPrincipalForUser(final String account) {
+    return InMemPrincipal.makeUser(account);
+  }
+
+  @Override
+  public AccessPrincipal getPrincipal(final String href) {
+    if (href == null) {
+      return null;
+    }
+
+    final int kind;
+    String account;
+
+    if (href.startsWith(InMemPrincipal.userPrincipalRoot)) {
+      kind = WhoDefs.whoTypeUser;
+      account = href.substring(InMemPrincipal.userPrincipalRoot.length());
+    } else if (href.startsWith(InMemPrincipal.groupPrincipalRoot)) {
+      kind = WhoDefs.whoTypeGroup;
+      account = href.substring(InMemPrincipal.groupPrincipalRoot.length());
+    } else {
+      return null;
+    }
+
+    if (account.endsWith("/")) {
+      account = account.substring(0, account.length() - 1);
+    }
+
+    if ((account.length() == 0) || account.contains("/")) {
+      return null;
+    }
+
+    return new InMemPrincipal(kind, account);
+  }
+
+  @Override
+  public byte[] getPublicKey(final String domain,
+                             final String service) {
+    return null;
+  }
+
+  @Override
+  public String makeHref(final String id, final int whoType) {
+    if (whoType == WhoDefs.whoTypeGroup) {
+      return InMemPrincipal.groupPrincipalRoot + id + "/";
+    }
+
+    return InMemPrincipal.userPrincipalRoot + id + "/";
+  }
+
+  @Override
+  public Collection<String> getGroups(final String rootUrl,
+                                      final String principalUrl) {
+    return new ArrayList<>();
+  }
+
+  @Override
+  public AccessPrincipal caladdrToPrincipal(final String caladdr) {
+    if (caladdr == null) {
+      return null;
+    }
+
+    String account = caladdr;
+
+    if (account.toLowerCase().startsWith("mailto:")) {
+      account = account.substring(7);
+    }
+
+    final int pos = account.indexOf("@");
+    if (pos >= 0) {
+      if (!account.substring(pos + 1).equalsIgnoreCase(domain)) {
+        // Not one of ours
+        return null;
+      }
+
+      account = account.substring(0, pos);
+    }
+
+    return InMemPrincipal.makeUser(account);
+  }
+
+  @Override
+  public String principalToCaladdr(final AccessPrincipal principal) {
+    return "mailto:" + principal.getAccount() + "@" + domain;
+  }
+
+  @Override
+  public CalPrincipalInfo getCalPrincipalInfo(final AccessPrincipal principal) {
+    if (principal == null) {
+      return null;
+    }
+
+    final String home = InMemStore.homePath(principal.getAccount());
+
+    return new CalPrincipalInfo(principal,
+                                null, null,
+                                home,
+                                home + "/calendar",
+                                home + "/Inbox",
+                                home + "/Outbox",
+                                home + "/Notifications",
+                                0);
+  }
+
+  @Override
+  public Collection<String> getPrincipalCollectionSet(final String resourceUri) {
+    final Collection<String> res = new ArrayList<>();
+
+    res.add(InMemPrincipal.userPrincipalRoot);
+
+    return res;
+  }
+
+  @Override
+  public Collection<CalPrincipalInfo> getPrincipals(final String resourceUri,
+                                                    final PrincipalPropertySearch pps) {
+    return new ArrayList<>();
+  }
+
+  @Override
+  public boolean validPrincipal(final String href) {
+    return getPrincipal(href) != null;
+  }
+
+  /* ====================================================================
+   *                   Notifications
+   * ==================================================================== */
+
+  @Override
+  public boolean subscribeNotification(final String principalHref,
+                                       final String action,
+                                       final List<String> emails) {
+    return false;
+  }
+
+  @Override
+  public boolean sendNotification(final String href,
+                                  final NotificationType val) {
+    store.addNotification(href, val);
+
+    return true;
+  }
+
+  @Override
+  public void removeNotification(final String href,
+                                 final NotificationType val) {
+    store.removeNotification(href, val);
+  }
+
+  @Override
+  public List<NotificationType> getNotifications() {
+    if (principal == null) {
+      return new ArrayList<>();
+    }
+
+    return store.getNotifications(principal.getPrincipalRef());
+  }
+
+  @Override
+  public List<NotificationType> getNotifications(final String href,
+                                                 final QName type) {
+    final List<NotificationType> res = new ArrayList<>();
+
+    for (final NotificationType n: store.getNotifications(href)) {
+      if ((type == null) ||
+              ((n.getNotification() != null) &&
+                       type.equals(n.getNotification().getElementName()))) {
+        res.add(n);
+      }
+    }
+
+    return res;
+  }
+
+  /* ====================================================================
+   *                   Sharing
+   * ==================================================================== */
+
+  @Override
+  public ShareResultType share(final CalDAVCollection<?> col,
+                               final ShareType share) throws WebdavException {
+    throw new WebdavException(HttpServletResponse.SC_NOT_IMPLEMENTED);
+  }
+
+  @Override
+  public String sharingReply(final CalDAVCollection<?> col,
+                             final InviteReplyType reply) throws WebdavException {
+    throw new WebdavException(HttpServletResponse.SC_NOT_IMPLEMENTED);
+  }
+
+  @Override
+  public InviteType getInviteStatus(final CalDAVCollection<?> col) {
+    return null;
+  }
+
+  /* ====================================================================
+   *                   Scheduling
+   * ==================================================================== */
+
+  @Override
+  public Collection<String> getFreebusySet() {
+    final Collection<String> res = new ArrayList<>();
+
+    if (principal == null) {
+      return res;
+    }
+
+    for (final InMemCollection c:
+            store.getChildren(InMemStore.homePath(principal.getAccount()))) {
+      if ((c.getCalType() == CalDAVCollection.calTypeCalendarCollection) &&
+              c.getAffectsFreeBusy()) {
+        res.add(c.getPath());
+      }
+    }
+
+    return res;
+  }
+
+  @Override
+  public Collection<SchedRecipientResult> schedule(final CalDAVEvent<?> ev)
+          throws WebdavException {
+    final Collection<SchedRecipientResult> res = new ArrayList<>();
+    final InMemEvent iev = (InMemEvent)ev;
+
+    Set<String> recipients = iev.getRecipients();
+    if ((recipients == null) || recipients.isEmpty()) {
+      recipients = iev.getAttendeeUris();
+    }
+
+    for (final String r: recipients) {
+      final SchedRecipientResult srr = new SchedRecipientResult();
+      srr.recipient = r;
+
+      final AccessPrincipal p = caladdrToPrincipal(r);
+      if (p == null) {
+        // Remote - not supported
+        srr.status = SchedRecipientResult.scheduleDeferred;
+        res.add(srr);
+        continue;
+      }
+
+      final String inbox = InMemStore.homePath(p.getAccount()) + "/Inbox";
+      store.ensureUser(p.getAccount());
+
+      final InMemEvent copy = iev.copy(iev.getUid() + "-" +
+                                               store.nextSeq() + ".ics",
+                                       inbox);
+      copy.setScheduleMethod(iev.getScheduleMethod());
+
+      if (store.putEvent(copy, true)) {
+        srr.status = SchedRecipientResult.scheduleOk;
+      } else {
+        srr.status = SchedRecipientResult.scheduleError;
+      }
+
+      res.add(srr);
+    }
+
+    return res;
+  }
+
+  /* ====================================================================
+   *                   Events
+   * ==================================================================== */
+
+  @Override
+  public Collection<CalDAVEvent<?>> addEvent(final CalDAVEvent<?> ev,
+                                             final boolean noInvites,
+                                             final boolean rollbackOnError)
+          throws WebdavException {
+    final InMemEvent iev = (InMemEvent)ev;
+
+    if (store.getEvent(iev.getParentPath(), iev.getName()) != null) {
+      throw new WebdavException(HttpServletResponse.SC_PRECONDITION_FAILED);
+    }
+
+    if (iev.getOwner() == null) {
+      iev.setOwner(principal);
+    }
+
+    if (!store.putEvent(iev, true)) {
+      throw new WebdavException(HttpServletResponse.SC_CONFLICT);
+    }
+
+    if (debug()) {
+      debug("Added " + iev);
+    }
+
+    return null;
+  }
+
+  @Override
+  public void reindexEvent(final CalDAVEvent<?> event) {
+  }
+
+  @Override
+  public void updateEvent(final CalDAVEvent<?> event) throws WebdavException {
+    final InMemEvent iev = (InMemEvent)event;
+
+    if (!store.putEvent(iev, true)) {
+      throw new WebdavException(HttpServletResponse.SC_CONFLICT);
+    }
+  }
+
+  @Override
+  public UpdateResult updateEvent(final CalDAVEvent<?> event,
+                                  final List<ComponentSelectionType> updates) {
+    return new UpdateResult("Not supported");
+  }
+
+  @Override
+  public Collection<CalDAVEvent<?>> getEvents(final CalDAVCollection<?> col,
+                                              final FilterBase filter,
+                                              final List<String> retrieveList,
+                                              final RetrievalMode recurRetrieval)
+          throws WebdavException {
+    final Collection<CalDAVEvent<?>> res = new ArrayList<>();
+    final FilterEvaluator fe = FilterEvaluator.compile(filter);
+    final java.util.TimeZone tz = calendarTimezone(col);
+
+    for (final InMemEvent ev: store.getEvents(col.getPath())) {
+      if (fe.matches(ev.getIcal(), tz)) {
+        res.add(ev);
+      }
+    }
+
+    return res;
+  }
+
+  @Override
+  public CalDAVEvent<?> getEvent(final CalDAVCollection<?> col,
+                                 final String val) {
+    return store.getEvent(col.getPath(), val);
+  }
+
+  @Override
+  public void deleteEvent(final CalDAVEvent<?> ev,
+                          final boolean scheduleReply) {
+    store.deleteEvent((InMemEvent)ev);
+  }
+
+  @Override
+  public Collection<SchedRecipientResult> requestFreeBusy(
+          final CalDAVEvent<?> val,
+          final boolean iSchedule) throws WebdavException {
+    final Collection<SchedRecipientResult> res = new ArrayList<>();
+    final InMemEvent req = (InMemEvent)val;
+    final Component vfb = req.getComponent();
+
+    final TimeRange tr = new TimeRange(
+            dateTime(vfb.getProperty(Property.DTSTART)),
+            dateTime(vfb.getProperty(Property.DTEND)));
+
+    for (final String r: req.getRecipients()) {
+      final SchedRecipientResult srr = new SchedRecipientResult();
+      srr.recipient = r;
+
+      final AccessPrincipal p = caladdrToPrincipal(r);
+      if (p == null) {
+        srr.status = SchedRecipientResult.scheduleNoAccess;
+      } else {
+        srr.freeBusy = freeBusyFor(p, tr);
+        srr.status = SchedRecipientResult.scheduleOk;
+      }
+
+      res.add(srr);
+    }
+
+    return res;
+  }
+
+  @Override
+  public void getSpecialFreeBusy(final String cua,
+                                 final Set<String> recipients,
+                                 final String originator,
+                                 final TimeRange tr,
+                                 final Writer wtr) throws WebdavException {
+    final AccessPrincipal p = caladdrToPrincipal(cua);
+
+    if (p == null) {
+      throw new WebdavException(HttpServletResponse.SC_NOT_FOUND);
+    }
+
+    final InMemEvent fb = freeBusyFor(p, tr);
+
+    try {
+      wtr.write(fb.toIcalString(ScheduleMethods.methodTypeReply,
+                                getDefaultContentType()));
+    } catch (final WebdavException we) {
+      throw we;
+    } catch (final Throwable t) {
+      throw new WebdavException(t);
+    }
+  }
+
+  @Override
+  public CalDAVEvent<?> getFreeBusy(final CalDAVCollection<?> col,
+                                    final int depth,
+                                    final TimeRange timeRange)
+          throws WebdavException {
+    return makeFreeBusy(timeRange,
+                        busy((InMemCollection)col, depth, timeRange));
+  }
+
+  @Override
+  public CurrentAccess checkAccess(final WdEntity<?> ent,
+                                   final int desiredAccess,
+                                   final boolean returnResult) {
+    return new CurrentAccess(true);
+  }
+
+  @Override
+  public void updateAccess(final CalDAVEvent<?> ev,
+                           final Acl acl) {
+  }
+
+  @Override
+  public boolean copyMove(final CalDAVEvent<?> from,
+                          final CalDAVCollection<?> to,
+                          final String name,
+                          final boolean copy,
+                          final boolean overwrite) throws WebdavException {
+    final InMemEvent iev = (InMemEvent)from;
+    final InMemEvent existing = store.getEvent(to.getPath(), name);
+
+    if ((existing != null) && !overwrite) {
+      throw new WebdavException(HttpServletResponse.SC_PRECONDITION_FAILED);
+    }
+
+    final InMemEvent newEv = iev.copy(name, to.getPath());
+
+    if (existing != null) {
+      newEv.setStoredState(existing);
+    }
+
+    if (!store.putEvent(newEv, true)) {
+      throw new WebdavException(HttpServletResponse.SC_CONFLICT);
+    }
+
+    if (!copy) {
+      store.deleteEvent(iev);
+    }
+
+    return existing == null;
+  }
+
+  /* ====================================================================
+   *                   Collections
+   * ==================================================================== */
+
+  @Override
+  public CalDAVCollection<?> newCollectionObject(final boolean isCalendarCollection,
+                                                 final String parentPath) {
+    final int calType;
+
+    if (isCalendarCollection) {
+      calType = CalDAVCollection.calTypeCalendarCollection;
+    } else {
+      calType = CalDAVCollection.calTypeCollection;
+    }
+
+    final InMemCollection col = new InMemCollection(calType,
+                                                    isCalendarCollection);
+
+    col.setParentPath(parentPath);
+    col.setOwner(principal);
+
+    return col;
+  }
+
+  @Override
+  public void updateAccess(final CalDAVCollection<?> col,
+                           final Acl acl) {
+  }
+
+  @Override
+  public int makeCollection(final CalDAVCollection<?> col) {
+    final InMemCollection icol = (InMemCollection)col;
+
+    if (store.getCollection(icol.getParentPath()) == null) {
+      return HttpServletResponse.SC_CONFLICT;
+    }
+
+    if (icol.getPath() == null) {
+      icol.setPath(icol.getParentPath() + "/" + icol.getName());
+    }
+
+    if (!store.addCollection(icol)) {
+      return HttpServletResponse.SC_METHOD_NOT_ALLOWED;
+    }
+
+    return HttpServletResponse.SC_CREATED;
+  }
+
+  @Override
+  public void copyMove(final CalDAVCollection<?> from,
+                       final CalDAVCollection<?> to,
+                       final boolean copy,
+                       final boolean overwrite) throws WebdavException {
+    final InMemCollection src = (InMemCollection)from;
+    final String destPath = to.getPath() + "/" + src.getName();
+
+    if (store.getCollection(destPath) != null) {
+      if (!overwrite) {
+        throw new WebdavException(HttpServletResponse.SC_PRECONDITION_FAILED);
+      }
+
+      store.deleteCollection(destPath);
+    }
+
+    copyCollection(src, destPath);
+
+    if (!copy) {
+      store.deleteCollection(src.getPath());
+    }
+  }
+
+  @Override
+  public CalDAVCollection<?> getCollection(final String path) {
+    return store.getCollection(path);
+  }
+
+  @Override
+  public void updateCollection(final CalDAVCollection<?> val) {
+    final InMemCollection col = store.getCollection(val.getPath());
+
+    /* val may be a copy from the collection cache */
+    if ((col != null) && (col != val)) {
+      col.update((InMemCollection)val);
+    }
+
+    store.touch(val.getPath());
+  }
+
+  @Override
+  public void deleteCollection(final CalDAVCollection<?> col,
+                               final boolean sendSchedulingMessage) {
+    store.deleteCollection(col.getPath());
+  }
+
+  @Override
+  public CalDAVCollection<?> snapshotCollection(
+          final CalDAVCollection<?> col) {
+    return ((InMemCollection)col).snapshot();
+  }
+
+  @Override
+  public Collection<CalDAVCollection<?>> getCollections(final CalDAVCollection<?> col) {
+    return new ArrayList<>(store.getChildren(col.getPath()));
+  }
+
+  /* ====================================================================
+   *                   Files
+   * ==================================================================== */
+
+  @Override
+  public CalDAVResource<?> newResourceObject(final String parentPath) {
+    final InMemResource r = new InMemResource();
+
+    r.setNew(true);
+    r.setParentPath(parentPath);
+    r.setOwner(principal);
+
+    return r;
+  }
+
+  @Override
+  public void putFile(final CalDAVCollection<?> coll,
+                      final CalDAVResource<?> val) throws WebdavException {
+    final InMemResource r = (InMemResource)val;
+
+    r.setParentPath(coll.getPath());
+
+    if (!store.putResource(r)) {
+      throw new WebdavException(HttpServletResponse.SC_CONFLICT);
+    }
+  }
+
+  @Override
+  public CalDAVResource<?> getFile(final CalDAVCollection<?> coll,
+                                   final String name) {
+    return store.getResource(coll.getPath(), name);
+  }
+
+  @Override
+  public void getFileContent(final CalDAVResource<?> val) {
+    // Content is always present
+  }
+
+  @Override
+  public Collection<CalDAVResource<?>> getFiles(final CalDAVCollection<?> coll) {
+    return new ArrayList<>(store.getResources(coll.getPath()));
+  }
+
+  @Override
+  public void updateFile(final CalDAVResource<?> val,
+                         final boolean updateContent) throws WebdavException {
+    if (!store.putResource((InMemResource)val)) {
+      throw new WebdavException(HttpServletResponse.SC_CONFLICT);
+    }
+  }
+
+  @Override
+  public void deleteFile(final CalDAVResource<?> val) {
+    store.deleteResource((InMemResource)val);
+  }
+
+  @Override
+  public boolean copyMoveFile(final CalDAVResource<?> from,
+                              final String toPath,
+                              final String name,
+                              final boolean copy,
+                              final boolean overwrite) throws WebdavException {
+    final InMemResource src = (InMemResource)from;
+    final InMemResource existing = store.getResource(toPath, name);
+
+    if ((existing != null) && !overwrite) {
+      throw new WebdavException(HttpServletResponse.SC_PRECONDITION_FAILED);
+    }
+
+    final InMemResource r = new InMemResource();
+    r.setName(name);
+    r.setParentPath(toPath);
+    r.setOwner(src.getOwner());
+    r.setContentType(src.getContentType());
+    r.setContent(src.getContent());
+
+    if (!store.putResource(r)) {
+      throw new WebdavException(HttpServletResponse.SC_CONFLICT);
+    }
+
+    if (!copy) {
+      store.deleteResource(src);
+    }
+
+    return existing == null;
+  }
+
+  /* ====================================================================
+   *                   Synch Reports
+   * ==================================================================== */
+
+  @Override
+  public String getSyncToken(final CalDAVCollection<?> col) {
+    /* col may be a copy - the stored collection has the current value */
+    InMemCollection icol = store.getCollection(col.getPath());
+    if (icol == null) {
+      icol = (InMemCollection)col;
+    }
+
+    return syncTokenPrefix + formatToken(icol.getChangeSeq());
+  }
+
+  @Override
+  public Map<String, String> getEtags(final CalDAVCollection<?> col) {
+    final Map<String, String> etags = new HashMap<>();
+
+    for (final InMemEvent ev: store.getEvents(col.getPath())) {
+      etags.put(ev.getName(), ev.getEtag());
+    }
+
+    return etags;
+  }
+
+  @Override
+  public SynchReportData getSyncReport(final String path,
+                                       final String token,
+                                       final int limit,
+                                       final boolean recurse)
+          throws WebdavException {
+    final InMemCollection col = store.getCollection(path);
+
+    if (col == null) {
+      return null;
+    }
+
+    final SynchReportData srd = new SynchReportData();
+
+    final long since = parseToken(token);
+    if (since < 0) {
+      srd.tokenValid = false;
+      return srd;
+    }
+
+    srd.tokenValid = true;
+    srd.items = new ArrayList<>();
+
+    addSyncItems(col, since, recurse, srd.items);
+
+    Collections.sort(srd.items);
+
+    if ((limit > 0) && (srd.items.size() > limit)) {
+      /* Items sharing a token must go in the same page */
+      int end = limit;
+      final String last = srd.items.get(end - 1).getToken();
+
+      while ((end < srd.items.size()) &&
+              last.equals(srd.items.get(end).getToken())) {
+        end++;
+      }
+
+      srd.truncated = end < srd.items.size();
+
+      if (srd.truncated) {
+        srd.token = syncTokenPrefix + last;
+      } else {
+        srd.token = getSyncToken(col);
+      }
+
+      srd.itemIterator = srd.items.subList(0, end).iterator();
+      srd.items = null;
+    } else {
+      srd.token = getSyncToken(col);
+    }
+
+    return srd;
+  }
+
+  /* ====================================================================
+   *                   Calendar conversion
+   * ==================================================================== */
+
+  @Override
+  public Calendar toCalendar(final CalDAVEvent<?> ev,
+                             final boolean incSchedMethod) throws WebdavException {
+    final int meth;
+
+    if (incSchedMethod) {
+      meth = ev.getScheduleMethod();
+    } else {
+      meth = ScheduleMethods.methodTypeNone;
+    }
+
+    return ((InMemEvent)ev).toCalendar(meth);
+  }
+
+  @Override
+  public IcalendarType toIcalendar(final CalDAVEvent<?> ev,
+                                   final boolean incSchedMethod,
+                                   final IcalendarType pattern)
+          throws WebdavException {
+    throw new WebdavException(HttpServletResponse.SC_NOT_IMPLEMENTED);
+  }
+
+  @Override
+  public String toJcal(final CalDAVEvent<?> ev,
+                       final boolean incSchedMethod) throws WebdavException {
+    throw new WebdavException(HttpServletResponse.SC_NOT_IMPLEMENTED);
+  }
+
+  @Override
+  public String toIcalString(final Calendar cal,
+                             final String contentType) throws WebdavException {
+    try {
+      final StringWriter sw = new StringWriter();
+
+      new CalendarOutputter(false).output(cal, sw);
+
+      return sw.toString();
+    } catch (final Throwable t) {
+      throw new WebdavException(t);
+    }
+  }
+
+  @Override
+  public void writeIcal(final Calendar cal,
+                        final Writer wtr,
+                        final String contentType) throws WebdavException {
+    try {
+      new CalendarOutputter(false).output(cal, wtr);
+    } catch (final Throwable t) {
+      throw new WebdavException(t);
+    }
+  }
+
+  @Override
+  public String writeCalendar(final Collection<CalDAVEvent<?>> evs,
+                              final MethodEmitted method,
+                              final XmlEmit xml,
+                              final Writer wtr,
+                              final String contentType) throws WebdavException {
+    try {
+      final PropertyList pl = new PropertyList();
+
+      pl.add(new ProdId(InMemEvent.prodId));
+      pl.add(Version.VERSION_2_0);
+
+      String meth = null;
+      if (method == MethodEmitted.publish) {
+        meth = "PUBLISH";
+      } else if ((method == MethodEmitted.eventMethod) &&
+              (evs.size() == 1)) {
+        meth = InMemIcalendar.methodName(
+                evs.iterator().next().getScheduleMethod());
+      }
+
+      if (meth != null) {
+        pl.add(new Method(meth));
+      }
+
+      /* Timezones are shared between events - emit each once */
+      final Map<String, Component> tzs = new LinkedHashMap<>();
+      final ComponentList comps = new ComponentList();
+
+      for (final CalDAVEvent<?> ev: evs) {
+        for (final Object o: ((InMemEvent)ev).getIcal().getComponents()) {
+          final Component c = (Component)o;
+
+          if (c instanceof VTimeZone) {
+            final Property tzid = c.getProperty(Property.TZID);
+            if (tzid != null) {
+              tzs.putIfAbsent(tzid.getValue(), c);
+            }
+            continue;
+          }
+
+          comps.add(c);
+        }
+      }
+
+      final ComponentList all = new ComponentList();
+      all.addAll(tzs.values());
+      all.addAll(comps);
+
+      final Calendar cal = new Calendar(pl, all);
+
+      if (xml != null) {
+        final CdataWriter cw = new CdataWriter(xml);
+        writeIcal(cal, cw, contentType);
+        cw.close();
+      } else {
+        writeIcal(cal, wtr, contentType);
+      }
+
+      return getDefaultContentType();
+    } catch (final WebdavException we) {
+      throw we;
+    } catch (final Throwable t) {
+      throw new WebdavException(t);
+    }
+  }
+
+  /* Each event is written as it is delivered. Only the ids of the
+     timezones already written are retained.
+   */
+  @Override
+  public String streamCalendar(final Iterator<CalDAVEvent<?>> evs,
+                               final MethodEmitted method,
+                               final Writer wtr,
+                               final String contentType)
+          throws WebdavException {
+    if ((method == MethodEmitted.eventMethod) ||
+            ((contentType != null) &&
+                     !contentType.equals(getDefaultContentType()))) {
+      return SysIntf.super.streamCalendar(evs, method, wtr, contentType);
+    }
+
+    try {
+      final FoldingWriter fw = new FoldingWriter(wtr);
+
+      fw.write("BEGIN:VCALENDAR\r\n");
+      fw.write(new ProdId(InMemEvent.prodId).toString());
+      fw.write(Version.VERSION_2_0.toString());
+
+      if (method == MethodEmitted.publish) {
+        fw.write(new Method("PUBLISH").toString());
+      }
+
+      final Set<String> tzids = new HashSet<>();
+
+      while (evs.hasNext()) {
+        final CalDAVEvent<?> ev = evs.next();
+
+        for (final Object o: ((InMemEvent)ev).getIcal().getComponents()) {
+          final Component c = (Component)o;
+
+          if (c instanceof VTimeZone) {
+            final Property tzid = c.getProperty(Property.TZID);
+            if ((tzid == null) || !tzids.add(tzid.getValue())) {
+              continue;
+            }
+          }
+
+          fw.write(c.toString());
+        }
+      }
+
+      fw.write("END:VCALENDAR\r\n");
+      fw.flush();
+
+      return getDefaultContentType();
+    } catch (final Throwable t) {
+      throw new WebdavException(t);
+    }
+  }
+
+  @Override
+  public SysiIcalendar fromIcal(final CalDAVCollection<?> col,
+                                final Reader rdr,
+                                final String contentType,
+                                final IcalResultType rtype,
+                                final boolean mergeAttendees)
+          throws WebdavException {
+    final Calendar ical;
+
+    try {
+      ical = new CalendarBuilder().build(rdr);
+    } catch (final Throwable t) {
+      if (debug()) {
+        error(t);
+      }
+      throw new WebdavForbidden(CaldavTags.validCalendarData,
+                                t.getMessage());
+    }
+
+    final InMemIcalendar sical = new InMemIcalendar(ical);
+
+    /* Group the components by uid - overrides go with their master */
+    final Map<String, ComponentList> byUid = new LinkedHashMap<>();
+    final Map<String, Integer> entityTypes = new HashMap<>();
+    final List<Component> tzcomps = new ArrayList<>();
+
+    for (final Object o: ical.getComponents()) {
+      final Component c = (Component)o;
+
+      if (c instanceof VTimeZone) {
+        tzcomps.add(c);
+        sical.addTimeZone(new TimeZone((VTimeZone)c));
+        continue;
+      }
+
+      final int etype = entityType(c.getName());
+      if (etype < 0) {
+        continue;
+      }
+
+      final Property uidp = c.getProperty(Property.UID);
+      if (uidp == null) {
+        throw new WebdavForbidden(CaldavTags.validCalendarObjectResource,
+                                  "Missing uid");
+      }
+
+      byUid.computeIfAbsent(uidp.getValue(), k -> new ComponentList())
+           .add(c);
+      entityTypes.put(uidp.getValue(), etype);
+    }
+
+    if (rtype == IcalResultType.TimeZone) {
+      return sical;
+    }
+
+    if ((rtype == IcalResultType.OneComponent) && (byUid.size() != 1)) {
+      throw new WebdavForbidden(CaldavTags.validCalendarObjectResource,
+                                "Expected exactly one calendar object");
+    }
+
+    for (final String uid: byUid.keySet()) {
+      final ComponentList comps = new ComponentList();
+      comps.addAll(tzcomps);
+      comps.addAll(byUid.get(uid));
+
+      final PropertyList pl = new PropertyList();
+      pl.add(new ProdId(InMemEvent.prodId));
+      pl.add(Version.VERSION_2_0);
+
+      final InMemEvent ev = new InMemEvent(new Calendar(pl, comps),
+                                           entityTypes.get(uid));
+
+      ev.setOwner(principal);
+
+      final String meth = sical.getMethod();
+      if (meth != null) {
+        ev.setScheduleMethod(sical.getMethodType(meth));
+      }
+
+      InMemEvent existing = null;
+      if (col != null) {
+        ev.setParentPath(col.getPath());
+        existing = store.findByUid(col.getPath(), uid);
+      }
+
+      if (existing == null) {
+        ev.setNew(true);
+      } else {
+        ev.setNew(false);
+        ev.setName(existing.getName());
+        ev.setStoredState(existing);
+      }
+
+      sical.addEntity(ev);
+    }
+
+    return sical;
+  }
+
+  @Override
+  public SysiIcalendar fromIcal(final CalDAVCollection<?> col,
+                                final IcalendarType ical,
+                                final IcalResultType rtype)
+          throws WebdavException {
+    throw new WebdavException(HttpServletResponse.SC_NOT_IMPLEMENTED);
+  }
+
+  @Override
+  public String toStringTzCalendar(final String tzid) throws WebdavException {
+    final TimeZone tz = TimeZoneRegistryFactory.getInstance()
+                                               .createRegistry()
+                                               .getTimeZone(tzid);
+
+    if (tz == null) {
+      return null;
+    }
+
+    final PropertyList pl = new PropertyList();
+    pl.add(new ProdId(InMemEvent.prodId));
+    pl.add(Version.VERSION_2_0);
+
+    final ComponentList comps = new ComponentList();
+    comps.add(tz.getVTimeZone());
+
+    return toIcalString(new Calendar(pl, comps), getDefaultContentType());
+  }
+
+  @Override
+  public String tzidFromTzdef(final String val) throws WebdavException {
+    try {
+      final Calendar cal = new CalendarBuilder().build(new StringReader(val));
+      final Component vtz = cal.getComponent(Component.VTIMEZONE);
+
+      if (vtz == null) {
+        return null;
+      }
+
+      return vtz.getProperty(Property.TZID).getValue();
+    } catch (final Throwable t) {
+      throw new WebdavForbidden(CaldavTags.validCalendarData,
+                                t.getMessage());
+    }
+  }
+
+  @Override
+  public boolean validateAlarm(final String val) {
+    return true;
+  }
+
+  @Override
+  public void rollback() {
+    // Nothing is transactional
+  }
+
+  /* The store is shared and thread safe so a worker need only carry
+     the principal and url handling of this session.
+   */
+  @Override
+  public void setFreeBusyCache(final FreeBusyCache val) {
+    freeBusyCache = val;
+  }
+
+  @Override
+  public SysIntf newWorker() {
+    final InMemSysIntf worker = new InMemSysIntf();
+
+    worker.urlHandler = urlHandler;
+    worker.principal = principal;
+    worker.freeBusyCache = freeBusyCache;
+
+    return worker;
+  }
+
+  @Override
+  public void close() {
+  }
+
+  /* ====================================================================
+   *                   Private methods
+   * ==================================================================== */
+
+  private void copyCollection(final InMemCollection src,
+                              final String destPath) {
+    store.addCollection(src.copy(destPath));
+
+    for (final InMemEvent ev: store.getEvents(src.getPath())) {
+      store.putEvent(ev.copy(ev.getName(), destPath), true);
+    }
+
+    for (final InMemCollection c: store.getChildren(src.getPath())) {
+      copyCollection(c, destPath + "/" + c.getName());
+    }
+  }
+
+  private void addSyncItems(final InMemCollection col,
+                            final long since,
+                            final boolean recurse,
+                            final List<SynchReportData.SynchReportDataItem> items)
+          throws WebdavException {
+    final String path = col.getPath();
+
+    if (col.entitiesAllowed()) {
+      for (final InMemEvent ev: store.getEventChanges(path, since)) {
+        if ((since == 0) && ev.getDeleted()) {
+          // Initial sync - no deletions
+          continue;
+        }
+
+        items.add(new SynchReportData.SynchReportDataItem(
+                path, ev, formatToken(ev.getChangeSeq())));
+      }
+    } else {
+      for (final InMemResource r: store.getResourceChanges(path, since)) {
+        if ((since == 0) && r.getDeleted()) {
+          continue;
+        }
+
+        items.add(new SynchReportData.SynchReportDataItem(
+                path, r, formatToken(r.getChangeSeq())));
+      }
+    }
+
+    if (!recurse) {
+      return;
+    }
+
+    for (final InMemCollection c: store.getChildren(path)) {
+      if (c.getChangeSeq() <= since) {
+        continue;
+      }
+
+      items.add(new SynchReportData.SynchReportDataItem(
+              path, c, formatToken(c.getChangeSeq()),
+              allowsSyncReport(c)));
+
+      addSyncItems(c, since, true, items);
+    }
+  }
+
+  /* Zero padded so that string and numeric order agree */
+  private static String formatToken(final long seq) {
+    return String.format("%019d", seq);
+  }
+
+  /* Return -1 for an invalid token, 0 for none */
+  private long parseToken(final String token) {
+    if (token == null) {
+      return 0;
+    }
+
+    String t = token;
+
+    if (t.startsWith(syncTokenPrefix)) {
+      t = t.substring(syncTokenPrefix.length());
+    }
+
+    try {
+      final long seq = Long.parseLong(t);
+
+      if ((seq < 0) || (seq > store.currentSeq())) {
+        return -1;
+      }
+
+      return seq;
+    } catch (final NumberFormatException nfe) {
+      return -1;
+    }
+  }
+
+  private static int entityType(final String compName) {
+    if (Component.VEVENT.equals(compName)) {
+      return IcalDefs.entityTypeEvent;
+    }
+
+    if (Component.VTODO.equals(compName)) {
+      return IcalDefs.entityTypeTodo;
+    }
+
+    if (Component.VJOURNAL.equals(compName)) {
+      return IcalDefs.entityTypeJournal;
+    }
+
+    if (Component.VFREEBUSY.equals(compName)) {
+      return IcalDefs.entityTypeFreeAndBusy;
+    }
+
+    return -1;
+  }
+
+  private InMemEvent freeBusyFor(final AccessPrincipal p,
+                                 final TimeRange tr) throws WebdavException {
+    final InMemCollection home =
+            store.getCollection(InMemStore.homePath(p.getAccount()));
+
+    if (home == null) {
+      return makeFreeBusy(tr, new PeriodList());
+    }
+
+    return makeFreeBusy(tr, busy(home, Integer.MAX_VALUE, tr));
+  }
+
+  /* Busy time comes through the shared cache if we were given one */
+  private PeriodList busy(final InMemCollection col,
+                          final int depth,
+                          final TimeRange tr) throws WebdavException {
+    final long rs;
+    final long re;
+
+    if (tr == null) {
+      rs = TimeRangeEngine.unboundedStart;
+      re = TimeRangeEngine.unboundedEnd;
+    } else {
+      rs = tr.getStartMillis();
+      re = tr.getEndMillis();
+    }
+
+    final FreeBusyCache.Loader loader =
+            (s, e) -> {
+              final PeriodList pl = new PeriodList();
+              final DateTime ws;
+              if (s == TimeRangeEngine.unboundedStart) {
+                ws = null;
+              } else {
+                ws = utc(s);
+              }
+
+              final DateTime we;
+              if (e == TimeRangeEngine.unboundedEnd) {
+                we = null;
+              } else {
+                we = utc(e);
+              }
+
+              addBusy(col, depth, new TimeRange(ws, we), pl);
+
+              final BusyPeriods.Builder b = BusyPeriods.builder();
+
+              for (final Object o: pl) {
+                final Period per = (Period)o;
+
+                b.add(per.getStart().getTime(), per.getEnd().getTime(),
+                      BusyPeriods.fbtypeBusy);
+              }
+
+              return b.build();
+            };
+
+    final BusyPeriods bp;
+
+    if (freeBusyCache == null) {
+      bp = loader.load(rs, re).clip(rs, re);
+    } else {
+      bp = freeBusyCache.getBusy(this, col.getPath(), depth, rs, re,
+                                 loader);
+    }
+
+    final PeriodList busy = new PeriodList();
+
+    for (int i = 0; i < bp.size(); i++) {
+      busy.add(new Period(utc(bp.getStart(i)), utc(bp.getEnd(i))));
+    }
+
+    return busy;
+  }
+
+  /* DATE and floating values are in the calendar-timezone of the
+     collection - null if it has none.
+   */
+  private java.util.TimeZone calendarTimezone(final CalDAVCollection<?> col) {
+    final String spec = col.getTimezone();
+
+    if (spec == null) {
+      return null;
+    }
+
+    try {
+      final Calendar cal = new CalendarBuilder().build(new StringReader(spec));
+      final Component vtz = cal.getComponent(Component.VTIMEZONE);
+
+      if (vtz == null) {
+        return null;
+      }
+
+      return new TimeZone((VTimeZone)vtz);
+    } catch (final Throwable t) {
+      warn("Bad calendar-timezone for " + col.getPath());
+      return null;
+    }
+  }
+
+  private static DateTime utc(final long val) {
+    final DateTime dt = new DateTime(val);
+    dt.setUtc(true);
+
+    return dt;
+  }
+
+  private void addBusy(final InMemCollection col,
+                       final int depth,
+                       final TimeRange tr,
+                       final PeriodList busy) {
+    if (col.getCalType() == CalDAVCollection.calTypeCalendarCollection) {
+      if (!col.getAffectsFreeBusy()) {
+        return;
+      }
+
+      final java.util.TimeZone tz = calendarTimezone(col);
+
+      for (final InMemEvent ev: store.getEvents(col.getPath())) {
+        if (ev.getEntityType() != IcalDefs.entityTypeEvent) {
+          continue;
+        }
+
+        FreeBusyQuery.addBusy(ev.getIcal(), tr, tz, busy);
+      }
+
+      return;
+    }
+
+    if ((col.getCalType() != CalDAVCollection.calTypeCollection) ||
+            (depth <= 0)) {
+      return;
+    }
+
+    for (final InMemCollection c: store.getChildren(col.getPath())) {
+      addBusy(c, depth - 1, tr, busy);
+    }
+  }
+
+  private InMemEvent makeFreeBusy(final TimeRange tr,
+                                  final PeriodList busy) {
+    final VFreeBusy vfb = new VFreeBusy(rangeStart(tr), rangeEnd(tr));
+
+    if (!busy.isEmpty()) {
+      vfb.getProperties().add(new FreeBusy(busy.normalise()));
+    }
+
+    final PropertyList pl = new PropertyList();
+    pl.add(new ProdId(InMemEvent.prodId));
+    pl.add(Version.VERSION_2_0);
+
+    final ComponentList comps = new ComponentList();
+    comps.add(vfb);
+
+    final InMemEvent ev = new InMemEvent(new Calendar(pl, comps),
+                                         IcalDefs.entityTypeFreeAndBusy);
+    ev.setOwner(principal);
+
+    return ev;
+  }
+
+  private static DateTime rangeStart(final TimeRange tr) {
+    if ((tr == null) || (tr.getStart() == null)) {
+      return new DateTime(0);
+    }
+
+    return tr.getStart();
+  }
+
+  private static DateTime rangeEnd(final TimeRange tr) {
+    if ((tr == null) || (tr.getEnd() == null)) {
+      // Far future
+      return new DateTime(253402300799000L);
+    }
+
+    return tr.getEnd();
+  }
+
+  private static DateTime dateTime(final Property p) {
+    if (p == null) {
+      return null;
+    }
+
+    try {
+      return new DateTime(p.getValue());
+    } catch (final Throwable t) {
+      return null;
+    }
+  }
+
+  /* ====================================================================
+   *                   Logged methods
+   * ==================================================================== */
+
+  private final BwLogger logger = new BwLogger();
+
+  @Override
+  public BwLogger getLogger() {
+    if ((logger.getLoggedClass() == null) && (logger.getLoggedName() == null)) {
+      logger.setLoggedClass(getClass());
+    }
+
+    return logger;
+  }
+}
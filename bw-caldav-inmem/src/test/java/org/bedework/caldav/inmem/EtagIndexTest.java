@@ -0,0 +1,157 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.inmem;
+
+import org.bedework.caldav.server.CalDAVCollection;
+import org.bedework.caldav.server.cache.EtagIndex;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+/** Tests for the shared entity tag index, using the in-memory system
+ * for collection tokens and tags.
+ *
+ * @author douglm
+ */
+public class EtagIndexTest {
+  private static final String account = "etuser";
+
+  private static final String name = "etuser-0-1.ics";
+
+  private final InMemStore store = InMemStore.getStore();
+
+  private InMemSeeder seeder;
+
+  private InMemSysIntf sysi;
+
+  private String calPath;
+
+  private CalDAVCollection<?> col;
+
+  private EtagIndex index;
+
+  @Before
+  public void setUp() {
+    store.reset();
+
+    seeder = new InMemSeeder(store);
+    calPath = seeder.seed(account, 1, 3) + "/cal0";
+    sysi = new InMemSysIntf();
+    col = sysi.getCollection(calPath);
+    index = new EtagIndex();
+  }
+
+  @Test
+  public void testLoadAndHit() throws Throwable {
+    final String etag = store.getEvent(calPath, name).getEtag();
+
+    assertEquals(etag, index.getEtag(sysi, col, name));
+    assertEquals(1, index.getLoads());
+
+    assertEquals(etag, index.getEtag(sysi, col, name));
+    assertNull(index.getEtag(sysi, col, "nosuch.ics"));
+
+    assertEquals(1, index.getLoads());
+    assertEquals(2, index.getHits());
+  }
+
+  @Test
+  public void testChangeElsewhere() throws Throwable {
+    final String before = index.getEtag(sysi, col, name);
+
+    // Not reported to the index - seen through the token
+    update();
+
+    final String after = index.getEtag(sysi, col, name);
+
+    assertNotEquals(before, after);
+    assertEquals(store.getEvent(calPath, name).getEtag(), after);
+    assertEquals(2, index.getLoads());
+  }
+
+  @Test
+  public void testChangeHere() throws Throwable {
+    index.getEtag(sysi, col, name);
+
+    final String before = sysi.getSyncToken(col);
+    update();
+    final String after = sysi.getSyncToken(col);
+    final String etag = store.getEvent(calPath, name).getEtag();
+
+    index.changed(sysi, calPath, before, after, name, etag);
+
+    // Updated in place - no reload
+    assertEquals(etag, index.getEtag(sysi, col, name));
+    assertEquals(1, index.getLoads());
+
+    // Deleted
+    final String beforeDelete = after;
+    sysi.deleteEvent(store.getEvent(calPath, name), false);
+
+    index.changed(sysi, calPath, beforeDelete, sysi.getSyncToken(col),
+                  name, null);
+
+    assertNull(index.getEtag(sysi, col, name));
+    assertEquals(1, index.getLoads());
+  }
+
+  @Test
+  public void testStaleChange() throws Throwable {
+    index.getEtag(sysi, col, name);
+
+    // The entry was not current before the change
+    index.changed(sysi, calPath, "data:,stale", sysi.getSyncToken(col),
+                  name, "\"x\"");
+
+    assertEquals(0, index.getSize());
+  }
+
+  @Test
+  public void testInvalidate() throws Throwable {
+    index.getEtag(sysi, col, name);
+    assertEquals(1, index.getSize());
+
+    index.invalidate(calPath + "/" + name);
+    assertEquals(0, index.getSize());
+
+    index.getEtag(sysi, col, name);
+    index.invalidate(store.getCollection(calPath).getParentPath());
+    assertEquals(0, index.getSize());
+  }
+
+  @Test
+  public void testDisabled() throws Throwable {
+    index.setMaxSize(0);
+
+    assertNull(index.getEtag(sysi, col, name));
+    assertEquals(0, index.getSize());
+  }
+
+  /* Replace the event directly in the store */
+  private void update() {
+    final InMemEvent ev = seeder.makeEvent(account, 0, 1);
+
+    ev.setParentPath(calPath);
+    store.putEvent(ev, true);
+  }
+}
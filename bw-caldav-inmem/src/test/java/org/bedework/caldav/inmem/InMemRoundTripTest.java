@@ -0,0 +1,178 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.inmem;
+
+import org.bedework.caldav.server.CalDAVCollection;
+import org.bedework.caldav.server.CalDAVEvent;
+import org.bedework.caldav.server.filter.FilterHandler;
+import org.bedework.caldav.server.sysinterface.SysIntf.SynchReportData;
+import org.bedework.caldav.server.sysinterface.SysIntf.SynchReportData.SynchReportDataItem;
+import org.bedework.caldav.util.filter.parse.Filters;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/** Calendar query and sync reports against the in-memory system,
+ * going through the same calls as the REPORT methods.
+ *
+ * @author Mike Douglass
+ */
+public class InMemRoundTripTest {
+  private static final String account = "rtuser";
+
+  private static final String rangeFilter =
+          "<C:filter xmlns:C=\"urn:ietf:params:xml:ns:caldav\">" +
+          " <C:comp-filter name=\"VCALENDAR\">" +
+          "  <C:comp-filter name=\"VEVENT\">" +
+          "   <C:time-range start=\"20200102T000000Z\"" +
+          "                 end=\"20200104T000000Z\"/>" +
+          "  </C:comp-filter>" +
+          " </C:comp-filter>" +
+          "</C:filter>";
+
+  private final InMemStore store = InMemStore.getStore();
+
+  private InMemSeeder seeder;
+
+  private InMemSysIntf sysi;
+
+  private String calPath;
+
+  @Before
+  public void setUp() {
+    store.reset();
+
+    // One event a day at 08:00 from 2020-01-01
+    seeder = new InMemSeeder(store).spreadDays(5);
+    calPath = seeder.seed(account, 1, 5) + "/cal0";
+    sysi = new InMemSysIntf();
+  }
+
+  @Test
+  public void testCalendarQuery() throws Throwable {
+    final FilterHandler fh = new FilterHandler(Filters.parse(rangeFilter));
+    final Iterator<CalDAVEvent<?>> it =
+            fh.queryIterator(calPath, sysi, null, null);
+
+    assertNotNull(it);
+
+    final Set<String> names = new TreeSet<>();
+
+    while (it.hasNext()) {
+      names.add(it.next().getName());
+    }
+
+    assertEquals("[rtuser-0-1.ics, rtuser-0-2.ics]", names.toString());
+  }
+
+  @Test
+  public void testSyncReport() throws Throwable {
+    final CalDAVCollection<?> col = sysi.getCollection(calPath);
+
+    // Initial sync returns everything and the current token
+    SynchReportData srd = sysi.getSyncReport(calPath, null, -1, false);
+
+    assertTrue(srd.tokenValid);
+    assertEquals(5, names(srd).size());
+    assertEquals(sysi.getSyncToken(col), srd.token);
+
+    final String initial = srd.token;
+
+    // Add an event
+    final InMemEvent ev = seeder.makeEvent(account, 0, 10);
+    ev.setParentPath(calPath);
+    sysi.addEvent(ev, true, false);
+
+    srd = sysi.getSyncReport(calPath, initial, -1, false);
+
+    assertEquals("[rtuser-0-10.ics]", names(srd).toString());
+    assertNotEquals(initial, srd.token);
+
+    final String afterAdd = srd.token;
+
+    // Delete one - reported as deleted
+    sysi.deleteEvent(sysi.getEvent(col, "rtuser-0-3.ics"), false);
+
+    srd = sysi.getSyncReport(calPath, afterAdd, -1, false);
+
+    assertEquals("[rtuser-0-3.ics]", names(srd).toString());
+    assertTrue(srd.iterator().next().getEntity().getDeleted());
+
+    // Nothing since the last token
+    srd = sysi.getSyncReport(calPath, srd.token, -1, false);
+
+    assertTrue(names(srd).isEmpty());
+
+    // The initial sync no longer includes the deleted event
+    srd = sysi.getSyncReport(calPath, null, -1, false);
+
+    assertEquals(5, names(srd).size());
+    assertFalse(names(srd).contains("rtuser-0-3.ics"));
+  }
+
+  @Test
+  public void testSyncReportPaging() throws Throwable {
+    SynchReportData srd = sysi.getSyncReport(calPath, null, 2, false);
+
+    assertTrue(srd.truncated);
+
+    final Set<String> seen = new TreeSet<>(names(srd));
+    int pages = 1;
+
+    while (srd.truncated) {
+      srd = sysi.getSyncReport(calPath, srd.token, 2, false);
+      seen.addAll(names(srd));
+      pages++;
+    }
+
+    assertEquals(5, seen.size());
+    assertEquals(3, pages);
+    assertEquals(sysi.getSyncToken(sysi.getCollection(calPath)),
+                 srd.token);
+  }
+
+  @Test
+  public void testInvalidToken() throws Throwable {
+    final SynchReportData srd =
+            sysi.getSyncReport(calPath, "data:,not-a-token", -1, false);
+
+    assertFalse(srd.tokenValid);
+  }
+
+  private static Set<String> names(final SynchReportData srd)
+          throws Throwable {
+    final Set<String> res = new TreeSet<>();
+
+    for (final SynchReportDataItem item: srd) {
+      res.add(item.getEntity().getName());
+    }
+
+    return res;
+  }
+}
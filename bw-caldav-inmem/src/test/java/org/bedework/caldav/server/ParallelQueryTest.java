@@ -0,0 +1,217 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.server;
+
+import org.bedework.caldav.inmem.InMemProperties;
+import org.bedework.caldav.inmem.InMemSeeder;
+import org.bedework.caldav.inmem.InMemStore;
+import org.bedework.caldav.inmem.InMemSysIntf;
+import org.bedework.caldav.server.sysinterface.SysIntf;
+import org.bedework.caldav.util.filter.parse.Filters;
+import org.bedework.webdav.servlet.shared.WebdavException;
+import org.bedework.webdav.servlet.shared.WebdavNsIntf;
+import org.bedework.webdav.servlet.shared.WebdavNsNode;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/** Concurrent calendar queries over a number of collections against the
+ * in-memory system.
+ *
+ * @author Mike Douglass
+ */
+public class ParallelQueryTest {
+  private static final String account = "pquser";
+
+  /* More than one chunk per collection */
+  private static final int events = 120;
+
+  private static final String allEvents =
+          "<C:filter xmlns:C=\"urn:ietf:params:xml:ns:caldav\">" +
+          " <C:comp-filter name=\"VCALENDAR\">" +
+          "  <C:comp-filter name=\"VEVENT\"/>" +
+          " </C:comp-filter>" +
+          "</C:filter>";
+
+  private final InMemStore store = InMemStore.getStore();
+
+  private InMemProperties props;
+
+  private final AtomicInteger openWorkers = new AtomicInteger();
+
+  private CaldavBWIntf intf;
+
+  private String home;
+
+  /* Counts the workers open at any time */
+  private static class CountingSysIntf extends InMemSysIntf {
+    private final AtomicInteger open;
+    private final boolean worker;
+
+    CountingSysIntf(final AtomicInteger open,
+                    final boolean worker) {
+      this.open = open;
+      this.worker = worker;
+    }
+
+    @Override
+    public SysIntf newWorker() {
+      open.incrementAndGet();
+      return new CountingSysIntf(open, true);
+    }
+
+    @Override
+    public void close() {
+      if (worker) {
+        open.decrementAndGet();
+      }
+    }
+  }
+
+  @Before
+  public void setUp() {
+    store.reset();
+
+    home = new InMemSeeder(store).spreadDays(30).seed(account, 3, events);
+
+    intf = new CaldavBWIntf();
+    intf.sysi = new CountingSysIntf(openWorkers, false);
+
+    props = (InMemProperties)intf.sysi.getSystemProperties();
+    props.setQueryParallelism(2);
+  }
+
+  @After
+  public void tearDown() {
+    props.setQueryParallelism(null);
+  }
+
+  @Test(timeout = 10000)
+  public void testOrder() throws Throwable {
+    final List<String> names = query(intf, "cal2", "cal0", "cal1");
+
+    checkOrder(names, 2, 0, 1);
+    assertEquals(0, openWorkers.get());
+  }
+
+  @Test(timeout = 10000)
+  public void testBusyPool() throws Throwable {
+    final ThreadPoolExecutor pool = CaldavBWIntf.getQueryPool();
+    final int threads = pool.getMaximumPoolSize();
+    final CountDownLatch started = new CountDownLatch(threads);
+    final CountDownLatch release = new CountDownLatch(1);
+
+    try {
+      // Occupy every thread so that no query can start
+      for (int i = 0; i < threads; i++) {
+        pool.submit(() -> {
+          started.countDown();
+          release.await();
+          return null;
+        });
+      }
+
+      started.await();
+
+      final List<String> names = query(intf, "cal1", "cal2", "cal0");
+
+      // Each collection was queried on this thread instead
+      checkOrder(names, 1, 2, 0);
+      assertEquals(0, openWorkers.get());
+    } finally {
+      release.countDown();
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testConsumerFailure() throws Throwable {
+    final List<WebdavNsNode> cols = collections("cal0", "cal1", "cal2");
+    final AtomicInteger seen = new AtomicInteger();
+
+    try {
+      intf.query(cols, null, null, Filters.parse(allEvents), null,
+                 node -> {
+                   if (seen.incrementAndGet() == events + 1) {
+                     throw new WebdavException("Consumer failed");
+                   }
+                 },
+                 null);
+      fail("Exception expected");
+    } catch (final WebdavException we) {
+      assertEquals("Consumer failed", we.getMessage());
+    }
+
+    // Outstanding queries were stopped and their workers closed
+    assertEquals(events + 1, seen.get());
+    assertEquals(0, openWorkers.get());
+  }
+
+  private List<String> query(final CaldavBWIntf intf,
+                             final String... cals) throws Throwable {
+    final List<String> names = new ArrayList<>();
+
+    intf.query(collections(cals), null, null, Filters.parse(allEvents),
+               node -> {
+                 final String uri = node.getUri();
+                 names.add(uri.substring(uri.lastIndexOf('/') + 1));
+               });
+
+    return names;
+  }
+
+  private List<WebdavNsNode> collections(final String... cals)
+          throws Throwable {
+    final List<WebdavNsNode> nodes = new ArrayList<>();
+
+    for (final String cal: cals) {
+      nodes.add(intf.getNode(home + "/" + cal,
+                             WebdavNsIntf.existanceMust,
+                             WebdavNsIntf.nodeTypeCollection,
+                             false));
+    }
+
+    return nodes;
+  }
+
+  /* All the events of each calendar in the given calendar order.
+     Names are account-cal-event.ics
+   */
+  private static void checkOrder(final List<String> names,
+                                 final int... cals) {
+    assertEquals(cals.length * events, names.size());
+
+    for (int i = 0; i < names.size(); i++) {
+      final String prefix = account + "-" + cals[i / events] + "-";
+
+      assertTrue(names.get(i) + " out of order",
+                 names.get(i).startsWith(prefix));
+    }
+  }
+}
@@ -22,6 +22,8 @@ import org.bedework.util.xml.XmlEmit;
 import org.bedework.webdav.servlet.shared.WdEntity;
 import org.bedework.webdav.servlet.shared.WebdavException;
 
+import net.fortuna.ical4j.model.Calendar;
+
 import java.util.Set;
 
 import javax.xml.namespace.QName;
@@ -110,6 +112,16 @@ public abstract class CalDAVEvent <T> extends WdEntity<T> {
    */
   public abstract void setOriginator(String val) throws WebdavException;
 
+  /** Implementations which hold the originator set when it is
+   * validated may return it here.
+   *
+   * @return the event's originator or null if not available
+   * @throws WebdavException
+   */
+  public String getOriginator() throws WebdavException {
+    return null;
+  }
+
   /**
    * @param val
    * @throws WebdavException
@@ -173,4 +185,26 @@ public abstract class CalDAVEvent <T> extends WdEntity<T> {
    */
   public abstract String toIcalString(int methodType,
                                       String contentType) throws WebdavException;
+
+  /** Implementations which hold the entity in ical4j form may return it
+   * here. It allows filters to be evaluated without converting the
+   * entity. The result must not be modified.
+   *
+   * @return Calendar or null if not available
+   * @throws WebdavException
+   */
+  public Calendar getIcal() throws WebdavException {
+    return null;
+  }
+
+  /** Implementations which store the length of the entity in its
+   * default representation may return it here. This allows
+   * getcontentlength to be reported without rendering the entity.
+   *
+   * @return length in bytes or -1 if not known
+   * @throws WebdavException
+   */
+  public long getContentLength() throws WebdavException {
+    return -1;
+  }
 }
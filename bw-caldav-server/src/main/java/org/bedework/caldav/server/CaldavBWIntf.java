@@ -24,9 +24,18 @@ import org.bedework.access.AccessXmlUtil.AccessXmlCb;
 import org.bedework.access.Ace;
 import org.bedework.access.AceWho;
 import org.bedework.access.Acl;
+import org.bedework.access.CurrentAccess;
 import org.bedework.access.PrivilegeDefs;
 import org.bedework.access.WhoDefs;
 import org.bedework.caldav.server.CaldavBwNode.PropertyTagXrdEntry;
+import org.bedework.caldav.server.cache.CollectionCache;
+import org.bedework.caldav.server.cache.CollectionCacheMBean;
+import org.bedework.caldav.server.cache.DomainKeyCache;
+import org.bedework.caldav.server.cache.DomainKeyCacheMBean;
+import org.bedework.caldav.server.cache.EtagIndex;
+import org.bedework.caldav.server.cache.EtagIndexMBean;
+import org.bedework.caldav.server.cache.FreeBusyCache;
+import org.bedework.caldav.server.cache.FreeBusyCacheMBean;
 import org.bedework.caldav.server.calquery.CalData;
 import org.bedework.caldav.server.calquery.FreeBusyQuery;
 import org.bedework.caldav.server.filter.FilterHandler;
@@ -37,12 +46,18 @@ import org.bedework.caldav.server.get.ServerInfoGetHandler;
 import org.bedework.caldav.server.get.WebcalGetHandler;
 import org.bedework.caldav.server.soap.synch.SynchConnections;
 import org.bedework.caldav.server.soap.synch.SynchConnectionsMBean;
+import org.bedework.caldav.server.stats.CaldavStats;
+import org.bedework.caldav.server.stats.CaldavStatsMBean;
+import org.bedework.caldav.server.sync.SyncJournal;
+import org.bedework.caldav.server.sync.SyncJournalMBean;
 import org.bedework.caldav.server.sysinterface.CalPrincipalInfo;
 import org.bedework.caldav.server.sysinterface.RetrievalMode;
 import org.bedework.caldav.server.sysinterface.SysIntf;
 import org.bedework.caldav.server.sysinterface.SysIntf.IcalResultType;
 import org.bedework.caldav.server.sysinterface.SysIntf.SynchReportData;
 import org.bedework.caldav.server.sysinterface.SysIntf.SynchReportData.SynchReportDataItem;
+import org.bedework.caldav.util.CountingWriter;
+import org.bedework.caldav.util.JaxbContexts;
 import org.bedework.util.jmx.AnnotatedMBean;
 import org.bedework.util.jmx.ManagementContext;
 import org.bedework.util.misc.Util;
@@ -101,12 +116,21 @@ import java.io.Reader;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 
 import javax.management.ObjectName;
@@ -114,7 +138,6 @@ import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.Marshaller;
 import javax.xml.namespace.QName;
 
@@ -150,6 +173,9 @@ public class CaldavBWIntf extends WebdavNsIntf {
 
   SysIntf sysi;
 
+  /* Collections and entities resolved during this request */
+  private final RequestCache cache = new RequestCache();
+
   /* true if this is a CalWS server */
   private boolean calWs;
 
@@ -189,6 +215,31 @@ public class CaldavBWIntf extends WebdavNsIntf {
   private static ManagementContext managementContext;
   private static SynchConnections synchConn;
 
+  /* Collection metadata shared by all requests */
+  private static final CollectionCache collectionCache =
+          new CollectionCache();
+
+  /* Statistics shared by all requests */
+  private static final CaldavStats stats = new CaldavStats();
+
+  /* Changes made through this server - for sync reports */
+  private static final SyncJournal syncJournal = new SyncJournal();
+
+  /* Entity tags for conditional requests */
+  private static final EtagIndex etagIndex = new EtagIndex();
+
+  /* iSchedule domain keys */
+  private static final DomainKeyCache domainKeys = new DomainKeyCache();
+
+  /* Busy time */
+  private static final FreeBusyCache freeBusyCache = new FreeBusyCache();
+
+  /* Threads shared by all requests for concurrent collection queries
+     and free-busy lookups. Each request is limited by the
+     queryParallelism property.
+   */
+  private static ThreadPoolExecutor queryPool;
+
   /*
   static {
     try {
@@ -273,6 +324,24 @@ public class CaldavBWIntf extends WebdavNsIntf {
         synchConn = new SynchConnections();
         registerMbean(new ObjectName(synchConn.getServiceName()),
                       synchConn);
+
+        registerMbean(new ObjectName(CollectionCacheMBean.serviceName),
+                      collectionCache);
+
+        registerMbean(new ObjectName(CaldavStatsMBean.serviceName),
+                      stats);
+
+        registerMbean(new ObjectName(SyncJournalMBean.serviceName),
+                      syncJournal);
+
+        registerMbean(new ObjectName(EtagIndexMBean.serviceName),
+                      etagIndex);
+
+        registerMbean(new ObjectName(DomainKeyCacheMBean.serviceName),
+                      domainKeys);
+
+        registerMbean(new ObjectName(FreeBusyCacheMBean.serviceName),
+                      freeBusyCache);
       }
     } catch (final Throwable t) {
       t.printStackTrace();
@@ -298,7 +367,36 @@ public class CaldavBWIntf extends WebdavNsIntf {
         } catch (final Throwable ignored) {}
 
         managementContext = null;
+
+        if (queryPool != null) {
+          queryPool.shutdownNow();
+          queryPool = null;
+        }
+      }
+    }
+  }
+
+  static ThreadPoolExecutor getQueryPool() {
+    synchronized (registeredMBeans) {
+      if (queryPool == null) {
+        final int threads =
+                4 * Runtime.getRuntime().availableProcessors();
+        final AtomicInteger count = new AtomicInteger();
+
+        queryPool = new ThreadPoolExecutor(
+                threads, threads,
+                60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                r -> {
+                  final Thread t = new Thread(
+                          r, "caldav-query-" + count.incrementAndGet());
+                  t.setDaemon(true);
+                  return t;
+                });
+        queryPool.allowCoreThreadTimeOut(true);
       }
+
+      return queryPool;
     }
   }
 
@@ -330,11 +428,19 @@ public class CaldavBWIntf extends WebdavNsIntf {
 
       super.init(servlet, req, methods, dumpContent);
 
+      if ("PROPPATCH".equals(req.getMethod())) {
+        /* Properties are changed through the node, out of our sight,
+           so we cannot invalidate entries.
+         */
+        cache.setEnabled(false);
+      }
+
       namespacePrefix = WebdavUtils.getUrlPrefix(req);
       namespace = namespacePrefix + "/schema";
 
       account = sysi.init(req, account, false,
                           calWs, synchWs, notifyWs, socketWs, null);
+      sysi.setFreeBusyCache(freeBusyCache);
 
       accessUtil = new AccessUtil(namespacePrefix, xml,
                                   new CalDavAccessXmlCb(sysi));
@@ -385,6 +491,7 @@ public class CaldavBWIntf extends WebdavNsIntf {
 
       sysi.init(req, account, service,
                 calWs, synchWs, notifyWs, socketWs, opaqueData);
+      sysi.setFreeBusyCache(freeBusyCache);
 
       accessUtil = new AccessUtil(namespacePrefix, xml,
                                   new CalDavAccessXmlCb(sysi));
@@ -579,9 +686,51 @@ public class CaldavBWIntf extends WebdavNsIntf {
 
   @Override
   public void close() throws WebdavException {
+    if (debug()) {
+      debug("Request cache hits: " + cache.getHits() +
+                    " misses: " + cache.getMisses());
+    }
+
     sysi.close();
   }
 
+  /**
+   * @return number of collection and entity lookups in this request
+   *         satisfied without calling the SysIntf
+   */
+  public long getCacheHits() {
+    return cache.getHits();
+  }
+
+  /**
+   * @return number of collection and entity lookups in this request
+   *         passed to the SysIntf
+   */
+  public long getCacheMisses() {
+    return cache.getMisses();
+  }
+
+  /**
+   * @return statistics shared by all requests
+   */
+  public static CaldavStats getStats() {
+    return stats;
+  }
+
+  /**
+   * @return iSchedule domain keys shared by all requests
+   */
+  public static DomainKeyCache getDomainKeys() {
+    return domainKeys;
+  }
+
+  /**
+   * @return busy time shared by all requests
+   */
+  public static FreeBusyCache getFreeBusyCache() {
+    return freeBusyCache;
+  }
+
   @Override
   public WdSysIntf getSysIntf() {
     return sysi;
@@ -644,6 +793,103 @@ public class CaldavBWIntf extends WebdavNsIntf {
                       null, null, null);
   }
 
+  /** Fetch the entity nodes for a number of uris. The uris are grouped by
+   * parent collection so that each collection is resolved once and its
+   * entities are fetched with a single call.
+   *
+   * <p>Uris which cannot be resolved as an entity in a calendar
+   * collection are absent from the result. Callers should fall back to
+   * getNode for those to obtain the exact status.
+   *
+   * @param uris  unencoded, decoded uris - as returned by getUri
+   * @return map from uri to node
+   * @throws WebdavException on fatal error
+   */
+  public Map<String, WebdavNsNode> getEntityNodes(
+          final Collection<String> uris) throws WebdavException {
+    final Map<String, WebdavNsNode> res = new HashMap<>();
+
+    if (uris == null) {
+      return res;
+    }
+
+    try {
+      /* parent path -> (entity name -> uri) */
+      final Map<String, Map<String, String>> byParent = new HashMap<>();
+
+      for (final String u: uris) {
+        if ((u == null) || u.endsWith("/")) {
+          continue;
+        }
+
+        final String uri = normalizeUri(u);
+
+        if (!uri.startsWith("/") || sysi.isPrincipal(uri)) {
+          continue;
+        }
+
+        final SplitResult split = splitUri(uri);
+        if (!split.isOk() || (split.name == null)) {
+          continue;
+        }
+
+        byParent.computeIfAbsent(split.path, k -> new HashMap<>())
+                .put(split.name, u);
+      }
+
+      if (byParent.isEmpty()) {
+        return res;
+      }
+
+      final Map<String, CalDAVCollection<?>> cols =
+              findCollections(byParent.keySet());
+
+      /* Keyed by the requested path - the collection path may differ,
+         e.g. in a trailing slash.
+       */
+      for (final Map.Entry<String, CalDAVCollection<?>> ent:
+              cols.entrySet()) {
+        final CalDAVCollection<?> col = ent.getValue();
+        final int ctype = col.getCalType();
+        if ((ctype != CalDAVCollection.calTypeCalendarCollection) &&
+            (ctype != CalDAVCollection.calTypeInbox) &&
+            (ctype != CalDAVCollection.calTypeOutbox)) {
+          continue;
+        }
+
+        final Map<String, String> names = byParent.get(ent.getKey());
+        if (names == null) {
+          continue;
+        }
+
+        if (debug()) {
+          debug("find " + names.size() + " event(s) - cal=\"" +
+                        col.getPath() + "\"");
+        }
+
+        for (final CalDAVEvent<?> ev: sysi.getEvents(col, names.keySet())) {
+          final String uri = names.get(ev.getName());
+          if (uri == null) {
+            continue;
+          }
+
+          cache.putEntity(Util.buildPath(false, col.getPath(), "/",
+                                         ev.getName()), ev);
+
+          res.put(uri, new CaldavComponentNode(
+                  new CaldavURI(col, ev, ev.getName(), true, false),
+                  sysi));
+        }
+      }
+
+      return res;
+    } catch (final WebdavException we) {
+      throw we;
+    } catch (final Throwable t) {
+      throw new WebdavException(t);
+    }
+  }
+
   @Override
   public void putNode(final WebdavNsNode node) {
   }
@@ -682,7 +928,13 @@ public class CaldavBWIntf extends WebdavNsIntf {
             sendSchedulingMessage = false;
           }
 
+          final String before = syncToken(ev.getParentPath());
+
           sysi.deleteEvent(ev, sendSchedulingMessage);
+
+          invalidateCaches(node.getUri());
+          journal(ev.getParentPath(), before, ev, true);
+          return;
         } else {
           if (debug()) {
             debug("No event object available");
@@ -711,6 +963,8 @@ public class CaldavBWIntf extends WebdavNsIntf {
         }
         sysi.deleteCollection(col, sendSchedulingMessage);
       }
+
+      invalidate(node.getUri());
     } catch (final WebdavException we) {
       throw we;
     } catch (final Throwable t) {
@@ -775,7 +1029,15 @@ public class CaldavBWIntf extends WebdavNsIntf {
           throw new WebdavException("Unexpected return type");
         }
 
-        al.add(getNodeInt(Util.buildPath(false, uri, "/", name),
+        final String childPath = Util.buildPath(false, uri, "/", name);
+
+        if (ev != null) {
+          cache.putEntity(childPath, ev);
+        } else if (r == null) {
+          cache.putCollection(childPath, col);
+        }
+
+        al.add(getNodeInt(childPath,
                           WebdavNsIntf.existanceDoesExist,
                           nodeType,
                           false,
@@ -853,7 +1115,7 @@ public class CaldavBWIntf extends WebdavNsIntf {
           final String content = generateHtml(req, node);
           c.rdr = new CharArrayReader(content.toCharArray());
           c.contentType = "text/html";
-          c.contentLength = content.getBytes().length;
+          c.contentLength = CountingWriter.utf8Length(content);
 
           return c;
         }
@@ -1006,11 +1268,16 @@ public class CaldavBWIntf extends WebdavNsIntf {
        * containing freebusy information or an event or vtodo and possible overrides.
        */
 
+      final String before = syncToken(col.getPath());
+
       pcr.created = putEvent(req, resp, bwnode,
                              contentRdr,
                              contentTypePars[0],
                              ifHeaders);
 
+      invalidateCaches(node.getUri());
+      journal(col.getPath(), before, bwnode.getEvent(), false);
+
       return pcr;
     } catch (final WebdavException we) {
       throw we;
@@ -1072,6 +1339,8 @@ public class CaldavBWIntf extends WebdavNsIntf {
       } else {
         sysi.updateFile(r, true);
       }
+
+      invalidate(node.getUri());
       return pcr;
     } catch (final WebdavException we) {
       throw we;
@@ -1096,6 +1365,13 @@ public class CaldavBWIntf extends WebdavNsIntf {
             (CalDAVCollection<?>)bwnode.getCollection(true);
     boolean created = false;
 
+    stats.put();
+
+    if (preconditionFailed(bwnode, ifHeaders.ifEtag, ifStag)) {
+      stats.putEarlyReject();
+      throw new WebdavException(HttpServletResponse.SC_PRECONDITION_FAILED);
+    }
+
     final SysiIcalendar cal =
             sysi.fromIcal(col, contentRdr, contentType,
                           IcalResultType.OneComponent,
@@ -1145,6 +1421,7 @@ public class CaldavBWIntf extends WebdavNsIntf {
                    "prev=" + bwnode.getPrevEtagValue(true));
         }
         rollback();
+        stats.putLateReject();
         throw new WebdavException(HttpServletResponse.SC_PRECONDITION_FAILED);
       }
 
@@ -1155,6 +1432,7 @@ public class CaldavBWIntf extends WebdavNsIntf {
                    "prev=" + bwnode.getPrevStagValue());
         }
         rollback();
+        stats.putLateReject();
         throw new WebdavException(HttpServletResponse.SC_PRECONDITION_FAILED);
       }
 
@@ -1174,6 +1452,46 @@ public class CaldavBWIntf extends WebdavNsIntf {
     return created;
   }
 
+  /* Check the conditional headers against the stored entity before the
+   * body is parsed. Only the entity tags are needed so a client which
+   * lost a race doesn't pay for the parse, the attendee merge and the
+   * rollback. Uses the same comparisons as the checks made after parsing
+   * which remain in place.
+   */
+  private boolean preconditionFailed(final CaldavComponentNode bwnode,
+                                     final String ifEtag,
+                                     final String ifStag) throws WebdavException {
+    if ((ifEtag == null) && (ifStag == null)) {
+      return false;
+    }
+
+    bwnode.init(true);
+
+    if (!bwnode.getExists()) {
+      return false;
+    }
+
+    if ((ifEtag != null) &&
+        (!ifEtag.equals(bwnode.getPrevEtagValue(true)))) {
+      if (debug()) {
+        debug("putContent: early etag mismatch if=" + ifEtag +
+                 "prev=" + bwnode.getPrevEtagValue(true));
+      }
+      return true;
+    }
+
+    if ((ifStag != null) &&
+        (!ifStag.equals(bwnode.getPrevStagValue()))) {
+      if (debug()) {
+        debug("putContent: early stag mismatch if=" + ifStag +
+                 "prev=" + bwnode.getPrevStagValue());
+      }
+      return true;
+    }
+
+    return false;
+  }
+
   /**
    * @param resp http response
    * @param bwnode component node
@@ -1198,6 +1516,13 @@ public class CaldavBWIntf extends WebdavNsIntf {
             (CalDAVCollection<?>)bwnode.getCollection(true); // deref
     boolean created = false;
 
+    stats.put();
+
+    if (preconditionFailed(bwnode, ifEtag, ifStag)) {
+      stats.putEarlyReject();
+      throw new WebdavException(HttpServletResponse.SC_PRECONDITION_FAILED);
+    }
+
     final SysiIcalendar cal = sysi.fromIcal(col, ical,
                                             IcalResultType.OneComponent);
     if (cal.getMethod() != null) {
@@ -1245,6 +1570,7 @@ public class CaldavBWIntf extends WebdavNsIntf {
                    "prev=" + bwnode.getPrevEtagValue(true));
         }
         rollback();
+        stats.putLateReject();
         throw new WebdavException(HttpServletResponse.SC_PRECONDITION_FAILED);
       }
 
@@ -1255,6 +1581,7 @@ public class CaldavBWIntf extends WebdavNsIntf {
                    "prev=" + bwnode.getPrevStagValue());
         }
         rollback();
+        stats.putLateReject();
         throw new WebdavException(HttpServletResponse.SC_PRECONDITION_FAILED);
       }
 
@@ -1264,6 +1591,8 @@ public class CaldavBWIntf extends WebdavNsIntf {
       sysi.updateEvent(ev);
     }
 
+    invalidate(bwnode.getUri());
+
     if (ev.getOrganizerSchedulingObject() ||
         ev.getAttendeeSchedulingObject()) {
       resp.setHeader("Schedule-Tag", ev.getScheduleTag());
@@ -1327,7 +1656,7 @@ public class CaldavBWIntf extends WebdavNsIntf {
               (CalDAVCollection<?>)bwnode.getCollection(false); // No deref?
 
       final CalDAVCollection<?> parent =
-              getSysi().getCollection(newCol.getParentPath());
+              findCollection(newCol.getParentPath());
       if (parent.getCalType() == CalDAVCollection.calTypeCalendarCollection) {
         throw new WebdavForbidden(CaldavTags.calendarCollectionLocationOk);
       }
@@ -1337,6 +1666,7 @@ public class CaldavBWIntf extends WebdavNsIntf {
       }
 
       resp.setStatus(sysi.makeCollection(newCol));
+      invalidate(newCol.getPath());
     } catch (final WebdavException we) {
       throw we;
     } catch (final Throwable t) {
@@ -1352,31 +1682,36 @@ public class CaldavBWIntf extends WebdavNsIntf {
                        final boolean copy,
                        final boolean overwrite,
                        final int depth) throws WebdavException {
-    if (from instanceof CaldavCalNode) {
-      copyMoveCollection(resp, (CaldavCalNode)from,
-                         to, copy, overwrite, depth);
+    try {
+      if (from instanceof CaldavCalNode) {
+        copyMoveCollection(resp, (CaldavCalNode)from,
+                           to, copy, overwrite, depth);
 
-      return;
-    }
+        return;
+      }
 
-    // Copy entity or resource
-    if ((depth != Headers.depthNone) && (depth != 0)) {
-      throw new WebdavBadRequest();
-    }
+      // Copy entity or resource
+      if ((depth != Headers.depthNone) && (depth != 0)) {
+        throw new WebdavBadRequest();
+      }
 
-    if (from instanceof CaldavComponentNode) {
-      copyMoveComponent(resp, (CaldavComponentNode)from,
-                        to, copy, overwrite);
-      return;
-    }
+      if (from instanceof CaldavComponentNode) {
+        copyMoveComponent(resp, (CaldavComponentNode)from,
+                          to, copy, overwrite);
+        return;
+      }
 
-    if (from instanceof CaldavResourceNode) {
-      copyMoveResource(resp, (CaldavResourceNode)from,
-                       to, copy, overwrite);
-      return;
-    }
+      if (from instanceof CaldavResourceNode) {
+        copyMoveResource(resp, (CaldavResourceNode)from,
+                         to, copy, overwrite);
+        return;
+      }
 
-    throw new WebdavBadRequest();
+      throw new WebdavBadRequest();
+    } finally {
+      invalidate(from.getUri());
+      invalidate(to.getUri());
+    }
   }
 
   private Content doXrd(final HttpServletRequest req,
@@ -1387,11 +1722,15 @@ public class CaldavBWIntf extends WebdavNsIntf {
     try {
       final XRDType xrd = getXRD(node);
 
-      final JAXBContext jc = JAXBContext.newInstance(xrd.getClass().getPackage().getName());
+      final String path = xrd.getClass().getPackage().getName();
 
-      final Marshaller m = jc.createMarshaller();
-      m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
-      m.marshal(xrd, resp.getOutputStream());
+      final Marshaller m = JaxbContexts.getMarshaller(path);
+      try {
+        m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+        m.marshal(xrd, resp.getOutputStream());
+      } finally {
+        JaxbContexts.release(path, m);
+      }
 
       final Content c = new Content();
 
@@ -1586,7 +1925,7 @@ public class CaldavBWIntf extends WebdavNsIntf {
     }
 
     if (handler == null) {
-      return false;
+      return notModified(req, resp, resourceUri);
     }
 
     handler.process(req, resp, pars);
@@ -1599,7 +1938,26 @@ public class CaldavBWIntf extends WebdavNsIntf {
                                       final String token,
                                       final int limit,
                                       final boolean recurse) throws WebdavException {
-    final SynchReportData srd = getSysi().getSyncReport(path, token, limit, recurse);
+    /* Bound the size of any one report. Large initial syncs come back
+       in pages, the client continuing with the returned token.
+     */
+    int lim = limit;
+    final Integer max = getSysi().getSystemProperties().getSyncMaxItems();
+
+    if ((max != null) && (max > 0) &&
+        ((lim <= 0) || (lim > max))) {
+      lim = max;
+    }
+
+    if (!recurse) {
+      final WdSynchReport wsr = journalReport(path, token, lim);
+
+      if (wsr != null) {
+        return wsr;
+      }
+    }
+
+    final SynchReportData srd = getSysi().getSyncReport(path, token, lim, recurse);
 
     if (srd == null) {
       return null;
@@ -1615,12 +1973,17 @@ public class CaldavBWIntf extends WebdavNsIntf {
 
     wsr.token = srd.token;
     wsr.truncated = srd.truncated;
-    wsr.items = new ArrayList<>();
+
+    if (srd.items != null) {
+      wsr.items = new ArrayList<>(srd.items.size());
+    } else {
+      wsr.items = new ArrayList<>();
+    }
 
     final Map<String, WebdavNsNode> parents =
             new HashMap<>();
 
-    for (final SynchReportDataItem srdi: srd.items) {
+    for (final SynchReportDataItem srdi: srd) {
       final int nodeType;
       final CalDAVCollection<?> col;
       CalDAVResource<?> r = null;
@@ -1683,7 +2046,7 @@ public class CaldavBWIntf extends WebdavNsIntf {
   public String getSyncToken(final String path) throws WebdavException{
     final String url = sysi.getUrlHandler().unprefix(fixPath(path));
 
-    final CalDAVCollection<?> col = getSysi().getCollection(url);
+    final CalDAVCollection<?> col = findCollection(url);
 
     if (col == null) {
       throw new WebdavException(HttpServletResponse.SC_PRECONDITION_FAILED,
@@ -1775,6 +2138,8 @@ public class CaldavBWIntf extends WebdavNsIntf {
       } else {
         throw new WebdavException(HttpServletResponse.SC_NOT_IMPLEMENTED);
       }
+
+      invalidate(node.getUri());
     } catch (final WebdavException wi) {
       throw wi;
     } catch (final Throwable t) {
@@ -1998,12 +2363,80 @@ public class CaldavBWIntf extends WebdavNsIntf {
                                         final List<String> retrieveList,
                                         final RetrievalMode retrieveRecur,
                                         final FilterType fltr) throws WebdavException {
+    final Collection<WebdavNsNode> evnodes = new ArrayList<>();
+
+    query(wdnode, retrieveList, retrieveRecur, fltr, evnodes::add);
+
+    return evnodes;
+  }
+
+  /** Handles nodes as they are built so that they need not all be held
+   * in memory.
+   */
+  public interface NodeConsumer {
+    /**
+     * @param node a built node
+     * @throws WebdavException on fatal error
+     */
+    void accept(WebdavNsNode node) throws WebdavException;
+  }
+
+  /** Handles the failure of the query on one of a number of collections
+   * queried together. Once output has started the failure can only be
+   * reported against that collection.
+   */
+  public interface QueryErrorHandler {
+    /**
+     * @param node the collection whose query failed
+     * @param we the failure
+     * @throws WebdavException to abandon the remaining collections
+     */
+    void failed(WebdavNsNode node,
+                WebdavException we) throws WebdavException;
+  }
+
+  /** As for query but each node is handed to the consumer as it is built
+   * and post-filtered. The events are pulled from the backend via an
+   * iterator so no result list need be held.
+   *
+   * @param wdnode         node defining root of search
+   * @param retrieveList   If non-null limit required fields.
+   * @param retrieveRecur  How we retrieve recurring events
+   * @param fltr           the filter
+   * @param consumer       receives each node
+   * @throws WebdavException on fatal error
+   */
+  public void query(final WebdavNsNode wdnode,
+                    final List<String> retrieveList,
+                    final RetrievalMode retrieveRecur,
+                    final FilterType fltr,
+                    final NodeConsumer consumer) throws WebdavException {
+    query(wdnode, retrieveList, retrieveRecur, fltr, null, consumer);
+  }
+
+  /** As above with DATE and floating values in the filter resolved in
+   * the timezone of the query.
+   *
+   * @param wdnode         node defining root of search
+   * @param retrieveList   If non-null limit required fields.
+   * @param retrieveRecur  How we retrieve recurring events
+   * @param fltr           the filter
+   * @param tzid           from the query - may be null
+   * @param consumer       receives each node
+   * @throws WebdavException on fatal error
+   */
+  public void query(final WebdavNsNode wdnode,
+                    final List<String> retrieveList,
+                    final RetrievalMode retrieveRecur,
+                    final FilterType fltr,
+                    final String tzid,
+                    final NodeConsumer consumer) throws WebdavException {
     final CaldavBwNode node = (CaldavBwNode)wdnode;
 
-    final FilterHandler fh = new FilterHandler(fltr);
-    final Collection<CalDAVEvent<?>> events =
-            fh.query(node,
-                     retrieveList, retrieveRecur);
+    final FilterHandler fh = new FilterHandler(fltr, tzid);
+    final Iterator<CalDAVEvent<?>> events =
+            fh.queryIterator(node,
+                             retrieveList, retrieveRecur);
 
     /* We now need to build a node for each of the events in the collection.
        For each event we first determine what calendar it's in. We then take the
@@ -2013,42 +2446,431 @@ public class CaldavBWIntf extends WebdavNsIntf {
        If there is no calendar name for the event we just give it the default.
      */
 
-    final Collection<WebdavNsNode> evnodes = new ArrayList<>();
-
     if (events == null) {
-      return evnodes;
+      return;
     }
 
     try {
-      for (final CalDAVEvent<?> ev: events) {
-        final CalDAVCollection<?> col =
-                getSysi().getCollection(ev.getParentPath());
-        final String uri = col.getPath();
+      final List<CalDAVEvent<?>> chunk = new ArrayList<>(feedChunk);
+
+      while (events.hasNext()) {
+        chunk.add(events.next());
+
+        if (chunk.size() == feedChunk) {
+          emit(fh, chunk, consumer);
+          chunk.clear();
+        }
+      }
+
+      emit(fh, chunk, consumer);
+    } catch (final WebdavException we) {
+      throw we;
+    } catch (final Throwable t) {
+      error(t);
+      throw new WebdavServerError();
+    }
+  }
+
+  /** As for query but for a number of collections. Nodes are handed to
+   * the consumer collection by collection in the order of the list.
+   *
+   * <p>If the system interface supplies workers and the queryParallelism
+   * property allows it, up to that many collections are queried at
+   * once, each through its own worker. Nodes are still built and
+   * consumed on the calling thread.
+   *
+   * @param wdnodes        calendar collection nodes
+   * @param retrieveList   If non-null limit required fields.
+   * @param retrieveRecur  How we retrieve recurring events
+   * @param fltr           the filter
+   * @param consumer       receives each node
+   * @throws WebdavException on fatal error
+   */
+  public void query(final List<WebdavNsNode> wdnodes,
+                    final List<String> retrieveList,
+                    final RetrievalMode retrieveRecur,
+                    final FilterType fltr,
+                    final NodeConsumer consumer) throws WebdavException {
+    query(wdnodes, retrieveList, retrieveRecur, fltr, null, consumer, null);
+  }
+
+  /** As above but the failure of any one collection is handed to the
+   * error handler, if supplied, and the remaining collections queried.
+   *
+   * @param wdnodes        calendar collection nodes
+   * @param retrieveList   If non-null limit required fields.
+   * @param retrieveRecur  How we retrieve recurring events
+   * @param fltr           the filter
+   * @param tzid           from the query - may be null
+   * @param consumer       receives each node
+   * @param errors         null or handles per-collection failures
+   * @throws WebdavException on fatal error
+   */
+  public void query(final List<WebdavNsNode> wdnodes,
+                    final List<String> retrieveList,
+                    final RetrievalMode retrieveRecur,
+                    final FilterType fltr,
+                    final String tzid,
+                    final NodeConsumer consumer,
+                    final QueryErrorHandler errors) throws WebdavException {
+    final Integer parallelism =
+            sysi.getSystemProperties().getQueryParallelism();
+
+    if ((wdnodes.size() < 2) ||
+            (parallelism == null) || (parallelism < 2)) {
+      for (final WebdavNsNode wdnode: wdnodes) {
+        try {
+          query(wdnode, retrieveList, retrieveRecur, fltr, tzid, consumer);
+        } catch (final WebdavException we) {
+          failed(wdnode, we, errors);
+        }
+      }
+      return;
+    }
+
+    final List<QueryFeed> feeds = new ArrayList<>(wdnodes.size());
+    int consumed = 0;
+
+    try {
+      for (final WebdavNsNode wdnode: wdnodes) {
+        if (feeds.size() - consumed >= parallelism) {
+          consume(feeds.get(consumed), retrieveList, retrieveRecur,
+                  fltr, tzid, consumer, errors);
+          consumed++;
+        }
+
+        final CalDAVCollection<?> col = (CalDAVCollection<?>)
+                ((CaldavBwNode)wdnode).getCollection(false);
+        if (col == null) {
+          continue;
+        }
+
+        final SysIntf worker = sysi.newWorker();
+        if (worker == null) {
+          // Not supported - do the rest one at a time
+          while (consumed < feeds.size()) {
+            consume(feeds.get(consumed), retrieveList, retrieveRecur,
+                    fltr, tzid, consumer, errors);
+            consumed++;
+          }
+
+          try {
+            query(wdnode, retrieveList, retrieveRecur, fltr, tzid, consumer);
+          } catch (final WebdavException we) {
+            failed(wdnode, we, errors);
+          }
+          continue;
+        }
+
+        final QueryFeed feed = new QueryFeed(wdnode, worker);
+
+        feed.result = getQueryPool().submit(
+                () -> queryWorker(feed, col.getPath(),
+                                  retrieveList, retrieveRecur,
+                                  fltr, tzid));
+        feeds.add(feed);
+      }
+
+      while (consumed < feeds.size()) {
+        consume(feeds.get(consumed), retrieveList, retrieveRecur,
+                fltr, tzid, consumer, errors);
+        consumed++;
+      }
+    } finally {
+      /* On failure stop outstanding queries and wait for them so that
+         every worker can be closed before we return.
+       */
+      for (int i = consumed; i < feeds.size(); i++) {
+        feeds.get(i).abandoned = true;
+      }
 
-        /* If no name was assigned use the guid */
-        String evName = ev.getName();
-        if (evName == null) {
-          evName = ev.getUid() + ".ics";
+      while (consumed < feeds.size()) {
+        final QueryFeed feed = feeds.get(consumed);
+
+        if (!feed.result.cancel(false)) {
+          try {
+            feed.result.get();
+          } catch (final Throwable ignored) {
+          }
+        }
+
+        try {
+          feed.close();
+        } catch (final Throwable ignored) {
         }
+        consumed++;
+      }
+    }
+  }
+
+  /* Chunks of events passed from a worker to the request thread. Only a
+     few chunks are held so a worker waits for the request thread rather
+     than accumulate a whole collection.
+
+     The worker stays open until the request thread has built nodes for
+     all its events, then the request thread closes it.
+   */
+  private static class QueryFeed {
+    final WebdavNsNode wdnode;
+    final SysIntf worker;
+
+    final BlockingQueue<List<CalDAVEvent<?>>> chunks =
+            new ArrayBlockingQueue<>(feedChunks);
+
+    Future<?> result;
+
+    volatile FilterHandler fh;
+
+    volatile Throwable failure;
+
+    /* Set when the request thread stops consuming */
+    volatile boolean abandoned;
+
+    /* Request thread only */
+    private boolean closed;
+
+    QueryFeed(final WebdavNsNode wdnode,
+              final SysIntf worker) {
+      this.wdnode = wdnode;
+      this.worker = worker;
+    }
+
+    /* False if the request thread has gone */
+    boolean put(final List<CalDAVEvent<?>> chunk) {
+      try {
+        while (!abandoned) {
+          if (chunks.offer(chunk, feedWait, TimeUnit.MILLISECONDS)) {
+            return true;
+          }
+        }
+      } catch (final InterruptedException ie) {
+        Thread.currentThread().interrupt();
+      }
+
+      return false;
+    }
+
+    /* Request thread only - once the query task has finished or will
+       never run.
+     */
+    void close() throws WebdavException {
+      if (closed) {
+        return;
+      }
 
-        final String evuri = Util.buildPath(false, uri, "/", evName);
+      closed = true;
+      worker.close();
+    }
+  }
+
+  /* Events per chunk and chunks held per feed */
+  private static final int feedChunk = 50;
+  private static final int feedChunks = 4;
+
+  /* Millis between checks for an abandoned feed or a stalled worker */
+  private static final long feedWait = 100;
+
+  /* Marks the end of a feed */
+  private static final List<CalDAVEvent<?>> endOfFeed =
+          Collections.emptyList();
+
+  /* Runs on a pool thread. The worker is confined to this thread until
+     the end of the feed is marked - it is closed by the request thread.
+   */
+  private static Void queryWorker(final QueryFeed feed,
+                                  final String path,
+                                  final List<String> retrieveList,
+                                  final RetrievalMode retrieveRecur,
+                                  final FilterType fltr,
+                                  final String tzid) {
+    try {
+      final FilterHandler fh = new FilterHandler(fltr, tzid);
+      final Iterator<CalDAVEvent<?>> it =
+              fh.queryIterator(path, feed.worker,
+                               retrieveList, retrieveRecur);
+      feed.fh = fh;
 
-        final CaldavComponentNode evnode =
-                (CaldavComponentNode)getNodeInt(evuri,
-                                                WebdavNsIntf.existanceDoesExist,
-                                                WebdavNsIntf.nodeTypeEntity,
-                                                false,
-                                                col, ev, null);
+      if (it != null) {
+        List<CalDAVEvent<?>> chunk = new ArrayList<>(feedChunk);
 
-        evnodes.add(evnode);
+        while (it.hasNext()) {
+          chunk.add(it.next());
+
+          if (chunk.size() == feedChunk) {
+            if (!feed.put(chunk)) {
+              return null;
+            }
+
+            chunk = new ArrayList<>(feedChunk);
+          }
+        }
+
+        if (!chunk.isEmpty() && !feed.put(chunk)) {
+          return null;
+        }
       }
+    } catch (final Throwable t) {
+      feed.failure = t;
+    } finally {
+      feed.put(endOfFeed);
+    }
+
+    return null;
+  }
 
-      return fh.postFilter(evnodes);
+  private void failed(final WebdavNsNode wdnode,
+                      final WebdavException we,
+                      final QueryErrorHandler errors) throws WebdavException {
+    if (errors == null) {
+      throw we;
+    }
+
+    errors.failed(wdnode, we);
+  }
+
+  /* Emit the events of one feed as they arrive. If the worker has not
+     started after a wait - the pool may be busy with workers waiting
+     on other requests - the collection is queried here instead.
+
+     The worker is closed once its feed is drained. If we fail part way
+     the caller waits for the worker to stop and closes it.
+   */
+  private void consume(final QueryFeed feed,
+                       final List<String> retrieveList,
+                       final RetrievalMode retrieveRecur,
+                       final FilterType fltr,
+                       final String tzid,
+                       final NodeConsumer consumer,
+                       final QueryErrorHandler errors) throws WebdavException {
+    boolean drained = false;
+
+    try {
+      while (true) {
+        final List<CalDAVEvent<?>> chunk =
+                feed.chunks.poll(feedWait, TimeUnit.MILLISECONDS);
+
+        if (chunk == null) {
+          if (feed.result.cancel(false)) {
+            drained = true;
+            feed.close();
+
+            try {
+              query(feed.wdnode, retrieveList, retrieveRecur,
+                    fltr, tzid, consumer);
+            } catch (final WebdavException we) {
+              failed(feed.wdnode, we, errors);
+            }
+            return;
+          }
+
+          continue;
+        }
+
+        if (chunk == endOfFeed) {
+          drained = true;
+          break;
+        }
+
+        emit(feed.fh, chunk, consumer);
+      }
+    } catch (final InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new WebdavException(ie);
     } catch (final WebdavException we) {
       throw we;
     } catch (final Throwable t) {
       error(t);
       throw new WebdavServerError();
+    } finally {
+      if (drained) {
+        try {
+          feed.close();
+        } catch (final Throwable t) {
+          if (feed.failure == null) {
+            feed.failure = t;
+          }
+        }
+      }
+    }
+
+    final Throwable t = feed.failure;
+
+    if (t == null) {
+      return;
+    }
+
+    if (t instanceof WebdavException) {
+      failed(feed.wdnode, (WebdavException)t, errors);
+      return;
+    }
+
+    error(t);
+    failed(feed.wdnode, new WebdavServerError(), errors);
+  }
+
+  /* Emit a chunk of events. The distinct parent collections not
+     already known to this request are fetched together first.
+   */
+  private void emit(final FilterHandler fh,
+                    final List<CalDAVEvent<?>> events,
+                    final NodeConsumer consumer) throws Throwable {
+    if (events.isEmpty()) {
+      return;
+    }
+
+    final Set<String> parents = new TreeSet<>();
+
+    for (final CalDAVEvent<?> ev: events) {
+      parents.add(ev.getParentPath());
+    }
+
+    findCollections(parents);
+
+    for (final CalDAVEvent<?> ev: events) {
+      emit(fh, ev, consumer);
+    }
+  }
+
+  /* Build a node for the event and hand it to the consumer if it
+     passes any post filtering.
+
+     Each distinct parent collection is resolved once rather than
+     once per event - see findCollection.
+   */
+  private void emit(final FilterHandler fh,
+                    final CalDAVEvent<?> ev,
+                    final NodeConsumer consumer) throws Throwable {
+    final String parentPath = ev.getParentPath();
+
+    final CalDAVCollection<?> col = findCollection(parentPath);
+
+    if (col == null) {
+      // Collection vanished or is inaccessible
+      if (debug()) {
+        debug("No collection for event at " + parentPath);
+      }
+      return;
+    }
+
+    final String uri = col.getPath();
+
+    /* If no name was assigned use the guid */
+    String evName = ev.getName();
+    if (evName == null) {
+      evName = ev.getUid() + ".ics";
+    }
+
+    final String evuri = Util.buildPath(false, uri, "/", evName);
+
+    final CaldavComponentNode evnode =
+            (CaldavComponentNode)getNodeInt(evuri,
+                                            WebdavNsIntf.existanceDoesExist,
+                                            WebdavNsIntf.nodeTypeEntity,
+                                            false,
+                                            col, ev, null);
+
+    if (fh.postFilter(evnode)) {
+      consumer.accept(evnode);
     }
   }
 
@@ -2252,15 +3074,13 @@ public class CaldavBWIntf extends WebdavNsIntf {
           resp.setEntity(new CaldavURI(collection,
                                        null, null, true, false));
         }
-        //putUriPath(curi);
-
         return resp;
       }
 
       if (debug()) {
         debug("search for collection uri \"" + uri + "\"");
       }
-      CalDAVCollection<?> col = sysi.getCollection(uri);
+      CalDAVCollection<?> col = findCollection(uri);
 
       if ((nodeType == WebdavNsIntf.nodeTypeCollection) ||
           (nodeType == WebdavNsIntf.nodeTypeUnknown)) {
@@ -2316,7 +3136,7 @@ public class CaldavBWIntf extends WebdavNsIntf {
       final String entityName = split.name;
 
       /* Look for the parent */
-      col = sysi.getCollection(parentPath);
+      col = findCollection(parentPath);
 
       if (col == null) {
         if (nodeType == WebdavNsIntf.nodeTypeCollection) {
@@ -2349,7 +3169,7 @@ public class CaldavBWIntf extends WebdavNsIntf {
                         entityName + "\"");
         }
 
-        ev = sysi.getEvent(col, entityName);
+        ev = findEvent(col, entityName);
 
         if ((existance == existanceMust) && (ev == null)) {
           return Response.notFound(resp, uri);
@@ -2380,8 +3200,6 @@ public class CaldavBWIntf extends WebdavNsIntf {
         resp.setEntity(new CaldavURI(col, rsrc, exists));
       }
 
-      //putUriPath(curi);
-
       return resp;
     } catch (final Throwable t) {
       return Response.error(resp, t);
@@ -2417,13 +3235,273 @@ public class CaldavBWIntf extends WebdavNsIntf {
     return new SplitResult(uri.substring(0, pos), uri.substring(pos + 1));
   }
 
-  /*
-  private CaldavURI getUriPath(String path) {
-    return uriMap.get(path);
+  /* Collections and entities are resolved through the request cache.
+     Collections missing from that come from the shared cache.
+   */
+
+  private CalDAVCollection<?> findCollection(final String path)
+          throws WebdavException {
+    return cache.getCollection(path,
+                               p -> collectionCache.getCollection(sysi, p));
+  }
+
+  /* As findCollection for a number of paths. Those not known to the
+     request cache are fetched together through the shared cache.
+   */
+  private Map<String, CalDAVCollection<?>> findCollections(
+          final Set<String> paths) throws WebdavException {
+    final Map<String, CalDAVCollection<?>> res = new HashMap<>();
+    final Set<String> toFetch = new TreeSet<>();
+
+    for (final String path: paths) {
+      if (path == null) {
+        continue;
+      }
+
+      if (cache.hasCollection(path)) {
+        final CalDAVCollection<?> col = cache.peekCollection(path);
+        if (col != null) {
+          res.put(path, col);
+        }
+      } else {
+        toFetch.add(path);
+      }
+    }
+
+    if (toFetch.isEmpty()) {
+      return res;
+    }
+
+    final Map<String, CalDAVCollection<?>> fetched =
+            collectionCache.getCollections(sysi, toFetch);
+
+    for (final String path: toFetch) {
+      final CalDAVCollection<?> col = fetched.get(path);
+      cache.putCollection(path, col);
+
+      if (col != null) {
+        res.put(path, col);
+      }
+    }
+
+    return res;
   }
 
-  private void putUriPath(CaldavURI wi) {
-    uriMap.put(wi.getPath(), wi);
+  private void invalidate(final String path) {
+    invalidateCaches(path);
+    syncJournal.invalidate(path);
+    etagIndex.invalidate(path);
+
+    /* The change may be to whether the collection affects free-busy */
+    freeBusyCache.invalidate(path);
+  }
+
+  /* For changes which are journaled */
+  private void invalidateCaches(final String path) {
+    cache.invalidate(path);
+    collectionCache.invalidate(path);
+  }
+
+  private String syncToken(final String colPath) throws WebdavException {
+    if (colPath == null) {
+      return null;
+    }
+
+    final CalDAVCollection<?> col = findCollection(colPath);
+
+    if (col == null) {
+      return null;
+    }
+
+    return sysi.getSyncToken(col);
+  }
+
+  /* Record a change to a member of colPath. Caches must have been
+   * invalidated so that we see the new token.
+   */
+  private void journal(final String colPath,
+                       final String before,
+                       final CalDAVEvent<?> ev,
+                       final boolean deleted) {
+    final String name = ev.getName();
+
+    try {
+      final String after = syncToken(colPath);
+      final String etag;
+
+      if (deleted) {
+        etag = null;
+      } else {
+        etag = ev.getEtag();
+      }
+
+      syncJournal.changed(sysi, colPath, before, after, name, deleted);
+      etagIndex.changed(sysi, colPath, before, after, name, etag);
+
+      final CalDAVCollection<?> col = findCollection(colPath);
+
+      if ((col == null) || col.getAffectsFreeBusy()) {
+        freeBusyCache.invalidate(colPath);
+      }
+    } catch (final Throwable t) {
+      if (debug()) {
+        debug("Unable to journal change to " + colPath + ": " +
+                      t.getMessage());
+      }
+      final String path = Util.buildPath(false, colPath, "/", name);
+
+      syncJournal.invalidate(path);
+      etagIndex.invalidate(path);
+      freeBusyCache.invalidate(path);
+    }
+  }
+
+  /* Answer a conditional GET or HEAD of a calendar entity from the etag
+   * index. Returns false if the request must be handled normally.
+   */
+  private boolean notModified(final HttpServletRequest req,
+                              final HttpServletResponse resp,
+                              final String resourceUri) throws WebdavException {
+    final String inm = req.getHeader("If-None-Match");
+
+    if ((inm == null) || (resourceUri == null) ||
+        !("GET".equals(req.getMethod()) || "HEAD".equals(req.getMethod()))) {
+      return false;
+    }
+
+    /* Other preconditions must be evaluated first */
+    if ((req.getHeader("If-Match") != null) ||
+        (req.getHeader("If-Unmodified-Since") != null)) {
+      return false;
+    }
+
+    final String uri = normalizeUri(resourceUri);
+
+    if (!uri.startsWith("/") || sysi.isPrincipal(uri)) {
+      return false;
+    }
+
+    final SplitResult split = splitUri(uri);
+    if (!split.isOk() || (split.name == null)) {
+      return false;
+    }
+
+    final CalDAVCollection<?> col = findCollection(split.path);
+
+    if ((col == null) ||
+        (col.getCalType() != CalDAVCollection.calTypeCalendarCollection)) {
+      return false;
+    }
+
+    final CurrentAccess ca = sysi.checkAccess(col, PrivilegeDefs.privRead,
+                                              true);
+    if ((ca == null) || !ca.getAccessAllowed()) {
+      return false;
+    }
+
+    final String etag = etagIndex.getEtag(sysi, col, split.name);
+
+    if ((etag == null) || !etagMatches(inm, etag)) {
+      return false;
+    }
+
+    etagIndex.notModified();
+
+    resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    resp.setHeader("ETag", etag);
+
+    return true;
+  }
+
+  /* Weak comparison as required for If-None-Match */
+  private static boolean etagMatches(final String header,
+                                     final String etag) {
+    final String val = stripWeak(etag);
+
+    for (final String s: header.split(",")) {
+      final String t = s.trim();
+
+      if (t.equals("*") || stripWeak(t).equals(val)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  private static String stripWeak(final String val) {
+    if (val.startsWith("W/")) {
+      return val.substring(2);
+    }
+
+    return val;
+  }
+
+  /* Try to answer a sync report from the journal. Returns null if the
+   * SysIntf must be asked.
+   */
+  private WdSynchReport journalReport(final String path,
+                                      final String token,
+                                      final int limit) throws WebdavException {
+    if (token == null) {
+      // Initial sync
+      return null;
+    }
+
+    final CalDAVCollection<?> col = findCollection(path);
+
+    if (col == null) {
+      return null;
+    }
+
+    final String current = sysi.getSyncToken(col);
+    final List<SyncJournal.Change> changes =
+            syncJournal.changesSince(sysi, col.getPath(), token,
+                                     current, limit);
+
+    if (changes == null) {
+      return null;
+    }
+
+    final WdSynchReport wsr = new WdSynchReport();
+
+    wsr.tokenValid = true;
+    wsr.token = current;
+    wsr.items = new ArrayList<>(changes.size());
+
+    for (final SyncJournal.Change c: changes) {
+      final String uri = Util.buildPath(false, path, "/", c.getName());
+      CalDAVEvent<?> ev = null;
+
+      if (!c.getDeleted()) {
+        ev = findEvent(col, c.getName());
+      }
+
+      final WebdavNsNode node;
+
+      if (ev == null) {
+        /* Deleted, or gone or invisible since - the journal is complete
+           up to the current token so it no longer exists for us.
+         */
+        node = CaldavComponentNode.tombstone(sysi, uri);
+      } else {
+        node = getNodeInt(uri,
+                          WebdavNsIntf.existanceDoesExist,
+                          WebdavNsIntf.nodeTypeEntity,
+                          false,
+                          col, ev, null);
+      }
+
+      wsr.items.add(new WdSynchReportItem(node, c.getToken(), true));
+    }
+
+    return wsr;
+  }
+
+  private CalDAVEvent<?> findEvent(final CalDAVCollection<?> col,
+                                   final String name)
+          throws WebdavException {
+    return cache.getEntity(Util.buildPath(false, col.getPath(), "/", name),
+                           p -> sysi.getEvent(col, name));
   }
-  */
 }
@@ -60,6 +60,10 @@ public abstract class CaldavBwNode extends WebdavNsNode {
 
   protected CalDAVCollection<?> col;
 
+  /* Alias resolution of col - reset if col changes */
+  private CalDAVCollection<?> derefFrom;
+  private CalDAVCollection<?> derefCol;
+
   private final static HashMap<QName, PropertyTagEntry> propertyNames =
     new HashMap<>();
 
@@ -169,7 +173,13 @@ public abstract class CaldavBwNode extends WebdavNsNode {
       return col;
     }
 
-    return col.resolveAlias(true); // True to resolve all subaliases
+    /* Asked for repeatedly while emitting properties */
+    if ((derefCol == null) || (derefFrom != col)) {
+      derefCol = col.resolveAlias(true); // True to resolve all subaliases
+      derefFrom = col;
+    }
+
+    return derefCol;
   }
 
   @Override
@@ -24,6 +24,7 @@ import org.bedework.access.PrivilegeDefs;
 import org.bedework.caldav.server.sysinterface.CalPrincipalInfo;
 import org.bedework.caldav.server.sysinterface.SysIntf;
 import org.bedework.caldav.server.sysinterface.SysIntf.MethodEmitted;
+import org.bedework.caldav.util.CountingWriter;
 import org.bedework.caldav.util.filter.FilterBase;
 import org.bedework.caldav.util.sharing.InviteType;
 import org.bedework.util.calendar.XcalUtil;
@@ -424,13 +425,18 @@ public class CaldavCalNode extends CaldavBwNode {
 
   @Override
   public long getContentLen() throws WebdavException {
-    String s = getContentString(getContentType());
+    init(true);
 
-    if (s == null) {
+    if (ical == null) {
       return 0;
     }
 
-    return s.getBytes().length;
+    /* Count the bytes rather than build the string */
+    final CountingWriter cw = new CountingWriter();
+
+    writeContent(null, cw, getContentType());
+
+    return cw.getCount();
   }
 
   @Override
@@ -23,6 +23,8 @@ import org.bedework.access.CurrentAccess;
 import org.bedework.access.PrivilegeDefs;
 import org.bedework.caldav.server.sysinterface.SysIntf;
 import org.bedework.caldav.server.sysinterface.SysIntf.MethodEmitted;
+import org.bedework.caldav.util.CalendarProjection;
+import org.bedework.caldav.util.CountingWriter;
 import org.bedework.util.misc.ToString;
 import org.bedework.util.timezones.DateTimeUtil;
 import org.bedework.util.xml.XmlEmit;
@@ -41,6 +43,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.xml.namespace.QName;
 
 /** Class to represent an entity such as events in caldav.
@@ -61,6 +64,9 @@ public class CaldavComponentNode extends CaldavBwNode {
 
   private boolean isTimezone;
 
+  /* A deleted member with no event */
+  private boolean tombstone;
+
   private Calendar ical;
 
   /** The event Component object
@@ -70,6 +76,10 @@ public class CaldavComponentNode extends CaldavBwNode {
   private String compContentType;
   private String compString;
 
+  /* Content length for contentLenType - saves rendering twice */
+  private String contentLenType;
+  private long contentLen = -1;
+
   private final static HashMap<QName, PropertyTagEntry> propertyNames =
     new HashMap<>();
 
@@ -144,6 +154,24 @@ public class CaldavComponentNode extends CaldavBwNode {
     setStatus(status);
   }
 
+  /** A deleted member, e.g. for a sync report
+   *
+   * @param sysi
+   * @param uri of the deleted member
+   * @return node reporting itself as deleted
+   */
+  public static CaldavComponentNode tombstone(final SysIntf sysi,
+                                              final String uri) {
+    final CaldavComponentNode nd =
+            new CaldavComponentNode(sysi,
+                                    HttpServletResponse.SC_NOT_FOUND,
+                                    uri);
+    nd.tombstone = true;
+    nd.exists = false;
+
+    return nd;
+  }
+
   /** Constructor
    *
    * @param cdURI
@@ -340,6 +368,7 @@ public class CaldavComponentNode extends CaldavBwNode {
    */
   public void setEvent(final CalDAVEvent<?> val) {
     event = val;
+    contentLenType = null;
   }
 
   /** Returns the only event or the master event for a recurrence
@@ -373,6 +402,45 @@ public class CaldavComponentNode extends CaldavBwNode {
     return ical;
   }
 
+  /** Get the event with only the named properties of each VEVENT, VTODO
+   * or VJOURNAL. If the full form has already been built it is projected,
+   * otherwise the system interface is asked for only those properties.
+   *
+   * @param props names of required properties - null for all
+   * @return Calendar - to be treated as read-only
+   * @throws WebdavException on fatal error
+   */
+  public Calendar getIcal(final Collection<String> props) throws WebdavException {
+    if ((props == null) || (ical != null)) {
+      return CalendarProjection.project(getIcal(), props);
+    }
+
+    init(true);
+
+    return getSysi().toCalendar(event,
+                                (col.getCalType() == CalDAVCollection.calTypeInbox) ||
+                                (col.getCalType() == CalDAVCollection.calTypeOutbox),
+                                props);
+  }
+
+  /** Get the event projected as requested by a calendar-data comp
+   * element - each component type with its own properties and any
+   * requested sub-components.
+   *
+   * @param spec for the VCALENDAR - null for all
+   * @return Calendar - to be treated as read-only
+   * @throws WebdavException on fatal error
+   */
+  public Calendar getIcal(final CalendarProjection.Spec spec)
+          throws WebdavException {
+    if (spec == null) {
+      return getIcal();
+    }
+
+    return CalendarProjection.project(getIcal(spec.getRetrieveList()),
+                                      spec);
+  }
+
   /* UNUSED(non-Javadoc)
    * @see edu.rpi.cct.webdav.servlet.shared.WebdavNsNode#getProperties(java.lang.String)
    * /
@@ -569,7 +637,42 @@ public class CaldavComponentNode extends CaldavBwNode {
 
   @Override
   public long getContentLen() throws WebdavException {
-    return getCompString(getContentType()).length();
+    final String ctype = getContentType();
+
+    if (ctype.equals(contentLenType)) {
+      return contentLen;
+    }
+
+    init(true);
+
+    long len = -1;
+
+    /* A stored length is for the default representation only. Inbox
+       and outbox entities are emitted with a METHOD so differ.
+     */
+    if ((event != null) && isDefaultContentType(ctype) &&
+        (col != null) &&
+        (col.getCalType() != CalDAVCollection.calTypeInbox) &&
+        (col.getCalType() != CalDAVCollection.calTypeOutbox)) {
+      len = event.getContentLength();
+    }
+
+    if (len < 0) {
+      if (ctype.equals(compContentType)) {
+        len = CountingWriter.utf8Length(compString);
+      } else {
+        /* Count the bytes rather than build the string */
+        final CountingWriter cw = new CountingWriter();
+
+        getSysi().writeIcal(getIcal(), cw, ctype);
+        len = cw.getCount();
+      }
+    }
+
+    contentLenType = ctype;
+    contentLen = len;
+
+    return len;
   }
 
   @Override
@@ -577,6 +680,19 @@ public class CaldavComponentNode extends CaldavBwNode {
     return "text/calendar;charset=utf-8";
   }
 
+  private boolean isDefaultContentType(final String ctype) {
+    final int pos = ctype.indexOf(';');
+    final String mtype;
+
+    if (pos < 0) {
+      mtype = ctype.trim();
+    } else {
+      mtype = ctype.substring(0, pos).trim();
+    }
+
+    return mtype.equalsIgnoreCase(getSysi().getDefaultContentType());
+  }
+
   @Override
   public String getCreDate() throws WebdavException {
     init(false);
@@ -615,6 +731,10 @@ public class CaldavComponentNode extends CaldavBwNode {
 
   @Override
   public boolean getDeleted() throws WebdavException {
+    if (tombstone) {
+      return true;
+    }
+
     return getEvent().getDeleted();
   }
 
@@ -24,6 +24,7 @@ import org.bedework.caldav.server.sysinterface.CalPrincipalInfo;
 import org.bedework.caldav.server.sysinterface.SysIntf;
 import org.bedework.caldav.server.sysinterface.SysIntf.IcalResultType;
 import org.bedework.caldav.server.sysinterface.SysIntf.SchedRecipientResult;
+import org.bedework.caldav.util.TeeInputStream;
 import org.bedework.caldav.util.sharing.InviteReplyType;
 import org.bedework.caldav.util.sharing.ShareResultType;
 import org.bedework.caldav.util.sharing.ShareType;
@@ -55,12 +56,8 @@ import org.apache.james.jdkim.api.SignatureRecord;
 import org.apache.james.jdkim.exceptions.FailException;
 import org.w3c.dom.Element;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
 import java.util.Set;
 
@@ -511,19 +508,60 @@ public class CaldavPostMethod extends PostMethod {
                                   "No message id");
       }
 
-      final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-      streamCopy(pars.getReq().getInputStream(), baos);
+      /* The body is read once. As the parser consumes it the bytes are
+         copied into the DKIM body hasher. The message is verified
+         before we act on it and before any parse error is reported.
+       */
+      final DKIMVerifier verifier = getVerifier(pars);
+      final BodyHasher bh = newBodyHasher(verifier, pars);
+
+      final Integer maxSize = sysi.getAuthProperties().getMaxUserEntitySize();
+      final TeeInputStream body =
+              new TeeInputStream(pars.getReq().getInputStream(),
+                                 (bh == null) ? null : bh.getOutputStream(),
+                                 (maxSize == null) ? -1 : maxSize);
+
+      SysiIcalendar ical = null;
+      WebdavException parseFailure = null;
+
+      try {
+        ical = sysi.fromIcal(pars.getCol(),
+                             new InputStreamReader(body,
+                                                   StandardCharsets.UTF_8),
+                             pars.getContentTypePars()[0],
+                             IcalResultType.OneComponent,
+                             false);
+      } catch (final WebdavException we) {
+        parseFailure = we;
+      }
+
+      try {
+        body.drain();
+
+        if (bh != null) {
+          bh.getOutputStream().close();
+        }
+      } catch (final TeeInputStream.TooLargeException tle) {
+        throw new WebdavException(
+                HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+      }
 
-      validateHost(pars,
-                   new ByteArrayInputStream(baos.toByteArray()));
+      /* If the limit was hit while parsing the exception is hidden in
+         the parse failure and drain may have found nothing left to read.
+       */
+      if ((maxSize != null) && (maxSize >= 0) &&
+              (body.getCount() > maxSize)) {
+        throw new WebdavException(
+                HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+      }
+
+      verifyHost(verifier, bh);
 
-      pars.setIcalendar(sysi.fromIcal(pars.getCol(),
-                                      new InputStreamReader(
-                                              new ByteArrayInputStream(
-                                                      baos.toByteArray())),
-                                      pars.getContentTypePars()[0],
-                                      IcalResultType.OneComponent,
-                                      false));
+      if (parseFailure != null) {
+        throw parseFailure;
+      }
+
+      pars.setIcalendar(ical);
 
       /* (ISCHED:valid-calendar-data) -- checked in fromIcal */
 
@@ -561,31 +599,53 @@ public class CaldavPostMethod extends PostMethod {
     }
   }
 
-  private void validateHost(final RequestPars pars,
-                            final InputStream content) throws WebdavException {
+  /* Null for an unsigned message */
+  private DKIMVerifier getVerifier(final RequestPars pars) {
     final IscheduleIn isi = pars.getIschedRequest();
     final SignatureRecord sig = isi.getDkimSignature();
 
     if (sig == null) {
       // Check to see if we allow this host -
       warn("Unchecked host - no dkim signature:");
-      return;
+      return null;
     }
 
-    try {
-      /* Do DKIM validation */
-      final DKIMVerifier verifier = new IscheduleDKIMVerifier();
-      final BodyHasher bh = verifier.newBodyHasher(isi);
+    return new IscheduleDKIMVerifier();
+  }
+
+  private BodyHasher newBodyHasher(final DKIMVerifier verifier,
+                                   final RequestPars pars) throws WebdavException {
+    if (verifier == null) {
+      return null;
+    }
 
-      if (bh != null) {
-        final OutputStream os = bh.getOutputStream();
-        streamCopy(content, os);
+    try {
+      return verifier.newBodyHasher(pars.getIschedRequest());
+    } catch (final FailException e) {
+      if (debug()) {
+        error(e);
       }
+      throw new WebdavForbidden(IscheduleTags.verificationFailed);
+    }
+  }
+
+  /* Called once the whole body has been passed through the hasher */
+  private void verifyHost(final DKIMVerifier verifier,
+                          final BodyHasher bh) throws WebdavException {
+    if (verifier == null) {
+      return;
+    }
+
+    final long start = System.nanoTime();
 
+    try {
+      /* Do DKIM validation */
       verifier.verify(bh);
-    } catch (final IOException e) {
-      throw new WebdavException(e);
+      CaldavBWIntf.getDomainKeys().verified(System.nanoTime() - start,
+                                            true);
     } catch (final FailException e) {
+      CaldavBWIntf.getDomainKeys().verified(System.nanoTime() - start,
+                                            false);
       if (debug()) {
         error(e);
       }
@@ -652,7 +712,20 @@ public class CaldavPostMethod extends PostMethod {
     ev.setScheduleMethod(pars.getIcalendar().getMethodType());
     validateOriginator(pars, ev);
 
-    final Collection<SchedRecipientResult> srrs = intf.requestFreeBusy(ev, true);
+    String originator = ev.getOriginator();
+    if (originator == null) {
+      if (pars.isiSchedule()) {
+        originator = pars.getIschedRequest().getOriginator();
+      } else {
+        originator = ev.getOrganizer().getOrganizerUri();
+      }
+    }
+
+    final Collection<SchedRecipientResult> srrs =
+            new FreeBusyAggregator(intf).requestFreeBusy(pars.getCol(),
+                                                         ev,
+                                                         originator,
+                                                         true);
 
     resp.setStatus(HttpServletResponse.SC_OK);
     resp.setContentType("application/xml;charset=utf-8");
@@ -820,15 +893,4 @@ public class CaldavPostMethod extends PostMethod {
       property(CaldavTags.requestStatus, reqstat);
     }
   }
-
-  private void streamCopy(final InputStream in, final OutputStream out)
-          throws IOException {
-    final byte[] buffer = new byte[2048];
-    int read;
-    while ((read = in.read(buffer)) > 0) {
-      out.write(buffer, 0, read);
-    }
-    in.close();
-    out.close();
-  }
 }
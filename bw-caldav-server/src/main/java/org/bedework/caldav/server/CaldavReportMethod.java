@@ -19,6 +19,8 @@
 package org.bedework.caldav.server;
 
 import org.bedework.caldav.server.calquery.CalData;
+import org.bedework.caldav.server.CaldavBWIntf.NodeConsumer;
+import org.bedework.caldav.server.CaldavBWIntf.QueryErrorHandler;
 import org.bedework.caldav.server.calquery.FreeBusyQuery;
 import org.bedework.caldav.server.sysinterface.RetrievalMode;
 import org.bedework.caldav.server.sysinterface.SysIntf.IcalResultType;
@@ -56,8 +58,10 @@ import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Supplier;
 
 import javax.servlet.http.HttpServletRequest;
@@ -95,6 +99,9 @@ public class CaldavReportMethod extends ReportMethod {
 
   private int reportType;
 
+  /* Flush streamed query output after this many responses */
+  private final static int flushInterval = 50;
+
   /** Called at each request
    */
   @Override
@@ -412,10 +419,15 @@ public class CaldavReportMethod extends ReportMethod {
     final int status = HttpServletResponse.SC_OK;
 
     Collection<WebdavNsNode> nodes = null;
+    List<QueryStep> plan = null;
     final Collection<String> badHrefs = new ArrayList<>();
 
     if (reportType == reportTypeQuery) {
-      nodes = doNodeAndChildren(cqp, node);
+      /* Query results are streamed below - validate the filter and find
+         the collections first so that a bad request fails before we
+         start the response.
+       */
+      plan = plan(cqp, node);
     } else if (reportType == reportTypeMultiGet) {
       nodes = getMgetNodes(hrefs, badHrefs);
     }
@@ -429,6 +441,32 @@ public class CaldavReportMethod extends ReportMethod {
       // Entire request failed.
       node.setStatus(status);
       doNodeProperties(node);
+    } else if (reportType == reportTypeQuery) {
+      /* Write each node as it is built and let it go. Flush now and
+         again so the output does not accumulate either.
+       */
+      final int[] ct = {0};
+
+      runQuery(cqp, plan, curnode -> {
+        doNodeProperties(curnode);
+        ct[0]++;
+
+        if ((ct[0] % flushInterval) == 0) {
+          flush();
+        }
+      }, (colnode, we) -> {
+        /* The response is under way - report against the collection */
+        if (debug()) {
+          debug("REPORT: query failed for " + colnode.getUri() +
+                        " status " + we.getStatusCode());
+        }
+
+        openTag(WebdavTags.response);
+        property(WebdavTags.href,
+                 intf.getSysi().getUrlHandler().prefix(colnode.getUri()));
+        property(WebdavTags.status, "HTTP/1.1 " + we.getStatusCode());
+        closeTag(WebdavTags.response);
+      });
     } else if (nodes != null) {
       for (final WebdavNsNode curnode: nodes) {
         doNodeProperties(curnode);
@@ -465,22 +503,43 @@ public class CaldavReportMethod extends ReportMethod {
       return nodes;
     }
 
+    /* Fetch as many as we can in bulk - one round trip per collection */
+    final Map<String, String> uris = new HashMap<>();
     for (final String hr: hrefs) {
-      WebdavNsNode n;
       try {
-        n = intf.getNode(intf.getUri(hr),
-                         WebdavNsIntf.existanceMust,
-                         WebdavNsIntf.nodeTypeUnknown,
-                         false);
-      } catch (final WebdavException we) {
-        if (hr.endsWith("/")) {
-          n = new CaldavCalNode(intf.getSysi(),
-                                we.getStatusCode(),
-                                intf.getUri(hr));
-        } else {
-          n = new CaldavComponentNode(intf.getSysi(),
-                                      we.getStatusCode(),
-                                      intf.getUri(hr));
+        uris.put(hr, intf.getUri(hr));
+      } catch (final WebdavException ignored) {
+        // Handled below
+      }
+    }
+
+    final Map<String, WebdavNsNode> bulk =
+            intf.getEntityNodes(uris.values());
+
+    for (final String hr: hrefs) {
+      WebdavNsNode n = null;
+      final String uri = uris.get(hr);
+
+      if (uri != null) {
+        n = bulk.get(uri);
+      }
+
+      if (n == null) {
+        try {
+          n = intf.getNode(intf.getUri(hr),
+                           WebdavNsIntf.existanceMust,
+                           WebdavNsIntf.nodeTypeUnknown,
+                           false);
+        } catch (final WebdavException we) {
+          if (hr.endsWith("/")) {
+            n = new CaldavCalNode(intf.getSysi(),
+                                  we.getStatusCode(),
+                                  intf.getUri(hr));
+          } else {
+            n = new CaldavComponentNode(intf.getSysi(),
+                                        we.getStatusCode(),
+                                        intf.getUri(hr));
+          }
         }
       }
 
@@ -497,6 +556,73 @@ public class CaldavReportMethod extends ReportMethod {
   protected Collection<WebdavNsNode> doNodeAndChildren(
           final CalendarQueryPars cqp,
           final WebdavNsNode node) throws WebdavException {
+    final Collection<WebdavNsNode> nodes = new ArrayList<>();
+
+    doNodeAndChildren(cqp, node, nodes::add);
+
+    return nodes;
+  }
+
+  /** Find the nodes selected by the query and hand each to the consumer
+   * as it is built.
+   *
+   * @param cqp query parameters
+   * @param node target of the query
+   * @param consumer receives each node
+   * @throws WebdavException on fatal error
+   */
+  protected void doNodeAndChildren(
+          final CalendarQueryPars cqp,
+          final WebdavNsNode node,
+          final NodeConsumer consumer) throws WebdavException {
+    runQuery(cqp, plan(cqp, node), consumer, null);
+  }
+
+  protected Collection<WebdavNsNode> doNodeAndChildren(final CalendarQueryPars cqp,
+                                    final WebdavNsNode node,
+                                    final ExpandType expand,
+                                    final LimitRecurrenceSetType lrs,
+                                    final List<String> retrieveList) throws WebdavException {
+    final Collection<WebdavNsNode> nodes = new ArrayList<>();
+
+    doNodeAndChildren(cqp, node, expand, lrs, retrieveList, nodes::add);
+
+    return nodes;
+  }
+
+  protected void doNodeAndChildren(final CalendarQueryPars cqp,
+                                   final WebdavNsNode node,
+                                   final ExpandType expand,
+                                   final LimitRecurrenceSetType lrs,
+                                   final List<String> retrieveList,
+                                   final NodeConsumer consumer) throws WebdavException {
+    runQuery(cqp, plan(cqp, node), expand, lrs, retrieveList,
+             consumer, null);
+  }
+
+  /* ====================================================================
+   *                   Private methods
+   * ==================================================================== */
+
+  /* One step of a query: a component targeted directly or a run of
+     sibling calendar collections to be queried together.
+   */
+  private static class QueryStep {
+    final WebdavNsNode component;
+    final List<WebdavNsNode> calendars;
+
+    QueryStep(final WebdavNsNode component,
+              final List<WebdavNsNode> calendars) {
+      this.component = component;
+      this.calendars = calendars;
+    }
+  }
+
+  private void runQuery(final CalendarQueryPars cqp,
+                        final List<QueryStep> plan,
+                        final NodeConsumer consumer,
+                        final QueryErrorHandler errors)
+          throws WebdavException {
     List<String> retrieveList = null;
     CalData caldata = null;
 
@@ -582,14 +708,16 @@ public class CaldavReportMethod extends ReportMethod {
       retrieveList = null;
     }
 
-    return doNodeAndChildren(cqp, node, expand, lrs, retrieveList);
+    runQuery(cqp, plan, expand, lrs, retrieveList, consumer, errors);
   }
 
-  protected Collection<WebdavNsNode> doNodeAndChildren(final CalendarQueryPars cqp,
-                                    final WebdavNsNode node,
-                                    final ExpandType expand,
-                                    final LimitRecurrenceSetType lrs,
-                                    final List<String> retrieveList) throws WebdavException {
+  private void runQuery(final CalendarQueryPars cqp,
+                        final List<QueryStep> plan,
+                        final ExpandType expand,
+                        final LimitRecurrenceSetType lrs,
+                        final List<String> retrieveList,
+                        final NodeConsumer consumer,
+                        final QueryErrorHandler errors) throws WebdavException {
     RetrievalMode rm = null;
 
     if (expand != null) {
@@ -602,32 +730,58 @@ public class CaldavReportMethod extends ReportMethod {
       rm.setLimitRecurrenceSet(lrs);
     }
 
-    return doNodeAndChildren(cqp, node, 0, defaultDepth(cqp.depth, 0),
-                             rm, retrieveList);
+    final CaldavBWIntf intf = (CaldavBWIntf)getNsIntf();
+
+    for (final QueryStep step: plan) {
+      if (step.component != null) {
+        consumer.accept(step.component);
+        continue;
+      }
+
+      if (debug()) {
+        debug("runQuery: " + step.calendars.size() + " collection(s)");
+      }
+
+      intf.query(step.calendars, retrieveList, rm, cqp.filter,
+                 cqp.tzid, consumer, errors);
+    }
   }
 
-  /* ====================================================================
-   *                   Private methods
-   * ==================================================================== */
+  /* Validate the filter and walk the target down to the requested depth,
+     so that any error is raised before we produce output. Nothing is
+     queried here.
+   */
+  private List<QueryStep> plan(final CalendarQueryPars cqp,
+                               final WebdavNsNode node) throws WebdavException {
+    final EventQuery eq;
 
-  private Collection<WebdavNsNode> doNodeAndChildren(
-          final CalendarQueryPars cqp,
-          final WebdavNsNode node,
-          int curDepth,
-          final int maxDepth,
-          final RetrievalMode rm,
-          final List<String> retrieveList) throws WebdavException {
+    if (cqp.filter == null) {
+      eq = null;
+    } else {
+      eq = Filters.getQuery(cqp.filter);
+    }
+
+    final List<QueryStep> steps = new ArrayList<>();
+
+    plan(node, 0, defaultDepth(cqp.depth, 0), eq, steps);
+
+    return steps;
+  }
+
+  private void plan(final WebdavNsNode node,
+                    int curDepth,
+                    final int maxDepth,
+                    final EventQuery eq,
+                    final List<QueryStep> steps) throws WebdavException {
     if (debug()) {
-      debug("doNodeAndChildren: curDepth=" + curDepth +
+      debug("plan: curDepth=" + curDepth +
             " maxDepth=" + maxDepth + " uri=" + node.getUri());
     }
 
-    final Collection<WebdavNsNode> nodes = new ArrayList<>();
-
     if (node instanceof CaldavComponentNode) {
       // Targetted directly at component
-      nodes.add(node);
-      return nodes;
+      steps.add(new QueryStep(node, null));
+      return;
     }
 
     if (!(node instanceof CaldavCalNode)) {
@@ -642,19 +796,14 @@ public class CaldavReportMethod extends ReportMethod {
     curDepth++;
 
     if (curDepth > maxDepth) {
-      return nodes;
+      return;
     }
 
     if (calnode.isCalendarCollection()) {
-      return getNodes(cqp, node, rm, retrieveList);
-    }
-
-    final EventQuery eq;
-
-    if (cqp.filter == null) {
-      eq = null;
-    } else {
-      eq = Filters.getQuery(cqp.filter);
+      final List<WebdavNsNode> calendars = new ArrayList<>(1);
+      calendars.add(node);
+      steps.add(new QueryStep(null, calendars));
+      return;
     }
 
     final Supplier<Object> filters = () -> {
@@ -665,32 +814,32 @@ public class CaldavReportMethod extends ReportMethod {
       return eq.filter;
     };
 
+    /* Runs of sibling calendar collections are queried together so
+       that they may be queried concurrently. Any other child ends
+       the run to keep the results in order.
+     */
+    List<WebdavNsNode> calendars = new ArrayList<>();
+
     for (final WebdavNsNode child:
             getNsIntf().getChildren(node, filters)) {
-      nodes.addAll(doNodeAndChildren(cqp,
-                                     child,
-                                     curDepth,
-                                     maxDepth,
-                                     rm,
-                                     retrieveList));
-    }
+      if ((curDepth < maxDepth) &&
+              (child instanceof CaldavCalNode) &&
+              ((CaldavCalNode)child).isCalendarCollection()) {
+        calendars.add(child);
+        continue;
+      }
 
-    return nodes;
-  }
+      if (!calendars.isEmpty()) {
+        steps.add(new QueryStep(null, calendars));
+        calendars = new ArrayList<>();
+      }
 
-  private Collection<WebdavNsNode> getNodes(
-          final CalendarQueryPars cqp,
-          final WebdavNsNode node,
-          final RetrievalMode rm,
-          final List<String> retrieveList)
-          throws WebdavException {
-    if (debug()) {
-      debug("getNodes: " + node.getUri());
+      plan(child, curDepth, maxDepth, eq, steps);
     }
 
-    final CaldavBWIntf intf = (CaldavBWIntf)getNsIntf();
-
-    return intf.query(node, retrieveList, rm, cqp.filter);
+    if (!calendars.isEmpty()) {
+      steps.add(new QueryStep(null, calendars));
+    }
   }
 
   private boolean addPropname(final QName tag,
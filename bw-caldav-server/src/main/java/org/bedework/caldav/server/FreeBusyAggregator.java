@@ -0,0 +1,356 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.server;
+
+import org.bedework.caldav.server.sysinterface.CalDAVSystemProperties;
+import org.bedework.caldav.server.sysinterface.SysIntf;
+import org.bedework.caldav.server.sysinterface.SysIntf.IcalResultType;
+import org.bedework.caldav.server.sysinterface.SysIntf.SchedRecipientResult;
+import org.bedework.util.logging.BwLogger;
+import org.bedework.util.logging.Logged;
+import org.bedework.webdav.servlet.shared.WebdavException;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/** Carries out a scheduling free-busy request by looking up the
+ * recipients concurrently.
+ *
+ * <p>Each recipient is looked up through its own SysIntf worker (see
+ * SysIntf.newWorker) on the shared query threads. The request is
+ * reparsed by each worker so that no entity is shared between threads.
+ * A recipient not answered within the freeBusyTimeout is reported as
+ * deferred. With no timeout a lookup still waiting for a thread is
+ * cancelled and carried out by the calling thread, so a busy pool
+ * cannot hold up the request. Results are returned in recipient order.
+ *
+ * <p>If the system interface has no workers, or concurrency is not
+ * configured, the whole request is passed to SysIntf.requestFreeBusy.
+ *
+ * @author douglm
+ */
+public class FreeBusyAggregator implements Logged {
+  /* Millis to wait for a lookup to start before doing it ourselves */
+  private static final long startWait = 100;
+
+  private final SysIntf sysi;
+
+  /**
+   * @param sysi for the current request
+   */
+  public FreeBusyAggregator(final SysIntf sysi) {
+    this.sysi = sysi;
+  }
+
+  /** Get the free busy for each recipient of the request.
+   *
+   * @param col       collection for parsing - as for fromIcal
+   * @param ev        request with recipients and method set
+   * @param originator of the request
+   * @param iSchedule true if this is from an ischedule request
+   * @return a result for each recipient
+   * @throws WebdavException on fatal error
+   */
+  public Collection<SchedRecipientResult> requestFreeBusy(
+          final CalDAVCollection<?> col,
+          final CalDAVEvent<?> ev,
+          final String originator,
+          final boolean iSchedule) throws WebdavException {
+    final CalDAVSystemProperties props = sysi.getSystemProperties();
+    final Integer parallelism = props.getQueryParallelism();
+    final Set<String> recipients = ev.getRecipients();
+
+    if ((recipients == null) || (recipients.size() < 2) ||
+            (parallelism == null) || (parallelism < 2)) {
+      return sysi.requestFreeBusy(ev, iSchedule);
+    }
+
+    final SysIntf first = sysi.newWorker();
+    if (first == null) {
+      return sysi.requestFreeBusy(ev, iSchedule);
+    }
+
+    final Integer timeout = props.getFreeBusyTimeout();
+    final String contentType = sysi.getDefaultContentType();
+    final String ical;
+
+    try {
+      ical = sysi.toIcalString(sysi.toCalendar(ev, true), contentType);
+    } catch (final WebdavException we) {
+      first.close();
+      throw we;
+    }
+
+    final Request req = new Request(col, ical, contentType,
+                                    ev.getScheduleMethod(),
+                                    originator, iSchedule);
+
+    final List<String> rs = new ArrayList<>(recipients);
+    final List<Lookup> lookups = new ArrayList<>(rs.size());
+    final Collection<SchedRecipientResult> res = new ArrayList<>();
+    int collected = 0;
+    SysIntf worker = first;
+
+    try {
+      for (final String r: rs) {
+        if (lookups.size() - collected >= parallelism) {
+          res.addAll(collect(lookups.get(collected), timeout));
+          collected++;
+        }
+
+        if (worker == null) {
+          worker = sysi.newWorker();
+        }
+
+        if (worker == null) {
+          throw new WebdavException("No worker for free-busy lookup");
+        }
+
+        final Lookup l = new Lookup(worker, r, req);
+        worker = null;
+
+        l.submitted = System.currentTimeMillis();
+        l.future = CaldavBWIntf.getQueryPool().submit(l);
+        lookups.add(l);
+      }
+
+      while (collected < lookups.size()) {
+        res.addAll(collect(lookups.get(collected), timeout));
+        collected++;
+      }
+
+      return res;
+    } finally {
+      /* Anything outstanding after a failure is abandoned */
+      for (int i = collected; i < lookups.size(); i++) {
+        lookups.get(i).abandon();
+      }
+
+      if (worker != null) {
+        worker.close();
+      }
+    }
+  }
+
+  /* ====================================================================
+   *                   Private methods
+   * ==================================================================== */
+
+  /* What each worker needs to rebuild the request */
+  private static class Request {
+    final CalDAVCollection<?> col;
+    final String ical;
+    final String contentType;
+    final int method;
+    final String originator;
+    final boolean iSchedule;
+
+    Request(final CalDAVCollection<?> col,
+            final String ical,
+            final String contentType,
+            final int method,
+            final String originator,
+            final boolean iSchedule) {
+      this.col = col;
+      this.ical = ical;
+      this.contentType = contentType;
+      this.method = method;
+      this.originator = originator;
+      this.iSchedule = iSchedule;
+    }
+  }
+
+  /* One recipient. The worker is confined to the thread which claims
+     the lookup - the pool thread running call or the request thread -
+     or closed by abandon if neither does.
+   */
+  private static class Lookup
+          implements Callable<Collection<SchedRecipientResult>> {
+    private final SysIntf worker;
+    final String recipient;
+    private final Request req;
+
+    private final AtomicBoolean claimed = new AtomicBoolean();
+
+    long submitted;
+    Future<Collection<SchedRecipientResult>> future;
+
+    Lookup(final SysIntf worker,
+           final String recipient,
+           final Request req) {
+      this.worker = worker;
+      this.recipient = recipient;
+      this.req = req;
+    }
+
+    @Override
+    public Collection<SchedRecipientResult> call() throws Exception {
+      if (!claimed.compareAndSet(false, true)) {
+        return null;
+      }
+
+      return lookup();
+    }
+
+    /* Claim the lookup for the calling thread if it has not started */
+    boolean claim() {
+      if (!claimed.compareAndSet(false, true)) {
+        return false;
+      }
+
+      future.cancel(false);
+      return true;
+    }
+
+    /* Called by the thread which claimed the lookup */
+    Collection<SchedRecipientResult> lookup() throws WebdavException {
+      try {
+        final CalDAVEvent<?> ev =
+                worker.fromIcal(req.col,
+                                new StringReader(req.ical),
+                                req.contentType,
+                                IcalResultType.OneComponent,
+                                false).getEvent();
+
+        final Set<String> rs = new HashSet<>();
+        rs.add(recipient);
+
+        ev.setRecipients(rs);
+        ev.setScheduleMethod(req.method);
+        ev.setOriginator(req.originator);
+
+        return worker.requestFreeBusy(ev, req.iSchedule);
+      } finally {
+        worker.close();
+      }
+    }
+
+    void abandon() {
+      if (claimed.compareAndSet(false, true)) {
+        // Never started
+        try {
+          worker.close();
+        } catch (final Throwable ignored) {
+        }
+      }
+
+      if (future != null) {
+        future.cancel(true);
+      }
+    }
+  }
+
+  private Collection<SchedRecipientResult> collect(final Lookup l,
+                                                   final Integer timeout)
+          throws WebdavException {
+    try {
+      final Collection<SchedRecipientResult> srrs;
+
+      if (timeout == null) {
+        srrs = waitOrRun(l);
+      } else {
+        final long wait = l.submitted + timeout - System.currentTimeMillis();
+
+        srrs = l.future.get(Math.max(wait, 0), TimeUnit.MILLISECONDS);
+      }
+
+      if (srrs != null) {
+        return srrs;
+      }
+    } catch (final TimeoutException te) {
+      if (debug()) {
+        debug("Free-busy timed out for " + l.recipient);
+      }
+
+      l.abandon();
+      return result(l.recipient, SchedRecipientResult.scheduleDeferred);
+    } catch (final InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new WebdavException(ie);
+    } catch (final ExecutionException ee) {
+      error(ee.getCause());
+    }
+
+    return result(l.recipient, SchedRecipientResult.scheduleError);
+  }
+
+  /* Wait for the lookup to start. If it doesn't the pool is busy, so
+     carry it out here.
+   */
+  private Collection<SchedRecipientResult> waitOrRun(final Lookup l)
+          throws InterruptedException, ExecutionException {
+    try {
+      return l.future.get(startWait, TimeUnit.MILLISECONDS);
+    } catch (final TimeoutException ignored) {
+    }
+
+    if (!l.claim()) {
+      // Running - wait for it
+      return l.future.get();
+    }
+
+    if (debug()) {
+      debug("Free-busy lookup for " + l.recipient +
+                    " not started - running it inline");
+    }
+
+    try {
+      return l.lookup();
+    } catch (final WebdavException we) {
+      throw new ExecutionException(we);
+    }
+  }
+
+  private static Collection<SchedRecipientResult> result(
+          final String recipient,
+          final int status) {
+    final SchedRecipientResult srr = new SchedRecipientResult();
+
+    srr.recipient = recipient;
+    srr.status = status;
+
+    return Collections.singletonList(srr);
+  }
+
+  /* ====================================================================
+   *                   Logged methods
+   * ==================================================================== */
+
+  private final BwLogger logger = new BwLogger();
+
+  @Override
+  public BwLogger getLogger() {
+    if ((logger.getLoggedClass() == null) && (logger.getLoggedName() == null)) {
+      logger.setLoggedClass(getClass());
+    }
+
+    return logger;
+  }
+}
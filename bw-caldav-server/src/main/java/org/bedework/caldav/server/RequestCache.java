@@ -0,0 +1,225 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.server;
+
+import org.bedework.webdav.servlet.shared.WebdavException;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/** A request scoped identity map from path to collection and entity
+ * objects. Within a single request each path is resolved through the
+ * SysIntf at most once and every lookup gets the same object.
+ *
+ * <p>Failed lookups are remembered as well. Any change made through the
+ * interface must be followed by a call to invalidate.
+ *
+ * <p>Not thread safe - one of these belongs to one CaldavBWIntf.
+ *
+ * @author Mike Douglass
+ */
+class RequestCache {
+  /** Fetch an object on a cache miss
+   *
+   * @param <T> type of object
+   */
+  interface Loader<T> {
+    /**
+     * @param path of object
+     * @return object or null for not found
+     * @throws WebdavException on fatal error
+     */
+    T load(String path) throws WebdavException;
+  }
+
+  private final Map<String, CalDAVCollection<?>> collections =
+          new HashMap<>();
+
+  private final Map<String, CalDAVEvent<?>> entities = new HashMap<>();
+
+  private boolean enabled = true;
+
+  private long hits;
+
+  private long misses;
+
+  /**
+   * @param val false to disable caching for the rest of the request
+   */
+  void setEnabled(final boolean val) {
+    enabled = val;
+
+    if (!val) {
+      clear();
+    }
+  }
+
+  /**
+   * @param path of collection
+   * @param loader to fetch on a miss
+   * @return collection or null
+   * @throws WebdavException on fatal error
+   */
+  CalDAVCollection<?> getCollection(
+          final String path,
+          final Loader<CalDAVCollection<?>> loader) throws WebdavException {
+    return get(collections, path, loader);
+  }
+
+  /**
+   * @param path of collection
+   * @return true if we have an entry - possibly null
+   */
+  boolean hasCollection(final String path) {
+    return enabled && collections.containsKey(path);
+  }
+
+  /**
+   * @param path of collection
+   * @return cached collection - only valid if hasCollection is true
+   */
+  CalDAVCollection<?> peekCollection(final String path) {
+    hits++;
+    return collections.get(path);
+  }
+
+  /**
+   * @param path of collection
+   * @param val collection - null for not found
+   */
+  void putCollection(final String path,
+                     final CalDAVCollection<?> val) {
+    if (enabled) {
+      collections.put(path, val);
+    }
+  }
+
+  /**
+   * @param path of entity
+   * @param loader to fetch on a miss
+   * @return entity or null
+   * @throws WebdavException on fatal error
+   */
+  CalDAVEvent<?> getEntity(
+          final String path,
+          final Loader<CalDAVEvent<?>> loader) throws WebdavException {
+    return get(entities, path, loader);
+  }
+
+  /**
+   * @param path of entity
+   * @param val entity - null for not found
+   */
+  void putEntity(final String path,
+                 final CalDAVEvent<?> val) {
+    if (enabled) {
+      entities.put(path, val);
+    }
+  }
+
+  /** Drop the entries for path, anything below it and its parent
+   * collection - the parent's state changes along with its members.
+   *
+   * @param path changed object
+   */
+  void invalidate(final String path) {
+    if (path == null) {
+      return;
+    }
+
+    String p = path;
+    if (p.endsWith("/") && (p.length() > 1)) {
+      p = p.substring(0, p.length() - 1);
+    }
+
+    final String prefix;
+    if (p.endsWith("/")) {
+      prefix = p;
+    } else {
+      prefix = p + "/";
+    }
+
+    removeTree(collections, p, prefix);
+    removeTree(entities, p, prefix);
+
+    final int pos = p.lastIndexOf('/');
+    if (pos > 0) {
+      collections.remove(p.substring(0, pos));
+    }
+  }
+
+  /** Drop everything
+   */
+  void clear() {
+    collections.clear();
+    entities.clear();
+  }
+
+  /**
+   * @return number of lookups satisfied from the cache
+   */
+  long getHits() {
+    return hits;
+  }
+
+  /**
+   * @return number of lookups passed to the loader
+   */
+  long getMisses() {
+    return misses;
+  }
+
+  private <T> T get(final Map<String, T> map,
+                    final String path,
+                    final Loader<T> loader) throws WebdavException {
+    if (!enabled) {
+      misses++;
+      return loader.load(path);
+    }
+
+    final T val = map.get(path);
+
+    if ((val != null) || map.containsKey(path)) {
+      hits++;
+      return val;
+    }
+
+    misses++;
+
+    final T res = loader.load(path);
+    map.put(path, res);
+
+    return res;
+  }
+
+  private static void removeTree(final Map<String, ?> map,
+                                 final String path,
+                                 final String prefix) {
+    map.remove(path);
+
+    final Iterator<String> it = map.keySet().iterator();
+
+    while (it.hasNext()) {
+      if (it.next().startsWith(prefix)) {
+        it.remove();
+      }
+    }
+  }
+}
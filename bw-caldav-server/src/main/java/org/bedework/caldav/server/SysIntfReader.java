@@ -22,111 +22,187 @@ import org.bedework.util.logging.BwLogger;
 import org.bedework.util.logging.Logged;
 
 import java.io.IOException;
-import java.io.LineNumberReader;
 import java.io.Reader;
 
-/** Not sure why we need this - perhaps just for tracing?
+/** A Reader which normalizes line endings to CRLF and ensures the last
+ * line is terminated. Lines ending in CR, LF or CRLF are all accepted.
+ * Lines are traced when debug is enabled.
+ *
+ * <p>Input is read in blocks and runs of characters between line ends
+ * are copied in bulk.
  *
  * @author douglm
  *
  */
 public class SysIntfReader extends Reader implements Logged {
-  // separate out interleaved trace
-  private volatile static int objnum;
+  private static final int bufferSize = 8192;
+
+  private final Reader rdr;
+
+  private final char[] buff = new char[bufferSize];
+  private int buffPos;
+  private int buffLen;
 
-  private LineNumberReader lnr;
+  /* CR has been returned - LF is next */
+  private boolean pendingLf;
 
-  private char[] curChars;
-  private int len;
-  private int pos;
-  private boolean doneCr;
-  private boolean doneLf = true;
+  /* Last input char was CR - skip a following LF */
+  private boolean skipLf;
+
+  /* Characters returned since the last line end */
+  private boolean lineOpen;
 
   private boolean eof;
 
-  private char nextChar;
+  /* Non-null if tracing */
+  private final StringBuilder traceLine;
+
+  private final char[] single = new char[1];
 
   /**
    * @param rdr
    */
   public SysIntfReader(final Reader rdr) {
     super();
-    lnr = new LineNumberReader(rdr);
-    objnum++;
+    this.rdr = rdr;
+
+    if (getLogger().isDebugEnabled()) {
+      traceLine = new StringBuilder();
+    } else {
+      traceLine = null;
+    }
   }
 
   @Override
   public int read() throws IOException {
-    if (!getNextChar()) {
+    if (read(single, 0, 1) < 0) {
       return -1;
     }
 
-    return nextChar;
+    return single[0];
   }
 
   @Override
   public int read(final char[] cbuf, final int off,
                   final int len) throws IOException {
-    if (eof) {
-      return -1;
+    if (len == 0) {
+      return 0;
     }
 
     int ct = 0;
+
     while (ct < len) {
-      if (!getNextChar()) {
-        eof = true;
-        return ct;
+      if (pendingLf) {
+        cbuf[off + ct] = '\n';
+        ct++;
+        pendingLf = false;
+        continue;
+      }
+
+      if (buffPos == buffLen) {
+        if ((ct > 0) || !fill()) {
+          // Return what we have rather than block
+          break;
+        }
+        continue;
+      }
+
+      if (skipLf) {
+        skipLf = false;
+
+        if (buff[buffPos] == '\n') {
+          buffPos++;
+          continue;
+        }
+      }
+
+      /* Copy up to the next line end */
+      final int start = buffPos;
+      final int limit = Math.min(buffLen, start + len - ct);
+      int i = start;
+
+      while (i < limit) {
+        final char c = buff[i];
+
+        if ((c == '\r') || (c == '\n')) {
+          break;
+        }
+
+        i++;
       }
 
-      cbuf[off + ct] = nextChar;
-      ct++;
+      final int n = i - start;
+      if (n > 0) {
+        System.arraycopy(buff, start, cbuf, off + ct, n);
+        ct += n;
+        buffPos = i;
+        lineOpen = true;
+
+        if (traceLine != null) {
+          traceLine.append(buff, start, n);
+        }
+      }
+
+      if (i < limit) {
+        // At a line end - there is room for the CR
+        skipLf = buff[i] == '\r';
+        buffPos++;
+        cbuf[off + ct] = '\r';
+        ct++;
+        endLine();
+      }
+    }
+
+    if (ct == 0) {
+      return -1;
     }
 
     return ct;
   }
 
-  private boolean getNextChar() throws IOException {
+  /* Returns false at eof - after queueing a line end if needed */
+  private boolean fill() throws IOException {
     if (eof) {
       return false;
     }
 
-    if (doneLf) {
-      // Get new line
-      String ln = lnr.readLine();
+    int ct;
+    do {
+      ct = rdr.read(buff, 0, buff.length);
+    } while (ct == 0);
 
-      if (ln == null) {
-        eof = true;
-        return false;
-      }
-
-      if (getLogger().isDebugEnabled()) {
-        debug(ln);
-      }
+    buffPos = 0;
 
-      pos = 0;
-      len = ln.length();
-      curChars = ln.toCharArray();
-      doneLf = false;
-      doneCr = false;
+    if (ct > 0) {
+      buffLen = ct;
+      return true;
     }
 
-    if (pos == len) {
-      if (!doneCr) {
-        doneCr = true;
-        nextChar = '\r';
-        return true;
-      }
+    buffLen = 0;
+    eof = true;
 
-      doneLf = true;
-      nextChar = '\n';
-      return true;
+    if (!lineOpen) {
+      return false;
     }
 
-    nextChar = curChars[pos];
-    pos ++;
+    /* Terminate the last line */
+    buff[0] = '\n';
+    buffLen = 1;
+    skipLf = false;
+
     return true;
   }
 
+  private void endLine() {
+    lineOpen = false;
+    pendingLf = true;
+
+    if (traceLine != null) {
+      debug(traceLine.toString());
+      traceLine.setLength(0);
+    }
+  }
+
   @Override
   public void close() {
   }
@@ -0,0 +1,373 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.server.cache;
+
+import org.bedework.access.CurrentAccess;
+import org.bedework.access.PrivilegeDefs;
+import org.bedework.caldav.server.CalDAVCollection;
+import org.bedework.caldav.server.sysinterface.SysIntf;
+import org.bedework.util.logging.BwLogger;
+import org.bedework.util.logging.Logged;
+import org.bedework.webdav.servlet.shared.WebdavException;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** A bounded cache of collection metadata shared by all requests.
+ *
+ * <p>Entries hold the copy returned by SysIntf.snapshotCollection along
+ * with the sync token at the time it was taken. Before an entry is used
+ * the token is fetched again and the entry discarded if it changed.
+ * Each request gets its own copy of the snapshot and access is checked
+ * for the current principal. If the principal has no access the lookup
+ * goes to the SysIntf so that the result is exactly what getCollection
+ * would have returned.
+ *
+ * <p>The least recently used entries are evicted once the cache is full.
+ *
+ * @author douglm
+ */
+public class CollectionCache implements Logged, CollectionCacheMBean {
+  private static final int defaultMaxSize = 1000;
+
+  private volatile int maxSize = defaultMaxSize;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong stale = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  private static class Entry {
+    final CalDAVCollection<?> col;
+    final String token;
+
+    Entry(final CalDAVCollection<?> col,
+          final String token) {
+      this.col = col;
+      this.token = token;
+    }
+  }
+
+  /* Guarded by itself. Access ordered for lru eviction. */
+  private final Map<String, Entry> entries =
+          new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    final Map.Entry<String, Entry> eldest) {
+              if (size() <= maxSize) {
+                return false;
+              }
+
+              evictions.incrementAndGet();
+              return true;
+            }
+          };
+
+  /** Get a collection - from the cache if we have a valid entry.
+   *
+   * @param sysi for the current request
+   * @param path of collection
+   * @return collection or null for unknown collection
+   * @throws WebdavException on fatal error
+   */
+  public CalDAVCollection<?> getCollection(final SysIntf sysi,
+                                           final String path)
+          throws WebdavException {
+    if ((maxSize <= 0) || (path == null)) {
+      return sysi.getCollection(path);
+    }
+
+    final String key = key(sysi, path);
+    final Entry ent;
+
+    synchronized (entries) {
+      ent = entries.get(key);
+    }
+
+    if (ent != null) {
+      final CalDAVCollection<?> col = fromEntry(sysi, key, ent);
+
+      if (col != null) {
+        hits.incrementAndGet();
+        return col;
+      }
+    }
+
+    misses.incrementAndGet();
+
+    final CalDAVCollection<?> col = sysi.getCollection(path);
+
+    if (col != null) {
+      put(sysi, key, col);
+    }
+
+    return col;
+  }
+
+  /** Get a number of collections. Those without a valid entry are
+   * fetched with a single call to SysIntf.getCollections.
+   *
+   * @param sysi for the current request
+   * @param paths of collections
+   * @return map of path to collection - unknown paths are absent
+   * @throws WebdavException on fatal error
+   */
+  public Map<String, CalDAVCollection<?>> getCollections(
+          final SysIntf sysi,
+          final Set<String> paths) throws WebdavException {
+    if (maxSize <= 0) {
+      return sysi.getCollections(paths);
+    }
+
+    final Map<String, CalDAVCollection<?>> res = new HashMap<>();
+    final Set<String> toFetch = new TreeSet<>();
+
+    for (final String path: paths) {
+      final String key = key(sysi, path);
+      final Entry ent;
+
+      synchronized (entries) {
+        ent = entries.get(key);
+      }
+
+      if (ent != null) {
+        final CalDAVCollection<?> col = fromEntry(sysi, key, ent);
+
+        if (col != null) {
+          hits.incrementAndGet();
+          res.put(path, col);
+          continue;
+        }
+      }
+
+      misses.incrementAndGet();
+      toFetch.add(path);
+    }
+
+    if (toFetch.isEmpty()) {
+      return res;
+    }
+
+    final Map<String, CalDAVCollection<?>> fetched =
+            sysi.getCollections(toFetch);
+
+    for (final String path: toFetch) {
+      final CalDAVCollection<?> col = fetched.get(path);
+
+      if (col != null) {
+        put(sysi, key(sysi, path), col);
+        res.put(path, col);
+      }
+    }
+
+    return res;
+  }
+
+  /** Discard the entries for path and anything below it
+   *
+   * @param path changed collection
+   */
+  public void invalidate(final String path) {
+    if (path == null) {
+      return;
+    }
+
+    /* Keys end with the path - the prefix identifies the sysintf */
+    final String sub;
+    if (path.endsWith("/")) {
+      sub = path;
+    } else {
+      sub = path + "/";
+    }
+
+    synchronized (entries) {
+      final Iterator<String> it = entries.keySet().iterator();
+
+      while (it.hasNext()) {
+        final String key = it.next();
+        final int pos = key.indexOf('|');
+        final String kpath = key.substring(pos + 1);
+
+        if (kpath.equals(path) || kpath.startsWith(sub)) {
+          it.remove();
+        }
+      }
+    }
+  }
+
+  /* ====================================================================
+   *                   MBean methods
+   * ==================================================================== */
+
+  @Override
+  public void setMaxSize(final int val) {
+    maxSize = Math.max(0, val);
+
+    if (maxSize == 0) {
+      synchronized (entries) {
+        entries.clear();
+      }
+    }
+  }
+
+  @Override
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  @Override
+  public int getSize() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  @Override
+  public long getHits() {
+    return hits.get();
+  }
+
+  @Override
+  public long getMisses() {
+    return misses.get();
+  }
+
+  @Override
+  public long getStale() {
+    return stale.get();
+  }
+
+  @Override
+  public long getEvictions() {
+    return evictions.get();
+  }
+
+  @Override
+  public void flush() {
+    synchronized (entries) {
+      entries.clear();
+    }
+
+    hits.set(0);
+    misses.set(0);
+    stale.set(0);
+    evictions.set(0);
+  }
+
+  /* ====================================================================
+   *                   Private methods
+   * ==================================================================== */
+
+  /* Return a per-request copy or null if the entry is unusable */
+  private CalDAVCollection<?> fromEntry(final SysIntf sysi,
+                                       final String key,
+                                       final Entry ent) {
+    try {
+      final String token = sysi.getSyncToken(ent.col);
+
+      if ((token == null) || !token.equals(ent.token)) {
+        stale.incrementAndGet();
+        remove(key, ent);
+        return null;
+      }
+
+      final CalDAVCollection<?> col = sysi.snapshotCollection(ent.col);
+      if (col == null) {
+        return null;
+      }
+
+      final CurrentAccess ca =
+              sysi.checkAccess(col, PrivilegeDefs.privAny, true);
+
+      if ((ca == null) || !ca.getAccessAllowed()) {
+        return null;
+      }
+
+      return col;
+    } catch (final Throwable t) {
+      // Probably gone - let the sysintf decide
+      if (debug()) {
+        debug("Discarding cached collection " + key + ": " + t);
+      }
+
+      remove(key, ent);
+      return null;
+    }
+  }
+
+  private void put(final SysIntf sysi,
+                   final String key,
+                   final CalDAVCollection<?> col) {
+    try {
+      final CalDAVCollection<?> snap = sysi.snapshotCollection(col);
+      if (snap == null) {
+        return;
+      }
+
+      final String token = sysi.getSyncToken(col);
+      if (token == null) {
+        return;
+      }
+
+      synchronized (entries) {
+        entries.put(key, new Entry(snap, token));
+      }
+    } catch (final Throwable t) {
+      // Just don't cache it
+      if (debug()) {
+        debug("Unable to cache collection " + key + ": " + t);
+      }
+    }
+  }
+
+  private void remove(final String key,
+                      final Entry ent) {
+    synchronized (entries) {
+      if (entries.get(key) == ent) {
+        entries.remove(key);
+      }
+    }
+  }
+
+  /* Contexts may use different implementations */
+  private static String key(final SysIntf sysi,
+                            final String path) {
+    return sysi.getClass().getName() + "|" + path;
+  }
+
+  /* ====================================================================
+   *                   Logged methods
+   * ==================================================================== */
+
+  private final BwLogger logger = new BwLogger();
+
+  @Override
+  public BwLogger getLogger() {
+    if ((logger.getLoggedClass() == null) && (logger.getLoggedName() == null)) {
+      logger.setLoggedClass(getClass());
+    }
+
+    return logger;
+  }
+}
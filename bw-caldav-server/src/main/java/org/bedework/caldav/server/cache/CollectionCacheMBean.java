@@ -0,0 +1,87 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.server.cache;
+
+import org.bedework.util.jmx.MBeanInfo;
+
+/** Statistics and control for the cache of collection metadata shared
+ * between requests.
+ *
+ * @author douglm
+ */
+public interface CollectionCacheMBean {
+  static final String serviceName =
+          "org.bedework.caldav:service=CollectionCache";
+
+  /* ========================================================================
+   * Attributes
+   * ======================================================================== */
+
+  /** Set the maximum number of entries. 0 disables the cache.
+   *
+   * @param val max entries
+   */
+  void setMaxSize(int val);
+
+  /**
+   * @return max entries
+   */
+  @MBeanInfo("Maximum number of cached collections - 0 disables the cache")
+  int getMaxSize();
+
+  /**
+   * @return current number of entries
+   */
+  @MBeanInfo("Number of cached collections")
+  int getSize();
+
+  /**
+   * @return number of lookups satisfied from the cache
+   */
+  @MBeanInfo("Lookups satisfied from the cache")
+  long getHits();
+
+  /**
+   * @return number of lookups which went to the SysIntf
+   */
+  @MBeanInfo("Lookups which went to the SysIntf")
+  long getMisses();
+
+  /**
+   * @return number of entries discarded because the sync token changed
+   */
+  @MBeanInfo("Entries discarded because the sync token changed")
+  long getStale();
+
+  /**
+   * @return number of entries evicted to stay within the max size
+   */
+  @MBeanInfo("Entries evicted to stay within the max size")
+  long getEvictions();
+
+  /* ========================================================================
+   * Operations
+   * ======================================================================== */
+
+  /** Discard all entries and reset the statistics
+   *
+   */
+  @MBeanInfo("Discard all entries and reset the statistics")
+  void flush();
+}
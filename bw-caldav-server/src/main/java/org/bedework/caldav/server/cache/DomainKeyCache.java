@@ -0,0 +1,233 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.server.cache;
+
+import org.bedework.caldav.server.sysinterface.SysIntf;
+import org.bedework.webdav.servlet.shared.WebdavException;
+
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** A cache of the iSchedule domain keys this server publishes, shared by
+ * all requests. Each entry holds the key record ready for serving, or
+ * the fact that there is no key, and expires after a fixed time.
+ *
+ * <p>It also records the time taken to verify the DKIM signatures of
+ * incoming messages.
+ *
+ * @author douglm
+ */
+public class DomainKeyCache implements DomainKeyCacheMBean {
+  private static final int defaultMaxSize = 100;
+
+  private static final int defaultTtl = 600;
+
+  private volatile int maxSize = defaultMaxSize;
+
+  private volatile int ttl = defaultTtl;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong negativeHits = new AtomicLong();
+  private final AtomicLong loads = new AtomicLong();
+  private final AtomicLong verifications = new AtomicLong();
+  private final AtomicLong verifyFailures = new AtomicLong();
+  private final AtomicLong verifyNanos = new AtomicLong();
+
+  private static class Entry {
+    /* null if there is no key */
+    final String record;
+
+    final long expires;
+
+    Entry(final String record,
+          final long expires) {
+      this.record = record;
+      this.expires = expires;
+    }
+  }
+
+  /* Guarded by itself. Access ordered for lru eviction. */
+  private final Map<String, Entry> entries =
+          new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    final Map.Entry<String, Entry> eldest) {
+              return size() > maxSize;
+            }
+          };
+
+  /** Get the key record for a domain and service.
+   *
+   * @param sysi for the current request
+   * @param domain the domain
+   * @param service the service
+   * @return record of the form "v=DKIM1;p=..." or null for no key
+   * @throws WebdavException on fatal error
+   */
+  public String getKeyRecord(final SysIntf sysi,
+                             final String domain,
+                             final String service) throws WebdavException {
+    final String key = sysi.getClass().getName() + "|" +
+            domain + "|" + service;
+    final long now = System.currentTimeMillis();
+
+    if (maxSize > 0) {
+      synchronized (entries) {
+        final Entry ent = entries.get(key);
+
+        if (ent != null) {
+          if (ent.expires > now) {
+            if (ent.record == null) {
+              negativeHits.incrementAndGet();
+            } else {
+              hits.incrementAndGet();
+            }
+
+            return ent.record;
+          }
+
+          entries.remove(key);
+        }
+      }
+    }
+
+    final byte[] pk = sysi.getPublicKey(domain, service);
+    loads.incrementAndGet();
+
+    final String record;
+
+    if ((pk == null) || (pk.length == 0)) {
+      record = null;
+    } else {
+      record = "v=DKIM1;p=" + Base64.getUrlEncoder().encodeToString(pk);
+    }
+
+    if (maxSize > 0) {
+      synchronized (entries) {
+        entries.put(key, new Entry(record, now + ttl * 1000L));
+      }
+    }
+
+    return record;
+  }
+
+  /** Record the outcome of a DKIM verification
+   *
+   * @param nanos time taken
+   * @param ok true if the signature was verified
+   */
+  public void verified(final long nanos,
+                       final boolean ok) {
+    verifications.incrementAndGet();
+    verifyNanos.addAndGet(nanos);
+
+    if (!ok) {
+      verifyFailures.incrementAndGet();
+    }
+  }
+
+  /* ====================================================================
+   *                   MBean methods
+   * ==================================================================== */
+
+  @Override
+  public void setMaxSize(final int val) {
+    maxSize = Math.max(0, val);
+
+    if (maxSize == 0) {
+      synchronized (entries) {
+        entries.clear();
+      }
+    }
+  }
+
+  @Override
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  @Override
+  public void setTtl(final int val) {
+    ttl = Math.max(0, val);
+  }
+
+  @Override
+  public int getTtl() {
+    return ttl;
+  }
+
+  @Override
+  public int getSize() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  @Override
+  public long getHits() {
+    return hits.get();
+  }
+
+  @Override
+  public long getNegativeHits() {
+    return negativeHits.get();
+  }
+
+  @Override
+  public long getLoads() {
+    return loads.get();
+  }
+
+  @Override
+  public long getVerifications() {
+    return verifications.get();
+  }
+
+  @Override
+  public long getVerifyFailures() {
+    return verifyFailures.get();
+  }
+
+  @Override
+  public double getVerifyAverageMillis() {
+    final long n = verifications.get();
+
+    if (n == 0) {
+      return 0;
+    }
+
+    return verifyNanos.get() / 1000000.0 / n;
+  }
+
+  @Override
+  public void flush() {
+    synchronized (entries) {
+      entries.clear();
+    }
+
+    hits.set(0);
+    negativeHits.set(0);
+    loads.set(0);
+    verifications.set(0);
+    verifyFailures.set(0);
+    verifyNanos.set(0);
+  }
+}
@@ -0,0 +1,111 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.server.cache;
+
+import org.bedework.util.jmx.MBeanInfo;
+
+/** Statistics and control for the cache of iSchedule domain keys and for
+ * DKIM verification of incoming messages.
+ *
+ * @author douglm
+ */
+public interface DomainKeyCacheMBean {
+  static final String serviceName =
+          "org.bedework.caldav:service=DomainKeyCache";
+
+  /* ========================================================================
+   * Attributes
+   * ======================================================================== */
+
+  /** Set the maximum number of keys cached. 0 disables the cache.
+   *
+   * @param val max keys
+   */
+  void setMaxSize(int val);
+
+  /**
+   * @return max keys
+   */
+  @MBeanInfo("Maximum number of keys cached - 0 disables the cache")
+  int getMaxSize();
+
+  /** Set the number of seconds a key, or the absence of one, is cached.
+   *
+   * @param val seconds
+   */
+  void setTtl(int val);
+
+  /**
+   * @return seconds
+   */
+  @MBeanInfo("Seconds a key, or the absence of one, is cached")
+  int getTtl();
+
+  /**
+   * @return current number of keys cached
+   */
+  @MBeanInfo("Number of keys cached")
+  int getSize();
+
+  /**
+   * @return number of lookups satisfied from the cache
+   */
+  @MBeanInfo("Lookups satisfied from the cache")
+  long getHits();
+
+  /**
+   * @return number of lookups satisfied by a cached absence of a key
+   */
+  @MBeanInfo("Lookups satisfied by a cached absence of a key")
+  long getNegativeHits();
+
+  /**
+   * @return number of lookups which fetched the key
+   */
+  @MBeanInfo("Lookups which fetched the key")
+  long getLoads();
+
+  /**
+   * @return number of DKIM verifications of incoming messages
+   */
+  @MBeanInfo("DKIM verifications of incoming messages")
+  long getVerifications();
+
+  /**
+   * @return number of failed DKIM verifications
+   */
+  @MBeanInfo("Failed DKIM verifications")
+  long getVerifyFailures();
+
+  /**
+   * @return average verification time in milliseconds
+   */
+  @MBeanInfo("Average DKIM verification time in milliseconds")
+  double getVerifyAverageMillis();
+
+  /* ========================================================================
+   * Operations
+   * ======================================================================== */
+
+  /** Discard all entries and reset the statistics
+   *
+   */
+  @MBeanInfo("Discard all entries and reset the statistics")
+  void flush();
+}
@@ -0,0 +1,295 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.server.cache;
+
+import org.bedework.access.AccessPrincipal;
+import org.bedework.caldav.server.CalDAVCollection;
+import org.bedework.caldav.server.sysinterface.SysIntf;
+import org.bedework.webdav.servlet.shared.WebdavException;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** An index of the entity tags of the members of collections shared by
+ * all requests. It allows conditional requests to be answered without
+ * loading the entities.
+ *
+ * <p>The tags for a collection are loaded in bulk with
+ * SysIntf.getEtags and held along with the collection sync token at the
+ * time. An entry is only used while the token is unchanged. Changes made
+ * through this server update the entry in place if it was current
+ * before the change.
+ *
+ * <p>Entries are held per principal as SysIntf.getEtags is evaluated with
+ * the access of the current principal. Callers must still check access
+ * to the collection.
+ *
+ * @author douglm
+ */
+public class EtagIndex implements EtagIndexMBean {
+  private static final int defaultMaxSize = 200;
+
+  private volatile int maxSize = defaultMaxSize;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong loads = new AtomicLong();
+  private final AtomicLong notModified = new AtomicLong();
+
+  private static class Entry {
+    String token;
+
+    final Map<String, String> etags;
+
+    Entry(final String token,
+          final Map<String, String> etags) {
+      this.token = token;
+      this.etags = etags;
+    }
+  }
+
+  /* Guarded by itself. Access ordered for lru eviction. */
+  private final Map<String, Entry> entries =
+          new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    final Map.Entry<String, Entry> eldest) {
+              return size() > maxSize;
+            }
+          };
+
+  /** Get the entity tag of a member of a collection.
+   *
+   * @param sysi for the current request
+   * @param col the collection
+   * @param name of the member
+   * @return etag or null if not known
+   * @throws WebdavException on fatal error
+   */
+  public String getEtag(final SysIntf sysi,
+                        final CalDAVCollection<?> col,
+                        final String name) throws WebdavException {
+    if (maxSize <= 0) {
+      return null;
+    }
+
+    final String key = key(sysi, col.getPath());
+    final String token = sysi.getSyncToken(col);
+
+    if (token == null) {
+      return null;
+    }
+
+    synchronized (entries) {
+      final Entry ent = entries.get(key);
+
+      if ((ent != null) && token.equals(ent.token)) {
+        hits.incrementAndGet();
+        return ent.etags.get(name);
+      }
+    }
+
+    /* Token fetched first - if anything changes meanwhile the entry
+       will be seen as stale next time.
+     */
+    final Map<String, String> etags = sysi.getEtags(col);
+
+    if (etags == null) {
+      return null;
+    }
+
+    loads.incrementAndGet();
+
+    synchronized (entries) {
+      entries.put(key, new Entry(token, new HashMap<>(etags)));
+    }
+
+    return etags.get(name);
+  }
+
+  /** Record a change to a member made through this server.
+   *
+   * @param sysi for the current request
+   * @param colPath path of the collection
+   * @param before collection token before the change - null if unknown
+   * @param after collection token after the change - null if unknown
+   * @param name of the member
+   * @param etag new tag - null if deleted
+   */
+  public void changed(final SysIntf sysi,
+                      final String colPath,
+                      final String before,
+                      final String after,
+                      final String name,
+                      final String etag) {
+    if (colPath == null) {
+      return;
+    }
+
+    final String key = key(sysi, colPath);
+
+    synchronized (entries) {
+      final Entry ent = entries.get(key);
+
+      if (ent == null) {
+        return;
+      }
+
+      if ((before == null) || (after == null) || (name == null) ||
+          !before.equals(ent.token)) {
+        entries.remove(key);
+        return;
+      }
+
+      if (etag == null) {
+        ent.etags.remove(name);
+      } else {
+        ent.etags.put(name, etag);
+      }
+
+      ent.token = after;
+    }
+  }
+
+  /** Count a request answered with 304
+   */
+  public void notModified() {
+    notModified.incrementAndGet();
+  }
+
+  /** Discard the entries for path, anything below it and its parent
+   *
+   * @param path changed collection or entity
+   */
+  public void invalidate(final String path) {
+    if (path == null) {
+      return;
+    }
+
+    String p = path;
+    if (p.endsWith("/") && (p.length() > 1)) {
+      p = p.substring(0, p.length() - 1);
+    }
+
+    final String sub = p + "/";
+
+    final String parent;
+    final int pos = p.lastIndexOf('/');
+    if (pos > 0) {
+      parent = p.substring(0, pos);
+    } else {
+      parent = null;
+    }
+
+    synchronized (entries) {
+      final Iterator<String> it = entries.keySet().iterator();
+
+      while (it.hasNext()) {
+        final String key = it.next();
+        final String kpath = key.substring(
+                key.indexOf('|', key.indexOf('|') + 1) + 1);
+
+        if (kpath.equals(p) || kpath.startsWith(sub) ||
+                kpath.equals(parent)) {
+          it.remove();
+        }
+      }
+    }
+  }
+
+  /* ====================================================================
+   *                   MBean methods
+   * ==================================================================== */
+
+  @Override
+  public void setMaxSize(final int val) {
+    maxSize = Math.max(0, val);
+
+    if (maxSize == 0) {
+      synchronized (entries) {
+        entries.clear();
+      }
+    }
+  }
+
+  @Override
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  @Override
+  public int getSize() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  @Override
+  public long getHits() {
+    return hits.get();
+  }
+
+  @Override
+  public long getLoads() {
+    return loads.get();
+  }
+
+  @Override
+  public long getNotModified() {
+    return notModified.get();
+  }
+
+  @Override
+  public void flush() {
+    synchronized (entries) {
+      entries.clear();
+    }
+
+    hits.set(0);
+    loads.set(0);
+    notModified.set(0);
+  }
+
+  /* ====================================================================
+   *                   Private methods
+   * ==================================================================== */
+
+  /* Paths are only unique within a system and the tags visible
+   * depend on the principal.
+   */
+  private static String key(final SysIntf sysi,
+                            final String path) {
+    String p = path;
+    if (p.endsWith("/") && (p.length() > 1)) {
+      p = p.substring(0, p.length() - 1);
+    }
+
+    final AccessPrincipal pr = sysi.getPrincipal();
+    final String href;
+    if ((pr == null) || (pr.getPrincipalRef() == null)) {
+      href = "";
+    } else {
+      href = pr.getPrincipalRef();
+    }
+
+    return sysi.getClass().getName() + "|" + href + "|" + p;
+  }
+}
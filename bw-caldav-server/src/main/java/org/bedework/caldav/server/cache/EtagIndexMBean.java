@@ -0,0 +1,81 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.server.cache;
+
+import org.bedework.util.jmx.MBeanInfo;
+
+/** Statistics and control for the index of entity tags used to answer
+ * conditional requests.
+ *
+ * @author douglm
+ */
+public interface EtagIndexMBean {
+  static final String serviceName =
+          "org.bedework.caldav:service=EtagIndex";
+
+  /* ========================================================================
+   * Attributes
+   * ======================================================================== */
+
+  /** Set the maximum number of collections indexed. 0 disables the index.
+   *
+   * @param val max collections
+   */
+  void setMaxSize(int val);
+
+  /**
+   * @return max collections
+   */
+  @MBeanInfo("Maximum number of collections indexed - 0 disables the index")
+  int getMaxSize();
+
+  /**
+   * @return current number of collections indexed
+   */
+  @MBeanInfo("Number of collections indexed")
+  int getSize();
+
+  /**
+   * @return number of lookups satisfied from the index
+   */
+  @MBeanInfo("Lookups satisfied from the index")
+  long getHits();
+
+  /**
+   * @return number of lookups which loaded the collection tags
+   */
+  @MBeanInfo("Lookups which loaded the collection tags")
+  long getLoads();
+
+  /**
+   * @return number of requests answered with 304
+   */
+  @MBeanInfo("Requests answered with 304 Not Modified")
+  long getNotModified();
+
+  /* ========================================================================
+   * Operations
+   * ======================================================================== */
+
+  /** Discard all entries and reset the statistics
+   *
+   */
+  @MBeanInfo("Discard all entries and reset the statistics")
+  void flush();
+}
@@ -0,0 +1,388 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.server.cache;
+
+import org.bedework.access.AccessPrincipal;
+import org.bedework.caldav.server.sysinterface.SysIntf;
+import org.bedework.caldav.util.BusyPeriods;
+import org.bedework.caldav.util.TimeRangeEngine;
+import org.bedework.webdav.servlet.shared.WebdavException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** A cache of busy time shared by all requests. Entries are keyed by the
+ * current principal, the root of a collection tree, e.g. a principal
+ * home, and the depth searched. The principal is part of the key as the
+ * loader only sees the collections that principal may access.
+ *
+ * <p>Busy time is computed for the requested window widened to whole
+ * UTC days and held as BusyPeriods. Any later request for a window
+ * inside a cached one is answered by clipping the cached periods.
+ *
+ * <p>Busy time is loaded outside the lock. A load which overlaps an
+ * invalidation of its tree is returned to the caller but not cached.
+ *
+ * <p>Only changes made through this server invalidate entries. Changes
+ * made by other clients of the system or other servers in a cluster are
+ * not seen until the entry expires, so busy time may be stale for up to
+ * the ttl.
+ *
+ * <p>The cache holds no access information - callers must check access
+ * to the root.
+ *
+ * @author douglm
+ */
+public class FreeBusyCache implements FreeBusyCacheMBean {
+  private static final int defaultMaxSize = 500;
+
+  private static final int defaultTtl = 300;
+
+  /* Windows held for one tree */
+  private static final int maxWindows = 8;
+
+  /* Invalidations remembered to check loads in progress */
+  private static final int maxInvalidations = 64;
+
+  private static final long day = 24 * 60 * 60 * 1000L;
+
+  private volatile int maxSize = defaultMaxSize;
+
+  private volatile int ttl = defaultTtl;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong loads = new AtomicLong();
+
+  /** Computes busy time for a window.
+   */
+  public interface Loader {
+    /**
+     * @param start of window - TimeRangeEngine.unboundedStart for none
+     * @param end of window - TimeRangeEngine.unboundedEnd for none
+     * @return busy periods
+     * @throws WebdavException on fatal error
+     */
+    BusyPeriods load(long start, long end) throws WebdavException;
+  }
+
+  private static class Entry {
+    final long start;
+    final long end;
+
+    final BusyPeriods busy;
+
+    final long expires;
+
+    Entry(final long start,
+          final long end,
+          final BusyPeriods busy,
+          final long expires) {
+      this.start = start;
+      this.end = end;
+      this.busy = busy;
+      this.expires = expires;
+    }
+
+    boolean covers(final long s,
+                   final long e,
+                   final long now) {
+      return (expires > now) && (start <= s) && (end >= e);
+    }
+  }
+
+  private static class Invalidation {
+    final long generation;
+    final String path;
+
+    Invalidation(final long generation,
+                 final String path) {
+      this.generation = generation;
+      this.path = path;
+    }
+  }
+
+  /* Guarded by entries. Counts invalidations. */
+  private long generation;
+
+  /* Guarded by entries. The most recent invalidations, oldest first. */
+  private final Deque<Invalidation> invalidations = new ArrayDeque<>();
+
+  /* Guarded by itself. Access ordered for lru eviction. */
+  private final Map<String, List<Entry>> entries =
+          new LinkedHashMap<String, List<Entry>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    final Map.Entry<String, List<Entry>> eldest) {
+              return size() > maxSize;
+            }
+          };
+
+  /** Get the busy time in a window.
+   *
+   * @param sysi for the current request
+   * @param root path of the collection tree
+   * @param depth depth searched below root
+   * @param start of window - TimeRangeEngine.unboundedStart for none
+   * @param end of window - TimeRangeEngine.unboundedEnd for none
+   * @param loader computes busy time if it is not cached
+   * @return busy periods clipped to the window
+   * @throws WebdavException on fatal error
+   */
+  public BusyPeriods getBusy(final SysIntf sysi,
+                        final String root,
+                        final int depth,
+                        final long start,
+                        final long end,
+                        final Loader loader) throws WebdavException {
+    if (maxSize <= 0) {
+      return loader.load(start, end).clip(start, end);
+    }
+
+    final String key = key(sysi, root) + "|" + depth;
+    final long now = System.currentTimeMillis();
+    final long gen;
+
+    synchronized (entries) {
+      gen = generation;
+
+      final List<Entry> ents = entries.get(key);
+
+      if (ents != null) {
+        for (final Entry ent: ents) {
+          if (ent.covers(start, end, now)) {
+            hits.incrementAndGet();
+            return ent.busy.clip(start, end);
+          }
+        }
+      }
+    }
+
+    final long ws = widenStart(start);
+    final long we = widenEnd(end);
+
+    final BusyPeriods busy = loader.load(ws, we);
+    loads.incrementAndGet();
+
+    final Entry ent = new Entry(ws, we, busy, now + ttl * 1000L);
+
+    synchronized (entries) {
+      if (invalidatedSince(gen, rootOf(key))) {
+        // Possibly stale - don't keep it
+        return busy.clip(start, end);
+      }
+
+      List<Entry> ents = entries.get(key);
+
+      if (ents == null) {
+        ents = new ArrayList<>();
+        entries.put(key, ents);
+      }
+
+      ents.removeIf(e -> (e.expires <= now) ||
+              ((e.start >= ws) && (e.end <= we)));
+
+      if (ents.size() >= maxWindows) {
+        ents.remove(0);
+      }
+
+      ents.add(ent);
+    }
+
+    return busy.clip(start, end);
+  }
+
+  /** Discard the entries for trees which contain path or are below it
+   *
+   * @param path changed collection or entity
+   */
+  public void invalidate(final String path) {
+    if (path == null) {
+      return;
+    }
+
+    String p = path;
+    if (p.endsWith("/") && (p.length() > 1)) {
+      p = p.substring(0, p.length() - 1);
+    }
+
+    synchronized (entries) {
+      generation++;
+      invalidations.addLast(new Invalidation(generation, p));
+
+      if (invalidations.size() > maxInvalidations) {
+        invalidations.removeFirst();
+      }
+
+      final Iterator<String> it = entries.keySet().iterator();
+
+      while (it.hasNext()) {
+        if (related(rootOf(it.next()), p)) {
+          it.remove();
+        }
+      }
+    }
+  }
+
+  /* ====================================================================
+   *                   MBean methods
+   * ==================================================================== */
+
+  @Override
+  public void setMaxSize(final int val) {
+    maxSize = Math.max(0, val);
+
+    if (maxSize == 0) {
+      synchronized (entries) {
+        entries.clear();
+      }
+    }
+  }
+
+  @Override
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  @Override
+  public void setTtl(final int val) {
+    ttl = Math.max(0, val);
+  }
+
+  @Override
+  public int getTtl() {
+    return ttl;
+  }
+
+  @Override
+  public int getSize() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  @Override
+  public long getHits() {
+    return hits.get();
+  }
+
+  @Override
+  public long getLoads() {
+    return loads.get();
+  }
+
+  @Override
+  public void flush() {
+    synchronized (entries) {
+      entries.clear();
+
+      // Loads in progress are not kept
+      generation++;
+      invalidations.clear();
+    }
+
+    hits.set(0);
+    loads.set(0);
+  }
+
+  /* ====================================================================
+   *                   Private methods
+   * ==================================================================== */
+
+  /* Called with entries locked. True if the tree at root may have
+     changed since gen. If we no longer remember that far back assume
+     it has.
+   */
+  private boolean invalidatedSince(final long gen,
+                                   final String root) {
+    if (generation == gen) {
+      return false;
+    }
+
+    final Invalidation oldest = invalidations.peekFirst();
+
+    if ((oldest == null) || (oldest.generation > gen + 1)) {
+      return true;
+    }
+
+    for (final Invalidation inv: invalidations) {
+      if ((inv.generation > gen) && related(root, inv.path)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /* Root of the tree from the key */
+  private static String rootOf(final String key) {
+    return key.substring(key.indexOf('|', key.indexOf('|') + 1) + 1,
+                         key.lastIndexOf('|'));
+  }
+
+  /* True if a change to path affects the tree at root */
+  private static boolean related(final String root,
+                                 final String path) {
+    return root.equals(path) || path.startsWith(root + "/") ||
+            root.startsWith(path + "/");
+  }
+
+  private static long widenStart(final long val) {
+    if (val == TimeRangeEngine.unboundedStart) {
+      return val;
+    }
+
+    return Math.floorDiv(val, day) * day;
+  }
+
+  private static long widenEnd(final long val) {
+    if ((val == TimeRangeEngine.unboundedEnd) ||
+            (val > TimeRangeEngine.unboundedEnd - day)) {
+      return val;
+    }
+
+    return -Math.floorDiv(-val, day) * day;
+  }
+
+  /* Paths are only unique within a system and the busy time seen
+   * depends on the principal.
+   */
+  private static String key(final SysIntf sysi,
+                            final String path) {
+    String p = path;
+    if (p.endsWith("/") && (p.length() > 1)) {
+      p = p.substring(0, p.length() - 1);
+    }
+
+    final AccessPrincipal pr = sysi.getPrincipal();
+    final String href;
+    if ((pr == null) || (pr.getPrincipalRef() == null)) {
+      href = "";
+    } else {
+      href = pr.getPrincipalRef();
+    }
+
+    return sysi.getClass().getName() + "|" + href + "|" + p;
+  }
+}
@@ -0,0 +1,91 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.server.cache;
+
+import org.bedework.util.jmx.MBeanInfo;
+
+/** Statistics and control for the cache of busy time.
+ *
+ * @author douglm
+ */
+public interface FreeBusyCacheMBean {
+  static final String serviceName =
+          "org.bedework.caldav:service=FreeBusyCache";
+
+  /* ========================================================================
+   * Attributes
+   * ======================================================================== */
+
+  /** Set the maximum number of collection trees cached. 0 disables the
+   * cache.
+   *
+   * @param val max trees
+   */
+  void setMaxSize(int val);
+
+  /**
+   * @return max trees
+   */
+  @MBeanInfo("Maximum number of collection trees cached - 0 disables the cache")
+  int getMaxSize();
+
+  /** Set the number of seconds busy time is cached. Changes made through
+   * this server discard entries at once. Changes made elsewhere, e.g. by
+   * other clients or servers in a cluster, are not seen until the entry
+   * expires so this is the bound on staleness.
+   *
+   * @param val seconds
+   */
+  void setTtl(int val);
+
+  /**
+   * @return seconds
+   */
+  @MBeanInfo("Seconds busy time is cached - changes not made through " +
+          "this server may be unseen for this long")
+  int getTtl();
+
+  /**
+   * @return current number of collection trees cached
+   */
+  @MBeanInfo("Number of collection trees cached")
+  int getSize();
+
+  /**
+   * @return number of lookups satisfied from the cache
+   */
+  @MBeanInfo("Lookups satisfied from the cache")
+  long getHits();
+
+  /**
+   * @return number of lookups which computed busy time
+   */
+  @MBeanInfo("Lookups which computed busy time")
+  long getLoads();
+
+  /* ========================================================================
+   * Operations
+   * ======================================================================== */
+
+  /** Discard all entries and reset the statistics
+   *
+   */
+  @MBeanInfo("Discard all entries and reset the statistics")
+  void flush();
+}
@@ -20,6 +20,7 @@ package org.bedework.caldav.server.calquery;
 
 import org.bedework.caldav.server.CaldavComponentNode;
 import org.bedework.caldav.server.sysinterface.SysIntf;
+import org.bedework.caldav.util.CalendarProjection;
 import org.bedework.caldav.util.DumpUtil;
 import org.bedework.caldav.util.ParseUtil;
 import org.bedework.util.logging.BwLogger;
@@ -43,18 +44,10 @@ import ietf.params.xml.ns.caldav.LimitFreebusySetType;
 import ietf.params.xml.ns.caldav.LimitRecurrenceSetType;
 import ietf.params.xml.ns.caldav.PropType;
 import net.fortuna.ical4j.model.Calendar;
-import net.fortuna.ical4j.model.Component;
-import net.fortuna.ical4j.model.ComponentList;
-import net.fortuna.ical4j.model.Property;
-import net.fortuna.ical4j.model.PropertyList;
-import net.fortuna.ical4j.model.component.VEvent;
 import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 
-import java.util.Collection;
-import java.util.Iterator;
-
 import javax.servlet.http.HttpServletResponse;
 import javax.xml.namespace.QName;
 
@@ -294,99 +287,64 @@ public class CalData extends WebdavProperty implements Logged {
       return;
     }
 
-    // Assume all properties for that level.
-
-    // Currently we only handle VEVENT -
-    // If there's no VEVENT element what does that imply?
+    if (comp.getComp().isEmpty() ||
+            ((contentType != null) &&
+                     contentType.equals(XcalTags.mimetype))) {
+      /* No special instructions - or xCal. Projection works on the
+         ical4j form but xCal is written from the event so for now it
+         is returned in full.
+       */
+      node.writeContent(xml, null, contentType);
+      return;
+    }
 
-    for (final CompType subcomp : comp.getComp()) {
-      final String nm = subcomp.getName().toUpperCase();
+    /* Each requested component type has its own properties and
+       sub-components. Types not requested are dropped.
+     */
+    writeCdata(node.getIntf(), xml,
+               node.getIcal(spec(comp)),
+               contentType);
+  }
 
-      if ("VEVENT".equals(nm) ||
-              "VTODO".equals(nm)) {
-        if (subcomp.getAllprop() != null) {
-          node.writeContent(xml, null, contentType);
-          return;
-        }
+  private static CalendarProjection.Spec spec(final CompType comp) {
+    final CalendarProjection.Spec spec =
+            new CalendarProjection.Spec(comp.getName());
 
-        if ((contentType != null) &&
-                contentType.equals(XcalTags.mimetype)) {
-          // XXX Just return the whole lot for the moment
-          node.writeContent(xml, null, contentType);
-        } else {
-          xml.cdataValue(transformVevent(node.getIntf(),
-                                         node.getIcal(),
-                                         subcomp.getProp(),
-                                         contentType));
-        }
-
-        return;
+    if (comp.getAllprop() != null) {
+      spec.setAllProps();
+    } else {
+      for (final PropType pr: comp.getProp()) {
+        spec.addProp(pr.getName());
       }
     }
 
-    // No special instructions.
+    if (comp.getAllcomp() != null) {
+      spec.setAllComps();
+    } else {
+      for (final CompType sub: comp.getComp()) {
+        spec.addComp(spec(sub));
+      }
+    }
 
-    node.writeContent(xml, null, contentType);
+    return spec;
   }
 
-  /* Transform one or more VEVENT objects based on a list of required
-   * properties.
+  /* Stream the calendar into the xml output as CDATA rather than
+   * building the whole string first.
    */
-  private String transformVevent(final SysIntf intf,
-                                 final Calendar ical,
-                                 final Collection<PropType> props,
-                                 final String contentType)  throws WebdavException {
+  private void writeCdata(final SysIntf intf,
+                          final XmlEmit xml,
+                          final Calendar cal,
+                          final String contentType) throws WebdavException {
     try {
-      final Calendar nical = new Calendar();
-      final PropertyList pl = ical.getProperties();
-      final PropertyList npl = nical.getProperties();
-
-      // Add all vcalendar properties to new cal
-      Iterator it = pl.iterator();
-
-      while (it.hasNext()) {
-        npl.add((Property)it.next());
-      }
+      final CdataWriter cw = new CdataWriter(xml);
 
-      final ComponentList cl = ical.getComponents();
-      final ComponentList ncl = nical.getComponents();
-
-      it = cl.iterator();
-
-      while (it.hasNext()) {
-        final Component c = (Component)it.next();
-
-        if (!(c instanceof VEvent)) {
-          ncl.add(c);
-        } else {
-          final VEvent v = new VEvent();
-          
-          // This adds a DTSTAMP
-
-          final PropertyList vpl = c.getProperties();
-          final PropertyList nvpl = v.getProperties();
-
-          nvpl.clear();
-          
-          for (final PropType pr: props) {
-            final Property p = (Property)vpl.getProperty(pr.getName());
-
-            if (p != null) {
-              nvpl.add(p);
-            }
-          }
-
-          ncl.add(v);
-        }
-      }
-
-      return intf.toIcalString(nical, contentType);
+      intf.writeIcal(cal, cw, contentType);
+      cw.close();
+    } catch (final WebdavException we) {
+      throw we;
     } catch (final Throwable t) {
-      if (debug()) {
-        getLogger().error("transformVevent exception: ", t);
-      }
-
-      throw new WebdavBadRequest();
+      throw new WebdavException(t);
     }
   }
 
@@ -0,0 +1,152 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.server.calquery;
+
+import org.bedework.util.xml.XmlEmit;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/** A Writer which streams its output into an XmlEmit as CDATA. Output
+ * is buffered and emitted as a sequence of CDATA sections, so a large
+ * calendar object is never held in full. Adjacent CDATA sections are
+ * equivalent to one section holding the concatenated text.
+ *
+ * <p>Chunks are never split inside a surrogate pair. Escaping of "]]>"
+ * is left to XmlEmit which handles that for each section.
+ *
+ * <p>close must be called to emit any remaining text. It does not close
+ * the XmlEmit.
+ *
+ * @author Mike Douglass
+ */
+public class CdataWriter extends Writer {
+  private static final int defaultSize = 8192;
+
+  private final XmlEmit xml;
+
+  private final char[] buff;
+
+  private int len;
+
+  /**
+   * @param xml emitter to receive output
+   */
+  public CdataWriter(final XmlEmit xml) {
+    this(xml, defaultSize);
+  }
+
+  /**
+   * @param xml emitter to receive output
+   * @param size of buffer - the largest CDATA section emitted
+   */
+  public CdataWriter(final XmlEmit xml,
+                     final int size) {
+    this.xml = xml;
+    buff = new char[Math.max(size, 2)];
+  }
+
+  @Override
+  public void write(final int c) throws IOException {
+    if (len == buff.length) {
+      emit(false);
+    }
+
+    buff[len] = (char)c;
+    len++;
+  }
+
+  @Override
+  public void write(final char[] cbuf,
+                    final int off,
+                    final int count) throws IOException {
+    int pos = off;
+    int remaining = count;
+
+    while (remaining > 0) {
+      if (len == buff.length) {
+        emit(false);
+      }
+
+      final int n = Math.min(remaining, buff.length - len);
+      System.arraycopy(cbuf, pos, buff, len, n);
+      len += n;
+      pos += n;
+      remaining -= n;
+    }
+  }
+
+  @Override
+  public void write(final String str,
+                    final int off,
+                    final int count) throws IOException {
+    int pos = off;
+    int remaining = count;
+
+    while (remaining > 0) {
+      if (len == buff.length) {
+        emit(false);
+      }
+
+      final int n = Math.min(remaining, buff.length - len);
+      str.getChars(pos, pos + n, buff, len);
+      len += n;
+      pos += n;
+      remaining -= n;
+    }
+  }
+
+  /** Emit anything buffered. A trailing high surrogate is held back
+   * until its pair arrives.
+   */
+  @Override
+  public void flush() throws IOException {
+    emit(false);
+  }
+
+  @Override
+  public void close() throws IOException {
+    emit(true);
+  }
+
+  private void emit(final boolean all) throws IOException {
+    int n = len;
+
+    if (!all && (n > 0) && Character.isHighSurrogate(buff[n - 1])) {
+      n--;
+    }
+
+    if (n == 0) {
+      return;
+    }
+
+    try {
+      xml.cdataValue(new String(buff, 0, n));
+    } catch (final IOException ioe) {
+      throw ioe;
+    } catch (final Throwable t) {
+      throw new IOException(t);
+    }
+
+    len -= n;
+    if (len > 0) {
+      buff[0] = buff[n];
+    }
+  }
+}
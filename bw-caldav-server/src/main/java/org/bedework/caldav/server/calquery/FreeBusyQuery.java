@@ -23,6 +23,7 @@ import org.bedework.caldav.server.CalDAVEvent;
 import org.bedework.caldav.server.sysinterface.SysIntf;
 import org.bedework.caldav.util.ParseUtil;
 import org.bedework.caldav.util.TimeRange;
+import org.bedework.caldav.util.TimeRangeEngine;
 import org.bedework.util.logging.BwLogger;
 import org.bedework.util.logging.Logged;
 import org.bedework.util.xml.XmlUtil;
@@ -30,6 +31,15 @@ import org.bedework.util.xml.tagdefs.CaldavTags;
 import org.bedework.webdav.servlet.shared.WebdavBadRequest;
 import org.bedework.webdav.servlet.shared.WebdavException;
 
+import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.Component;
+import net.fortuna.ical4j.model.ComponentList;
+import net.fortuna.ical4j.model.DateTime;
+import net.fortuna.ical4j.model.Period;
+import net.fortuna.ical4j.model.PeriodList;
+import net.fortuna.ical4j.model.Property;
+import net.fortuna.ical4j.model.property.Status;
+import net.fortuna.ical4j.model.property.Transp;
 import org.w3c.dom.Node;
 
 /**
@@ -91,6 +101,90 @@ public class FreeBusyQuery implements Logged {
     }
   }
 
+  /** Add the busy time for the events in ical to busy. Recurring events
+   * are expanded only within the range, overrides replace the instances
+   * they override and transparent or cancelled instances are skipped.
+   * Available to SysIntf implementations which build free-busy from
+   * ical4j objects.
+   *
+   * @param ical holding the event and any overrides
+   * @param tr range of interest - null for unbounded
+   * @param busy periods are added here
+   */
+  public static void addBusy(final Calendar ical,
+                             final TimeRange tr,
+                             final PeriodList busy) {
+    addBusy(ical, tr, null, busy);
+  }
+
+  /** As above with DATE and floating values taken to be in tz - usually
+   * the timezone of the calendar collection.
+   *
+   * @param ical holding the event and any overrides
+   * @param tr range of interest - null for unbounded
+   * @param tz for DATE and floating values - may be null
+   * @param busy periods are added here
+   */
+  public static void addBusy(final Calendar ical,
+                             final TimeRange tr,
+                             final java.util.TimeZone tz,
+                             final PeriodList busy) {
+    if (ical == null) {
+      return;
+    }
+
+    final long rs;
+    final long re;
+
+    if (tr == null) {
+      rs = TimeRangeEngine.unboundedStart;
+      re = TimeRangeEngine.unboundedEnd;
+    } else {
+      rs = tr.getStartMillis();
+      re = tr.getEndMillis();
+    }
+
+    final TimeRangeEngine.InstanceHandler h = (comp, s, e) -> {
+      if (!transparent(comp)) {
+        final DateTime start = new DateTime(Math.max(s, rs));
+        start.setUtc(true);
+        final DateTime end = new DateTime(Math.min(e, re));
+        end.setUtc(true);
+
+        busy.add(new Period(start, end));
+      }
+
+      return true;
+    };
+
+    final ComponentList cl = ical.getComponents();
+
+    for (int i = 0; i < cl.size(); i++) {
+      final Component comp = (Component)cl.get(i);
+
+      if (!Component.VEVENT.equals(comp.getName())) {
+        continue;
+      }
+
+      if (comp.getProperty(Property.RECURRENCE_ID) == null) {
+        TimeRangeEngine.instances(rs, re, comp, ical, tz, h);
+        continue;
+      }
+
+      /* Overrides are delivered with a recurring master. Without one
+         the override stands alone.
+       */
+      if (!TimeRangeEngine.hasRecurringMaster(comp, ical)) {
+        TimeRangeEngine.instance(rs, re, comp, tz, h);
+      }
+    }
+  }
+
+  private static boolean transparent(final Component comp) {
+    return Transp.TRANSPARENT.equals(comp.getProperty(Property.TRANSP)) ||
+            Status.VEVENT_CANCELLED.equals(comp.getProperty(Property.STATUS));
+  }
+
   /** Debug method
    *
    */
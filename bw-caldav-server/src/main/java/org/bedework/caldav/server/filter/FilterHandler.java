@@ -23,6 +23,7 @@ import org.bedework.caldav.server.CalDAVEvent;
 import org.bedework.caldav.server.CaldavBwNode;
 import org.bedework.caldav.server.CaldavComponentNode;
 import org.bedework.caldav.server.sysinterface.RetrievalMode;
+import org.bedework.caldav.server.sysinterface.SysIntf;
 import org.bedework.caldav.util.filter.FilterUtil;
 import org.bedework.caldav.util.filter.parse.EventQuery;
 import org.bedework.caldav.util.filter.parse.Filters;
@@ -42,6 +43,7 @@ import net.fortuna.ical4j.model.Component;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 
 import javax.servlet.http.HttpServletResponse;
@@ -133,12 +135,26 @@ public class FilterHandler implements Logged {
 
   private final FilterType f;
 
+  /* From the query - resolves DATE and floating values */
+  private final String tzid;
+
   /** Constructor
    *
    * @param f a filter
    */
   public FilterHandler(final FilterType f) {
+    this(f, null);
+  }
+
+  /** Constructor
+   *
+   * @param f a filter
+   * @param tzid timezone of the query - may be null
+   */
+  public FilterHandler(final FilterType f,
+                       final String tzid) {
     this.f = f;
+    this.tzid = tzid;
   }
 
   /** Use the given query to return a collection of nodes. An exception will
@@ -155,7 +171,7 @@ public class FilterHandler implements Logged {
                                           final List<String> retrieveList,
                                           final RetrievalMode retrieveRecur) throws WebdavException {
     try {
-      eventq = Filters.getQuery(f);
+      eventq = Filters.getQuery(f, tzid);
 
       /*if (debug()) {
       if (eventq.trange == null) {
@@ -191,6 +207,73 @@ public class FilterHandler implements Logged {
     }
   }
 
+  /** As for query but the result is delivered as an iterator so that
+   * callers can process and discard each event in turn.
+   *
+   * @param wdnode    WebdavNsNode defining root of search
+   * @param retrieveList   If non-null limit required fields.
+   * @param retrieveRecur  How we retrieve recurring events
+   * @return Iterator over event objects (null for no result)
+   * @throws WebdavException on error
+   */
+  public Iterator<CalDAVEvent<?>> queryIterator(
+          final CaldavBwNode wdnode,
+          final List<String> retrieveList,
+          final RetrievalMode retrieveRecur) throws WebdavException {
+    try {
+      eventq = Filters.getQuery(f, tzid);
+
+      final CalDAVCollection<?> c =
+              (CalDAVCollection<?>)wdnode.getCollection(false);
+      if (c == null) {
+        return null;
+      }
+
+      return wdnode.getSysi().getEventsIterator(c,
+                                                eventq.filter,
+                                                retrieveList,
+                                                retrieveRecur);
+    } catch (final WebdavBadRequest | WebdavForbidden wd) {
+      throw wd;
+    } catch (final Throwable t) {
+      throw new WebdavException(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+    }
+  }
+
+  /** As for queryIterator but the collection is queried through the
+   * given interface, which may be a worker session.
+   *
+   * @param path      path of collection to search
+   * @param sysi      interface used for the query
+   * @param retrieveList   If non-null limit required fields.
+   * @param retrieveRecur  How we retrieve recurring events
+   * @return iterator over events or null for unknown collection
+   * @throws WebdavException on error
+   */
+  public Iterator<CalDAVEvent<?>> queryIterator(
+          final String path,
+          final SysIntf sysi,
+          final List<String> retrieveList,
+          final RetrievalMode retrieveRecur) throws WebdavException {
+    try {
+      eventq = Filters.getQuery(f, tzid);
+
+      final CalDAVCollection<?> c = sysi.getCollection(path);
+      if (c == null) {
+        return null;
+      }
+
+      return sysi.getEventsIterator(c,
+                                    eventq.filter,
+                                    retrieveList,
+                                    retrieveRecur);
+    } catch (final WebdavBadRequest | WebdavForbidden wd) {
+      throw wd;
+    } catch (final Throwable t) {
+      throw new WebdavException(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+    }
+  }
+
   /** Carry out any postfiltering on the collection of initialised nodes,
    *
    * @param nodes     Collection of initialised CaldavBwNode
@@ -207,50 +290,67 @@ public class FilterHandler implements Logged {
       trace("post filtering needed");
     }
 
+    final ArrayList<WebdavNsNode> filtered = new ArrayList<>();
+
+    for (final WebdavNsNode node: nodes) {
+      if (postFilter(node)) {
+        filtered.add(node);
+      }
+    }
+
+    return filtered;
+  }
+
+  /** Carry out any postfiltering on a single initialised node.
+   *
+   * @param node     initialised CaldavBwNode
+   * @return true if the node passes the filter
+   * @throws WebdavException on error
+   */
+  public boolean postFilter(final WebdavNsNode node) throws WebdavException {
+    if (!eventq.postFilter) {
+      return true;
+    }
+
     final CompFilterType cfltr = f.getCompFilter();
 
     // Currently only handle VCALENDAR for top level.
     if (!"VCALENDAR".equals(cfltr.getName())) {
-      return new ArrayList<>();
+      return false;
     }
 
-    final ArrayList<WebdavNsNode> filtered = new ArrayList<>();
-
-    for (final WebdavNsNode node: nodes) {
-      final CaldavComponentNode curnode;
+    if (!(node instanceof CaldavComponentNode)) {
+      // Cannot match to anything - don't pass it?
+      return false;
+    }
 
-      if (!(node instanceof CaldavComponentNode)) {
-        // Cannot match to anything - don't pass it?
-        continue;
-      }
+    final CaldavComponentNode curnode = (CaldavComponentNode)node;
 
-      curnode = (CaldavComponentNode)node;
+    final int entityType = curnode.getEvent().getEntityType();
 
-      final int entityType = curnode.getEvent().getEntityType();
+    Collection<PropFilterType> pfs = null;
 
-      Collection<PropFilterType> pfs = null;
+    if (entityType == IcalDefs.entityTypeEvent) {
+      pfs = eventq.eventFilters;
+    } else if (entityType == IcalDefs.entityTypeTodo) {
+      pfs = eventq.todoFilters;
+    } else if (entityType == IcalDefs.entityTypeJournal) {
+      pfs = eventq.journalFilters;
+    }
 
-      if (entityType == IcalDefs.entityTypeEvent) {
-        pfs = eventq.eventFilters;
-      } else if (entityType == IcalDefs.entityTypeTodo) {
-        pfs = eventq.todoFilters;
-      } else if (entityType == IcalDefs.entityTypeJournal) {
-        pfs = eventq.journalFilters;
-      }
+    if (WebdavUtils.emptyCollection(pfs)) {
+      return false;
+    }
 
-      if (!WebdavUtils.emptyCollection(pfs)) {
-        final Component comp = curnode.getComponent();
+    final Component comp = curnode.getComponent();
 
-        for (final PropFilterType pf: pfs) {
-          if (FilterUtil.filter(pf, comp)) {
-            filtered.add(curnode);
-            break;
-          }
-        }
+    for (final PropFilterType pf: pfs) {
+      if (FilterUtil.filter(pf, comp)) {
+        return true;
       }
     }
 
-    return filtered;
+    return false;
   }
 
   /* ====================================================================
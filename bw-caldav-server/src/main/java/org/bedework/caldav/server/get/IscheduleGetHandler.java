@@ -26,7 +26,6 @@ import org.bedework.util.xml.tagdefs.IscheduleTags;
 import org.bedework.webdav.servlet.shared.WebdavException;
 
 import java.io.Writer;
-import java.util.Base64;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -88,9 +87,11 @@ public class IscheduleGetHandler extends GetHandler {
                              final String domain,
                              final String service) throws WebdavException {
     try {
-      final byte[] key = intf.getSysi().getPublicKey(domain, service);
+      final String record = CaldavBWIntf.getDomainKeys()
+                                        .getKeyRecord(intf.getSysi(),
+                                                      domain, service);
 
-      if ((key == null) || (key.length == 0)) {
+      if (record == null) {
         resp.sendError(HttpServletResponse.SC_NOT_FOUND);
         return;
       }
@@ -99,8 +100,7 @@ public class IscheduleGetHandler extends GetHandler {
 
       final Writer wtr = resp.getWriter();
 
-      wtr.write("v=DKIM1;p=");
-      wtr.write(Base64.getUrlEncoder().encodeToString(key));
+      wtr.write(record);
       wtr.close();
     } catch (final Throwable t) {
       throw new WebdavException(t);
@@ -18,15 +18,17 @@
 */
 package org.bedework.caldav.server.get;
 
+import org.bedework.caldav.server.CalDAVCollection;
 import org.bedework.caldav.server.CalDAVEvent;
 import org.bedework.caldav.server.CaldavBWIntf;
-import org.bedework.caldav.server.CaldavComponentNode;
+import org.bedework.caldav.server.CaldavCalNode;
 import org.bedework.caldav.server.RequestPars;
 import org.bedework.caldav.server.sysinterface.CalDAVAuthProperties;
 import org.bedework.caldav.server.sysinterface.SysIntf.MethodEmitted;
 import org.bedework.caldav.util.ParseUtil;
 import org.bedework.caldav.util.TimeRange;
 import org.bedework.caldav.util.filter.EntityTimeRangeFilter;
+import org.bedework.caldav.util.filter.FilterBase;
 import org.bedework.util.calendar.IcalDefs;
 import org.bedework.util.xml.tagdefs.XcalTags;
 import org.bedework.webdav.servlet.shared.WebdavException;
@@ -35,9 +37,8 @@ import org.bedework.webdav.servlet.shared.WebdavNsNode;
 
 import org.apache.commons.text.StringEscapeUtils;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.function.Supplier;
+import java.util.Collections;
+import java.util.Iterator;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -104,21 +105,15 @@ public class WebcalGetHandler extends GetHandler {
         return;
       }
 
-      final Collection<CalDAVEvent<?>> evs = new ArrayList<>();
-
+      /* The time range goes to the backend and the events are written
+         as they are retrieved - no nodes are built.
+       */
       final EntityTimeRangeFilter etrf =
               new EntityTimeRangeFilter(null,
                                         IcalDefs.entityTypeEvent,
                                         tr);
 
-      final Supplier<Object> filters = () -> etrf;
-
-      for (final WebdavNsNode child: getChildren(node, filters)) {
-        if (child instanceof CaldavComponentNode) {
-          evs.add(((CaldavComponentNode)child).getEvent());
-        }
-      }
-
+      final Iterator<CalDAVEvent<?>> evs = getEvents(node, etrf);
 
       final String suffix;
       String acceptType = pars.getAcceptType();
@@ -140,14 +135,45 @@ public class WebcalGetHandler extends GetHandler {
                              StringEscapeUtils.escapeJava(node.getDisplayname()) +
                              suffix + "\"");
 
-      getSysi().writeCalendar(evs, MethodEmitted.publish,
-                              null,
-                              resp.getWriter(),
-                              acceptType);
+      getSysi().streamCalendar(evs, MethodEmitted.publish,
+                               resp.getWriter(),
+                               acceptType);
     } catch (final WebdavException wde) {
       throw wde;
     } catch (final Throwable t) {
       throw new WebdavException(t);
     }
   }
+
+  /* As for the children of the node but only the events, fetched
+     through the undereferenced collection.
+   */
+  private Iterator<CalDAVEvent<?>> getEvents(
+          final WebdavNsNode node,
+          final FilterBase filter) throws WebdavException {
+    if (!(node instanceof CaldavCalNode)) {
+      return Collections.emptyIterator();
+    }
+
+    final CaldavCalNode cnode = (CaldavCalNode)node;
+
+    final CalDAVCollection<?> c =
+            (CalDAVCollection<?>)cnode.getCollection(true); // deref
+
+    if ((c == null) || !c.entitiesAllowed()) {
+      return Collections.emptyIterator();
+    }
+
+    final Iterator<CalDAVEvent<?>> evs =
+            getSysi().getEventsIterator(
+                    (CalDAVCollection<?>)cnode.getCollection(false),
+                    filter,
+                    null, null);
+
+    if (evs == null) {
+      return Collections.emptyIterator();
+    }
+
+    return evs;
+  }
 }
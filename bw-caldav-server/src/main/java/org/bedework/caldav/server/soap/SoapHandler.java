@@ -20,6 +20,7 @@ package org.bedework.caldav.server.soap;
 
 import org.bedework.caldav.server.CaldavBWIntf;
 import org.bedework.caldav.server.sysinterface.SysIntf;
+import org.bedework.caldav.util.JaxbContexts;
 import org.bedework.util.calendar.XcalUtil;
 import org.bedework.util.xml.tagdefs.XcalTags;
 import org.bedework.webdav.servlet.common.MethodBase;
@@ -54,7 +55,8 @@ import javax.xml.soap.SOAPMessage;
  * @author Mike Douglass
  */
 public abstract class SoapHandler extends MethodBase {
-  private MessageFactory soapMsgFactory;
+  /* Shared by all handlers - created once */
+  private static MessageFactory soapMsgFactory;
   protected JAXBContext jc;
 
   protected static final Object monitor = new Object();
@@ -67,17 +69,14 @@ public abstract class SoapHandler extends MethodBase {
     nsIntf = intf;
 
     try {
-      if (soapMsgFactory == null) {
-        soapMsgFactory = MessageFactory.newInstance();
+      synchronized (monitor) {
+        if (soapMsgFactory == null) {
+          soapMsgFactory = MessageFactory.newInstance();
+        }
       }
 
-      if (jc == null) {
-        jc = JAXBContext.newInstance(getJaxbContextPath());
-
-//        if (debug()) {
-  //        debug("Created JAXBContext: " + jc);
-    //    }
-      }
+      // Contexts are built once per path and shared
+      jc = JaxbContexts.getContext(getJaxbContextPath());
     } catch(Throwable t) {
       throw new WebdavException(t);
     }
@@ -124,15 +123,20 @@ public abstract class SoapHandler extends MethodBase {
       SOAPBody body = msg.getSOAPBody();
       SOAPHeader hdrMsg = msg.getSOAPHeader();
 
-      Unmarshaller u = jc.createUnmarshaller();
+      final String path = getJaxbContextPath();
+      final Unmarshaller u = JaxbContexts.getUnmarshaller(path);
 
-      // Only expect one header at most.
-      if ((hdrMsg != null) && hdrMsg.hasChildNodes()) {
-        res.hdrs = new Object[1];
-        res.hdrs[0] = u.unmarshal(hdrMsg.getFirstChild());
-      }
+      try {
+        // Only expect one header at most.
+        if ((hdrMsg != null) && hdrMsg.hasChildNodes()) {
+          res.hdrs = new Object[1];
+          res.hdrs[0] = u.unmarshal(hdrMsg.getFirstChild());
+        }
 
-      res.body = u.unmarshal(body.getFirstChild());
+        res.body = u.unmarshal(body.getFirstChild());
+      } finally {
+        JaxbContexts.release(path, u);
+      }
 
       return res;
     } catch(Throwable t) {
@@ -161,18 +165,24 @@ public abstract class SoapHandler extends MethodBase {
   protected Document makeDoc(final QName name,
                              final Object o) throws WebdavException {
     try {
-      Marshaller marshaller = jc.createMarshaller();
-      marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
-
       DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
       dbf.setNamespaceAware(true);
       Document doc = dbf.newDocumentBuilder().newDocument();
 
+      final String path = getJaxbContextPath();
+      final Marshaller marshaller = JaxbContexts.getMarshaller(path);
+
+      try {
+        marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+
 //      marshaller.marshal(o, doc);
 
-      marshaller.marshal(makeJAXBElement(name,
-                                         o.getClass(), o),
-                         doc);
+        marshaller.marshal(makeJAXBElement(name,
+                                           o.getClass(), o),
+                           doc);
+      } finally {
+        JaxbContexts.release(path, marshaller);
+      }
 
       return doc;
     } catch(Throwable t) {
@@ -183,9 +193,6 @@ public abstract class SoapHandler extends MethodBase {
   protected void marshal(final Object o,
                          final OutputStream out) throws WebdavException {
     try {
-      Marshaller marshaller = jc.createMarshaller();
-      marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
-
       DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
       dbf.setNamespaceAware(true);
       Document doc = dbf.newDocumentBuilder().newDocument();
@@ -193,8 +200,16 @@ public abstract class SoapHandler extends MethodBase {
       SOAPMessage msg = soapMsgFactory.createMessage();
       msg.getSOAPBody().addDocument(doc);
 
-      marshaller.marshal(o,
-                         msg.getSOAPBody());
+      final String path = getJaxbContextPath();
+      final Marshaller marshaller = JaxbContexts.getMarshaller(path);
+
+      try {
+        marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, Boolean.TRUE);
+        marshaller.marshal(o,
+                           msg.getSOAPBody());
+      } finally {
+        JaxbContexts.release(path, marshaller);
+      }
 
       msg.writeTo(out);
     } catch(Throwable t) {
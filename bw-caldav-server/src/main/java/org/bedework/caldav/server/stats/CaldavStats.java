@@ -0,0 +1,79 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.server.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Counters shared by all requests.
+ *
+ * @author douglm
+ */
+public class CaldavStats implements CaldavStatsMBean {
+  private final AtomicLong puts = new AtomicLong();
+  private final AtomicLong putEarlyRejects = new AtomicLong();
+  private final AtomicLong putLateRejects = new AtomicLong();
+
+  /** Count a calendar object PUT
+   */
+  public void put() {
+    puts.incrementAndGet();
+  }
+
+  /** Count a PUT rejected before parsing
+   */
+  public void putEarlyReject() {
+    putEarlyRejects.incrementAndGet();
+  }
+
+  /** Count a PUT rejected after parsing
+   */
+  public void putLateReject() {
+    putLateRejects.incrementAndGet();
+  }
+
+  /* ========================================================================
+   * Attributes
+   * ======================================================================== */
+
+  @Override
+  public long getPuts() {
+    return puts.get();
+  }
+
+  @Override
+  public long getPutEarlyRejects() {
+    return putEarlyRejects.get();
+  }
+
+  @Override
+  public long getPutLateRejects() {
+    return putLateRejects.get();
+  }
+
+  /* ========================================================================
+   * Operations
+   * ======================================================================== */
+
+  @Override
+  public void reset() {
+    puts.set(0);
+    putEarlyRejects.set(0);
+    putLateRejects.set(0);
+  }
+}
@@ -0,0 +1,62 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.server.stats;
+
+import org.bedework.util.jmx.MBeanInfo;
+
+/** Request statistics for the CalDAV server.
+ *
+ * @author douglm
+ */
+public interface CaldavStatsMBean {
+  static final String serviceName =
+          "org.bedework.caldav:service=CaldavStats";
+
+  /* ========================================================================
+   * Attributes
+   * ======================================================================== */
+
+  /**
+   * @return number of calendar object PUTs
+   */
+  @MBeanInfo("Calendar object PUTs")
+  long getPuts();
+
+  /**
+   * @return PUTs rejected with 412 before the body was parsed
+   */
+  @MBeanInfo("PUTs rejected with 412 before the body was parsed")
+  long getPutEarlyRejects();
+
+  /**
+   * @return PUTs rejected with 412 after the body was parsed
+   */
+  @MBeanInfo("PUTs rejected with 412 after the body was parsed")
+  long getPutLateRejects();
+
+  /* ========================================================================
+   * Operations
+   * ======================================================================== */
+
+  /** Reset the statistics
+   *
+   */
+  @MBeanInfo("Reset the statistics")
+  void reset();
+}
@@ -0,0 +1,388 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.server.sync;
+
+import org.bedework.caldav.server.sysinterface.SysIntf;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** A journal of the changes made to collections through this server,
+ * used to answer sync-collection reports without going to the SysIntf.
+ *
+ * <p>For each collection we hold a ring of changes. Each change records
+ * the collection sync token after the change, the name of the member
+ * and whether it was deleted. A change is only appended if the token
+ * before it matches the token after the previous change, so the journal
+ * is complete from its base token onwards. Anything else - a change made
+ * elsewhere or an overflow of the ring - moves the base forward or
+ * starts the journal again.
+ *
+ * <p>A report can be answered if the client token is the base or one of
+ * the journaled tokens and the last journaled token is the current
+ * token of the collection. If the client token is the current token
+ * nothing has changed. Deleted members are journaled as tombstones and
+ * reported by name.
+ *
+ * @author douglm
+ */
+public class SyncJournal implements SyncJournalMBean {
+  private static final int defaultMaxCollections = 1000;
+
+  private static final int defaultCapacity = 256;
+
+  private volatile int maxCollections = defaultMaxCollections;
+
+  private volatile int capacity = defaultCapacity;
+
+  private final AtomicLong unchanged = new AtomicLong();
+  private final AtomicLong deltas = new AtomicLong();
+  private final AtomicLong fallbacks = new AtomicLong();
+
+  /** A journaled change to a member of a collection
+   */
+  public static class Change {
+    private final String token;
+    private final String name;
+    private final boolean deleted;
+
+    Change(final String token,
+           final String name,
+           final boolean deleted) {
+      this.token = token;
+      this.name = name;
+      this.deleted = deleted;
+    }
+
+    /**
+     * @return collection sync token after the change
+     */
+    public String getToken() {
+      return token;
+    }
+
+    /**
+     * @return name of the member
+     */
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * @return true for a tombstone
+     */
+    public boolean getDeleted() {
+      return deleted;
+    }
+  }
+
+  /* Changes for one collection. Guarded by the map lock. */
+  private static class Journal {
+    /* Token from which we are complete */
+    private String base;
+
+    /* Token after the last change */
+    private String last;
+
+    private final Change[] ring;
+    private int start;
+    private int count;
+
+    Journal(final int capacity) {
+      ring = new Change[Math.max(1, capacity)];
+    }
+
+    void add(final String before,
+             final Change change) {
+      if (!before.equals(last)) {
+        // Something happened we didn't see - start again
+        base = before;
+        start = 0;
+        count = 0;
+      }
+
+      if (count == ring.length) {
+        // Drop the oldest - we are now complete from its token
+        base = ring[start].token;
+        ring[start] = null;
+        start = (start + 1) % ring.length;
+        count--;
+      }
+
+      ring[(start + count) % ring.length] = change;
+      count++;
+      last = change.token;
+    }
+
+    /* Latest change for each member since token in token order, or null
+     * if we can't tell.
+     */
+    List<Change> since(final String token) {
+      int from;
+
+      if (token.equals(base)) {
+        from = 0;
+      } else {
+        from = -1;
+
+        for (int i = count - 1; i >= 0; i--) {
+          if (token.equals(ring[(start + i) % ring.length].token)) {
+            from = i + 1;
+            break;
+          }
+        }
+
+        if (from < 0) {
+          return null;
+        }
+      }
+
+      final Map<String, Change> latest = new LinkedHashMap<>();
+
+      for (int i = from; i < count; i++) {
+        final Change c = ring[(start + i) % ring.length];
+
+        // Remove first so that order follows the latest change
+        latest.remove(c.name);
+        latest.put(c.name, c);
+      }
+
+      return new ArrayList<>(latest.values());
+    }
+  }
+
+  /* Access ordered for lru eviction. */
+  private final Map<String, Journal> journals =
+          new LinkedHashMap<String, Journal>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    final Map.Entry<String, Journal> eldest) {
+              return size() > maxCollections;
+            }
+          };
+
+  /** Record a change to a member of a collection.
+   *
+   * @param sysi for the current request
+   * @param colPath path of the collection
+   * @param before collection token before the change - null if unknown
+   * @param after collection token after the change - null if unknown
+   * @param name of the member
+   * @param deleted true if the member was deleted
+   */
+  public void changed(final SysIntf sysi,
+                      final String colPath,
+                      final String before,
+                      final String after,
+                      final String name,
+                      final boolean deleted) {
+    if ((colPath == null) || (name == null)) {
+      return;
+    }
+
+    final String key = key(sysi, colPath);
+
+    synchronized (journals) {
+      if ((maxCollections <= 0) ||
+          (before == null) || (after == null) ||
+          before.equals(after)) {
+        journals.remove(key);
+        return;
+      }
+
+      Journal j = journals.get(key);
+
+      if (j == null) {
+        j = new Journal(capacity);
+        journals.put(key, j);
+      }
+
+      j.add(before, new Change(after, name, deleted));
+    }
+  }
+
+  /** Get the changes to members of a collection since the given token.
+   *
+   * @param sysi for the current request
+   * @param colPath path of the collection
+   * @param token from the client
+   * @param current sync token of the collection
+   * @param limit max number of changes - negative for no limit
+   * @return latest change for each changed member in token order, an
+   *         empty list if nothing changed or null if the SysIntf must
+   *         be asked
+   */
+  public List<Change> changesSince(final SysIntf sysi,
+                                   final String colPath,
+                                   final String token,
+                                   final String current,
+                                   final int limit) {
+    if ((token == null) || (current == null)) {
+      fallbacks.incrementAndGet();
+      return null;
+    }
+
+    if (token.equals(current)) {
+      unchanged.incrementAndGet();
+      return new ArrayList<>();
+    }
+
+    final List<Change> changes;
+
+    synchronized (journals) {
+      final Journal j = journals.get(key(sysi, colPath));
+
+      if ((j == null) || !current.equals(j.last)) {
+        changes = null;
+      } else {
+        changes = j.since(token);
+      }
+    }
+
+    if ((changes == null) ||
+        ((limit > 0) && (changes.size() > limit))) {
+      fallbacks.incrementAndGet();
+      return null;
+    }
+
+    deltas.incrementAndGet();
+    return changes;
+  }
+
+  /** Discard the journals for path, anything below it and its parent.
+   *
+   * @param path changed collection or entity
+   */
+  public void invalidate(final String path) {
+    if (path == null) {
+      return;
+    }
+
+    String p = path;
+    if (p.endsWith("/") && (p.length() > 1)) {
+      p = p.substring(0, p.length() - 1);
+    }
+
+    final String sub = p + "/";
+
+    final String parent;
+    final int pos = p.lastIndexOf('/');
+    if (pos > 0) {
+      parent = p.substring(0, pos);
+    } else {
+      parent = null;
+    }
+
+    synchronized (journals) {
+      final Iterator<String> it = journals.keySet().iterator();
+
+      while (it.hasNext()) {
+        final String key = it.next();
+        final String kpath = key.substring(key.indexOf('|') + 1);
+
+        if (kpath.equals(p) || kpath.startsWith(sub) ||
+                kpath.equals(parent)) {
+          it.remove();
+        }
+      }
+    }
+  }
+
+  /* ====================================================================
+   *                   MBean methods
+   * ==================================================================== */
+
+  @Override
+  public void setMaxCollections(final int val) {
+    maxCollections = Math.max(0, val);
+
+    if (maxCollections == 0) {
+      synchronized (journals) {
+        journals.clear();
+      }
+    }
+  }
+
+  @Override
+  public int getMaxCollections() {
+    return maxCollections;
+  }
+
+  @Override
+  public void setCapacity(final int val) {
+    capacity = Math.max(1, val);
+  }
+
+  @Override
+  public int getCapacity() {
+    return capacity;
+  }
+
+  @Override
+  public int getSize() {
+    synchronized (journals) {
+      return journals.size();
+    }
+  }
+
+  @Override
+  public long getUnchanged() {
+    return unchanged.get();
+  }
+
+  @Override
+  public long getDeltas() {
+    return deltas.get();
+  }
+
+  @Override
+  public long getFallbacks() {
+    return fallbacks.get();
+  }
+
+  @Override
+  public void flush() {
+    synchronized (journals) {
+      journals.clear();
+    }
+
+    unchanged.set(0);
+    deltas.set(0);
+    fallbacks.set(0);
+  }
+
+  /* ====================================================================
+   *                   Private methods
+   * ==================================================================== */
+
+  /* Paths are only unique within a system */
+  private static String key(final SysIntf sysi,
+                            final String path) {
+    String p = path;
+    if (p.endsWith("/") && (p.length() > 1)) {
+      p = p.substring(0, p.length() - 1);
+    }
+
+    return sysi.getClass().getName() + "|" + p;
+  }
+}
@@ -0,0 +1,95 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.server.sync;
+
+import org.bedework.util.jmx.MBeanInfo;
+
+/** Statistics and control for the journal of changes used to answer
+ * sync-collection reports.
+ *
+ * @author douglm
+ */
+public interface SyncJournalMBean {
+  static final String serviceName =
+          "org.bedework.caldav:service=SyncJournal";
+
+  /* ========================================================================
+   * Attributes
+   * ======================================================================== */
+
+  /** Set the maximum number of collections journaled. 0 disables the
+   * journal.
+   *
+   * @param val max collections
+   */
+  void setMaxCollections(int val);
+
+  /**
+   * @return max collections
+   */
+  @MBeanInfo("Maximum number of collections journaled - 0 disables the journal")
+  int getMaxCollections();
+
+  /** Set the number of changes held for each collection. Takes effect
+   * for newly journaled collections.
+   *
+   * @param val max changes
+   */
+  void setCapacity(int val);
+
+  /**
+   * @return max changes per collection
+   */
+  @MBeanInfo("Number of changes held for each collection")
+  int getCapacity();
+
+  /**
+   * @return current number of collections journaled
+   */
+  @MBeanInfo("Number of collections journaled")
+  int getSize();
+
+  /**
+   * @return reports answered as unchanged
+   */
+  @MBeanInfo("Reports answered as unchanged")
+  long getUnchanged();
+
+  /**
+   * @return reports answered from the journal
+   */
+  @MBeanInfo("Reports answered from the journal")
+  long getDeltas();
+
+  /**
+   * @return reports passed to the SysIntf
+   */
+  @MBeanInfo("Reports passed to the SysIntf")
+  long getFallbacks();
+
+  /* ========================================================================
+   * Operations
+   * ======================================================================== */
+
+  /** Discard all journals and reset the statistics
+   *
+   */
+  @MBeanInfo("Discard all journals and reset the statistics")
+  void flush();
+}
@@ -169,4 +169,50 @@ public interface CalDAVSystemProperties extends Serializable {
    */
   @MBeanInfo("Max number of voters per vpolls. null for no limit")
   Integer getVpollMaxVoters();
+
+  /** Set the max number of items returned by one sync-collection
+   * report. Larger results are truncated and the client continues with
+   * the returned token. null for no limit
+   *
+   * @param val    Integer max
+   */
+  void setSyncMaxItems(final Integer val);
+
+  /**
+   *
+   * @return Integer
+   */
+  @MBeanInfo("Max number of items per sync-collection report. null for no limit")
+  Integer getSyncMaxItems();
+
+  /** Set the max number of sibling calendar collections queried
+   * concurrently by one depth infinity calendar-query, and of recipients
+   * of one free-busy request looked up concurrently. Requires the
+   * SysIntf to support workers. null or 1 to do one at a time.
+   *
+   * @param val    Integer max
+   */
+  void setQueryParallelism(final Integer val);
+
+  /**
+   *
+   * @return Integer
+   */
+  @MBeanInfo("Max collections or free-busy recipients handled concurrently per request. null for serial")
+  Integer getQueryParallelism();
+
+  /** Set the milliseconds allowed for each recipient of a free-busy
+   * request when recipients are looked up concurrently. Recipients not
+   * answered in time are reported as deferred. null for no limit
+   *
+   * @param val    Integer millis
+   */
+  void setFreeBusyTimeout(final Integer val);
+
+  /**
+   *
+   * @return Integer
+   */
+  @MBeanInfo("Milliseconds allowed per free-busy recipient. null for no limit")
+  Integer getFreeBusyTimeout();
 }
@@ -27,6 +27,8 @@ import org.bedework.caldav.server.CalDAVResource;
 import org.bedework.caldav.server.PropertyHandler;
 import org.bedework.caldav.server.PropertyHandler.PropertyType;
 import org.bedework.caldav.server.SysiIcalendar;
+import org.bedework.caldav.server.cache.FreeBusyCache;
+import org.bedework.caldav.util.CalendarProjection;
 import org.bedework.caldav.util.TimeRange;
 import org.bedework.caldav.util.filter.FilterBase;
 import org.bedework.caldav.util.notifications.NotificationType;
@@ -48,8 +50,13 @@ import org.oasis_open.docs.ws_calendar.ns.soap.ComponentSelectionType;
 
 import java.io.Reader;
 import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.servlet.http.HttpServletRequest;
@@ -531,6 +538,33 @@ public interface SysIntf extends WdSysIntf {
                                               RetrievalMode recurRetrieval)
           throws WebdavException;
 
+  /** As for getEvents but returns an iterator. Implementations which can
+   * deliver results from a cursor should override this so that callers
+   * need not hold the entire result in memory. The default iterates over
+   * the result of getEvents.
+   *
+   * @param col
+   * @param filter - if non-null defines a search filter
+   * @param retrieveList List of properties to retrieve or null for a full event.
+   * @param recurRetrieval How recurring event is returned.
+   * @return Iterator over populated event value objects - never null
+   * @throws WebdavException
+   */
+  default Iterator<CalDAVEvent<?>> getEventsIterator(
+          final CalDAVCollection<?> col,
+          final FilterBase filter,
+          final List<String> retrieveList,
+          final RetrievalMode recurRetrieval) throws WebdavException {
+    final Collection<CalDAVEvent<?>> evs =
+            getEvents(col, filter, retrieveList, recurRetrieval);
+
+    if (evs == null) {
+      return Collections.emptyIterator();
+    }
+
+    return evs.iterator();
+  }
+
   /** Get events given the collection and String name. Return null for not
    * found. There should be only one event or none. For recurring, the
    * overrides and possibly the instances will be attached.
@@ -544,6 +578,36 @@ public interface SysIntf extends WdSysIntf {
                               String val)
           throws WebdavException;
 
+  /** Get a number of events given the collection and their names. Names
+   * which are not found are absent from the result. Implementations
+   * which can fetch many events in a single operation should override
+   * this. The default calls getEvent for each name.
+   *
+   * @param col        CalDAVCollection object
+   * @param names      Collection of String names
+   * @return Collection of CalDAVEvent - never null
+   * @throws WebdavException on fatal error
+   */
+  default Collection<CalDAVEvent<?>> getEvents(
+          final CalDAVCollection<?> col,
+          final Collection<String> names) throws WebdavException {
+    final Collection<CalDAVEvent<?>> res = new ArrayList<>();
+
+    if (names == null) {
+      return res;
+    }
+
+    for (final String name: names) {
+      final CalDAVEvent<?> ev = getEvent(col, name);
+
+      if (ev != null) {
+        res.add(ev);
+      }
+    }
+
+    return res;
+  }
+
   /**
    * @param ev
    * @param scheduleReply - true if we want a schduling reply posted
@@ -709,6 +773,55 @@ public interface SysIntf extends WdSysIntf {
   public Collection<CalDAVCollection<?>> getCollections(CalDAVCollection<?> col)
           throws WebdavException;
 
+  /** Get a number of collections given their paths. Implementations
+   * which can fetch many collections in a single operation should
+   * override this. The default calls getCollection for each path.
+   *
+   * @param  paths    Set of collection paths
+   * @return Map      from path to collection. Unknown collections are
+   *                  absent from the map.
+   * @throws WebdavException on fatal error
+   */
+  default Map<String, CalDAVCollection<?>> getCollections(
+          final Set<String> paths) throws WebdavException {
+    final Map<String, CalDAVCollection<?>> res = new HashMap<>();
+
+    if (paths == null) {
+      return res;
+    }
+
+    for (final String path: paths) {
+      final CalDAVCollection<?> col = getCollection(path);
+
+      if (col != null) {
+        res.put(path, col);
+      }
+    }
+
+    return res;
+  }
+
+  /** Return a copy of the collection which may be cached and shared
+   * between requests and principals. The copy must hold no state which
+   * depends on the current principal - access is checked again each time
+   * it is used. It must remain valid for as long as getSyncToken
+   * returns the same value for it.
+   *
+   * <p>Copies of the copy are handed out for each request so that
+   * changes made while handling one request are not seen by another.
+   *
+   * <p>The default returns null which disables caching of collections
+   * across requests.
+   *
+   * @param col a collection obtained from this interface
+   * @return copy or null if not supported
+   * @throws WebdavException on fatal error
+   */
+  default CalDAVCollection<?> snapshotCollection(
+          final CalDAVCollection<?> col) throws WebdavException {
+    return null;
+  }
+
   /* ====================================================================
    *                   Files
    * ==================================================================== */
@@ -798,7 +911,8 @@ public interface SysIntf extends WdSysIntf {
    *
    *   @author Mike Douglass   douglm   rpi.edu
    */
-  public static class SynchReportData {
+  public static class SynchReportData
+          implements Iterable<SynchReportData.SynchReportDataItem> {
     /** The changed entity may be an event, a resource or a collection. If it is
      * deleted then it will be marked as tombstoned.
      *
@@ -948,10 +1062,15 @@ public interface SysIntf extends WdSysIntf {
       }
     }
 
-    /**
+    /** The items in token order.
      */
     public List<SynchReportDataItem> items;
 
+    /** Alternatively the items may be delivered by an iterator so the
+     * system need not hold them all at once. Used if items is null.
+     */
+    public Iterator<SynchReportDataItem> itemIterator;
+
     /** True if the report was truncated
      */
     public boolean truncated;
@@ -963,16 +1082,52 @@ public interface SysIntf extends WdSysIntf {
     /** Token for next time.
      */
     public String token;
+
+    @Override
+    public Iterator<SynchReportDataItem> iterator() {
+      if (items != null) {
+        return items.iterator();
+      }
+
+      if (itemIterator != null) {
+        return itemIterator;
+      }
+
+      return Collections.emptyIterator();
+    }
   }
 
-  /**
+  /** Also used to validate cached collections before they are reused
+   * so should be cheap to obtain.
+   *
    * @param col
    * @return A sync-token which must be a URI.
    * @throws WebdavException
    */
   public String getSyncToken(CalDAVCollection<?> col) throws WebdavException;
 
-  /**
+  /** Get the entity tags of all the calendar entities in a collection.
+   * Used to answer conditional requests without loading the entities so
+   * it should be possible without doing so. The default returns null
+   * meaning the system cannot supply the tags.
+   *
+   * <p>The result is cached for the current principal and used to answer
+   * requests after checking only read access to the collection. It must
+   * therefore omit any member the current principal may not read.
+   *
+   * @param col the collection
+   * @return map of entity name to strong etag or null
+   * @throws WebdavException
+   */
+  default Map<String, String> getEtags(final CalDAVCollection<?> col)
+          throws WebdavException {
+    return null;
+  }
+
+  /** If the result is limited it must be truncated at a token boundary
+   * and the returned token must allow the client to continue from the
+   * last item returned.
+   *
    * @param path
    * @param token
    * @param limit - negative for no limit on result set size
@@ -999,6 +1154,26 @@ public interface SysIntf extends WdSysIntf {
   public Calendar toCalendar(CalDAVEvent<?> ev,
                              boolean incSchedMethod) throws WebdavException;
 
+  /** Make an ical Calendar from an event holding only the named
+   * properties of each VEVENT, VTODO or VJOURNAL component as requested
+   * by a calendar-data prop element. Implementations able to load or
+   * convert only those properties should override the default which
+   * converts the entire event then projects.
+   *
+   * @param ev
+   * @param incSchedMethod - true if we should emit the scheduling method
+   * @param props - names of properties to return - null for all
+   * @return Calendar
+   * @throws WebdavException
+   */
+  default Calendar toCalendar(final CalDAVEvent<?> ev,
+                              final boolean incSchedMethod,
+                              final Collection<String> props)
+          throws WebdavException {
+    return CalendarProjection.project(toCalendar(ev, incSchedMethod),
+                                      props);
+  }
+
   /** Make an XML IcalendarType from an event.
    *
    * @param ev
@@ -1031,6 +1206,30 @@ public interface SysIntf extends WdSysIntf {
   public String toIcalString(Calendar cal,
                              String contentType) throws WebdavException;
 
+  /** Write a Calendar in it's string form to the given writer. This
+   * allows large objects to be streamed into the response without
+   * building the whole representation. Implementations should
+   * override the default which builds the string.
+   *
+   * <p>The writer is not flushed or closed.
+   *
+   * @param cal Calendar to convert
+   * @param wtr destination
+   * @param contentType
+   * @throws WebdavException
+   */
+  default void writeIcal(final Calendar cal,
+                         final Writer wtr,
+                         final String contentType) throws WebdavException {
+    try {
+      wtr.write(toIcalString(cal, contentType));
+    } catch (final WebdavException we) {
+      throw we;
+    } catch (final Throwable t) {
+      throw new WebdavException(t);
+    }
+  }
+
   /** What method do we want emitted */
   public static enum MethodEmitted {
     /** No method for calendar */
@@ -1059,6 +1258,33 @@ public interface SysIntf extends WdSysIntf {
                               Writer wtr,
                               String contentType) throws WebdavException;
 
+  /** Write events as an ical calendar as they are delivered by the
+   * iterator. Used for feeds which may be large. Implementations should
+   * override this to write each event as it arrives, so that memory use
+   * does not depend on the number of events. The default collects the
+   * events and calls writeCalendar.
+   *
+   * @param evs - iterator over the events
+   * @param method - what scheduling method?
+   * @param wtr - for output
+   * @param contentType - requested type. null for default
+   * @return actual contentType written
+   * @throws WebdavException on fatal error
+   */
+  default String streamCalendar(final Iterator<CalDAVEvent<?>> evs,
+                                final MethodEmitted method,
+                                final Writer wtr,
+                                final String contentType)
+          throws WebdavException {
+    final Collection<CalDAVEvent<?>> col = new ArrayList<>();
+
+    while (evs.hasNext()) {
+      col.add(evs.next());
+    }
+
+    return writeCalendar(col, method, null, wtr, contentType);
+  }
+
   /** Expected result type */
   public enum IcalResultType {
     /** Expect one (non-timezone) component only */
@@ -1121,6 +1347,28 @@ public interface SysIntf extends WdSysIntf {
    */
   public boolean validateAlarm(String val) throws WebdavException;
 
+  /** Called after init with the busy time cache shared by all
+   * requests. Implementations may use it to cache the busy time they
+   * compute for getFreeBusy. The default ignores it.
+   *
+   * @param val the cache
+   */
+  default void setFreeBusyCache(final FreeBusyCache val) {
+  }
+
+  /** Return a new session acting for the same principal, used to query
+   * a collection on another thread. A SysIntf is used by one thread at a
+   * time: the worker is handed to a query thread and, once that is done,
+   * back to the request thread which uses the entities it returned and
+   * then closes it.
+   *
+   * @return worker or null if queries cannot be run concurrently
+   * @throws WebdavException on fatal error
+   */
+  default SysIntf newWorker() throws WebdavException {
+    return null;
+  }
+
   /** Called on the way out before close if there was an error.
    *
    */
@@ -0,0 +1,135 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.server.calquery;
+
+import org.bedework.util.xml.XmlEmit;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** Tests for streaming CDATA output.
+ *
+ * @author Mike Douglass
+ */
+public class CdataWriterTest {
+  /* Records each CDATA section */
+  private static class Sections extends XmlEmit {
+    final List<String> vals = new ArrayList<>();
+
+    @Override
+    public void cdataValue(final String val) {
+      vals.add(val);
+    }
+
+    String joined() {
+      return String.join("", vals);
+    }
+  }
+
+  @Test
+  public void testChunks() throws Throwable {
+    final Sections xml = new Sections();
+
+    try (final CdataWriter cw = new CdataWriter(xml, 4)) {
+      cw.write("abcdefghij");
+    }
+
+    assertEquals("[abcd, efgh, ij]", xml.vals.toString());
+  }
+
+  @Test
+  public void testMixedWrites() throws Throwable {
+    final Sections xml = new Sections();
+    final CdataWriter cw = new CdataWriter(xml, 3);
+
+    cw.write('a');
+    cw.write("xbcdx".toCharArray(), 1, 3);
+    cw.write("efg", 0, 3);
+    cw.close();
+
+    assertEquals("abcdefg", xml.joined());
+
+    for (final String s: xml.vals) {
+      assertTrue(s.length() <= 3);
+    }
+  }
+
+  @Test
+  public void testSurrogatePairs() throws Throwable {
+    final String s = "abc😀d🎉e";
+    final Sections xml = new Sections();
+
+    try (final CdataWriter cw = new CdataWriter(xml, 4)) {
+      for (int i = 0; i < s.length(); i++) {
+        cw.write(s.charAt(i));
+      }
+    }
+
+    assertEquals(s, xml.joined());
+
+    // No section starts or ends inside a pair
+    for (final String v: xml.vals) {
+      assertFalse(v, Character.isHighSurrogate(v.charAt(v.length() - 1)));
+      assertFalse(v, Character.isLowSurrogate(v.charAt(0)));
+    }
+  }
+
+  @Test
+  public void testFlushAndClose() throws Throwable {
+    final Sections xml = new Sections();
+    final CdataWriter cw = new CdataWriter(xml);
+
+    cw.flush();
+    assertTrue(xml.vals.isEmpty());
+
+    cw.write("BEGIN:VCALENDAR\r\n");
+    cw.flush();
+    assertEquals(1, xml.vals.size());
+
+    cw.write("END:VCALENDAR\r\n");
+    cw.close();
+
+    assertEquals("BEGIN:VCALENDAR\r\nEND:VCALENDAR\r\n", xml.joined());
+    assertEquals(2, xml.vals.size());
+  }
+
+  @Test
+  public void testLargeContent() throws Throwable {
+    final StringBuilder sb = new StringBuilder();
+
+    for (int i = 0; i < 5000; i++) {
+      sb.append("DESCRIPTION:line ").append(i).append("\r\n");
+    }
+
+    final Sections xml = new Sections();
+
+    try (final CdataWriter cw = new CdataWriter(xml)) {
+      cw.write(sb.toString());
+    }
+
+    assertEquals(sb.toString(), xml.joined());
+    assertTrue(xml.vals.size() > 1);
+  }
+}
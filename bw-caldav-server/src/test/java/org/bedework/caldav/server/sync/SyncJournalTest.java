@@ -0,0 +1,203 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.server.sync;
+
+import org.bedework.caldav.server.sysinterface.SysIntf;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/** Tests for the journal of local changes used for sync reports.
+ *
+ * @author douglm
+ */
+public class SyncJournalTest {
+  private static final String col = "/user/a/calendar";
+
+  /* Only the class is used - to identify the system */
+  private static final SysIntf sysi = (SysIntf)Proxy.newProxyInstance(
+          SysIntf.class.getClassLoader(),
+          new Class<?>[]{SysIntf.class},
+          (proxy, method, args) -> null);
+
+  private SyncJournal journal;
+
+  @Before
+  public void setUp() {
+    journal = new SyncJournal();
+  }
+
+  @Test
+  public void testUnchanged() {
+    assertTrue(journal.changesSince(sysi, col, "t1", "t1", -1).isEmpty());
+    assertEquals(1, journal.getUnchanged());
+  }
+
+  @Test
+  public void testDelta() {
+    journal.changed(sysi, col, "t0", "t1", "a.ics", false);
+    journal.changed(sysi, col, "t1", "t2", "b.ics", false);
+    journal.changed(sysi, col, "t2", "t3", "a.ics", false);
+
+    // Latest change for each member, in token order
+    assertEquals("[b.ics@t2, a.ics@t3]",
+                 show(journal.changesSince(sysi, col, "t0", "t3", -1)));
+    assertEquals("[b.ics@t2, a.ics@t3]",
+                 show(journal.changesSince(sysi, col, "t1", "t3", -1)));
+    assertEquals("[a.ics@t3]",
+                 show(journal.changesSince(sysi, col, "t2", "t3", -1)));
+
+    // Trailing slash is the same collection
+    assertEquals("[a.ics@t3]",
+                 show(journal.changesSince(sysi, col + "/", "t2", "t3",
+                                           -1)));
+
+    assertEquals(4, journal.getDeltas());
+  }
+
+  @Test
+  public void testFallbacks() {
+    journal.changed(sysi, col, "t0", "t1", "a.ics", false);
+    journal.changed(sysi, col, "t1", "t2", "b.ics", false);
+
+    // Changed elsewhere since the last journaled change
+    assertNull(journal.changesSince(sysi, col, "t0", "t9", -1));
+
+    // Token we never saw
+    assertNull(journal.changesSince(sysi, col, "tx", "t2", -1));
+
+    // Too many changes for the page
+    assertNull(journal.changesSince(sysi, col, "t0", "t2", 1));
+
+    // Unknown collection
+    assertNull(journal.changesSince(sysi, "/other", "t0", "t2", -1));
+
+    // No client token
+    assertNull(journal.changesSince(sysi, col, null, "t2", -1));
+
+    assertEquals(5, journal.getFallbacks());
+  }
+
+  @Test
+  public void testTombstone() {
+    journal.changed(sysi, col, "t0", "t1", "a.ics", false);
+    journal.changed(sysi, col, "t1", "t2", "a.ics", true);
+
+    final List<SyncJournal.Change> changes =
+            journal.changesSince(sysi, col, "t0", "t2", -1);
+
+    assertEquals("[a.ics@t2]", show(changes));
+    assertTrue(changes.get(0).getDeleted());
+
+    journal.changed(sysi, col, "t2", "t3", "b.ics", false);
+
+    assertEquals("[a.ics@t2, b.ics@t3]",
+                 show(journal.changesSince(sysi, col, "t0", "t3", -1)));
+  }
+
+  @Test
+  public void testGap() {
+    journal.changed(sysi, col, "t0", "t1", "a.ics", false);
+
+    // A change we did not see happened between t1 and t5
+    journal.changed(sysi, col, "t5", "t6", "b.ics", false);
+
+    assertNull(journal.changesSince(sysi, col, "t0", "t6", -1));
+    assertEquals("[b.ics@t6]",
+                 show(journal.changesSince(sysi, col, "t5", "t6", -1)));
+
+    // Unknown tokens discard the journal
+    journal.changed(sysi, col, "t6", null, "c.ics", false);
+
+    assertNull(journal.changesSince(sysi, col, "t5", "t6", -1));
+    assertEquals(0, journal.getSize());
+  }
+
+  @Test
+  public void testOverflow() {
+    journal.setCapacity(2);
+
+    journal.changed(sysi, col, "t0", "t1", "a.ics", false);
+    journal.changed(sysi, col, "t1", "t2", "b.ics", false);
+    journal.changed(sysi, col, "t2", "t3", "c.ics", false);
+
+    // The oldest change was dropped
+    assertNull(journal.changesSince(sysi, col, "t0", "t3", -1));
+    assertEquals("[b.ics@t2, c.ics@t3]",
+                 show(journal.changesSince(sysi, col, "t1", "t3", -1)));
+  }
+
+  @Test
+  public void testInvalidate() {
+    journal.changed(sysi, col, "t0", "t1", "a.ics", false);
+    journal.changed(sysi, "/user/a/other", "t0", "t1", "a.ics", false);
+
+    // A change to a member discards the parent journal
+    journal.invalidate(col + "/a.ics");
+
+    assertNull(journal.changesSince(sysi, col, "t0", "t1", -1));
+    assertEquals(1, journal.getSize());
+
+    // A change to an ancestor discards everything below
+    journal.invalidate("/user/a");
+
+    assertEquals(0, journal.getSize());
+  }
+
+  @Test
+  public void testMaxCollections() {
+    journal.setMaxCollections(1);
+
+    journal.changed(sysi, col, "t0", "t1", "a.ics", false);
+    journal.changed(sysi, "/user/a/other", "t0", "t1", "a.ics", false);
+
+    assertEquals(1, journal.getSize());
+    assertNull(journal.changesSince(sysi, col, "t0", "t1", -1));
+
+    journal.setMaxCollections(0);
+
+    assertEquals(0, journal.getSize());
+  }
+
+  /* ====================================================================
+   *                   Private methods
+   * ==================================================================== */
+
+  private static String show(final List<SyncJournal.Change> changes) {
+    if (changes == null) {
+      return null;
+    }
+
+    final List<String> res = new ArrayList<>();
+
+    for (final SyncJournal.Change c: changes) {
+      res.add(c.getName() + "@" + c.getToken());
+    }
+
+    return res.toString();
+  }
+}
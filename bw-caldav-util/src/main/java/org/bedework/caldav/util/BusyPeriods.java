@@ -0,0 +1,600 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.util;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Collection;
+
+/** An immutable set of busy periods held as sorted, non-overlapping
+ * UTC millisecond intervals, each tagged with a free-busy type.
+ *
+ * <p>Where periods of different types overlap the stronger type wins:
+ * BUSY over BUSY-UNAVAILABLE over BUSY-TENTATIVE. Adjacent periods of
+ * the same type are merged. Building a set, and union and intersection,
+ * take O(n log n) in the number of periods. Clipping to a window takes
+ * O(log n) plus the size of the result.
+ *
+ * <p>Periods are half open - the end is not included.
+ *
+ * @author Mike Douglass
+ */
+public final class BusyPeriods {
+  /** FBTYPE=BUSY-TENTATIVE */
+  public static final int fbtypeBusyTentative = 1;
+
+  /** FBTYPE=BUSY-UNAVAILABLE */
+  public static final int fbtypeBusyUnavailable = 2;
+
+  /** FBTYPE=BUSY */
+  public static final int fbtypeBusy = 3;
+
+  private static final String[] fbtypeNames = {
+          null,
+          "BUSY-TENTATIVE",
+          "BUSY-UNAVAILABLE",
+          "BUSY"
+  };
+
+  /** Returned by firstFree when there is no free slot */
+  public static final long noSlot = Long.MIN_VALUE;
+
+  /** No busy time */
+  public static final BusyPeriods empty =
+          new BusyPeriods(new long[0], new long[0], new byte[0]);
+
+  private static final DateTimeFormatter utcFormat =
+          DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'")
+                           .withZone(ZoneOffset.UTC);
+
+  /* Content lines are folded at this many octets */
+  private static final int maxLine = 75;
+
+  private final long[] starts;
+  private final long[] ends;
+  private final byte[] types;
+
+  private BusyPeriods(final long[] starts,
+                      final long[] ends,
+                      final byte[] types) {
+    this.starts = starts;
+    this.ends = ends;
+    this.types = types;
+  }
+
+  /** Accumulates periods in any order.
+   */
+  public static class Builder {
+    private long[] starts = new long[16];
+    private long[] ends = new long[16];
+    private byte[] types = new byte[16];
+    private int size;
+
+    /**
+     * @param start of period - UTC millis
+     * @param end of period - UTC millis. Empty periods are ignored
+     * @param type fbtype constant
+     * @return this builder
+     */
+    public Builder add(final long start,
+                       final long end,
+                       final int type) {
+      if ((type < fbtypeBusyTentative) || (type > fbtypeBusy)) {
+        throw new IllegalArgumentException("Bad fbtype " + type);
+      }
+
+      if (end <= start) {
+        return this;
+      }
+
+      if (size == starts.length) {
+        starts = Arrays.copyOf(starts, size * 2);
+        ends = Arrays.copyOf(ends, size * 2);
+        types = Arrays.copyOf(types, size * 2);
+      }
+
+      starts[size] = start;
+      ends[size] = end;
+      types[size] = (byte)type;
+      size++;
+
+      return this;
+    }
+
+    /**
+     * @param val periods to add
+     * @return this builder
+     */
+    public Builder add(final BusyPeriods val) {
+      for (int i = 0; i < val.size(); i++) {
+        add(val.starts[i], val.ends[i], val.types[i]);
+      }
+
+      return this;
+    }
+
+    /**
+     * @return the sorted, merged periods
+     */
+    public BusyPeriods build() {
+      if (size == 0) {
+        return empty;
+      }
+
+      /* Merge each type separately then lay the types over each other */
+      final long[][][] byType = new long[fbtypeBusy + 1][][];
+
+      for (int t = fbtypeBusyTentative; t <= fbtypeBusy; t++) {
+        byType[t] = coalesce(t);
+      }
+
+      return flatten(byType);
+    }
+
+    /* Sort the starts and ends of one type separately and sweep them
+       counting open periods. A start at the same time as an end is taken
+       first so touching periods merge.
+     */
+    private long[][] coalesce(final int type) {
+      int n = 0;
+      for (int i = 0; i < size; i++) {
+        if (types[i] == type) {
+          n++;
+        }
+      }
+
+      final long[] s = new long[n];
+      final long[] e = new long[n];
+      int pos = 0;
+
+      for (int i = 0; i < size; i++) {
+        if (types[i] == type) {
+          s[pos] = starts[i];
+          e[pos] = ends[i];
+          pos++;
+        }
+      }
+
+      Arrays.sort(s);
+      Arrays.sort(e);
+
+      final long[] rs = new long[n];
+      final long[] re = new long[n];
+      int count = 0;
+      int open = 0;
+      int j = 0;
+
+      for (int i = 0; i < n; i++) {
+        while (s[i] > e[j]) {
+          open--;
+          if (open == 0) {
+            re[count - 1] = e[j];
+          }
+          j++;
+        }
+
+        if (open == 0) {
+          rs[count] = s[i];
+          count++;
+        }
+        open++;
+      }
+
+      if (count > 0) {
+        re[count - 1] = e[n - 1];
+      }
+
+      return new long[][]{Arrays.copyOf(rs, count),
+                          Arrays.copyOf(re, count)};
+    }
+  }
+
+  /**
+   * @return a new builder
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /** Build from start, end pairs all of one type.
+   *
+   * @param pairs start, end pairs in any order
+   * @param type fbtype constant
+   * @return periods
+   */
+  public static BusyPeriods fromPairs(final long[] pairs,
+                                      final int type) {
+    final Builder b = new Builder();
+
+    for (int i = 0; i + 1 < pairs.length; i += 2) {
+      b.add(pairs[i], pairs[i + 1], type);
+    }
+
+    return b.build();
+  }
+
+  /**
+   * @return number of periods
+   */
+  public int size() {
+    return starts.length;
+  }
+
+  /**
+   * @return true for no busy time
+   */
+  public boolean isEmpty() {
+    return starts.length == 0;
+  }
+
+  /**
+   * @param i index
+   * @return start of period i - UTC millis
+   */
+  public long getStart(final int i) {
+    return starts[i];
+  }
+
+  /**
+   * @param i index
+   * @return end of period i - UTC millis
+   */
+  public long getEnd(final int i) {
+    return ends[i];
+  }
+
+  /**
+   * @param i index
+   * @return fbtype of period i
+   */
+  public int getType(final int i) {
+    return types[i];
+  }
+
+  /** Busy time of any of a number of sets, e.g. for many users.
+   *
+   * @param vals the sets
+   * @return combined periods
+   */
+  public static BusyPeriods union(final Collection<BusyPeriods> vals) {
+    final Builder b = new Builder();
+
+    for (final BusyPeriods val: vals) {
+      b.add(val);
+    }
+
+    return b.build();
+  }
+
+  /** Time busy in both this and another set. Each period takes the
+   * weaker of the two types.
+   *
+   * @param val the other set
+   * @return common periods
+   */
+  public BusyPeriods intersect(final BusyPeriods val) {
+    final Builder b = new Builder();
+    int i = 0;
+    int j = 0;
+
+    while ((i < size()) && (j < val.size())) {
+      final long s = Math.max(starts[i], val.starts[j]);
+      final long e = Math.min(ends[i], val.ends[j]);
+
+      if (s < e) {
+        b.add(s, e, Math.min(types[i], val.types[j]));
+      }
+
+      if (ends[i] < val.ends[j]) {
+        i++;
+      } else {
+        j++;
+      }
+    }
+
+    return b.build();
+  }
+
+  /** Time busy in every one of a number of sets.
+   *
+   * @param vals the sets
+   * @return common periods
+   */
+  public static BusyPeriods intersect(final Collection<BusyPeriods> vals) {
+    BusyPeriods res = null;
+
+    for (final BusyPeriods val: vals) {
+      if (res == null) {
+        res = val;
+      } else {
+        res = res.intersect(val);
+      }
+
+      if (res.isEmpty()) {
+        break;
+      }
+    }
+
+    if (res == null) {
+      return empty;
+    }
+
+    return res;
+  }
+
+  /**
+   * @param tr the window - null for all
+   * @return periods clipped to the window
+   */
+  public BusyPeriods clip(final TimeRange tr) {
+    if (tr == null) {
+      return this;
+    }
+
+    return clip(tr.getStartMillis(), tr.getEndMillis());
+  }
+
+  /**
+   * @param start of window - UTC millis
+   * @param end of window - UTC millis
+   * @return periods clipped to the window
+   */
+  public BusyPeriods clip(final long start,
+                          final long end) {
+    if (end <= start) {
+      return empty;
+    }
+
+    final int first = firstEndingAfter(start);
+
+    int last = first;
+    while ((last < starts.length) && (starts[last] < end)) {
+      last++;
+    }
+
+    if ((first == 0) && (last == starts.length) &&
+            ((last == 0) ||
+                     ((starts[0] >= start) && (ends[last - 1] <= end)))) {
+      return this;
+    }
+
+    final int n = last - first;
+    final long[] s = Arrays.copyOfRange(starts, first, last);
+    final long[] e = Arrays.copyOfRange(ends, first, last);
+
+    if (n > 0) {
+      s[0] = Math.max(s[0], start);
+      e[n - 1] = Math.min(e[n - 1], end);
+    }
+
+    return new BusyPeriods(s, e, Arrays.copyOfRange(types, first, last));
+  }
+
+  /** Find the first slot in a window free of busy time of at least the
+   * given type.
+   *
+   * @param start of window - UTC millis
+   * @param end of window - UTC millis
+   * @param duration required - millis
+   * @param minType busy time of weaker types counts as free
+   * @return start of slot or noSlot
+   */
+  public long firstFree(final long start,
+                        final long end,
+                        final long duration,
+                        final int minType) {
+    long candidate = start;
+
+    for (int i = firstEndingAfter(start);
+         (i < starts.length) && (starts[i] < end); i++) {
+      if (types[i] < minType) {
+        continue;
+      }
+
+      if (starts[i] - candidate >= duration) {
+        return candidate;
+      }
+
+      candidate = Math.max(candidate, ends[i]);
+    }
+
+    if (end - candidate >= duration) {
+      return candidate;
+    }
+
+    return noSlot;
+  }
+
+  /** Write FREEBUSY property lines, one per type present, folded and
+   * terminated by CRLF.
+   *
+   * @param out destination
+   * @throws IOException on error
+   */
+  public void writeFreeBusy(final Appendable out) throws IOException {
+    for (int t = fbtypeBusy; t >= fbtypeBusyTentative; t--) {
+      StringBuilder sb = null;
+
+      for (int i = 0; i < starts.length; i++) {
+        if (types[i] != t) {
+          continue;
+        }
+
+        if (sb == null) {
+          sb = new StringBuilder("FREEBUSY;FBTYPE=");
+          sb.append(fbtypeNames[t]);
+          sb.append(':');
+        } else {
+          sb.append(',');
+        }
+
+        sb.append(utcFormat.format(Instant.ofEpochMilli(starts[i])));
+        sb.append('/');
+        sb.append(utcFormat.format(Instant.ofEpochMilli(ends[i])));
+      }
+
+      if (sb != null) {
+        fold(out, sb);
+      }
+    }
+  }
+
+  /**
+   * @return FREEBUSY property lines as for writeFreeBusy
+   */
+  public String toFreeBusyLines() {
+    final StringBuilder sb = new StringBuilder();
+
+    try {
+      writeFreeBusy(sb);
+    } catch (final IOException ignored) {
+      // Not for a StringBuilder
+    }
+
+    return sb.toString();
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder("BusyPeriods{");
+
+    for (int i = 0; i < starts.length; i++) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+
+      sb.append(fbtypeNames[types[i]]);
+      sb.append(' ');
+      sb.append(starts[i]);
+      sb.append('/');
+      sb.append(ends[i]);
+    }
+
+    sb.append('}');
+
+    return sb.toString();
+  }
+
+  /* ====================================================================
+   *                   Private methods
+   * ==================================================================== */
+
+  /* Index of the first period ending after val */
+  private int firstEndingAfter(final long val) {
+    final int i = Arrays.binarySearch(ends, val);
+
+    if (i < 0) {
+      return -i - 1;
+    }
+
+    return i + 1;
+  }
+
+  /* Lay the merged periods of each type over each other. Each elementary
+     segment between boundaries takes the strongest type open across it.
+   */
+  private static BusyPeriods flatten(final long[][][] byType) {
+    int n = 0;
+    for (int t = fbtypeBusyTentative; t <= fbtypeBusy; t++) {
+      n += byType[t][0].length;
+    }
+
+    final long[] bounds = new long[2 * n];
+    int pos = 0;
+
+    for (int t = fbtypeBusyTentative; t <= fbtypeBusy; t++) {
+      for (int i = 0; i < byType[t][0].length; i++) {
+        bounds[pos++] = byType[t][0][i];
+        bounds[pos++] = byType[t][1][i];
+      }
+    }
+
+    Arrays.sort(bounds);
+
+    final long[] rs = new long[2 * n];
+    final long[] re = new long[2 * n];
+    final byte[] rt = new byte[2 * n];
+    final int[] next = new int[fbtypeBusy + 1];
+    int count = 0;
+
+    for (int b = 0; b + 1 < bounds.length; b++) {
+      final long s = bounds[b];
+      final long e = bounds[b + 1];
+
+      if (s == e) {
+        continue;
+      }
+
+      int type = 0;
+
+      for (int t = fbtypeBusy; t >= fbtypeBusyTentative; t--) {
+        final long[] ts = byType[t][0];
+        final long[] te = byType[t][1];
+
+        while ((next[t] < ts.length) && (te[next[t]] <= s)) {
+          next[t]++;
+        }
+
+        if ((type == 0) && (next[t] < ts.length) && (ts[next[t]] <= s)) {
+          type = t;
+        }
+      }
+
+      if (type == 0) {
+        continue;
+      }
+
+      if ((count > 0) && (re[count - 1] == s) && (rt[count - 1] == type)) {
+        re[count - 1] = e;
+        continue;
+      }
+
+      rs[count] = s;
+      re[count] = e;
+      rt[count] = (byte)type;
+      count++;
+    }
+
+    return new BusyPeriods(Arrays.copyOf(rs, count),
+                           Arrays.copyOf(re, count),
+                           Arrays.copyOf(rt, count));
+  }
+
+  /* Write a content line folded at maxLine octets. The lines are ASCII
+     so chars are octets.
+   */
+  private static void fold(final Appendable out,
+                           final CharSequence line) throws IOException {
+    int pos = 0;
+    int max = maxLine;
+
+    while (line.length() - pos > max) {
+      out.append(line, pos, pos + max);
+      out.append("\r\n ");
+      pos += max;
+      max = maxLine - 1;
+    }
+
+    out.append(line, pos, line.length());
+    out.append("\r\n");
+  }
+}
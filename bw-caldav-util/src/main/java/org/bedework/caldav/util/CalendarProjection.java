@@ -0,0 +1,326 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.util;
+
+import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.Component;
+import net.fortuna.ical4j.model.ComponentList;
+import net.fortuna.ical4j.model.Property;
+import net.fortuna.ical4j.model.PropertyList;
+import net.fortuna.ical4j.model.component.VAlarm;
+import net.fortuna.ical4j.model.component.VEvent;
+import net.fortuna.ical4j.model.component.VJournal;
+import net.fortuna.ical4j.model.component.VToDo;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/** Restrict the properties of calendar components to a requested set as
+ * for the CalDAV calendar-data prop element. Only VEVENT, VTODO and
+ * VJOURNAL are projected - other components, such as VTIMEZONE, and the
+ * VCALENDAR properties are retained as is.
+ *
+ * <p>Given a list of names the same names apply to every projected
+ * component and sub-components are dropped. Given a Spec, built from
+ * the comp elements of the request, each component type has its own
+ * properties, unrequested types are dropped and requested
+ * sub-components, such as VALARM, are projected in turn.
+ *
+ * <p>The result shares property objects with the source and must be
+ * treated as read-only.
+ *
+ * @author Mike Douglass
+ */
+public final class CalendarProjection {
+  private CalendarProjection() {
+  }
+
+  /* Property names are case-insensitive */
+  private static Set<String> nameSet(final Collection<String> names) {
+    final Set<String> res = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+    res.addAll(names);
+
+    return res;
+  }
+
+  /** What to return of one component and its sub-components - the
+   * form of a CalDAV comp element. With no properties named all are
+   * returned. With no sub-components named none are returned.
+   */
+  public static final class Spec {
+    private final String name;
+
+    private boolean allProps;
+
+    private final Set<String> props = nameSet(Collections.emptySet());
+
+    private boolean allComps;
+
+    private final Map<String, Spec> comps =
+            new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
+    /**
+     * @param name of the component
+     */
+    public Spec(final String name) {
+      this.name = name;
+    }
+
+    /**
+     * @return name of the component
+     */
+    public String getName() {
+      return name;
+    }
+
+    /** Return all properties
+     */
+    public void setAllProps() {
+      allProps = true;
+    }
+
+    /**
+     * @param val name of a property to return
+     */
+    public void addProp(final String val) {
+      props.add(val);
+    }
+
+    /** Return all sub-components unchanged
+     */
+    public void setAllComps() {
+      allComps = true;
+    }
+
+    /**
+     * @param val sub-component to return
+     */
+    public void addComp(final Spec val) {
+      comps.put(val.getName(), val);
+    }
+
+    /** For a VCALENDAR spec, the properties a backend need supply to
+     * satisfy it.
+     *
+     * @return names of all properties requested for the projected
+     *         components or null if all properties or any
+     *         sub-components are required
+     */
+    public Collection<String> getRetrieveList() {
+      if (allComps) {
+        return null;
+      }
+
+      final Set<String> res = nameSet(Collections.emptySet());
+
+      for (final Spec s: comps.values()) {
+        if (!projectable(s.getName())) {
+          continue;
+        }
+
+        if (s.allProps() || s.allComps || !s.comps.isEmpty()) {
+          return null;
+        }
+
+        res.addAll(s.props);
+      }
+
+      return res;
+    }
+
+    boolean allProps() {
+      return allProps || props.isEmpty();
+    }
+  }
+
+  /**
+   * @param name of a component
+   * @return true if that component type can be projected
+   */
+  public static boolean projectable(final String name) {
+    return Component.VEVENT.equalsIgnoreCase(name) ||
+            Component.VTODO.equalsIgnoreCase(name) ||
+            Component.VJOURNAL.equalsIgnoreCase(name);
+  }
+
+  /**
+   * @param ical source calendar - unchanged
+   * @param names required property names - null for all
+   * @return projected calendar
+   */
+  public static Calendar project(final Calendar ical,
+                                 final Collection<String> names) {
+    if (names == null) {
+      return ical;
+    }
+
+    final Set<String> want = nameSet(names);
+
+    final ComponentList ncl = new ComponentList();
+
+    for (final Object o: ical.getComponents()) {
+      final Component c = (Component)o;
+
+      if (!projectable(c.getName())) {
+        ncl.add(c);
+        continue;
+      }
+
+      final PropertyList npl = new PropertyList();
+
+      for (final Object po: c.getProperties()) {
+        final Property p = (Property)po;
+
+        if (want.contains(p.getName())) {
+          npl.add(p);
+        }
+      }
+
+      ncl.add(make(c.getName(), npl));
+    }
+
+    final PropertyList cpl = new PropertyList();
+    cpl.addAll(ical.getProperties());
+
+    return new Calendar(cpl, ncl);
+  }
+
+  /**
+   * @param ical source calendar - unchanged
+   * @param spec for the VCALENDAR - null for all
+   * @return projected calendar
+   */
+  public static Calendar project(final Calendar ical,
+                                 final Spec spec) {
+    if ((spec == null) || spec.allComps) {
+      return ical;
+    }
+
+    final ComponentList ncl = new ComponentList();
+
+    for (final Object o: ical.getComponents()) {
+      final Component c = (Component)o;
+
+      if (!projectable(c.getName())) {
+        ncl.add(c);
+        continue;
+      }
+
+      final Spec cspec = spec.comps.get(c.getName());
+
+      if (cspec != null) {
+        ncl.add(project(c, cspec));
+      }
+    }
+
+    final PropertyList cpl = new PropertyList();
+    cpl.addAll(ical.getProperties());
+
+    return new Calendar(cpl, ncl);
+  }
+
+  private static Component project(final Component c,
+                                   final Spec spec) {
+    final ComponentList subs = subComponents(c);
+
+    if (spec.allProps() &&
+            (spec.allComps || (subs == null) || subs.isEmpty())) {
+      return c;
+    }
+
+    final PropertyList npl;
+
+    if (spec.allProps()) {
+      npl = new PropertyList();
+      npl.addAll(c.getProperties());
+    } else {
+      npl = new PropertyList();
+
+      for (final Object po: c.getProperties()) {
+        final Property p = (Property)po;
+
+        if (spec.props.contains(p.getName())) {
+          npl.add(p);
+        }
+      }
+    }
+
+    final Component nc = make(c.getName(), npl);
+    final ComponentList nsubs = subComponents(nc);
+
+    if ((subs == null) || (nsubs == null)) {
+      return nc;
+    }
+
+    for (final Object o: subs) {
+      final Component sub = (Component)o;
+
+      if (spec.allComps) {
+        nsubs.add(sub);
+        continue;
+      }
+
+      final Spec sspec = spec.comps.get(sub.getName());
+
+      if (sspec != null) {
+        nsubs.add(project(sub, sspec));
+      }
+    }
+
+    return nc;
+  }
+
+  /* The alarms are the only sub-components we handle */
+  private static ComponentList subComponents(final Component c) {
+    if (c instanceof VEvent) {
+      return ((VEvent)c).getAlarms();
+    }
+
+    if (c instanceof VToDo) {
+      return ((VToDo)c).getAlarms();
+    }
+
+    return null;
+  }
+
+  /* Use the PropertyList constructors - the default ones add a
+   * DTSTAMP which we don't want.
+   */
+  private static Component make(final String name,
+                                final PropertyList pl) {
+    if (Component.VEVENT.equalsIgnoreCase(name)) {
+      return new VEvent(pl);
+    }
+
+    if (Component.VTODO.equalsIgnoreCase(name)) {
+      return new VToDo(pl);
+    }
+
+    if (Component.VALARM.equalsIgnoreCase(name)) {
+      return new VAlarm(pl);
+    }
+
+    return new VJournal(pl);
+  }
+}
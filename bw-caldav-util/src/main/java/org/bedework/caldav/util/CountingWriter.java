@@ -0,0 +1,111 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.util;
+
+import java.io.Writer;
+
+/** A Writer which discards its output and counts the number of bytes
+ * the output would occupy when encoded as UTF-8. Used to obtain content
+ * lengths without building the content.
+ *
+ * @author Mike Douglass
+ */
+public class CountingWriter extends Writer {
+  private long count;
+
+  /* Set if the last char written was a high surrogate */
+  private boolean pendingHigh;
+
+  /**
+   * @return number of UTF-8 bytes written so far
+   */
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * @param val chars to measure - may be null
+   * @return length of val when encoded as UTF-8
+   */
+  public static long utf8Length(final CharSequence val) {
+    if (val == null) {
+      return 0;
+    }
+
+    final CountingWriter cw = new CountingWriter();
+
+    for (int i = 0; i < val.length(); i++) {
+      cw.count(val.charAt(i));
+    }
+
+    return cw.getCount();
+  }
+
+  @Override
+  public void write(final int c) {
+    count((char)c);
+  }
+
+  @Override
+  public void write(final char[] cbuf,
+                    final int off,
+                    final int len) {
+    for (int i = off; i < off + len; i++) {
+      count(cbuf[i]);
+    }
+  }
+
+  @Override
+  public void write(final String str,
+                    final int off,
+                    final int len) {
+    for (int i = off; i < off + len; i++) {
+      count(str.charAt(i));
+    }
+  }
+
+  @Override
+  public void flush() {
+  }
+
+  @Override
+  public void close() {
+  }
+
+  private void count(final char c) {
+    if (pendingHigh) {
+      pendingHigh = false;
+
+      if (Character.isLowSurrogate(c)) {
+        // The pair is 4 bytes - 3 were counted for the high surrogate
+        count++;
+        return;
+      }
+    }
+
+    if (c < 0x80) {
+      count++;
+    } else if (c < 0x800) {
+      count += 2;
+    } else {
+      count += 3;
+      pendingHigh = Character.isHighSurrogate(c);
+    }
+  }
+}
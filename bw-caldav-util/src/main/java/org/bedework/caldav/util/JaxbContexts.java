@@ -0,0 +1,173 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.util;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+
+/** A shared registry of JAXB contexts. Contexts are expensive to build
+ * so each is created once per context path and kept. Marshallers and
+ * unmarshallers are not thread safe but are reusable, so a small pool
+ * of each is kept per context.
+ *
+ * <p>Usage:<pre>
+ *   final Unmarshaller u = JaxbContexts.getUnmarshaller(path);
+ *   try {
+ *     ...
+ *   } finally {
+ *     JaxbContexts.release(path, u);
+ *   }
+ * </pre>
+ *
+ * @author Mike Douglass
+ */
+public class JaxbContexts {
+  /* Maximum number of idle (un)marshallers kept per context */
+  private static final int maxPooled = 16;
+
+  private static class Entry {
+    final JAXBContext jc;
+
+    final Queue<Marshaller> marshallers =
+            new ConcurrentLinkedQueue<>();
+
+    final Queue<Unmarshaller> unmarshallers =
+            new ConcurrentLinkedQueue<>();
+
+    Entry(final JAXBContext jc) {
+      this.jc = jc;
+    }
+  }
+
+  private static final Map<String, Entry> contexts =
+          new ConcurrentHashMap<>();
+
+  private JaxbContexts() {
+  }
+
+  /**
+   * @param path context path as for JAXBContext.newInstance
+   * @return the shared context for the path
+   * @throws JAXBException on failure to create the context
+   */
+  public static JAXBContext getContext(final String path)
+          throws JAXBException {
+    return getEntry(path).jc;
+  }
+
+  /** Get an unmarshaller from the pool or create one. It should be
+   * returned with release when done.
+   *
+   * @param path context path
+   * @return an Unmarshaller - not to be shared between threads
+   * @throws JAXBException on failure to create
+   */
+  public static Unmarshaller getUnmarshaller(final String path)
+          throws JAXBException {
+    final Entry e = getEntry(path);
+    final Unmarshaller u = e.unmarshallers.poll();
+
+    if (u != null) {
+      return u;
+    }
+
+    return e.jc.createUnmarshaller();
+  }
+
+  /** Get a marshaller from the pool or create one. It should be
+   * returned with release when done. Callers should set any properties
+   * they need as they may have been changed by a previous user.
+   *
+   * @param path context path
+   * @return a Marshaller - not to be shared between threads
+   * @throws JAXBException on failure to create
+   */
+  public static Marshaller getMarshaller(final String path)
+          throws JAXBException {
+    final Entry e = getEntry(path);
+    final Marshaller m = e.marshallers.poll();
+
+    if (m != null) {
+      return m;
+    }
+
+    return e.jc.createMarshaller();
+  }
+
+  /** Return an unmarshaller to the pool
+   *
+   * @param path context path it was obtained for
+   * @param val the unmarshaller - may be null
+   */
+  public static void release(final String path,
+                             final Unmarshaller val) {
+    if (val == null) {
+      return;
+    }
+
+    final Entry e = contexts.get(path);
+    if ((e != null) && (e.unmarshallers.size() < maxPooled)) {
+      e.unmarshallers.offer(val);
+    }
+  }
+
+  /** Return a marshaller to the pool
+   *
+   * @param path context path it was obtained for
+   * @param val the marshaller - may be null
+   */
+  public static void release(final String path,
+                             final Marshaller val) {
+    if (val == null) {
+      return;
+    }
+
+    final Entry e = contexts.get(path);
+    if ((e != null) && (e.marshallers.size() < maxPooled)) {
+      e.marshallers.offer(val);
+    }
+  }
+
+  private static Entry getEntry(final String path) throws JAXBException {
+    final Entry e = contexts.get(path);
+
+    if (e != null) {
+      return e;
+    }
+
+    /* Two threads may race to create the context - one wins and the
+       other is discarded.
+     */
+    final Entry newEntry = new Entry(JAXBContext.newInstance(path));
+    final Entry prev = contexts.putIfAbsent(path, newEntry);
+
+    if (prev != null) {
+      return prev;
+    }
+
+    return newEntry;
+  }
+}
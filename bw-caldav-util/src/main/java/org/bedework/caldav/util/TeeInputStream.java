@@ -0,0 +1,157 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/** An InputStream which copies every byte read from the wrapped stream
+ * to an OutputStream, for example a digest, so that the content can be
+ * consumed and hashed in a single pass. It may also limit the number of
+ * bytes read.
+ *
+ * @author Mike Douglass
+ */
+public class TeeInputStream extends FilterInputStream {
+  private final OutputStream copy;
+
+  private final long max;
+
+  private long count;
+
+  /** Thrown when more than the maximum number of bytes is read.
+   */
+  public static class TooLargeException extends IOException {
+    /**
+     * @param max the limit
+     */
+    public TooLargeException(final long max) {
+      super("Content exceeds " + max + " bytes");
+    }
+  }
+
+  /**
+   * @param in    stream to read
+   * @param copy  receives a copy of all bytes read - may be null
+   * @param max   maximum bytes or negative for no limit
+   */
+  public TeeInputStream(final InputStream in,
+                        final OutputStream copy,
+                        final long max) {
+    super(in);
+    this.copy = copy;
+    this.max = max;
+  }
+
+  /**
+   * @return number of bytes read so far
+   */
+  public long getCount() {
+    return count;
+  }
+
+  @Override
+  public int read() throws IOException {
+    final int b = super.read();
+
+    if (b >= 0) {
+      counted(1);
+
+      if (copy != null) {
+        copy.write(b);
+      }
+    }
+
+    return b;
+  }
+
+  @Override
+  public int read(final byte[] b,
+                  final int off,
+                  final int len) throws IOException {
+    final int n = super.read(b, off, len);
+
+    if (n > 0) {
+      counted(n);
+
+      if (copy != null) {
+        copy.write(b, off, n);
+      }
+    }
+
+    return n;
+  }
+
+  /* Skipped bytes must still be copied */
+  @Override
+  public long skip(final long n) throws IOException {
+    final byte[] buf = new byte[(int)Math.min(n, 2048)];
+    long skipped = 0;
+
+    while (skipped < n) {
+      final int rd = read(buf, 0, (int)Math.min(n - skipped, buf.length));
+
+      if (rd < 0) {
+        break;
+      }
+
+      skipped += rd;
+    }
+
+    return skipped;
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+
+  @Override
+  public synchronized void mark(final int readlimit) {
+  }
+
+  @Override
+  public synchronized void reset() throws IOException {
+    throw new IOException("mark/reset not supported");
+  }
+
+  /** Read anything not yet consumed so that it is copied.
+   *
+   * @throws IOException on error or if the limit is exceeded
+   */
+  public void drain() throws IOException {
+    final byte[] buf = new byte[2048];
+
+    int rd;
+
+    do {
+      rd = read(buf, 0, buf.length);
+    } while (rd >= 0);
+  }
+
+  private void counted(final int n) throws IOException {
+    count += n;
+
+    if ((max >= 0) && (count > max)) {
+      throw new TooLargeException(max);
+    }
+  }
+}
@@ -21,7 +21,11 @@ package org.bedework.caldav.util;
 import org.bedework.util.logging.BwLogger;
 import org.bedework.util.logging.Logged;
 import org.bedework.util.misc.ToString;
+import org.bedework.util.timezones.Timezones;
 
+import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.Component;
+import net.fortuna.ical4j.model.Date;
 import net.fortuna.ical4j.model.DateTime;
 import net.fortuna.ical4j.model.Dur;
 import net.fortuna.ical4j.model.Property;
@@ -44,6 +48,9 @@ public class TimeRange implements Logged {
 
   private String tzid;
 
+  /* Resolved from tzid on first use */
+  private java.util.TimeZone tz;
+
   private static final Dur oneDayForward = new Dur(1, 0, 0, 0);
   private static final Dur oneDayBack = new Dur(-1, 0, 0, 0);
 
@@ -103,6 +110,7 @@ public class TimeRange implements Logged {
    */
   public void setTzid(final String val) {
     tzid = val;
+    tz = null;
   }
 
   /**
@@ -112,18 +120,135 @@ public class TimeRange implements Logged {
     return tzid;
   }
 
+  /**
+   * @return the timezone named by tzid or null if none or unknown
+   */
+  public java.util.TimeZone getTimezone() {
+    if ((tz == null) && (tzid != null)) {
+      try {
+        tz = Timezones.getTz(tzid);
+      } catch (final Throwable t) {
+        warn("Unable to resolve timezone " + tzid);
+      }
+    }
+
+    return tz;
+  }
+
   /** Test if the given property falls in the timerange
    *
    * @param candidate for test
    * @return boolean true if in range
    */
   public boolean matches(final Property candidate) {
+    return matches(candidate, null);
+  }
+
+  /** As matches(candidate) with DATE and floating values taken to be
+   * in the timezone of this range or, if it has none, in tz.
+   *
+   * @param candidate for test
+   * @param tz default timezone - may be null
+   * @return boolean true if in range
+   */
+  public boolean matches(final Property candidate,
+                         final java.util.TimeZone tz) {
     if (!(candidate instanceof DateProperty)) {
       return false;
     }
 
-    // XXX later
-    return true;
+    final Date dt = ((DateProperty)candidate).getDate();
+    if (dt == null) {
+      return false;
+    }
+
+    return TimeRangeEngine.inRange(getStartMillis(), getEndMillis(),
+                                   TimeRangeEngine.millis(dt,
+                                                          timezone(tz)));
+  }
+
+  /** Test if the given component overlaps the timerange using the
+   * rules of RFC4791 section 9.9. Recurring components are expanded no
+   * further than the end of the range.
+   *
+   * @param comp for test
+   * @return boolean true if the component overlaps this range
+   */
+  public boolean overlaps(final Component comp) {
+    return overlaps(comp, null);
+  }
+
+  /** As overlaps(comp) but instances of a recurring master which are
+   * overridden by components in cal are skipped.
+   *
+   * @param comp for test
+   * @param cal containing comp - may be null
+   * @return boolean true if the component overlaps this range
+   */
+  public boolean overlaps(final Component comp,
+                          final Calendar cal) {
+    return overlaps(comp, cal, null);
+  }
+
+  /** As overlaps(comp, cal) with DATE and floating values taken to be
+   * in the timezone of this range or, if it has none, in tz - usually
+   * that of the calendar.
+   *
+   * @param comp for test
+   * @param cal containing comp - may be null
+   * @param tz default timezone - may be null
+   * @return boolean true if the component overlaps this range
+   */
+  public boolean overlaps(final Component comp,
+                          final Calendar cal,
+                          final java.util.TimeZone tz) {
+    return TimeRangeEngine.overlaps(getStartMillis(), getEndMillis(),
+                                    comp, cal, timezone(tz));
+  }
+
+  /* The query timezone takes precedence */
+  private java.util.TimeZone timezone(final java.util.TimeZone dflt) {
+    final java.util.TimeZone qtz = getTimezone();
+
+    if (qtz != null) {
+      return qtz;
+    }
+
+    return dflt;
+  }
+
+  /** Test the period s to e (ms since epoch) against this range. A zero
+   * length period is treated as an instant.
+   *
+   * @param s start millis
+   * @param e end millis
+   * @return true if overlaps
+   */
+  public boolean overlaps(final long s, final long e) {
+    return TimeRangeEngine.overlaps(getStartMillis(), getEndMillis(),
+                                    s, e);
+  }
+
+  /**
+   * @return start as millis - Long.MIN_VALUE for unbounded
+   */
+  public long getStartMillis() {
+    if (start == null) {
+      return TimeRangeEngine.unboundedStart;
+    }
+
+    return start.getTime();
+  }
+
+  /**
+   * @return end as millis - Long.MAX_VALUE for unbounded
+   */
+  public long getEndMillis() {
+    if (end == null) {
+      return TimeRangeEngine.unboundedEnd;
+    }
+
+    return end.getTime();
   }
 
   protected void toStringSegment(final ToString ts) {
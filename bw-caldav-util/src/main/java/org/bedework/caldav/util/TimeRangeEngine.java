@@ -0,0 +1,871 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.util;
+
+import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.Component;
+import net.fortuna.ical4j.model.ComponentList;
+import net.fortuna.ical4j.model.Date;
+import net.fortuna.ical4j.model.DateList;
+import net.fortuna.ical4j.model.DateTime;
+import net.fortuna.ical4j.model.Dur;
+import net.fortuna.ical4j.model.Period;
+import net.fortuna.ical4j.model.PeriodList;
+import net.fortuna.ical4j.model.Property;
+import net.fortuna.ical4j.model.PropertyList;
+import net.fortuna.ical4j.model.Recur;
+import net.fortuna.ical4j.model.parameter.Value;
+import net.fortuna.ical4j.model.property.DateProperty;
+import net.fortuna.ical4j.model.property.Duration;
+import net.fortuna.ical4j.model.property.ExDate;
+import net.fortuna.ical4j.model.property.RDate;
+import net.fortuna.ical4j.model.property.RRule;
+
+import java.util.Arrays;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+/** Time-range matching for calendar components, including recurring
+ * ones.
+ *
+ * <p>All tests work on UTC milliseconds since the epoch. The range is
+ * given as a start (inclusive) and end (exclusive) with
+ * unboundedStart and unboundedEnd standing in for open ends.
+ *
+ * <p>Instances of a recurring component are produced from DTSTART, RDATE
+ * and RRULE, less EXDATE and any instances overridden by a component
+ * with a RECURRENCE-ID. Rules are only expanded as far as the end of the
+ * range - or a fixed horizon for open ended ranges - and expansion stops
+ * as soon as the handler has seen enough. RECURRENCE-ID ranges
+ * (THISANDFUTURE) are not handled.
+ *
+ * <p>DATE and floating DATE-TIME values are taken to be in the timezone
+ * passed to the tests, which should be that of the query or of the
+ * calendar. With no timezone they are converted as ical4j converts
+ * them.
+ *
+ * @author Mike Douglass
+ */
+public final class TimeRangeEngine {
+  /** No lower limit */
+  public static final long unboundedStart = Long.MIN_VALUE;
+
+  /** No upper limit */
+  public static final long unboundedEnd = Long.MAX_VALUE;
+
+  /** Expansion of open ended rules stops here - 2100-01-01T00:00:00Z */
+  public static final long horizon = 4102444800000L;
+
+  private static final long oneDay = 24L * 60 * 60 * 1000;
+
+  /* Open ended ranges are expanded a chunk at a time */
+  private static final long chunk = 366 * oneDay;
+
+  /** Called for each instance which overlaps the range.
+   */
+  public interface InstanceHandler {
+    /**
+     * @param comp the master or overriding component
+     * @param start of instance - UTC millis
+     * @param end of instance - UTC millis - same as start for an instant
+     * @return false to stop expansion
+     */
+    boolean instance(Component comp, long start, long end);
+  }
+
+  /* Stops at the first overlapping instance */
+  private static final InstanceHandler firstHit = (c, s, e) -> false;
+
+  private TimeRangeEngine() {
+  }
+
+  /** Test the period s to e against the range. A zero length period is
+   * treated as an instant.
+   *
+   * @param rs range start
+   * @param re range end
+   * @param s start millis
+   * @param e end millis
+   * @return true if overlaps
+   */
+  public static boolean overlaps(final long rs, final long re,
+                                 final long s, final long e) {
+    if (e > s) {
+      return (rs < e) && (re > s);
+    }
+
+    return (rs <= s) && (re > s);
+  }
+
+  /**
+   * @param rs range start
+   * @param re range end
+   * @param t millis
+   * @return true if t is in the range
+   */
+  public static boolean inRange(final long rs, final long re,
+                                final long t) {
+    return (t >= rs) && (t < re);
+  }
+
+  /** Test if the component overlaps the range using the rules of RFC4791
+   * section 9.9. If the component is a recurring master any instances
+   * overridden by other components in cal are skipped - the overrides
+   * should be tested separately.
+   *
+   * @param rs range start
+   * @param re range end
+   * @param comp to test
+   * @param cal containing comp - may be null
+   * @return true if some instance overlaps
+   */
+  public static boolean overlaps(final long rs, final long re,
+                                 final Component comp,
+                                 final Calendar cal) {
+    return overlaps(rs, re, comp, cal, null);
+  }
+
+  /** As above with DATE and floating values taken to be in tz.
+   *
+   * @param rs range start
+   * @param re range end
+   * @param comp to test
+   * @param cal containing comp - may be null
+   * @param tz for DATE and floating values - null for default
+   * @return true if some instance overlaps
+   */
+  public static boolean overlaps(final long rs, final long re,
+                                 final Component comp,
+                                 final Calendar cal,
+                                 final TimeZone tz) {
+    if (comp == null) {
+      return false;
+    }
+
+    if (!timed(comp)) {
+      // Other components are not selected by time
+      return true;
+    }
+
+    if (!recurs(comp) ||
+            (comp.getProperty(Property.RECURRENCE_ID) != null)) {
+      return singleOverlaps(rs, re, comp, tz);
+    }
+
+    return !expand(rs, re, comp, overriddenIds(comp, cal, tz), tz,
+                   firstHit);
+  }
+
+  /** Deliver all instances of master and its overrides in cal which
+   * overlap the range.
+   *
+   * @param rs range start
+   * @param re range end
+   * @param master component - must not have a RECURRENCE-ID
+   * @param cal containing master and overrides - may be null
+   * @param h handler for instances
+   * @return false if the handler stopped expansion
+   */
+  public static boolean instances(final long rs, final long re,
+                                  final Component master,
+                                  final Calendar cal,
+                                  final InstanceHandler h) {
+    return instances(rs, re, master, cal, null, h);
+  }
+
+  /** As above with DATE and floating values taken to be in tz.
+   *
+   * @param rs range start
+   * @param re range end
+   * @param master component - must not have a RECURRENCE-ID
+   * @param cal containing master and overrides - may be null
+   * @param tz for DATE and floating values - null for default
+   * @param h handler for instances
+   * @return false if the handler stopped expansion
+   */
+  public static boolean instances(final long rs, final long re,
+                                  final Component master,
+                                  final Calendar cal,
+                                  final TimeZone tz,
+                                  final InstanceHandler h) {
+    if ((master == null) || !timed(master)) {
+      return true;
+    }
+
+    if (!recurs(master)) {
+      final long[] p = period(master, tz);
+
+      return (p == null) || !overlaps(rs, re, p[0], p[1]) ||
+              h.instance(master, p[0], p[1]);
+    }
+
+    final long[] overridden = overriddenIds(master, cal, tz);
+
+    if (overridden != null) {
+      final String uid = uid(master);
+      final ComponentList cl = cal.getComponents();
+
+      for (int i = 0; i < cl.size(); i++) {
+        final Component c = (Component)cl.get(i);
+
+        if (!isOverride(c, master.getName(), uid)) {
+          continue;
+        }
+
+        final long[] p = period(c, tz);
+
+        if ((p != null) && overlaps(rs, re, p[0], p[1]) &&
+                !h.instance(c, p[0], p[1])) {
+          return false;
+        }
+      }
+    }
+
+    return expand(rs, re, master, overridden, tz, h);
+  }
+
+  /** Deliver comp as a single instance if it overlaps the range.
+   * Recurrence properties are ignored. Used for an override with no
+   * recurring master.
+   *
+   * @param rs range start
+   * @param re range end
+   * @param comp component
+   * @param tz for DATE and floating values - null for default
+   * @param h handler for the instance
+   * @return false if the handler stopped
+   */
+  public static boolean instance(final long rs, final long re,
+                                 final Component comp,
+                                 final TimeZone tz,
+                                 final InstanceHandler h) {
+    if ((comp == null) || !timed(comp)) {
+      return true;
+    }
+
+    final long[] p = period(comp, tz);
+
+    return (p == null) || !overlaps(rs, re, p[0], p[1]) ||
+            h.instance(comp, p[0], p[1]);
+  }
+
+  /**
+   * @param override component with a RECURRENCE-ID
+   * @param cal containing the component - may be null
+   * @return true if cal has a recurring master for the override
+   */
+  public static boolean hasRecurringMaster(final Component override,
+                                           final Calendar cal) {
+    if (cal == null) {
+      return false;
+    }
+
+    final String uid = uid(override);
+    final String cname = override.getName();
+    final ComponentList cl = cal.getComponents();
+
+    for (int i = 0; i < cl.size(); i++) {
+      final Component c = (Component)cl.get(i);
+
+      if (!cname.equals(c.getName()) ||
+              (c.getProperty(Property.RECURRENCE_ID) != null)) {
+        continue;
+      }
+
+      final String cuid = uid(c);
+
+      if (((uid == null) ? (cuid == null) : uid.equals(cuid)) &&
+              recurs(c)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /** UTC millis for a date value. DATE and floating DATE-TIME values
+   * are taken to be in tz. If tz is null the value is converted as
+   * ical4j converts it.
+   *
+   * @param dt the value
+   * @param tz for DATE and floating values - may be null
+   * @return UTC millis
+   */
+  public static long millis(final Date dt,
+                            final TimeZone tz) {
+    if (tz == null) {
+      return dt.getTime();
+    }
+
+    if (dt instanceof DateTime) {
+      final DateTime dtm = (DateTime)dt;
+
+      if (dtm.isUtc() || (dtm.getTimeZone() != null)) {
+        return dtm.getTime();
+      }
+    }
+
+    /* The string form holds the local date and time - yyyyMMdd or
+       yyyyMMdd'T'HHmmss - whichever zone ical4j used to hold it.
+     */
+    final String val = dt.toString();
+
+    if ((val.length() < 8) ||
+            ((val.length() > 8) && (val.length() < 15))) {
+      return dt.getTime();
+    }
+
+    final GregorianCalendar gc = new GregorianCalendar(tz);
+    gc.clear();
+    gc.set(Integer.parseInt(val.substring(0, 4)),
+           Integer.parseInt(val.substring(4, 6)) - 1,
+           Integer.parseInt(val.substring(6, 8)));
+
+    if (val.length() > 8) {
+      gc.set(java.util.Calendar.HOUR_OF_DAY,
+             Integer.parseInt(val.substring(9, 11)));
+      gc.set(java.util.Calendar.MINUTE,
+             Integer.parseInt(val.substring(11, 13)));
+      gc.set(java.util.Calendar.SECOND,
+             Integer.parseInt(val.substring(13, 15)));
+    }
+
+    return gc.getTimeInMillis();
+  }
+
+  /**
+   * @param comp to test
+   * @return true if comp has RRULE or RDATE properties
+   */
+  public static boolean recurs(final Component comp) {
+    return (comp.getProperty(Property.RRULE) != null) ||
+            (comp.getProperty(Property.RDATE) != null);
+  }
+
+  /* ====================================================================
+   *                   Private methods
+   * ==================================================================== */
+
+  private static boolean timed(final Component comp) {
+    final String cname = comp.getName();
+
+    return Component.VEVENT.equals(cname) ||
+            Component.VTODO.equals(cname) ||
+            Component.VJOURNAL.equals(cname);
+  }
+
+  private static boolean singleOverlaps(final long rs, final long re,
+                                        final Component comp,
+                                        final TimeZone tz) {
+    if (Component.VTODO.equals(comp.getName())) {
+      return todoOverlaps(rs, re, comp, tz);
+    }
+
+    final long[] p = period(comp, tz);
+
+    // Journals need a start - undated events are broken
+    return (p != null) && overlaps(rs, re, p[0], p[1]);
+  }
+
+  /* The table in RFC4791 9.9 for VTODO */
+  private static boolean todoOverlaps(final long rs, final long re,
+                                      final Component comp,
+                                      final TimeZone tz) {
+    final long due = millis(comp.getProperty(Property.DUE), tz);
+    final DateProperty dtstart =
+            (DateProperty)comp.getProperty(Property.DTSTART);
+
+    if ((dtstart == null) || (dtstart.getDate() == null)) {
+      if (due != Long.MIN_VALUE) {
+        return (rs < due) && (re >= due);
+      }
+
+      // Both are UTC
+      final long completed =
+              millis(comp.getProperty(Property.COMPLETED), null);
+      final long created =
+              millis(comp.getProperty(Property.CREATED), null);
+
+      if (completed != Long.MIN_VALUE) {
+        if (created != Long.MIN_VALUE) {
+          return ((rs <= created) || (rs <= completed)) &&
+                  ((re >= created) || (re >= completed));
+        }
+
+        return (rs <= completed) && (re >= completed);
+      }
+
+      if (created != Long.MIN_VALUE) {
+        return re > created;
+      }
+
+      // Undated tasks match any range
+      return true;
+    }
+
+    final long s = millis(dtstart.getDate(), tz);
+
+    final long dur = durationMillis(comp, s);
+    if (dur >= 0) {
+      return (rs <= (s + dur)) &&
+              ((re > s) || (re >= (s + dur)));
+    }
+
+    if (due != Long.MIN_VALUE) {
+      return ((rs < due) || (rs <= s)) &&
+              ((re > s) || (re >= due));
+    }
+
+    return (rs <= s) && (re > s);
+  }
+
+  /* Expand the master and report overlapping instances which are not
+   * excluded or overridden. Return false if the handler stopped us.
+   */
+  private static boolean expand(final long rs, final long re,
+                                final Component master,
+                                final long[] overridden,
+                                final TimeZone tz,
+                                final InstanceHandler h) {
+    final DateProperty dtstart =
+            (DateProperty)master.getProperty(Property.DTSTART);
+
+    if ((dtstart == null) || (dtstart.getDate() == null)) {
+      return true;
+    }
+
+    final Date seed = dtstart.getDate();
+    final long s0 = millis(seed, tz);
+    final long dur = instanceDuration(master, s0,
+                                      !(seed instanceof DateTime), tz);
+    final long[] exdates = exdates(master, tz);
+
+    /* DTSTART is always the first instance */
+    if (!excluded(s0, exdates, overridden) &&
+            overlaps(rs, re, s0, s0 + dur) &&
+            !h.instance(master, s0, s0 + dur)) {
+      return false;
+    }
+
+    final PropertyList pl = master.getProperties();
+
+    for (int i = 0; i < pl.size(); i++) {
+      final Property p = (Property)pl.get(i);
+
+      if (!(p instanceof RDate)) {
+        continue;
+      }
+
+      if (!rdates(rs, re, master, (RDate)p, s0, dur,
+                  exdates, overridden, tz, h)) {
+        return false;
+      }
+    }
+
+    if (master.getProperty(Property.RRULE) == null) {
+      return true;
+    }
+
+    /* Instances starting before the range may run into it. The rule
+       is expanded in the seed's own terms so allow for any change of
+       timezone - offsets differ by at most 26 hours.
+     */
+    final long margin;
+    if (tz == null) {
+      margin = 0;
+    } else {
+      margin = 2 * oneDay;
+    }
+
+    final long from;
+    if ((rs == unboundedStart) || (rs - dur - margin < s0)) {
+      from = seed.getTime();
+    } else {
+      from = rs - dur - margin;
+    }
+
+    /* Open ended ranges run to the horizon or a chunk beyond the start
+       if that is later.
+     */
+    final long to;
+    if (re == unboundedEnd) {
+      to = Math.max(horizon, from + chunk);
+    } else {
+      to = re + margin;
+    }
+
+    /* Expand a chunk at a time so that we stop early once the handler
+       has seen enough. The windows do not overlap.
+     */
+    long winStart = from;
+
+    while (winStart <= to) {
+      final long winEnd;
+      if (to - winStart > chunk) {
+        winEnd = winStart + chunk;
+      } else {
+        winEnd = to;
+      }
+
+      for (int i = 0; i < pl.size(); i++) {
+        final Property p = (Property)pl.get(i);
+
+        if (!(p instanceof RRule)) {
+          continue;
+        }
+
+        if (!rrule(rs, re, master, ((RRule)p).getRecur(), seed,
+                   winStart, winEnd, dur, exdates, overridden, tz, h)) {
+          return false;
+        }
+      }
+
+      if (winEnd >= to) {
+        break;
+      }
+
+      winStart = winEnd + 1;
+    }
+
+    return true;
+  }
+
+  private static boolean rrule(final long rs, final long re,
+                               final Component master,
+                               final Recur recur,
+                               final Date seed,
+                               final long winStart,
+                               final long winEnd,
+                               final long dur,
+                               final long[] exdates,
+                               final long[] overridden,
+                               final TimeZone tz,
+                               final InstanceHandler h) {
+    final boolean dateOnly = !(seed instanceof DateTime);
+    final Value vtype;
+    if (dateOnly) {
+      vtype = Value.DATE;
+    } else {
+      vtype = Value.DATE_TIME;
+    }
+
+    /* Ask for a day either side as DATE bounds are truncated. Instances
+       outside the window are left for its neighbours.
+     */
+    final DateList dl = recur.getDates(seed,
+                                       makeDate(winStart - oneDay, dateOnly),
+                                       makeDate(winEnd + oneDay, dateOnly),
+                                       vtype);
+
+    if (dl == null) {
+      return true;
+    }
+
+    final long s0 = millis(seed, tz);
+
+    for (int i = 0; i < dl.size(); i++) {
+      final Date d = (Date)dl.get(i);
+      final long raw = d.getTime();
+
+      if ((raw < winStart) || (raw > winEnd)) {
+        // Belongs to another window
+        continue;
+      }
+
+      final long s = millis(d, tz);
+
+      if ((s == s0) || excluded(s, exdates, overridden)) {
+        continue;
+      }
+
+      if (overlaps(rs, re, s, s + dur) &&
+              !h.instance(master, s, s + dur)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  private static boolean rdates(final long rs, final long re,
+                                final Component master,
+                                final RDate rdate,
+                                final long s0,
+                                final long dur,
+                                final long[] exdates,
+                                final long[] overridden,
+                                final TimeZone tz,
+                                final InstanceHandler h) {
+    final PeriodList periods = rdate.getPeriods();
+
+    if ((periods != null) && !periods.isEmpty()) {
+      for (final Object o: periods) {
+        final Period per = (Period)o;
+        final long s = millis(per.getStart(), tz);
+        final long e = millis(per.getEnd(), tz);
+
+        if ((s == s0) || excluded(s, exdates, overridden)) {
+          continue;
+        }
+
+        if (overlaps(rs, re, s, e) && !h.instance(master, s, e)) {
+          return false;
+        }
+      }
+
+      return true;
+    }
+
+    final DateList dl = rdate.getDates();
+
+    if (dl == null) {
+      return true;
+    }
+
+    for (int i = 0; i < dl.size(); i++) {
+      final long s = millis((Date)dl.get(i), tz);
+
+      if ((s == s0) || excluded(s, exdates, overridden)) {
+        continue;
+      }
+
+      if (overlaps(rs, re, s, s + dur) &&
+              !h.instance(master, s, s + dur)) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  private static boolean excluded(final long t,
+                                  final long[] exdates,
+                                  final long[] overridden) {
+    return ((exdates != null) && (Arrays.binarySearch(exdates, t) >= 0)) ||
+            ((overridden != null) &&
+                     (Arrays.binarySearch(overridden, t) >= 0));
+  }
+
+  /* Sorted EXDATE values or null */
+  private static long[] exdates(final Component master,
+                                final TimeZone tz) {
+    final PropertyList pl = master.getProperties();
+    int n = 0;
+
+    for (int i = 0; i < pl.size(); i++) {
+      final Object p = pl.get(i);
+
+      if ((p instanceof ExDate) && (((ExDate)p).getDates() != null)) {
+        n += ((ExDate)p).getDates().size();
+      }
+    }
+
+    if (n == 0) {
+      return null;
+    }
+
+    final long[] res = new long[n];
+    n = 0;
+
+    for (int i = 0; i < pl.size(); i++) {
+      final Object p = pl.get(i);
+
+      if (!(p instanceof ExDate) || (((ExDate)p).getDates() == null)) {
+        continue;
+      }
+
+      final DateList dl = ((ExDate)p).getDates();
+
+      for (int j = 0; j < dl.size(); j++) {
+        res[n] = millis((Date)dl.get(j), tz);
+        n++;
+      }
+    }
+
+    Arrays.sort(res);
+
+    return res;
+  }
+
+  /* Sorted RECURRENCE-ID values of overrides for master in cal or null */
+  private static long[] overriddenIds(final Component master,
+                                      final Calendar cal,
+                                      final TimeZone tz) {
+    if (cal == null) {
+      return null;
+    }
+
+    final String uid = uid(master);
+    final String cname = master.getName();
+    final ComponentList cl = cal.getComponents();
+    int n = 0;
+
+    for (int i = 0; i < cl.size(); i++) {
+      if (isOverride((Component)cl.get(i), cname, uid)) {
+        n++;
+      }
+    }
+
+    if (n == 0) {
+      return null;
+    }
+
+    final long[] res = new long[n];
+    n = 0;
+
+    for (int i = 0; i < cl.size(); i++) {
+      final Component c = (Component)cl.get(i);
+
+      if (isOverride(c, cname, uid)) {
+        res[n] = millis(c.getProperty(Property.RECURRENCE_ID), tz);
+        n++;
+      }
+    }
+
+    Arrays.sort(res);
+
+    return res;
+  }
+
+  private static boolean isOverride(final Component c,
+                                    final String cname,
+                                    final String uid) {
+    if (!cname.equals(c.getName()) ||
+            (c.getProperty(Property.RECURRENCE_ID) == null)) {
+      return false;
+    }
+
+    final String cuid = uid(c);
+
+    return (uid == null) ? (cuid == null) : uid.equals(cuid);
+  }
+
+  private static String uid(final Component c) {
+    final Property p = c.getProperty(Property.UID);
+
+    if (p == null) {
+      return null;
+    }
+
+    return p.getValue();
+  }
+
+  /* Start and end of a single instance or null if undated */
+  private static long[] period(final Component comp,
+                               final TimeZone tz) {
+    final DateProperty dtstart =
+            (DateProperty)comp.getProperty(Property.DTSTART);
+
+    if ((dtstart == null) || (dtstart.getDate() == null)) {
+      final long due = millis(comp.getProperty(Property.DUE), tz);
+
+      if (due == Long.MIN_VALUE) {
+        return null;
+      }
+
+      return new long[]{due, due};
+    }
+
+    final long s = millis(dtstart.getDate(), tz);
+
+    return new long[]{s,
+                      s + instanceDuration(comp, s,
+                                           !(dtstart.getDate() instanceof DateTime),
+                                           tz)};
+  }
+
+  /* Length of an instance starting at s */
+  private static long instanceDuration(final Component comp,
+                                       final long s,
+                                       final boolean dateOnly,
+                                       final TimeZone tz) {
+    final String endName;
+
+    if (Component.VEVENT.equals(comp.getName())) {
+      endName = Property.DTEND;
+    } else if (Component.VTODO.equals(comp.getName())) {
+      endName = Property.DUE;
+    } else {
+      endName = null;
+    }
+
+    if (endName != null) {
+      final long e = millis(comp.getProperty(endName), tz);
+
+      if (e != Long.MIN_VALUE) {
+        return Math.max(0, e - s);
+      }
+
+      final long dur = durationMillis(comp, s);
+      if (dur >= 0) {
+        return dur;
+      }
+    }
+
+    if (dateOnly && !Component.VTODO.equals(comp.getName())) {
+      // A date value covers the whole day
+      return oneDay;
+    }
+
+    return 0;
+  }
+
+  /* Return -1 for no or unusable DURATION */
+  private static long durationMillis(final Component comp,
+                                     final long s) {
+    final Duration dp = (Duration)comp.getProperty(Property.DURATION);
+    if (dp == null) {
+      return -1;
+    }
+
+    final Object dur = dp.getDuration();
+    if (!(dur instanceof Dur)) {
+      return -1;
+    }
+
+    return ((Dur)dur).getTime(new java.util.Date(s)).getTime() - s;
+  }
+
+  /* Long.MIN_VALUE for absent */
+  private static long millis(final Property p,
+                             final TimeZone tz) {
+    if (!(p instanceof DateProperty)) {
+      return Long.MIN_VALUE;
+    }
+
+    final Date dt = ((DateProperty)p).getDate();
+    if (dt == null) {
+      return Long.MIN_VALUE;
+    }
+
+    return millis(dt, tz);
+  }
+
+  private static Date makeDate(final long millis,
+                               final boolean dateOnly) {
+    if (dateOnly) {
+      return new Date(millis);
+    }
+
+    final DateTime dt = new DateTime(millis);
+    dt.setUtc(true);
+
+    return dt;
+  }
+}
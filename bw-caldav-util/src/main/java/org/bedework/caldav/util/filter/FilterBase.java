@@ -65,6 +65,9 @@ public class FilterBase implements Serializable {
   /** The children of the filter */
   protected List<FilterBase> children;
 
+  /* Built on demand by match - discarded when the tree changes */
+  private transient volatile FilterEvaluator evaluator;
+
   /**
    * @param name for filter
    */
@@ -113,6 +116,7 @@ public class FilterBase implements Serializable {
    */
   public void setNot(final boolean val) {
     not = val;
+    changed();
   }
 
   /** Get the not
@@ -165,6 +169,7 @@ public class FilterBase implements Serializable {
    */
   public void setChildren(final List<FilterBase> val) {
     children = val;
+    changed();
   }
 
   /**  Get the set of children
@@ -205,14 +210,16 @@ public class FilterBase implements Serializable {
 
     c.add(val);
     val.setParent(this);
+    changed();
   }
 
   /* ====================================================================
    *                   matching methods
    * ==================================================================== */
 
-  /** Overridden by filters which attempt to match the object with the
-   * requirements.
+  /** Match the object with the requirements of this filter and its
+   * children. The tree is compiled into a FilterEvaluator on first use.
+   * Objects other than ical4j Components and Calendars do not match.
    *
    * @param o object to match
    * @param userHref - for whom we are matching
@@ -221,7 +228,36 @@ public class FilterBase implements Serializable {
    */
   public boolean match(final Object o,
                        final String userHref) throws WebdavException {
-    return false;
+    try {
+      return getEvaluator().matches(o);
+    } catch (final Throwable t) {
+      throw new WebdavException(t);
+    }
+  }
+
+  /**
+   * @return the compiled form of this filter tree
+   */
+  public FilterEvaluator getEvaluator() {
+    FilterEvaluator fe = evaluator;
+
+    if (fe == null) {
+      fe = FilterEvaluator.compile(this);
+      evaluator = fe;
+    }
+
+    return fe;
+  }
+
+  /** Called when this filter or one of its descendants is modified.
+   * Discards any compiled evaluator here and in the ancestors.
+   */
+  protected void changed() {
+    evaluator = null;
+
+    if (parent != null) {
+      parent.changed();
+    }
   }
 
   /* ====================================================================
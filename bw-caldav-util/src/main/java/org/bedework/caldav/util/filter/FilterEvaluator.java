@@ -0,0 +1,750 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.util.filter;
+
+import org.bedework.caldav.util.TimeRange;
+import org.bedework.util.calendar.IcalDefs;
+
+import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.Component;
+import net.fortuna.ical4j.model.ComponentList;
+import net.fortuna.ical4j.model.Parameter;
+import net.fortuna.ical4j.model.Property;
+import net.fortuna.ical4j.model.PropertyList;
+import net.fortuna.ical4j.model.component.VEvent;
+import net.fortuna.ical4j.model.component.VToDo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TimeZone;
+
+/** A filter tree compiled for repeated in-memory evaluation against
+ * ical4j components.
+ *
+ * <p>The tree built by Filters.getQueryFilter is flattened into a tree
+ * of predicates once. Names are resolved at compile time, the children
+ * of and/or nodes are ordered so that the cheap and selective tests
+ * run first and evaluation short-circuits. Evaluating a component does
+ * not allocate unless a time-range test needs to expand a recurring
+ * entity. Time ranges are tested by TimeRangeEngine.
+ *
+ * <p>Filter elements we cannot evaluate are treated as matching, so the
+ * result is a superset of the true result. getComplete() returns false
+ * if that happened. As inverting such an element would exclude
+ * everything, any inverted subtree containing one is itself treated as
+ * matching.
+ *
+ * <p>Instances are immutable and may be shared between threads.
+ *
+ * @author Mike Douglass
+ */
+public final class FilterEvaluator {
+  /* Relative costs - lower runs first */
+  private static final int costConst = 0;
+  private static final int costEntityType = 1;
+  private static final int costPresence = 2;
+  private static final int costText = 3;
+  private static final int costParam = 4;
+  private static final int costPropTimeRange = 5;
+  private static final int costTimeRange = 6;
+
+  private static final Comparator<Node> byCost =
+          Comparator.comparingInt(n -> n.cost);
+
+  private static final FilterEvaluator matchAll =
+          new FilterEvaluator(null, true);
+
+  private final Node root;
+
+  private final boolean complete;
+
+  private FilterEvaluator(final Node root,
+                          final boolean complete) {
+    this.root = root;
+    this.complete = complete;
+  }
+
+  /**
+   * @param filter - possibly null filter
+   * @return an evaluator - never null. A null filter matches everything.
+   */
+  public static FilterEvaluator compile(final FilterBase filter) {
+    if (filter == null) {
+      return matchAll;
+    }
+
+    final Compiler c = new Compiler();
+    final Node root = c.compile(filter);
+
+    return new FilterEvaluator(root, c.complete);
+  }
+
+  /**
+   * @return false if some part of the filter could not be evaluated and
+   *         was treated as matching
+   */
+  public boolean getComplete() {
+    return complete;
+  }
+
+  /**
+   * @param o a Component or Calendar
+   * @return true if the object matches. Other objects never match.
+   */
+  public boolean matches(final Object o) {
+    if (o instanceof Component) {
+      return matches((Component)o);
+    }
+
+    if (o instanceof Calendar) {
+      return matches((Calendar)o);
+    }
+
+    return false;
+  }
+
+  /** A calendar matches if any of its non-timezone components match.
+   * For a recurring entity that means the master or any override.
+   * Instances of the master replaced by an override are not considered
+   * when testing the master against a time range.
+   *
+   * @param cal the calendar
+   * @return true if it matches
+   */
+  public boolean matches(final Calendar cal) {
+    return matches(cal, null);
+  }
+
+  /** As matches(cal) with DATE and floating values taken to be in tz
+   * unless the query gave a timezone.
+   *
+   * @param cal the calendar
+   * @param tz usually that of the calendar collection - may be null
+   * @return true if it matches
+   */
+  public boolean matches(final Calendar cal,
+                         final TimeZone tz) {
+    if (cal == null) {
+      return false;
+    }
+
+    final ComponentList cl = cal.getComponents();
+
+    for (int i = 0; i < cl.size(); i++) {
+      final Component c = (Component)cl.get(i);
+
+      if (Component.VTIMEZONE.equals(c.getName())) {
+        continue;
+      }
+
+      if ((root == null) || root.eval(c, cal, tz)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * @param comp the component
+   * @return true if it matches
+   */
+  public boolean matches(final Component comp) {
+    if (comp == null) {
+      return false;
+    }
+
+    return (root == null) || root.eval(comp, null, null);
+  }
+
+  /* ====================================================================
+   *                   Compilation
+   * ==================================================================== */
+
+  private static class Compiler {
+    boolean complete = true;
+
+    Node compile(final FilterBase f) {
+      final boolean not = f.getNot();
+
+      if (f instanceof AndFilter) {
+        return inverted(new And(children(f), not));
+      }
+
+      if (f instanceof OrFilter) {
+        return inverted(new Or(children(f), not));
+      }
+
+      if (f instanceof NotFilter) {
+        // And of the children, inverted
+        return inverted(new And(children(f), !not));
+      }
+
+      if (f instanceof BooleanFilter) {
+        return new Const(((BooleanFilter)f).getValue(), not);
+      }
+
+      if (f instanceof EntityTypeFilter) {
+        final Integer etype = ((EntityTypeFilter)f).getEntity();
+
+        return new EntityType(entityName(etype), not);
+      }
+
+      if (f instanceof EntityTimeRangeFilter) {
+        final EntityTimeRangeFilter etrf = (EntityTimeRangeFilter)f;
+        final String cname = entityName(etrf.getEntityType());
+
+        if ((etrf.getEntity() == null) ||
+                (etrf.getEntityType() == IcalDefs.entityTypeAlarm)) {
+          return unknown();
+        }
+
+        return new EntityTimeRange(cname, etrf.getEntity(), not);
+      }
+
+      if (f instanceof ParameterFilter) {
+        final ParameterFilter parf = (ParameterFilter)f;
+
+        if ((parf.getParameterIndex() == null) ||
+                (parf.getParentPropertyIndex() == null)) {
+          return unknown();
+        }
+
+        return new ParamPresence(icalName(parf.getParentPropertyIndex()),
+                                 icalName(parf.getParameterIndex()),
+                                 true, not);
+      }
+
+      if (!(f instanceof PropertyFilter)) {
+        return unknown();
+      }
+
+      final PropertyFilter pf = (PropertyFilter)f;
+
+      if (pf.getPropertyIndex() == null) {
+        // Dotted references are not handled
+        return unknown();
+      }
+
+      final String pname = icalName(pf.getPropertyIndex());
+      final String parent;
+      if (pf.getParentPropertyIndex() == null) {
+        parent = null;
+      } else {
+        parent = icalName(pf.getParentPropertyIndex());
+      }
+
+      if (f instanceof PresenceFilter) {
+        final boolean present = ((PresenceFilter)f).getTestPresent();
+
+        if (parent != null) {
+          return new ParamPresence(parent, pname, present, not);
+        }
+
+        if (Component.VALARM.equals(pname)) {
+          return new AlarmPresence(present, not);
+        }
+
+        return new PropPresence(pname, present, not);
+      }
+
+      if (!(f instanceof ObjectFilter)) {
+        return unknown();
+      }
+
+      final ObjectFilter<?> of = (ObjectFilter<?>)f;
+      final Object entity = of.getEntity();
+
+      if (entity instanceof TimeRange) {
+        if (parent != null) {
+          return unknown();
+        }
+
+        return new PropTimeRange(pname, (TimeRange)entity, not);
+      }
+
+      if (entity == null) {
+        return unknown();
+      }
+
+      final TextTest tt = new TextTest(String.valueOf(entity),
+                                       of.getExact(),
+                                       of.getCaseless(),
+                                       of.getPrefixMatch());
+
+      if (parent != null) {
+        return new ParamText(parent, pname, tt, not);
+      }
+
+      return new PropText(pname, tt, not);
+    }
+
+    private Node[] children(final FilterBase f) {
+      final List<FilterBase> fs = f.getChildren();
+
+      if (fs == null) {
+        return new Node[0];
+      }
+
+      final List<Node> ns = new ArrayList<>(fs.size());
+
+      for (final FilterBase c: fs) {
+        ns.add(compile(c));
+      }
+
+      final Node[] res = ns.toArray(new Node[0]);
+      Arrays.sort(res, byCost);
+
+      return res;
+    }
+
+    /* We cannot invert what we could not evaluate */
+    private Node inverted(final Node n) {
+      if (n.not && n.partial()) {
+        return unknown();
+      }
+
+      return n;
+    }
+
+    private Node unknown() {
+      complete = false;
+      return new Const(true, false, true);
+    }
+  }
+
+  private static String entityName(final Integer etype) {
+    if ((etype == null) || (etype < 0) ||
+            (etype >= IcalDefs.entityTypeIcalNames.length)) {
+      return null;
+    }
+
+    return IcalDefs.entityTypeIcalNames[etype];
+  }
+
+  /* Index enums are named after the ical names with '_' for '-' */
+  private static String icalName(final Enum<?> index) {
+    return index.name().replace('_', '-');
+  }
+
+  /* ====================================================================
+   *                   Predicates
+   * ==================================================================== */
+
+  private abstract static class Node {
+    final int cost;
+    final boolean not;
+
+    Node(final int cost,
+         final boolean not) {
+      this.cost = cost;
+      this.not = not;
+    }
+
+    final boolean eval(final Component c,
+                       final Calendar cal,
+                       final TimeZone tz) {
+      return test(c, cal, tz) != not;
+    }
+
+    /* cal is the calendar containing c - possibly null. tz is the
+       default for DATE and floating values - possibly null */
+    abstract boolean test(Component c, Calendar cal, TimeZone tz);
+
+    /* True if this subtree contains an element we could not evaluate */
+    boolean partial() {
+      return false;
+    }
+  }
+
+  private static class And extends Node {
+    private final Node[] children;
+    private final boolean partial;
+
+    And(final Node[] children,
+        final boolean not) {
+      super(maxCost(children), not);
+      this.children = children;
+      partial = anyPartial(children);
+    }
+
+    @Override
+    boolean partial() {
+      return partial;
+    }
+
+    @Override
+    boolean test(final Component c,
+                 final Calendar cal,
+                 final TimeZone tz) {
+      for (final Node n: children) {
+        if (!n.eval(c, cal, tz)) {
+          return false;
+        }
+      }
+
+      return true;
+    }
+  }
+
+  private static class Or extends Node {
+    private final Node[] children;
+    private final boolean partial;
+
+    Or(final Node[] children,
+       final boolean not) {
+      super(maxCost(children), not);
+      this.children = children;
+      partial = anyPartial(children);
+    }
+
+    @Override
+    boolean partial() {
+      return partial;
+    }
+
+    @Override
+    boolean test(final Component c,
+                 final Calendar cal,
+                 final TimeZone tz) {
+      for (final Node n: children) {
+        if (n.eval(c, cal, tz)) {
+          return true;
+        }
+      }
+
+      return children.length == 0;
+    }
+  }
+
+  private static int maxCost(final Node[] children) {
+    int res = costConst;
+
+    for (final Node n: children) {
+      res = Math.max(res, n.cost);
+    }
+
+    return res;
+  }
+
+  private static boolean anyPartial(final Node[] children) {
+    for (final Node n: children) {
+      if (n.partial()) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  private static class Const extends Node {
+    private final boolean val;
+    private final boolean unknown;
+
+    Const(final boolean val,
+          final boolean not) {
+      this(val, not, false);
+    }
+
+    Const(final boolean val,
+          final boolean not,
+          final boolean unknown) {
+      super(costConst, not);
+      this.val = val;
+      this.unknown = unknown;
+    }
+
+    @Override
+    boolean partial() {
+      return unknown;
+    }
+
+    @Override
+    boolean test(final Component c,
+                 final Calendar cal,
+                 final TimeZone tz) {
+      return val;
+    }
+  }
+
+  private static class EntityType extends Node {
+    private final String cname;
+
+    EntityType(final String cname,
+               final boolean not) {
+      super(costEntityType, not);
+      this.cname = cname;
+    }
+
+    @Override
+    boolean test(final Component c,
+                 final Calendar cal,
+                 final TimeZone tz) {
+      return c.getName().equals(cname);
+    }
+  }
+
+  private static class EntityTimeRange extends Node {
+    private final String cname;
+    private final TimeRange tr;
+
+    EntityTimeRange(final String cname,
+                    final TimeRange tr,
+                    final boolean not) {
+      super(costTimeRange, not);
+      this.cname = cname;
+      this.tr = tr;
+    }
+
+    @Override
+    boolean test(final Component c,
+                 final Calendar cal,
+                 final TimeZone tz) {
+      return c.getName().equals(cname) && tr.overlaps(c, cal, tz);
+    }
+  }
+
+  private static class PropPresence extends Node {
+    private final String pname;
+    private final boolean present;
+
+    PropPresence(final String pname,
+                 final boolean present,
+                 final boolean not) {
+      super(costPresence, not);
+      this.pname = pname;
+      this.present = present;
+    }
+
+    @Override
+    boolean test(final Component c,
+                 final Calendar cal,
+                 final TimeZone tz) {
+      return (c.getProperty(pname) != null) == present;
+    }
+  }
+
+  private static class AlarmPresence extends Node {
+    private final boolean present;
+
+    AlarmPresence(final boolean present,
+                  final boolean not) {
+      super(costPresence, not);
+      this.present = present;
+    }
+
+    @Override
+    boolean test(final Component c,
+                 final Calendar cal,
+                 final TimeZone tz) {
+      final ComponentList alarms;
+
+      if (c instanceof VEvent) {
+        alarms = ((VEvent)c).getAlarms();
+      } else if (c instanceof VToDo) {
+        alarms = ((VToDo)c).getAlarms();
+      } else {
+        alarms = null;
+      }
+
+      return ((alarms != null) && !alarms.isEmpty()) == present;
+    }
+  }
+
+  private static class PropText extends Node {
+    private final String pname;
+    private final TextTest tt;
+
+    PropText(final String pname,
+             final TextTest tt,
+             final boolean not) {
+      super(costText, not);
+      this.pname = pname;
+      this.tt = tt;
+    }
+
+    /* Any instance of a multi-valued property may match */
+    @Override
+    boolean test(final Component c,
+                 final Calendar cal,
+                 final TimeZone tz) {
+      final PropertyList pl = c.getProperties();
+
+      for (int i = 0; i < pl.size(); i++) {
+        final Property p = (Property)pl.get(i);
+
+        if (pname.equals(p.getName()) && tt.matches(p.getValue())) {
+          return true;
+        }
+      }
+
+      return false;
+    }
+  }
+
+  private static class PropTimeRange extends Node {
+    private final String pname;
+    private final TimeRange tr;
+
+    PropTimeRange(final String pname,
+                  final TimeRange tr,
+                  final boolean not) {
+      super(costPropTimeRange, not);
+      this.pname = pname;
+      this.tr = tr;
+    }
+
+    @Override
+    boolean test(final Component c,
+                 final Calendar cal,
+                 final TimeZone tz) {
+      final PropertyList pl = c.getProperties();
+
+      for (int i = 0; i < pl.size(); i++) {
+        final Property p = (Property)pl.get(i);
+
+        if (pname.equals(p.getName()) && tr.matches(p, tz)) {
+          return true;
+        }
+      }
+
+      return false;
+    }
+  }
+
+  private static class ParamPresence extends Node {
+    private final String parent;
+    private final String parname;
+    private final boolean present;
+
+    ParamPresence(final String parent,
+                  final String parname,
+                  final boolean present,
+                  final boolean not) {
+      super(costParam, not);
+      this.parent = parent;
+      this.parname = parname;
+      this.present = present;
+    }
+
+    @Override
+    boolean test(final Component c,
+                 final Calendar cal,
+                 final TimeZone tz) {
+      final PropertyList pl = c.getProperties();
+
+      for (int i = 0; i < pl.size(); i++) {
+        final Property p = (Property)pl.get(i);
+
+        if (parent.equals(p.getName()) &&
+                ((p.getParameter(parname) != null) == present)) {
+          return true;
+        }
+      }
+
+      return false;
+    }
+  }
+
+  private static class ParamText extends Node {
+    private final String parent;
+    private final String parname;
+    private final TextTest tt;
+
+    ParamText(final String parent,
+              final String parname,
+              final TextTest tt,
+              final boolean not) {
+      super(costParam, not);
+      this.parent = parent;
+      this.parname = parname;
+      this.tt = tt;
+    }
+
+    @Override
+    boolean test(final Component c,
+                 final Calendar cal,
+                 final TimeZone tz) {
+      final PropertyList pl = c.getProperties();
+
+      for (int i = 0; i < pl.size(); i++) {
+        final Property p = (Property)pl.get(i);
+
+        if (!parent.equals(p.getName())) {
+          continue;
+        }
+
+        final Parameter par = p.getParameter(parname);
+
+        if ((par != null) && tt.matches(par.getValue())) {
+          return true;
+        }
+      }
+
+      return false;
+    }
+  }
+
+  /* Text matching without case conversion of the candidate. */
+  private static class TextTest {
+    private final String val;
+    private final boolean exact;
+    private final boolean caseless;
+    private final boolean prefix;
+
+    TextTest(final String val,
+             final boolean exact,
+             final boolean caseless,
+             final boolean prefix) {
+      this.val = val;
+      this.exact = exact;
+      this.caseless = caseless;
+      this.prefix = prefix;
+    }
+
+    boolean matches(final String candidate) {
+      if (candidate == null) {
+        return false;
+      }
+
+      final int len = val.length();
+
+      if (exact) {
+        return (candidate.length() == len) &&
+                candidate.regionMatches(caseless, 0, val, 0, len);
+      }
+
+      if (prefix) {
+        return candidate.regionMatches(caseless, 0, val, 0, len);
+      }
+
+      final int last = candidate.length() - len;
+
+      for (int i = 0; i <= last; i++) {
+        if (candidate.regionMatches(caseless, i, val, 0, len)) {
+          return true;
+        }
+      }
+
+      return false;
+    }
+  }
+}
@@ -18,10 +18,15 @@
 */
 package org.bedework.caldav.util.filter;
 
+import org.bedework.caldav.util.TimeRangeEngine;
+import org.bedework.util.calendar.XcalUtil;
+
 import ietf.params.xml.ns.caldav.PropFilterType;
 import ietf.params.xml.ns.caldav.TextMatchType;
 import ietf.params.xml.ns.caldav.UTCTimeRangeType;
 import net.fortuna.ical4j.model.Component;
+import net.fortuna.ical4j.model.Date;
+import net.fortuna.ical4j.model.DateTime;
 import net.fortuna.ical4j.model.Property;
 import net.fortuna.ical4j.model.PropertyList;
 import net.fortuna.ical4j.model.property.DateProperty;
@@ -110,7 +115,29 @@ public class FilterUtil {
       return false;
     }
 
-    // XXX later
-    return true;
+    final Date dt = ((DateProperty)candidate).getDate();
+    if (dt == null) {
+      return false;
+    }
+
+    try {
+      return TimeRangeEngine.inRange(millis(tr.getStart(),
+                                            TimeRangeEngine.unboundedStart),
+                                     millis(tr.getEnd(),
+                                            TimeRangeEngine.unboundedEnd),
+                                     dt.getTime());
+    } catch (final Throwable t) {
+      // Invalid time range
+      return false;
+    }
+  }
+
+  private static long millis(final String utcVal,
+                             final long unbounded) throws Throwable {
+    if (utcVal == null) {
+      return unbounded;
+    }
+
+    return new DateTime(XcalUtil.getIcalFormatDateTime(utcVal)).getTime();
   }
 }
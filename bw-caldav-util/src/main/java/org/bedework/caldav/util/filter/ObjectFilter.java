@@ -108,6 +108,7 @@ public class ObjectFilter<T> extends PropertyFilter {
    */
   public void setEntity(final T val) {
     entity = val;
+    changed();
   }
 
   /** Get the entity we're filtering on
@@ -124,6 +125,7 @@ public class ObjectFilter<T> extends PropertyFilter {
    */
   public void setExact(final boolean val) {
     exact = val;
+    changed();
   }
 
   /** See if we do exact match
@@ -140,6 +142,7 @@ public class ObjectFilter<T> extends PropertyFilter {
    */
   public void setCaseless(final boolean val) {
     caseless = val;
+    changed();
   }
 
   /** See if we do caseless match
@@ -156,6 +159,7 @@ public class ObjectFilter<T> extends PropertyFilter {
    */
   public void setPrefixMatch(final boolean val) {
     prefix = val;
+    changed();
   }
 
   /**
@@ -52,6 +52,7 @@ public class ParameterFilter extends FilterBase {
    */
   public void setParameterIndex(final ParameterInfoIndex val) {
     parameterIndex = val;
+    changed();
   }
 
   /**
@@ -67,6 +68,7 @@ public class ParameterFilter extends FilterBase {
    */
   public void setParentPropertyIndex(final PropertyInfoIndex val) {
     parentPropertyIndex = val;
+    changed();
   }
 
   /**
@@ -117,6 +117,7 @@ public class PropertyFilter extends FilterBase {
    */
   protected void setPropertyIndex(PropertyInfoIndex val) {
     propertyIndex = val;
+    changed();
   }
 
   /**
@@ -132,6 +133,7 @@ public class PropertyFilter extends FilterBase {
    */
   public void setParentPropertyIndex(PropertyInfoIndex val) {
     parentPropertyIndex = val;
+    changed();
   }
 
   /**
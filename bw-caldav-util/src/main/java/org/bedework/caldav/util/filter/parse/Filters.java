@@ -18,6 +18,7 @@
 */
 package org.bedework.caldav.util.filter.parse;
 
+import org.bedework.caldav.util.JaxbContexts;
 import org.bedework.caldav.util.TimeRange;
 import org.bedework.caldav.util.filter.EntityTimeRangeFilter;
 import org.bedework.caldav.util.filter.EntityTypeFilter;
@@ -50,7 +51,6 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.Unmarshaller;
 import javax.xml.parsers.DocumentBuilder;
@@ -61,6 +61,8 @@ import javax.xml.parsers.DocumentBuilderFactory;
  *   @author Mike Douglass   douglm rpi.edu
  */
 public class Filters {
+  private static final String caldavJaxbPath = "ietf.params.xml.ns.caldav";
+
   /** Convenience method
    *
    * @param cf comp filter
@@ -114,10 +116,15 @@ public class Filters {
    */
   public static FilterType parse(final Node nd) throws WebdavException {
     try {
-      JAXBContext jc = JAXBContext.newInstance("ietf.params.xml.ns.caldav");
-      Unmarshaller u = jc.createUnmarshaller();
+      final Unmarshaller u = JaxbContexts.getUnmarshaller(caldavJaxbPath);
+
+      final JAXBElement<?> jel;
+      try {
+        jel = (JAXBElement<?>)u.unmarshal(nd);
+      } finally {
+        JaxbContexts.release(caldavJaxbPath, u);
+      }
 
-      JAXBElement<?> jel = (JAXBElement<?>)u.unmarshal(nd);
       if (jel == null) {
         return null;
       }
@@ -142,6 +149,50 @@ public class Filters {
     return eventq;
   }
 
+  /** As getQuery(f) but DATE and floating values are resolved in the
+   * timezone of the query, if any.
+   *
+   * @param f filter
+   * @param tzid from the CALDAV:timezone element - may be null
+   * @return EventQuery
+   * @throws WebdavException
+   */
+  public static EventQuery getQuery(final FilterType f,
+                                    final String tzid) throws WebdavException {
+    final EventQuery eventq = getQuery(f);
+
+    if (tzid != null) {
+      setTzid(eventq.filter, tzid);
+    }
+
+    return eventq;
+  }
+
+  private static void setTzid(final FilterBase f,
+                              final String tzid) {
+    if (f == null) {
+      return;
+    }
+
+    if (f instanceof ObjectFilter) {
+      final Object entity = ((ObjectFilter<?>)f).getEntity();
+
+      if (entity instanceof TimeRange) {
+        ((TimeRange)entity).setTzid(tzid);
+      }
+    }
+
+    final List<FilterBase> children = f.getChildren();
+
+    if (children == null) {
+      return;
+    }
+
+    for (final FilterBase c: children) {
+      setTzid(c, tzid);
+    }
+  }
+
   /** Returns a subtree of the filter used in querying
    *
    * @param cf comp filter
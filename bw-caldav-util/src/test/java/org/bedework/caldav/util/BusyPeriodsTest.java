@@ -0,0 +1,214 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.bedework.caldav.util.BusyPeriods.fbtypeBusy;
+import static org.bedework.caldav.util.BusyPeriods.fbtypeBusyTentative;
+import static org.bedework.caldav.util.BusyPeriods.fbtypeBusyUnavailable;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/** Tests for the busy period engine.
+ *
+ * @author Mike Douglass
+ */
+public class BusyPeriodsTest {
+  private static final long hour = 60 * 60 * 1000L;
+
+  /* 2020-01-01T00:00:00Z */
+  private static final long base = 1577836800000L;
+
+  @Test
+  public void testCoalesce() {
+    final BusyPeriods bp = BusyPeriods.builder()
+            .add(h(6), h(7), fbtypeBusy)
+            .add(h(1), h(3), fbtypeBusy)
+            .add(h(2), h(4), fbtypeBusy)   // overlaps
+            .add(h(4), h(5), fbtypeBusy)   // touches
+            .add(h(8), h(8), fbtypeBusy)   // empty
+            .build();
+
+    assertEquals(2, bp.size());
+    check(bp, 0, 1, 5, fbtypeBusy);
+    check(bp, 1, 6, 7, fbtypeBusy);
+  }
+
+  @Test
+  public void testFlatten() {
+    final BusyPeriods bp = BusyPeriods.builder()
+            .add(h(1), h(5), fbtypeBusyTentative)
+            .add(h(2), h(4), fbtypeBusy)
+            .add(h(3), h(6), fbtypeBusyUnavailable)
+            .build();
+
+    // The stronger type wins where they overlap
+    assertEquals(3, bp.size());
+    check(bp, 0, 1, 2, fbtypeBusyTentative);
+    check(bp, 1, 2, 4, fbtypeBusy);
+    check(bp, 2, 4, 6, fbtypeBusyUnavailable);
+  }
+
+  @Test
+  public void testEmpty() {
+    assertSame(BusyPeriods.empty, BusyPeriods.builder().build());
+    assertTrue(BusyPeriods.fromPairs(new long[]{h(2), h(1)},
+                                     fbtypeBusy).isEmpty());
+    assertEquals("", BusyPeriods.empty.toFreeBusyLines());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadType() {
+    BusyPeriods.builder().add(h(1), h(2), 0);
+  }
+
+  @Test
+  public void testUnionAndIntersect() {
+    final BusyPeriods a = BusyPeriods.fromPairs(
+            new long[]{h(1), h(3), h(5), h(8)}, fbtypeBusy);
+    final BusyPeriods b = BusyPeriods.fromPairs(
+            new long[]{h(2), h(6)}, fbtypeBusyTentative);
+
+    final BusyPeriods u = BusyPeriods.union(Arrays.asList(a, b));
+
+    assertEquals(3, u.size());
+    check(u, 0, 1, 3, fbtypeBusy);
+    check(u, 1, 3, 5, fbtypeBusyTentative);
+    check(u, 2, 5, 8, fbtypeBusy);
+
+    // Each common period takes the weaker type
+    final BusyPeriods i = a.intersect(b);
+
+    assertEquals(2, i.size());
+    check(i, 0, 2, 3, fbtypeBusyTentative);
+    check(i, 1, 5, 6, fbtypeBusyTentative);
+
+    final BusyPeriods c = BusyPeriods.fromPairs(
+            new long[]{h(7), h(9)}, fbtypeBusy);
+
+    assertTrue(BusyPeriods.intersect(Arrays.asList(a, b, c)).isEmpty());
+    assertEquals(1, BusyPeriods.intersect(Arrays.asList(a, c)).size());
+  }
+
+  @Test
+  public void testClip() {
+    final BusyPeriods bp = BusyPeriods.fromPairs(
+            new long[]{h(1), h(3), h(5), h(8), h(10), h(11)}, fbtypeBusy);
+
+    final BusyPeriods c = bp.clip(h(2), h(6));
+
+    assertEquals(2, c.size());
+    check(c, 0, 2, 3, fbtypeBusy);
+    check(c, 1, 5, 6, fbtypeBusy);
+
+    // Periods ending at the window start are outside
+    assertTrue(bp.clip(h(3), h(5)).isEmpty());
+    assertTrue(bp.clip(h(6), h(6)).isEmpty());
+
+    // Nothing to clip
+    assertSame(bp, bp.clip(h(0), h(12)));
+  }
+
+  @Test
+  public void testFirstFree() {
+    final BusyPeriods bp = BusyPeriods.builder()
+            .add(h(1), h(2), fbtypeBusy)
+            .add(h(3), h(5), fbtypeBusyTentative)
+            .add(h(6), h(7), fbtypeBusy)
+            .build();
+
+    assertEquals(h(0), bp.firstFree(h(0), h(10), hour, fbtypeBusy));
+    assertEquals(h(7), bp.firstFree(h(1), h(10), 2 * hour,
+                                    fbtypeBusyTentative));
+
+    // Tentative time counts as free
+    assertEquals(h(2), bp.firstFree(h(1), h(10), 2 * hour, fbtypeBusy));
+
+    assertEquals(BusyPeriods.noSlot,
+                 bp.firstFree(h(1), h(7), 3 * hour, fbtypeBusyTentative));
+  }
+
+  @Test
+  public void testFreeBusyLines() {
+    final BusyPeriods bp = BusyPeriods.builder()
+            .add(h(1), h(2), fbtypeBusyTentative)
+            .add(h(3), h(4), fbtypeBusy)
+            .build();
+
+    assertEquals("FREEBUSY;FBTYPE=BUSY:20200101T030000Z/20200101T040000Z\r\n" +
+                 "FREEBUSY;FBTYPE=BUSY-TENTATIVE:" +
+                 "20200101T010000Z/20200101T020000Z\r\n",
+                 bp.toFreeBusyLines());
+  }
+
+  @Test
+  public void testFolding() {
+    final long[] pairs = new long[20];
+
+    for (int i = 0; i < 10; i++) {
+      pairs[2 * i] = h(2 * i);
+      pairs[2 * i + 1] = h(2 * i + 1);
+    }
+
+    final String lines =
+            BusyPeriods.fromPairs(pairs, fbtypeBusy).toFreeBusyLines();
+
+    assertTrue(lines.endsWith("\r\n"));
+
+    final String[] physical = lines.split("\r\n");
+
+    assertTrue(physical.length > 1);
+
+    for (int i = 0; i < physical.length; i++) {
+      assertTrue(physical[i].length() <= 75);
+
+      if (i > 0) {
+        assertTrue(physical[i].startsWith(" "));
+      }
+    }
+
+    // Unfolding gives back the single line
+    final String unfolded = lines.replace("\r\n ", "");
+
+    assertEquals(1, unfolded.split("\r\n").length);
+    assertEquals(10, unfolded.split(",").length);
+  }
+
+  /* ====================================================================
+   *                   Private methods
+   * ==================================================================== */
+
+  private static long h(final int hours) {
+    return base + hours * hour;
+  }
+
+  private static void check(final BusyPeriods bp,
+                            final int i,
+                            final int startHour,
+                            final int endHour,
+                            final int type) {
+    assertEquals(h(startHour), bp.getStart(i));
+    assertEquals(h(endHour), bp.getEnd(i));
+    assertEquals(type, bp.getType(i));
+  }
+}
@@ -0,0 +1,90 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.util;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+/** Tests for UTF-8 length counting.
+ *
+ * @author Mike Douglass
+ */
+public class CountingWriterTest {
+  private static final String[] samples = {
+          "",
+          "SUMMARY:Meeting\r\n",
+          "LOCATION:Café Zürich\r\n",
+          "DESCRIPTION:会议室\r\n",
+          "SUMMARY:Party 🎉😀\r\n",
+          "\u007f\u0080߿ࠀ￿"
+  };
+
+  @Test
+  public void testUtf8Length() {
+    for (final String s: samples) {
+      assertEquals(s, utf8(s), CountingWriter.utf8Length(s));
+    }
+
+    assertEquals(0, CountingWriter.utf8Length(null));
+  }
+
+  @Test
+  public void testWrites() {
+    final CountingWriter cw = new CountingWriter();
+    long expected = 0;
+
+    for (final String s: samples) {
+      cw.write(s, 0, s.length());
+      expected += utf8(s);
+    }
+
+    cw.write('x');
+    cw.write("abc".toCharArray(), 1, 2);
+    expected += 3;
+
+    assertEquals(expected, cw.getCount());
+  }
+
+  @Test
+  public void testSplitSurrogatePair() {
+    final String s = "a😀b";
+    final CountingWriter cw = new CountingWriter();
+
+    // Pair split across writes
+    cw.write(s, 0, 2);
+    cw.write(s, 2, 2);
+
+    assertEquals(utf8(s), cw.getCount());
+
+    final CountingWriter cw2 = new CountingWriter();
+
+    for (int i = 0; i < s.length(); i++) {
+      cw2.write(s.charAt(i));
+    }
+
+    assertEquals(utf8(s), cw2.getCount());
+  }
+
+  private static long utf8(final String s) {
+    return s.getBytes(StandardCharsets.UTF_8).length;
+  }
+}
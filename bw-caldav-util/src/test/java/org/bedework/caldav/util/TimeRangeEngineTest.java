@@ -0,0 +1,306 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.util;
+
+import net.fortuna.ical4j.data.CalendarBuilder;
+import net.fortuna.ical4j.model.Calendar;
+import net.fortuna.ical4j.model.Component;
+import net.fortuna.ical4j.model.Date;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.bedework.caldav.util.TimeRangeEngine.unboundedEnd;
+import static org.bedework.caldav.util.TimeRangeEngine.unboundedStart;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** Tests for time-range matching and recurrence expansion.
+ *
+ * @author Mike Douglass
+ */
+public class TimeRangeEngineTest {
+  private static final TimeZone utc = TimeZone.getTimeZone("UTC");
+
+  private static final TimeZone newYork =
+          TimeZone.getTimeZone("America/New_York");
+
+  /* Weekly on Mondays 10:00Z from 6 Jan 2020. The 13th is moved to the
+     14th and the 20th is excluded.
+   */
+  private static final Calendar recurring = cal(
+          "BEGIN:VEVENT",
+          "UID:rec1",
+          "DTSTAMP:20200101T000000Z",
+          "DTSTART:20200106T100000Z",
+          "DTEND:20200106T110000Z",
+          "RRULE:FREQ=WEEKLY;COUNT=4",
+          "EXDATE:20200120T100000Z",
+          "END:VEVENT",
+          "BEGIN:VEVENT",
+          "UID:rec1",
+          "DTSTAMP:20200101T000000Z",
+          "RECURRENCE-ID:20200113T100000Z",
+          "DTSTART:20200114T150000Z",
+          "DTEND:20200114T160000Z",
+          "END:VEVENT");
+
+  /* Daily at 09:00Z from 1 Jan 2020 with no end */
+  private static final Calendar daily = cal(
+          "BEGIN:VEVENT",
+          "UID:daily1",
+          "DTSTAMP:20200101T000000Z",
+          "DTSTART:20200101T090000Z",
+          "DURATION:PT1H",
+          "RRULE:FREQ=DAILY",
+          "END:VEVENT");
+
+  private static final Calendar allDay = cal(
+          "BEGIN:VEVENT",
+          "UID:ad1",
+          "DTSTAMP:20200101T000000Z",
+          "DTSTART;VALUE=DATE:20200110",
+          "DTEND;VALUE=DATE:20200111",
+          "END:VEVENT");
+
+  @Test
+  public void testSingle() {
+    final Component ev = first(allDay);
+
+    assertTrue(TimeRangeEngine.overlaps(millis("2020-01-10T12:00:00Z"),
+                                        millis("2020-01-10T13:00:00Z"),
+                                        ev, allDay, utc));
+
+    // Periods are half open
+    assertFalse(TimeRangeEngine.overlaps(millis("2020-01-11T00:00:00Z"),
+                                         millis("2020-01-12T00:00:00Z"),
+                                         ev, allDay, utc));
+
+    // Open ended ranges
+    assertTrue(TimeRangeEngine.overlaps(unboundedStart,
+                                        millis("2020-01-10T00:00:01Z"),
+                                        ev, allDay, utc));
+    assertTrue(TimeRangeEngine.overlaps(millis("2020-01-10T23:59:59Z"),
+                                        unboundedEnd,
+                                        ev, allDay, utc));
+  }
+
+  @Test
+  public void testInstances() {
+    final List<Long> starts = new ArrayList<>();
+
+    assertTrue(TimeRangeEngine.instances(unboundedStart, unboundedEnd,
+                                         first(recurring), recurring,
+                                         (c, s, e) -> starts.add(s)));
+
+    Collections.sort(starts);
+
+    assertEquals(3, starts.size());
+    assertEquals(millis("2020-01-06T10:00:00Z"), (long)starts.get(0));
+    assertEquals(millis("2020-01-14T15:00:00Z"), (long)starts.get(1));
+    assertEquals(millis("2020-01-27T10:00:00Z"), (long)starts.get(2));
+  }
+
+  @Test
+  public void testOverriddenAndExcluded() {
+    final Component master = first(recurring);
+
+    // Moved away from the 13th
+    assertFalse(TimeRangeEngine.overlaps(millis("2020-01-13T00:00:00Z"),
+                                         millis("2020-01-14T00:00:00Z"),
+                                         master, recurring));
+
+    // Excluded
+    assertFalse(TimeRangeEngine.overlaps(millis("2020-01-20T00:00:00Z"),
+                                         millis("2020-01-21T00:00:00Z"),
+                                         master, recurring));
+
+    // After the last instance
+    assertFalse(TimeRangeEngine.overlaps(millis("2020-01-28T00:00:00Z"),
+                                         unboundedEnd,
+                                         master, recurring));
+
+    assertTrue(TimeRangeEngine.overlaps(millis("2020-01-27T10:30:00Z"),
+                                        millis("2020-01-27T10:31:00Z"),
+                                        master, recurring));
+  }
+
+  @Test
+  public void testOpenEnded() {
+    final Component master = first(daily);
+
+    // Far beyond the first chunk of expansion
+    assertTrue(TimeRangeEngine.overlaps(millis("2035-06-01T09:30:00Z"),
+                                        millis("2035-06-01T09:31:00Z"),
+                                        master, daily));
+    assertFalse(TimeRangeEngine.overlaps(millis("2035-06-01T10:00:00Z"),
+                                         millis("2035-06-02T09:00:00Z"),
+                                         master, daily));
+
+    // Before the first instance
+    assertFalse(TimeRangeEngine.overlaps(unboundedStart,
+                                         millis("2020-01-01T09:00:00Z"),
+                                         master, daily));
+
+    // Expansion stops when the handler has seen enough
+    final List<Long> starts = new ArrayList<>();
+
+    assertFalse(TimeRangeEngine.instances(millis("2030-01-01T00:00:00Z"),
+                                          unboundedEnd,
+                                          master, daily,
+                                          (c, s, e) -> {
+                                            starts.add(s);
+                                            return starts.size() < 3;
+                                          }));
+
+    Collections.sort(starts);
+
+    assertEquals(3, starts.size());
+    assertEquals(millis("2030-01-01T09:00:00Z"), (long)starts.get(0));
+    assertEquals(millis("2030-01-03T09:00:00Z"), (long)starts.get(2));
+  }
+
+  @Test
+  public void testDateInTimezone() throws Throwable {
+    final Component ev = first(allDay);
+
+    // The day starts at 05:00Z in New York
+    assertTrue(TimeRangeEngine.overlaps(millis("2020-01-10T00:00:00Z"),
+                                        millis("2020-01-10T01:00:00Z"),
+                                        ev, allDay, utc));
+    assertFalse(TimeRangeEngine.overlaps(millis("2020-01-10T00:00:00Z"),
+                                         millis("2020-01-10T01:00:00Z"),
+                                         ev, allDay, newYork));
+    assertTrue(TimeRangeEngine.overlaps(millis("2020-01-11T00:00:00Z"),
+                                        millis("2020-01-11T01:00:00Z"),
+                                        ev, allDay, newYork));
+
+    assertEquals(millis("2020-01-10T05:00:00Z"),
+                 TimeRangeEngine.millis(new Date("20200110"), newYork));
+  }
+
+  @Test
+  public void testTodo() {
+    final Calendar done = cal(
+            "BEGIN:VTODO",
+            "UID:td1",
+            "DTSTAMP:20200101T000000Z",
+            "CREATED:20200101T000000Z",
+            "COMPLETED:20200105T120000Z",
+            "END:VTODO");
+
+    assertTrue(TimeRangeEngine.overlaps(millis("2020-01-02T00:00:00Z"),
+                                        millis("2020-01-03T00:00:00Z"),
+                                        first(done), done));
+    assertFalse(TimeRangeEngine.overlaps(millis("2019-12-01T00:00:00Z"),
+                                         millis("2019-12-02T00:00:00Z"),
+                                         first(done), done));
+    assertFalse(TimeRangeEngine.overlaps(millis("2020-02-01T00:00:00Z"),
+                                         millis("2020-02-02T00:00:00Z"),
+                                         first(done), done));
+
+    final Calendar due = cal(
+            "BEGIN:VTODO",
+            "UID:td2",
+            "DTSTAMP:20200101T000000Z",
+            "DUE:20200110T120000Z",
+            "END:VTODO");
+
+    assertTrue(TimeRangeEngine.overlaps(millis("2020-01-10T00:00:00Z"),
+                                        millis("2020-01-10T12:00:00Z"),
+                                        first(due), due));
+    assertFalse(TimeRangeEngine.overlaps(millis("2020-01-10T12:00:00Z"),
+                                         millis("2020-01-11T00:00:00Z"),
+                                         first(due), due));
+
+    final Calendar undated = cal(
+            "BEGIN:VTODO",
+            "UID:td3",
+            "DTSTAMP:20200101T000000Z",
+            "END:VTODO");
+
+    assertTrue(TimeRangeEngine.overlaps(millis("1990-01-01T00:00:00Z"),
+                                        millis("1990-01-02T00:00:00Z"),
+                                        first(undated), undated));
+  }
+
+  @Test
+  public void testOverrideWithoutMaster() {
+    final Calendar cal = cal(
+            "BEGIN:VEVENT",
+            "UID:ov1",
+            "DTSTAMP:20200101T000000Z",
+            "RECURRENCE-ID:20200113T100000Z",
+            "DTSTART:20200114T150000Z",
+            "DTEND:20200114T160000Z",
+            "END:VEVENT");
+    final Component ov = first(cal);
+
+    assertFalse(TimeRangeEngine.hasRecurringMaster(ov, cal));
+    assertTrue(TimeRangeEngine.hasRecurringMaster(
+            (Component)recurring.getComponents().get(1), recurring));
+
+    final List<Long> starts = new ArrayList<>();
+
+    TimeRangeEngine.instance(unboundedStart, unboundedEnd, ov, null,
+                             (c, s, e) -> starts.add(s));
+
+    assertEquals(1, starts.size());
+    assertEquals(millis("2020-01-14T15:00:00Z"), (long)starts.get(0));
+  }
+
+  /* ====================================================================
+   *                   Private methods
+   * ==================================================================== */
+
+  private static long millis(final String val) {
+    return Instant.parse(val).toEpochMilli();
+  }
+
+  private static Component first(final Calendar cal) {
+    return (Component)cal.getComponents().get(0);
+  }
+
+  private static Calendar cal(final String... lines) {
+    final StringBuilder sb = new StringBuilder();
+
+    sb.append("BEGIN:VCALENDAR\r\n");
+    sb.append("VERSION:2.0\r\n");
+    sb.append("PRODID:-//Bedework//Test//EN\r\n");
+
+    for (final String l: lines) {
+      sb.append(l);
+      sb.append("\r\n");
+    }
+
+    sb.append("END:VCALENDAR\r\n");
+
+    try {
+      return new CalendarBuilder().build(new StringReader(sb.toString()));
+    } catch (final Throwable t) {
+      throw new RuntimeException(t);
+    }
+  }
+}
@@ -0,0 +1,245 @@
+/* ********************************************************************
+    Licensed to Jasig under one or more contributor license
+    agreements. See the NOTICE file distributed with this work
+    for additional information regarding copyright ownership.
+    Jasig licenses this file to you under the Apache License,
+    Version 2.0 (the "License"); you may not use this file
+    except in compliance with the License. You may obtain a
+    copy of the License at:
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+    Unless required by applicable law or agreed to in writing,
+    software distributed under the License is distributed on
+    an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+    KIND, either express or implied. See the License for the
+    specific language governing permissions and limitations
+    under the License.
+*/
+package org.bedework.caldav.util.filter;
+
+import org.bedework.caldav.util.filter.parse.Filters;
+
+import net.fortuna.ical4j.data.CalendarBuilder;
+import net.fortuna.ical4j.model.Calendar;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** Filters as sent by clients, compiled and evaluated in memory.
+ *
+ * @author Mike Douglass
+ */
+public class FilterEvaluatorTest {
+  private static final Calendar event = cal(
+          "BEGIN:VEVENT",
+          "UID:ev1",
+          "DTSTAMP:20200101T000000Z",
+          "DTSTART:20200106T100000Z",
+          "DTEND:20200106T110000Z",
+          "SUMMARY:Team Meeting",
+          "END:VEVENT");
+
+  private static final Calendar todo = cal(
+          "BEGIN:VTODO",
+          "UID:td1",
+          "DTSTAMP:20200101T000000Z",
+          "DTSTART:20200106T100000Z",
+          "DUE:20200107T100000Z",
+          "SUMMARY:Write report",
+          "END:VTODO");
+
+  /* Weekly on Mondays 10:00Z from 6 Jan 2020. The 13th is moved to the
+     14th and the 20th is excluded.
+   */
+  private static final Calendar recurring = cal(
+          "BEGIN:VEVENT",
+          "UID:rec1",
+          "DTSTAMP:20200101T000000Z",
+          "DTSTART:20200106T100000Z",
+          "DTEND:20200106T110000Z",
+          "RRULE:FREQ=WEEKLY;COUNT=4",
+          "EXDATE:20200120T100000Z",
+          "SUMMARY:Weekly",
+          "END:VEVENT",
+          "BEGIN:VEVENT",
+          "UID:rec1",
+          "DTSTAMP:20200101T000000Z",
+          "RECURRENCE-ID:20200113T100000Z",
+          "DTSTART:20200114T150000Z",
+          "DTEND:20200114T160000Z",
+          "SUMMARY:Weekly - moved",
+          "END:VEVENT");
+
+  private static final Calendar floating = cal(
+          "BEGIN:VEVENT",
+          "UID:fl1",
+          "DTSTAMP:20200101T000000Z",
+          "DTSTART:20200110T090000",
+          "DTEND:20200110T100000",
+          "SUMMARY:Floating",
+          "END:VEVENT");
+
+  @Test
+  public void testComponentType() throws Throwable {
+    final FilterEvaluator fe = compile(compFilter("VEVENT", ""));
+
+    assertTrue(fe.matches(event));
+    assertFalse(fe.matches(todo));
+    assertTrue(fe.getComplete());
+  }
+
+  @Test
+  public void testTimeRange() throws Throwable {
+    assertTrue(compile(range("VEVENT", "20200106T103000Z",
+                              "20200106T120000Z")).matches(event));
+
+    // Periods are half open
+    assertFalse(compile(range("VEVENT", "20200106T110000Z",
+                               "20200106T120000Z")).matches(event));
+
+    assertTrue(compile(range("VTODO", "20200107T000000Z",
+                              "20200108T000000Z")).matches(todo));
+  }
+
+  @Test
+  public void testRecurrence() throws Throwable {
+    // Last instance
+    assertTrue(compile(range("VEVENT", "20200127T000000Z",
+                              "20200128T000000Z")).matches(recurring));
+
+    // After the last instance
+    assertFalse(compile(range("VEVENT", "20200201T000000Z",
+                               "20200301T000000Z")).matches(recurring));
+
+    // Excluded instance
+    assertFalse(compile(range("VEVENT", "20200120T000000Z",
+                               "20200121T000000Z")).matches(recurring));
+
+    // The overridden instance has moved
+    assertFalse(compile(range("VEVENT", "20200113T000000Z",
+                               "20200114T000000Z")).matches(recurring));
+    assertTrue(compile(range("VEVENT", "20200114T000000Z",
+                              "20200115T000000Z")).matches(recurring));
+  }
+
+  @Test
+  public void testFloatingTime() throws Throwable {
+    // 09:00 in New York is 14:00Z
+    final FilterEvaluator fe = compile(range("VEVENT", "20200110T133000Z",
+                                             "20200110T143000Z"));
+
+    assertTrue(fe.matches(floating,
+                          TimeZone.getTimeZone("America/New_York")));
+    assertFalse(fe.matches(floating, TimeZone.getTimeZone("UTC")));
+  }
+
+  @Test
+  public void testTextMatch() throws Throwable {
+    assertTrue(compile(compFilter("VEVENT", textMatch("team", "no")))
+                       .matches(event));
+    assertFalse(compile(compFilter("VEVENT", textMatch("team", "yes")))
+                        .matches(event));
+    assertFalse(compile(compFilter("VEVENT", textMatch("lunch", "no")))
+                        .matches(event));
+  }
+
+  @Test
+  public void testIsNotDefined() throws Throwable {
+    final String location =
+            "<C:prop-filter name=\"LOCATION\">" +
+            "<C:is-not-defined/>" +
+            "</C:prop-filter>";
+    final String summary =
+            "<C:prop-filter name=\"SUMMARY\">" +
+            "<C:is-not-defined/>" +
+            "</C:prop-filter>";
+
+    assertTrue(compile(compFilter("VEVENT", location)).matches(event));
+    assertFalse(compile(compFilter("VEVENT", summary)).matches(event));
+  }
+
+  @Test
+  public void testUnknownUnderNot() {
+    // A filter element the evaluator does not understand
+    final NotFilter not = new NotFilter();
+    not.addChild(new FilterBase("unknown"));
+
+    final FilterEvaluator fe = FilterEvaluator.compile(not);
+
+    assertFalse(fe.getComplete());
+    assertTrue(fe.matches(event));
+    assertTrue(fe.matches(todo));
+  }
+
+  @Test
+  public void testNullFilter() {
+    final FilterEvaluator fe = FilterEvaluator.compile(null);
+
+    assertTrue(fe.matches(event));
+    assertTrue(fe.getComplete());
+  }
+
+  /* ====================================================================
+   *                   Private methods
+   * ==================================================================== */
+
+  private static FilterEvaluator compile(final String xml) throws Throwable {
+    return FilterEvaluator.compile(
+            Filters.getQuery(Filters.parse(xml)).filter);
+  }
+
+  private static String compFilter(final String name,
+                                   final String content) {
+    return "<C:filter xmlns:C=\"urn:ietf:params:xml:ns:caldav\">" +
+           "<C:comp-filter name=\"VCALENDAR\">" +
+           "<C:comp-filter name=\"" + name + "\">" +
+           content +
+           "</C:comp-filter>" +
+           "</C:comp-filter>" +
+           "</C:filter>";
+  }
+
+  private static String range(final String name,
+                              final String start,
+                              final String end) {
+    return compFilter(name,
+                      "<C:time-range start=\"" + start +
+                      "\" end=\"" + end + "\"/>");
+  }
+
+  private static String textMatch(final String val,
+                                  final String negate) {
+    return "<C:prop-filter name=\"SUMMARY\">" +
+           "<C:text-match collation=\"i;ascii-casemap\"" +
+           " negate-condition=\"" + negate + "\">" +
+           val +
+           "</C:text-match>" +
+           "</C:prop-filter>";
+  }
+
+  private static Calendar cal(final String... lines) {
+    final StringBuilder sb = new StringBuilder();
+
+    sb.append("BEGIN:VCALENDAR\r\n");
+    sb.append("VERSION:2.0\r\n");
+    sb.append("PRODID:-//Bedework//Test//EN\r\n");
+
+    for (final String l: lines) {
+      sb.append(l);
+      sb.append("\r\n");
+    }
+
+    sb.append("END:VCALENDAR\r\n");
+
+    try {
+      return new CalendarBuilder().build(new StringReader(sb.toString()));
+    } catch (final Throwable t) {
+      throw new RuntimeException(t);
+    }
+  }
+}